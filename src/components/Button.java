@@ -56,6 +56,7 @@ public class Button extends Component {
 
 	public void setTextPlacement(int textPlacement) {
 		this.textPlacement = textPlacement;
+		repaint();
 	}
 
 	public int getTextAlignment() {
@@ -64,6 +65,7 @@ public class Button extends Component {
 
 	public void setTextAlignment(int textAlignment) {
 		this.textAlignment = textAlignment;
+		repaint();
 	}
 
 	public String getText() {
@@ -77,6 +79,7 @@ public class Button extends Component {
 			textBBF = BufferUtils.createByteBuffer(l);
 			memUTF8(text, false, textBBF);
 		}
+		repaint();
 	}
 
 	public Image getImage() {
@@ -85,6 +88,7 @@ public class Button extends Component {
 
 	public void setImage(Image image) {
 		this.image = image;
+		repaint();
 	}
 
 	public FontStyle getFont() {
@@ -93,6 +97,7 @@ public class Button extends Component {
 
 	public void setFont(FontStyle font) {
 		this.font = font;
+		repaint();
 	}
 
 	public ByteBuffer getTextBBF() {
@@ -0,0 +1,132 @@
+package components;
+
+/**
+ * The heights of the rows of a {@link VirtualList}, as a Fenwick tree of the
+ * differences to a default height, so that the position of a row and the row
+ * at a position are found in {@code O(log n)}, and a height is changed in
+ * {@code O(log n)}.
+ * <p>
+ * The tree is only allocated once a row has a height other than the default
+ * one, the rows of a list of uniform height take no memory. The differences
+ * are stored as floats: their sum is exact as long as it stays under
+ * {@code 2^24} pixels.
+ * </p>
+ *
+ * @author Niels
+ */
+final class HeightIndex {
+	private final float defaultHeight;
+	private int count = 0;
+	/**
+	 * The Fenwick tree of the differences, indexed from 1, or {@code null} if
+	 * all the rows have the default height
+	 */
+	private float[] tree;
+	/**
+	 * The largest power of two not greater than {@code count}
+	 */
+	private int topBit = 0;
+
+	HeightIndex(float defaultHeight) {
+		if (!(defaultHeight > 0)) {
+			throw new IllegalArgumentException("Invalid row height: " + defaultHeight);
+		}
+		this.defaultHeight = defaultHeight;
+	}
+
+	float getDefaultHeight() {
+		return defaultHeight;
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	/**
+	 * Sets the number of rows, all of the default height.
+	 */
+	void reset(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Negative row count: " + count);
+		}
+		this.count = count;
+		tree = null;
+		topBit = count == 0 ? 0 : Integer.highestOneBit(count);
+	}
+
+	void setHeight(int index, float height) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Row " + index + " out of " + count);
+		}
+		if (height < 0) {
+			throw new IllegalArgumentException("Negative row height: " + height);
+		}
+		float delta = height - getHeight(index);
+		if (delta == 0) {
+			return;
+		}
+		if (tree == null) {
+			tree = new float[count + 1];
+		}
+		for (int i = index + 1; i <= count; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+
+	float getHeight(int index) {
+		if (tree == null) {
+			return defaultHeight;
+		}
+		// the difference of two prefix sums, sharing their common part
+		float h = defaultHeight + tree[index + 1];
+		int parent = (index + 1) - ((index + 1) & -(index + 1));
+		for (int i = index; i > parent; i -= i & -i) {
+			h -= tree[i];
+		}
+		return h;
+	}
+
+	/**
+	 * @return the position of the top of a row, or the total height for
+	 *         {@code index == count}
+	 */
+	double getOffset(int index) {
+		double offset = (double) index * defaultHeight;
+		if (tree != null) {
+			for (int i = index; i > 0; i -= i & -i) {
+				offset += tree[i];
+			}
+		}
+		return offset;
+	}
+
+	double getTotalHeight() {
+		return getOffset(count);
+	}
+
+	/**
+	 * @return the row at a position, clamped to the rows
+	 */
+	int indexAt(double y) {
+		if (count == 0 || y <= 0) {
+			return 0;
+		}
+		if (tree == null) {
+			return (int) Math.min(count - 1, (long) (y / defaultHeight));
+		}
+		// descends the tree, keeping the rows entirely above y
+		int index = 0;
+		double offset = 0;
+		for (int step = topBit; step > 0; step >>= 1) {
+			int next = index + step;
+			if (next <= count) {
+				double end = offset + (double) step * defaultHeight + tree[next];
+				if (end <= y) {
+					index = next;
+					offset = end;
+				}
+			}
+		}
+		return Math.min(index, count - 1);
+	}
+}
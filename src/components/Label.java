@@ -57,6 +57,7 @@ public class Label extends Component {
 
 	public void setTextPlacement(int textPlacement) {
 		this.textPlacement = textPlacement;
+		repaint();
 	}
 
 	public int getTextAlignment() {
@@ -65,6 +66,7 @@ public class Label extends Component {
 
 	public void setTextAlignment(int textAlignment) {
 		this.textAlignment = textAlignment;
+		repaint();
 	}
 
 	public String getText() {
@@ -78,6 +80,7 @@ public class Label extends Component {
 			textBBF = BufferUtils.createByteBuffer(l);
 			memUTF8(text, false, textBBF);
 		}
+		repaint();
 	}
 
 	public Image getImage() {
@@ -86,6 +89,7 @@ public class Label extends Component {
 
 	public void setImage(Image image) {
 		this.image = image;
+		repaint();
 	}
 
 	public FontStyle getFont() {
@@ -94,6 +98,7 @@ public class Label extends Component {
 
 	public void setFont(FontStyle font) {
 		this.font = font;
+		repaint();
 	}
 
 	public ByteBuffer getTextBBF() {
@@ -106,5 +111,6 @@ public class Label extends Component {
 
 	public void respectProportions(boolean respectProportions) {
 		this.respectProportions = respectProportions;
+		repaint();
 	}
 }
@@ -0,0 +1,338 @@
+package components;
+
+import java.util.List;
+
+import events.MouseListener;
+import grayscale.Application;
+import grayscale.Clock;
+import grayscale.Component;
+import grayscale.Layout;
+import grayscale.Rectangle;
+import grayscale.Rectanglec;
+import grayscale.Vector;
+import grayscale.Vectorc;
+import grayscale.Window;
+import ui.PanelUI;
+import utils.Colors;
+
+/**
+ * A viewport over a content larger than itself. The content is laid out once
+ * at its natural size, then scrolling only changes the translation it is drawn
+ * with and the scissor clipping it to the viewport: nothing is laid out again
+ * while scrolling.
+ * <p>
+ * The mouse wheel scrolls with inertia by default: each step of the wheel
+ * gives a velocity that decays exponentially, so that the content travels
+ * {@value #SCROLL_STEP} pixels per step whatever the frame rate. A scroll
+ * that cannot move the content goes to the parents.
+ * </p>
+ * <p>
+ * The children are placed at the top left corner of the viewport, at their
+ * natural size along the scrolling axes and at the size of the viewport along
+ * the others.
+ * </p>
+ *
+ * @author Niels
+ */
+public class ScrollPanel extends Component {
+	/**
+	 * The pixels scrolled by a step of the mouse wheel
+	 */
+	public static final float SCROLL_STEP = 40;
+	/**
+	 * The decay rate of the velocity, per second
+	 */
+	private static final float FRICTION = 8;
+	/**
+	 * The velocity under which the motion stops, in pixels per second
+	 */
+	private static final float MIN_VELOCITY = 4;
+	/**
+	 * The longest time step of the motion, in seconds, so that a frame taking
+	 * long does not make the content jump
+	 */
+	private static final float MAX_STEP = 0.1f;
+
+	private static class ScrollPanelUI extends PanelUI {
+		@Override
+		public void update(Component comp) {
+			((ScrollPanel) comp).animate();
+		}
+	}
+
+	/**
+	 * Places the children at their natural size, without moving them when
+	 * scrolling.
+	 */
+	private class ScrollLayout extends Layout {
+		private final Rectangle r = new Rectangle();
+
+		@Override
+		public void measure(List<Component> comps, float maxWidth, float maxHeight, Vector dest) {
+			float w = 0, h = 0;
+			for (int i = 0; i < comps.size(); i++) {
+				Vectorc d = comps.get(i).measure(horizontal ? Float.POSITIVE_INFINITY : maxWidth,
+						vertical ? Float.POSITIVE_INFINITY : maxHeight);
+				w = Math.max(w, d.x());
+				h = Math.max(h, d.y());
+			}
+			dest.set(Math.min(w, maxWidth), Math.min(h, maxHeight));
+		}
+
+		@Override
+		public void arrange(List<Component> comps, Rectanglec bounds) {
+			layouts++;
+			float w = bounds.width(), h = bounds.height();
+			contentWidth = w;
+			contentHeight = h;
+			for (int i = 0; i < comps.size(); i++) {
+				Component c = comps.get(i);
+				Vectorc d = c.measure(horizontal ? Float.POSITIVE_INFINITY : w,
+						vertical ? Float.POSITIVE_INFINITY : h);
+				float cw = horizontal ? Math.max(d.x(), w) : w;
+				float ch = vertical ? Math.max(d.y(), h) : h;
+				c.setBounds(r.set(bounds.x(), bounds.y(), cw, ch));
+				contentWidth = Math.max(contentWidth, cw);
+				contentHeight = Math.max(contentHeight, ch);
+			}
+			// the content may have shrunk
+			moveTo(getScrollX(), getScrollY());
+		}
+	}
+
+	private boolean horizontal = false, vertical = true;
+	private float contentWidth = 0, contentHeight = 0;
+
+	private boolean kinetic = true;
+	private float velocityX = 0, velocityY = 0;
+	/**
+	 * The clock set with {@link #setClock(Clock)}, or {@code null}
+	 */
+	private Clock clock = null;
+	/**
+	 * The clock of the current motion
+	 */
+	private Clock motionClock = Clock.SYSTEM;
+	private long lastStep;
+
+	private long layouts = 0;
+	private long scrolls = 0;
+
+	public ScrollPanel() {
+		super(new ScrollPanelUI());
+		setBackground(Colors.lightGray);
+		setClipChildren(true);
+		setScrollable(true);
+		setLayout(new ScrollLayout());
+		setMouseListener(new MouseListener() {
+			@Override
+			public boolean mouseScrolled(Component comp, int mods, Vectorc pos, Vectorc offset) {
+				float dx = horizontal ? -offset.x() * SCROLL_STEP : 0;
+				float dy = vertical ? -offset.y() * SCROLL_STEP : 0;
+				if (!canScroll(dx, dy)) {
+					return false;
+				}
+				if (kinetic) {
+					fling(dx * FRICTION, dy * FRICTION);
+				} else {
+					scrollBy(dx, dy);
+				}
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * @param content the component to scroll
+	 */
+	public ScrollPanel(Component content) {
+		this();
+		add(content);
+	}
+
+	/**
+	 * Replaces the children of this panel by a single component.
+	 */
+	public void setContent(Component content) {
+		while (!getChildren().isEmpty()) {
+			remove(getChildren().get(0));
+		}
+		add(content);
+	}
+
+	/**
+	 * @return the first child of this panel, or {@code null}
+	 */
+	public Component getContent() {
+		List<Component> children = getChildren();
+		return children.isEmpty() ? null : children.get(0);
+	}
+
+	/**
+	 * Sets the axes along which the content keeps its natural size and can be
+	 * scrolled. Only the vertical axis by default.
+	 */
+	public void setScrollDirections(boolean horizontal, boolean vertical) {
+		this.horizontal = horizontal;
+		this.vertical = vertical;
+		invalidateLayout();
+	}
+
+	public boolean isHorizontal() {
+		return horizontal;
+	}
+
+	public boolean isVertical() {
+		return vertical;
+	}
+
+	/**
+	 * @return the largest horizontal scroll offset
+	 */
+	public float getMaxScrollX() {
+		return Math.max(0, contentWidth - bounds.width());
+	}
+
+	/**
+	 * @return the largest vertical scroll offset
+	 */
+	public float getMaxScrollY() {
+		return Math.max(0, contentHeight - bounds.height());
+	}
+
+	/**
+	 * Scrolls so that the point {@code (x, y)} of the content, relative to its
+	 * top left corner, is at the top left corner of the viewport, within the
+	 * content. Stops the current motion.
+	 */
+	public void scrollTo(float x, float y) {
+		stop();
+		moveTo(x, y);
+	}
+
+	public void scrollBy(float dx, float dy) {
+		scrollTo(getScrollX() + dx, getScrollY() + dy);
+	}
+
+	/**
+	 * @return {@code true} if scrolling by {@code (dx, dy)} would move the
+	 *         content
+	 */
+	public boolean canScroll(float dx, float dy) {
+		float x = getScrollX(), y = getScrollY();
+		return (dx < 0 && x > 0) || (dx > 0 && x < getMaxScrollX()) //
+				|| (dy < 0 && y > 0) || (dy > 0 && y < getMaxScrollY());
+	}
+
+	private void moveTo(float x, float y) {
+		x = Math.max(0, Math.min(x, getMaxScrollX()));
+		y = Math.max(0, Math.min(y, getMaxScrollY()));
+		if (x != getScrollX() || y != getScrollY()) {
+			setScrollOffset(x, y);
+			scrolls++;
+		}
+	}
+
+	public boolean isKinetic() {
+		return kinetic;
+	}
+
+	/**
+	 * @param kinetic if true, the mouse wheel scrolls with inertia, otherwise it
+	 *                scrolls by steps
+	 */
+	public void setKinetic(boolean kinetic) {
+		this.kinetic = kinetic;
+		if (!kinetic) {
+			stop();
+		}
+	}
+
+	/**
+	 * @param clock the time source of the motion, or {@code null} to use the
+	 *              clock of the application showing this panel
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * @return the clock set with {@link #setClock(Clock)}, otherwise the clock of
+	 *         the application showing this panel, otherwise
+	 *         {@link Clock#SYSTEM}
+	 */
+	public Clock getClock() {
+		if (clock != null) {
+			return clock;
+		}
+		Window window = getWindow();
+		Application app = window == null ? null : window.getApplication();
+		return app == null ? Clock.SYSTEM : app.getClock();
+	}
+
+	/**
+	 * Adds a velocity to the content, in pixels per second. The content then
+	 * travels {@code v / 8} pixels before stopping, unless it reaches an edge.
+	 */
+	public void fling(float vx, float vy) {
+		if (!isTicking()) {
+			motionClock = getClock();
+			lastStep = motionClock.nanoTime();
+			setTicking(true);
+		}
+		velocityX += vx;
+		velocityY += vy;
+	}
+
+	/**
+	 * Stops the motion of the content.
+	 */
+	public void stop() {
+		velocityX = velocityY = 0;
+		setTicking(false);
+	}
+
+	public boolean isMoving() {
+		return velocityX != 0 || velocityY != 0;
+	}
+
+	/**
+	 * Moves the content by the distance travelled since the last step. The
+	 * motion is integrated exactly, so that it does not depend on the frame rate.
+	 */
+	private void animate() {
+		long now = motionClock.nanoTime();
+		float dt = Math.min(MAX_STEP, (now - lastStep) / 1.0e9f);
+		lastStep = now;
+		float decay = (float) Math.exp(-FRICTION * dt);
+		float travel = (1 - decay) / FRICTION;
+		float x = getScrollX() + velocityX * travel, y = getScrollY() + velocityY * travel;
+		velocityX *= decay;
+		velocityY *= decay;
+		moveTo(x, y);
+		// the edges stop the motion
+		if (getScrollX() != x) {
+			velocityX = 0;
+		}
+		if (getScrollY() != y) {
+			velocityY = 0;
+		}
+		if (Math.abs(velocityX) < MIN_VELOCITY && Math.abs(velocityY) < MIN_VELOCITY) {
+			stop();
+		}
+	}
+
+	/**
+	 * @return the number of times the children were arranged
+	 */
+	public long getLayoutCount() {
+		return layouts;
+	}
+
+	/**
+	 * @return the number of times the scroll offset changed
+	 */
+	public long getScrollCount() {
+		return scrolls;
+	}
+}
@@ -0,0 +1,272 @@
+package components;
+
+import java.util.Arrays;
+import java.util.List;
+
+import events.MouseListener;
+import grayscale.Component;
+import grayscale.Layout;
+import grayscale.Rectangle;
+import grayscale.Rectanglec;
+import grayscale.Vector;
+import grayscale.Vectorc;
+import ui.PanelUI;
+import utils.Colors;
+
+/**
+ * A vertical list of rows, virtualized: only the rows in the viewport exist as
+ * components. The rows are created by a {@link DataProvider} and recycled
+ * while scrolling, each one showing in turn the data of the rows it is bound
+ * to, so the cost of a scroll does not depend on the number of rows.
+ * <p>
+ * The rows have a default height, {@link #setRowHeight(int, float)} changes
+ * the height of a single row. The positions of the rows are kept in a Fenwick
+ * tree, so finding the rows of the viewport is in {@code O(log n)}.
+ * </p>
+ * <p>
+ * The list scrolls with the mouse wheel, and takes the space given by the
+ * layout of its parent, its desired size is empty.
+ * </p>
+ *
+ * @author Niels
+ */
+public class VirtualList extends Component {
+	/**
+	 * The pixels scrolled by a step of the mouse wheel
+	 */
+	private static final float SCROLL_STEP = 40;
+
+	/**
+	 * The rows are placed by the list itself
+	 */
+	private static final Layout NO_LAYOUT = new Layout() {
+		@Override
+		public void measure(List<Component> comps, float maxWidth, float maxHeight, Vector dest) {
+			dest.set(0, 0);
+		}
+
+		@Override
+		public void arrange(List<Component> comps, Rectanglec r) {
+		}
+	};
+
+	/**
+	 * The data shown by a {@link VirtualList}.
+	 */
+	public interface DataProvider {
+		int getRowCount();
+
+		/**
+		 * Creates a row component, called when more rows are needed to fill the
+		 * viewport. It is bound before being shown.
+		 */
+		Component createRow();
+
+		/**
+		 * Shows the data of a row in a row component, that may have shown another
+		 * row before.
+		 */
+		void bindRow(Component row, int index);
+	}
+
+	private final DataProvider provider;
+	private final HeightIndex heights;
+	private double scroll = 0;
+
+	/**
+	 * The row components are the children of the list, the row {@code i} being
+	 * shown by the child {@code i % children}. For each child, the row it is
+	 * bound to, or -1.
+	 */
+	private int[] boundRows = new int[0];
+	private int firstRow = 0, visibleRows = 0;
+
+	private final Rectangle rowBounds = new Rectangle();
+
+	/**
+	 * @param provider  the rows
+	 * @param rowHeight the default height of the rows
+	 */
+	public VirtualList(DataProvider provider, float rowHeight) {
+		super(new PanelUI());
+		if (provider == null) {
+			throw new IllegalArgumentException("No data provider.");
+		}
+		this.provider = provider;
+		heights = new HeightIndex(rowHeight);
+		heights.reset(provider.getRowCount());
+		setBackground(Colors.white);
+		setClipChildren(true);
+		setLayout(NO_LAYOUT);
+		setMouseListener(new MouseListener() {
+			@Override
+			public boolean mouseScrolled(Component comp, int mods, Vectorc pos, Vectorc offset) {
+				double before = scroll;
+				scrollBy(-offset.y() * SCROLL_STEP);
+				// the scroll goes to the parents at the ends of the list
+				return scroll != before;
+			}
+		});
+	}
+
+	public DataProvider getProvider() {
+		return provider;
+	}
+
+	public int getRowCount() {
+		return heights.getCount();
+	}
+
+	/**
+	 * Reads the number of rows again and binds the visible rows again. The rows
+	 * get the default height back.
+	 */
+	public void dataChanged() {
+		heights.reset(provider.getRowCount());
+		Arrays.fill(boundRows, -1);
+		scroll = clamp(scroll);
+		updateRows();
+	}
+
+	/**
+	 * Binds a row again, if it is visible.
+	 */
+	public void rowChanged(int index) {
+		List<Component> rows = getChildren();
+		if (index >= firstRow && index < firstRow + visibleRows) {
+			provider.bindRow(rows.get(index % rows.size()), index);
+		}
+	}
+
+	public float getRowHeight(int index) {
+		return heights.getHeight(index);
+	}
+
+	public void setRowHeight(int index, float height) {
+		heights.setHeight(index, height);
+		if (index < firstRow + visibleRows) {
+			updateRows();
+		}
+	}
+
+	/**
+	 * @return the position of the top of a row, from the top of the list
+	 */
+	public double getRowOffset(int index) {
+		return heights.getOffset(index);
+	}
+
+	/**
+	 * @return the row at a position, from the top of the list
+	 */
+	public int getRowAt(double y) {
+		return heights.indexAt(y);
+	}
+
+	public double getTotalHeight() {
+		return heights.getTotalHeight();
+	}
+
+	public int getFirstVisibleRow() {
+		return firstRow;
+	}
+
+	public int getVisibleRowCount() {
+		return visibleRows;
+	}
+
+	/**
+	 * @return the position of the top of the viewport, from the top of the list
+	 */
+	public double getScroll() {
+		return scroll;
+	}
+
+	/**
+	 * Scrolls so that the top of the viewport is at {@code y} from the top of the
+	 * list, within the rows.
+	 */
+	public void scrollTo(double y) {
+		y = clamp(y);
+		if (y != scroll) {
+			scroll = y;
+			updateRows();
+		}
+	}
+
+	public void scrollBy(double dy) {
+		scrollTo(scroll + dy);
+	}
+
+	/**
+	 * Scrolls so that a row is at the top of the viewport, or as close as
+	 * possible.
+	 */
+	public void scrollToRow(int index) {
+		scrollTo(heights.getOffset(Math.max(0, Math.min(index, heights.getCount()))));
+	}
+
+	private double clamp(double y) {
+		return Math.max(0, Math.min(y, heights.getTotalHeight() - bounds.getHeight()));
+	}
+
+	@Override
+	public void setBounds(Rectanglec b) {
+		super.setBounds(b);
+		scroll = clamp(scroll);
+		updateRows();
+	}
+
+	/**
+	 * Binds and places the rows of the viewport, creating row components if
+	 * there are not enough of them.
+	 */
+	private void updateRows() {
+		int count = heights.getCount();
+		double viewEnd = scroll + bounds.getHeight();
+		firstRow = heights.indexAt(scroll);
+		double top = heights.getOffset(firstRow);
+		visibleRows = 0;
+		for (double y = top; firstRow + visibleRows < count && y < viewEnd; visibleRows++) {
+			y += heights.getHeight(firstRow + visibleRows);
+		}
+
+		List<Component> rows = getChildren();
+		while (rows.size() < visibleRows) {
+			add(provider.createRow());
+		}
+		int size = rows.size();
+		if (boundRows.length < size) {
+			int old = boundRows.length;
+			boundRows = Arrays.copyOf(boundRows, size);
+			Arrays.fill(boundRows, old, size, -1);
+		}
+
+		float x = bounds.x(), y = (float) (bounds.getY() + top - scroll);
+		for (int i = firstRow; i < firstRow + visibleRows; i++) {
+			int slot = i % size;
+			Component row = rows.get(slot);
+			if (boundRows[slot] != i) {
+				boundRows[slot] = i;
+				provider.bindRow(row, i);
+			}
+			float h = heights.getHeight(i);
+			rowBounds.set(x, y, bounds.width(), h);
+			row.setBounds(rowBounds);
+			row.setVisible(true);
+			y += h;
+		}
+		// the rows left are hidden, and out of the way of the mouse
+		rowBounds.set(x, y, 0, 0);
+		for (int i = firstRow + visibleRows; i < firstRow + size; i++) {
+			Component row = rows.get(i % size);
+			row.setVisible(false);
+			row.setBounds(rowBounds);
+		}
+	}
+
+	@Override
+	protected void measureContent(float maxWidth, float maxHeight, Vector dest) {
+		dest.set(0, 0);
+	}
+}
@@ -0,0 +1,105 @@
+package demo;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+import components.Label;
+import components.Panel;
+import grayscale.Application;
+import grayscale.FontStyle;
+import grayscale.Rectangle;
+import grayscale.Vector;
+import grayscale.Window;
+import layouts.DynamicColumn;
+import layouts.DynamicRow;
+
+/**
+ * Compares the CPU time spent drawing a grid of labels in immediate mode and
+ * when replaying the recorded display lists.
+ *
+ * @author Niels
+ */
+public class DisplayListBenchmark extends Application {
+	private static final int ROWS = 60, COLUMNS = 50, FRAMES = 300;
+
+	private Rectangle windowB = new Rectangle();
+	private Window window = new Window(windowB);
+
+	private int frame = 0;
+	private long immediateNanos = 0;
+	private long replayNanos = 0;
+
+	public DisplayListBenchmark() {
+		super("Display list benchmark", 1280, 720);
+	}
+
+	public static void main(String[] args) {
+		new DisplayListBenchmark().run();
+	}
+
+	@Override
+	protected boolean shouldClose() {
+		return glfwWindowShouldClose(getHandle()) || frame >= 2 * FRAMES;
+	}
+
+	@Override
+	protected void init() {
+		loadFont("segoeui", "demo/segoeui.ttf");
+		setDefaultFontStyle(new FontStyle("segoeui", 10f));
+
+		Panel content = new Panel();
+		content.setLayout(new DynamicColumn(0));
+		for (int i = 0; i < ROWS; i++) {
+			Panel row = new Panel();
+			row.setLayout(new DynamicRow(0, Label.LEFT, Label.CENTER));
+			for (int j = 0; j < COLUMNS; j++) {
+				row.add(new Label(i + ":" + j));
+			}
+			content.add(row);
+		}
+		window.setContent(content);
+		addWindow(window);
+	}
+
+	@Override
+	protected void update() {
+		Vector dim = new Vector(contentSize).div(contentScale);
+		window.setBounds(windowB.set(0, 0, dim.x(), dim.y()));
+	}
+
+	@Override
+	protected void privateRender() {
+		// the first half is rendered in immediate mode, the second one replays
+		// the lists recorded during the first retained frame
+		boolean retained = frame >= FRAMES;
+		setRetainedRendering(retained);
+
+		graphics.beginFrame(contentSize, contentScale);
+		long start = System.nanoTime();
+		window.render(graphics);
+		long time = System.nanoTime() - start;
+		graphics.endFrame();
+		glfwSwapBuffers(getHandle());
+
+		if (!retained) {
+			immediateNanos += time;
+		} else if (frame > FRAMES) {
+			replayNanos += time;
+		}
+		frame++;
+	}
+
+	@Override
+	protected void render() {
+	}
+
+	@Override
+	protected void destroy() {
+		int labels = ROWS * COLUMNS;
+		double immediate = immediateNanos / 1.0e+6 / FRAMES;
+		double replay = replayNanos / 1.0e+6 / (FRAMES - 1);
+		System.out.println(labels + " labels");
+		System.out.println("immediate : " + immediate + " ms/frame");
+		System.out.println("replay    : " + replay + " ms/frame");
+		System.out.println("speedup   : " + (immediate / replay) + "x");
+	}
+}
@@ -0,0 +1,58 @@
+package demo;
+
+import java.util.Random;
+
+import components.Panel;
+import grayscale.Layout;
+import grayscale.Rectangle;
+import layouts.DynamicColumn;
+import layouts.DynamicRow;
+import layouts.FlexLayout;
+import layouts.GridLayout;
+
+/**
+ * Compares the time needed to lay out 100 000 components with a wrapping
+ * {@link FlexLayout} and with the other layouts. The container is resized
+ * before each layout so that every child is placed again. It does not need a
+ * window on the screen.
+ *
+ * @author Niels
+ */
+public class FlexLayoutBenchmark {
+	private static final int ITEMS = 100_000, LAYOUTS = 50, RUNS = 5;
+	private static final float WIDTH = 4000, HEIGHT = 2500;
+
+	public static void main(String[] args) {
+		Panel content = new Panel();
+		Random random = new Random(42);
+		Rectangle size = new Rectangle();
+		for (int i = 0; i < ITEMS; i++) {
+			Panel item = new Panel();
+			item.setPreferedSize(size.set(0, 0, 20 + random.nextInt(60), 10 + random.nextInt(20)));
+			if (i % 3 == 0) {
+				item.setLayoutData(new FlexLayout.Item(1));
+			}
+			content.add(item);
+		}
+		System.out.println(ITEMS + " components");
+
+		Layout[] layouts = { new FlexLayout(FlexLayout.ROW, true, 2).setAlignItems(FlexLayout.CENTER),
+				new DynamicRow(0, Panel.LEFT, Panel.CENTER), new DynamicColumn(0), new GridLayout(100, 0, 0) };
+		String[] names = { "flex (wrap)", "dynamic row", "dynamic column", "grid" };
+
+		Rectangle bounds = new Rectangle();
+		for (int run = 0; run < RUNS; run++) {
+			StringBuilder sb = new StringBuilder();
+			for (int l = 0; l < layouts.length; l++) {
+				content.setLayout(layouts[l]);
+				long start = System.nanoTime();
+				for (int i = 0; i < LAYOUTS; i++) {
+					content.setBounds(bounds.set(0, 0, WIDTH - (i & 1), HEIGHT));
+				}
+				long nanos = System.nanoTime() - start;
+				sb.append(names[l]).append(" : ").append(nanos / 1000 / LAYOUTS).append(" us  ");
+			}
+			System.out.println(sb);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package demo;
+
+import java.util.Random;
+
+import components.Panel;
+import grayscale.Rectangle;
+import layouts.GridLayout;
+import layouts.GridLayout.Cell;
+import layouts.GridLayout.Track;
+
+/**
+ * Lays out a dashboard of 40 000 cells: an auto column of row headers, 39
+ * fractional columns and a few cells spanning several columns. It measures the
+ * time of a layout while the dashboard is resized, and when a row header
+ * changes size, so that the auto column is sized again. It does not need a
+ * window on the screen.
+ *
+ * @author Niels
+ */
+public class GridLayoutBenchmark {
+	private static final int ROWS = 1000, COLUMNS = 40, RESIZES = 200, CHANGES = 200, RUNS = 5;
+	private static final float WIDTH = 4000, HEIGHT = 2500;
+
+	public static void main(String[] args) {
+		Track[] columns = new Track[COLUMNS];
+		columns[0] = Track.auto();
+		for (int i = 1; i < COLUMNS; i++) {
+			columns[i] = Track.fraction(1).withMin(20);
+		}
+		GridLayout grid = new GridLayout(columns, new Track[0]).setGap(2, 2);
+		grid.setImplicitRows(Track.fixed(24));
+
+		Panel content = new Panel();
+		content.setLayout(grid);
+		Panel[] headers = new Panel[ROWS];
+		Rectangle size = new Rectangle();
+		Random random = new Random(42);
+		for (int r = 0; r < ROWS; r++) {
+			headers[r] = new Panel();
+			headers[r].setPreferedSize(size.set(0, 0, 80 + random.nextInt(40), 20));
+			content.add(headers[r]);
+			for (int c = 1; c < COLUMNS; c++) {
+				Panel cell = new Panel();
+				if (r % 10 == 0 && c == 1) {
+					// a chart over 4 columns
+					cell.setLayoutData(Cell.span(4, 1));
+					c += 3;
+				}
+				content.add(cell);
+			}
+		}
+		Rectangle bounds = new Rectangle(0, 0, WIDTH, HEIGHT);
+		content.setBounds(bounds);
+		System.out.println(content.getChildren().size() + " cells, " + grid.getRowCount() + " rows");
+
+		for (int run = 0; run < RUNS; run++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < RESIZES; i++) {
+				content.setBounds(bounds.set(0, 0, WIDTH - random.nextFloat() * 1000, HEIGHT));
+			}
+			long resizes = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < CHANGES; i++) {
+				headers[random.nextInt(ROWS)].setPreferedSize(size.set(0, 0, 80 + random.nextInt(40), 20));
+				content.setBounds(bounds);
+			}
+			long changes = System.nanoTime() - start;
+
+			System.out.println("resize : " + (resizes / 1000 / RESIZES) + " us, header changed : "
+					+ (changes / 1000 / CHANGES) + " us");
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package demo;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+import java.util.List;
+import java.util.Random;
+
+import components.Button;
+import components.Panel;
+import events.InputQueue;
+import grayscale.Application;
+import grayscale.Clock;
+import grayscale.CountingBackend;
+import grayscale.Font;
+import grayscale.FrameTimings;
+import grayscale.Graphics;
+import grayscale.Rectangle;
+import grayscale.RenderStats;
+import grayscale.Window;
+import layouts.DynamicRow;
+
+/**
+ * Runs a headless application, without a display, at unlimited frame rate with
+ * simulated input, and prints the time spent in each phase of its frames. The
+ * windows are drawn with a {@link CountingBackend}, so the render phase only
+ * measures the UI layer.
+ *
+ * @author Niels
+ */
+public class HeadlessBenchmark extends Application {
+	private static final int PANELS = 5000, FRAMES = 2000;
+	private static final int WIDTH = 1280, HEIGHT = 720;
+
+	private Random random = new Random(42);
+	private float x = WIDTH / 2, y = HEIGHT / 2;
+	private int frame = 0;
+	private CountingBackend backend = new CountingBackend();
+
+	public HeadlessBenchmark() {
+		super(WIDTH, HEIGHT, Clock.SYSTEM);
+	}
+
+	public static void main(String[] args) {
+		new HeadlessBenchmark().run();
+	}
+
+	@Override
+	protected Graphics createGraphics(List<Font> fonts) {
+		return new Graphics(backend, fonts);
+	}
+
+	@Override
+	protected boolean shouldClose() {
+		return frame >= FRAMES;
+	}
+
+	@Override
+	protected void init() {
+		Panel content = new Panel();
+		content.setLayout(new DynamicRow(0, Panel.LEFT, Panel.TOP));
+		for (int i = 0; i < PANELS; i++) {
+			content.add(i % 4 == 0 ? new Button("" + i) : new Panel());
+		}
+		Window window = new Window(new Rectangle(0, 0, WIDTH, HEIGHT));
+		window.setContent(content);
+		addWindow(window);
+	}
+
+	@Override
+	protected void update() {
+		// a 1000 Hz mouse at 60 frames per second, clicking every second
+		InputQueue queue = getInputQueue();
+		for (int i = 0; i < 16; i++) {
+			x = Math.max(0, Math.min(WIDTH - 1, x + random.nextFloat() * 8 - 4));
+			y = Math.max(0, Math.min(HEIGHT - 1, y + random.nextFloat() * 8 - 4));
+			queue.push(InputQueue.CURSOR_POS, 0, 0, 0, 0, x, y);
+		}
+		if (frame % 60 == 0) {
+			queue.push(InputQueue.MOUSE_BUTTON, GLFW_MOUSE_BUTTON_LEFT, GLFW_PRESS, 0, 0, x, y);
+			queue.push(InputQueue.MOUSE_BUTTON, GLFW_MOUSE_BUTTON_LEFT, GLFW_RELEASE, 0, 0, x, y);
+		}
+		frame++;
+	}
+
+	@Override
+	protected void render() {
+	}
+
+	@Override
+	protected void destroy() {
+		FrameTimings t = getFrameTimings();
+		System.out.println(t);
+		System.out.println("max : input " + (t.getMaxNanos(FrameTimings.INPUT) / 1.0e+3) + " us, update "
+				+ (t.getMaxNanos(FrameTimings.UPDATE) / 1.0e+3) + " us, render "
+				+ (t.getMaxNanos(FrameTimings.RENDER) / 1.0e+3) + " us");
+		RenderStats stats = graphics.getFrameStats();
+		System.out.println("last frame : " + stats.getDrawnComponents() + " components drawn, "
+				+ stats.getDrawCalls() + " draw calls, " + stats.getIssuedStateCalls() + " state calls");
+		System.out.println("backend calls : " + backend);
+	}
+}
@@ -0,0 +1,89 @@
+package demo;
+
+import java.util.Random;
+
+import components.Panel;
+import grayscale.Component;
+import grayscale.Rectangle;
+import grayscale.Window;
+import layouts.DynamicColumn;
+import layouts.DynamicRow;
+
+/**
+ * Compares the time needed to find the component under a point with the hit
+ * test index of a {@link Window} and with a walk through the whole tree, for
+ * about 100 000 components. It does not need a window on the screen.
+ *
+ * @author Niels
+ */
+public class HitTestBenchmark {
+	private static final int ROWS = 250, COLUMNS = 400, QUERIES = 100_000, RUNS = 5;
+	private static final float WIDTH = 4000, HEIGHT = 2500;
+
+	public static void main(String[] args) {
+		Panel content = new Panel();
+		content.setLayout(new DynamicColumn(0));
+		for (int i = 0; i < ROWS; i++) {
+			Panel row = new Panel();
+			row.setLayout(new DynamicRow(0, Panel.LEFT, Panel.CENTER));
+			for (int j = 0; j < COLUMNS; j++) {
+				row.add(new Panel());
+			}
+			content.add(row);
+		}
+		Window window = new Window(new Rectangle(0, 0, WIDTH, HEIGHT));
+		window.setContent(content);
+		content.setBounds(window.getBounds());
+		System.out.println((ROWS * COLUMNS + ROWS + 1) + " components");
+
+		Random random = new Random(42);
+		float[] points = new float[2 * QUERIES];
+		for (int i = 0; i < points.length; i += 2) {
+			points[i] = random.nextFloat() * WIDTH;
+			points[i + 1] = random.nextFloat() * HEIGHT;
+		}
+
+		// builds the index
+		window.getComponentAt(0, 0);
+
+		for (int run = 0; run < RUNS; run++) {
+			int found = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < points.length; i += 2) {
+				if (window.getComponentAt(points[i], points[i + 1]) != null) {
+					found++;
+				}
+			}
+			long indexed = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < points.length; i += 2) {
+				if (walk(content, points[i], points[i + 1]) != null) {
+					found--;
+				}
+			}
+			long walked = System.nanoTime() - start;
+
+			System.out.println("index : " + (indexed / QUERIES) + " ns/query, tree walk : " + (walked / QUERIES)
+					+ " ns/query" + (found != 0 ? " (results differ)" : ""));
+		}
+	}
+
+	/**
+	 * @return the deepest component containing the point, found by testing every
+	 *         component
+	 */
+	private static Component walk(Component c, float x, float y) {
+		Component result = null;
+		for (Component child : c.getChildren()) {
+			Component r = walk(child, x, y);
+			if (r != null) {
+				result = r;
+			}
+		}
+		if (result == null && c.getBounds().contains(x, y)) {
+			result = c;
+		}
+		return result;
+	}
+}
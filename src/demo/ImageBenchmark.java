@@ -0,0 +1,119 @@
+package demo;
+
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.opengl.GL46C.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.nanovg.NVGPaint;
+
+import grayscale.Application;
+import grayscale.Image;
+import utils.Texture;
+
+/**
+ * Measures the time spent drawing a fixed number of thumbnails while more and
+ * more images are registered in the {@code Graphics} object. The time per
+ * frame should not depend on the number of registered images.
+ *
+ * @author Niels
+ */
+public class ImageBenchmark extends Application {
+	private static final int[] IMAGE_COUNTS = { 100, 1000, 4000 };
+	private static final int THUMBNAILS = 200, THUMBNAIL_SIZE = 16, FRAMES = 200;
+
+	private List<Image> thumbnails = new ArrayList<>();
+
+	private int step = 0;
+	private int frame = 0;
+	private long nanos = 0;
+
+	public ImageBenchmark() {
+		super("Image benchmark", 1280, 720);
+	}
+
+	public static void main(String[] args) {
+		new ImageBenchmark().run();
+	}
+
+	@Override
+	protected boolean shouldClose() {
+		return glfwWindowShouldClose(getHandle()) || step >= IMAGE_COUNTS.length;
+	}
+
+	@Override
+	protected void init() {
+	}
+
+	@Override
+	protected void update() {
+	}
+
+	@Override
+	protected void privateRender() {
+		int count = IMAGE_COUNTS[step];
+		if (frame == 0) {
+			createThumbnails(count);
+		}
+
+		glClear(GL_COLOR_BUFFER_BIT);
+		graphics.beginFrame(contentSize, contentScale);
+		long start = System.nanoTime();
+		// every image is drawn once during the first frame, so that they are all
+		// registered, then only a few of them are drawn
+		int drawn = frame == 0 ? count : THUMBNAILS;
+		int columns = (int) (contentSize.x() / contentScale.x()) / THUMBNAIL_SIZE;
+		for (int i = 0; i < drawn; i++) {
+			Image img = thumbnails.get((i * 7919 + frame) % count);
+			float x = (i % columns) * THUMBNAIL_SIZE, y = (i / columns) * THUMBNAIL_SIZE;
+			NVGPaint p = graphics.getImagePattern(x, y, THUMBNAIL_SIZE, THUMBNAIL_SIZE, 0, 1f, img);
+			graphics.beginPath();
+			graphics.rect(x, y, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+			graphics.setFillPaint(p);
+			graphics.fill();
+		}
+		long time = System.nanoTime() - start;
+		graphics.endFrame();
+		glfwSwapBuffers(getHandle());
+
+		if (frame > 0) {
+			nanos += time;
+		}
+		frame++;
+		if (frame > FRAMES) {
+			System.out.println(count + " images : " + (nanos / 1.0e+6 / FRAMES) + " ms/frame");
+			for (Image img : thumbnails) {
+				img.delete();
+			}
+			thumbnails.clear();
+			nanos = 0;
+			frame = 0;
+			step++;
+		}
+	}
+
+	private void createThumbnails(int count) {
+		ByteBuffer pixels = BufferUtils.createByteBuffer(THUMBNAIL_SIZE * THUMBNAIL_SIZE * 4);
+		for (int i = 0; i < count; i++) {
+			pixels.clear();
+			for (int p = 0; p < THUMBNAIL_SIZE * THUMBNAIL_SIZE; p++) {
+				pixels.put((byte) (i * 37)).put((byte) (i * 101)).put((byte) (p * 3)).put((byte) 255);
+			}
+			pixels.flip();
+			Texture t = new Texture(THUMBNAIL_SIZE, THUMBNAIL_SIZE, GL_RGBA8, GL_LINEAR, GL_CLAMP_TO_EDGE, GL_RGBA,
+					GL_UNSIGNED_BYTE, pixels);
+			thumbnails.add(new Image(t, 0));
+		}
+	}
+
+	@Override
+	protected void render() {
+	}
+
+	@Override
+	protected void destroy() {
+	}
+}
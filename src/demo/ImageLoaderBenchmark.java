@@ -0,0 +1,60 @@
+package demo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import grayscale.Image;
+import grayscale.ImageLoader;
+import utils.Texture;
+
+/**
+ * Measures the decoding throughput of the {@link ImageLoader} and the time it
+ * blocks the rendering thread, without a window. The textures are not created,
+ * so only the cost of the loader itself is measured.
+ *
+ * @author Niels
+ */
+public class ImageLoaderBenchmark {
+	private static final int IMAGES = 32, THREADS = 4;
+
+	public static void main(String[] args) throws InterruptedException {
+		ImageLoader loader = new ImageLoader(THREADS) {
+			@Override
+			protected Texture createTexture(int width, int height, ByteBuffer pixels) {
+				return new Texture(width, height, 0);
+			}
+		};
+
+		long start = System.nanoTime();
+		List<Image> images = new ArrayList<>();
+		for (int i = 0; i < IMAGES; i++) {
+			images.add(loader.load("demo/parapluie.jpg", 0, null));
+		}
+
+		// simulated frames of 16ms
+		int frames = 0;
+		while (loader.getPendingCount() > 0) {
+			loader.update();
+			frames++;
+			Thread.sleep(16);
+		}
+		double seconds = (System.nanoTime() - start) / 1.0e+9;
+
+		int failed = 0;
+		for (Image img : images) {
+			if (img.getState() == Image.State.FAILED) {
+				failed++;
+			}
+		}
+
+		double megabytes = loader.getDecodedBytes() / (1024.0 * 1024.0);
+		System.out.println(loader.getDecodedImages() + " images decoded, " + failed + " failed, in " + seconds
+				+ " s (" + frames + " frames)");
+		System.out.println("decode throughput : " + (megabytes / seconds) + " MB/s with " + THREADS + " threads");
+		System.out.println("decode time       : " + (loader.getDecodeNanos() / 1.0e+6) + " ms (all threads)");
+		System.out.println("render thread     : " + (loader.getUploadNanos() / 1.0e+6) + " ms total, "
+				+ (loader.getMaxFrameUploadNanos() / 1.0e+6) + " ms max per frame");
+		loader.shutdown();
+	}
+}
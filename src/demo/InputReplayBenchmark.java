@@ -0,0 +1,109 @@
+package demo;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import components.Button;
+import components.Panel;
+import events.InputQueue;
+import events.InputRecorder;
+import events.InputReplayer;
+import events.Keyboard;
+import events.Mouse;
+import grayscale.InputDispatcher;
+import grayscale.Rectangle;
+import grayscale.Window;
+import layouts.DynamicRow;
+
+/**
+ * Replays a recorded input session against a component tree, without GLFW and
+ * as fast as possible, and prints the time spent per frame. The recording is
+ * read from the file given as argument, written by
+ * {@link grayscale.Application#startRecording(String)}, or generated if there
+ * is none.
+ *
+ * @author Niels
+ */
+public class InputReplayBenchmark {
+	private static final int PANELS = 2000;
+	private static final float WIDTH = 1280, HEIGHT = 720;
+
+	public static void main(String[] args) throws IOException {
+		InputReplayer replayer = args.length > 0 ? new InputReplayer(args[0]) : new InputReplayer(generate());
+		System.out.println(replayer.getRecordCount() + " records, " + replayer.getFrameCount() + " frames");
+
+		Panel content = new Panel();
+		content.setLayout(new DynamicRow(0, Panel.LEFT, Panel.TOP));
+		for (int i = 0; i < PANELS; i++) {
+			content.add(i % 4 == 0 ? new Button("" + i) : new Panel());
+		}
+		Window window = new Window(new Rectangle(0, 0, WIDTH, HEIGHT));
+		window.setContent(content);
+		List<Window> windows = List.of(window);
+
+		InputQueue queue = new InputQueue();
+		Mouse mouse = new Mouse(queue);
+		Keyboard keyboard = new Keyboard(queue);
+
+		long[] frameNanos = new long[replayer.getFrameCount() + 1];
+		int frames = 0, events = 0;
+		long start = System.nanoTime();
+		while (replayer.nextFrame(queue)) {
+			long frameStart = System.nanoTime();
+			events += InputDispatcher.dispatch(queue, mouse, keyboard, windows);
+			window.update(mouse, keyboard);
+			if (frames < frameNanos.length) {
+				frameNanos[frames++] = System.nanoTime() - frameStart;
+			}
+		}
+		long total = System.nanoTime() - start;
+
+		long[] sorted = Arrays.copyOf(frameNanos, frames);
+		Arrays.sort(sorted);
+		System.out.println(events + " events dispatched in " + (total / 1.0e+6) + " ms");
+		System.out.println("per frame : median " + (sorted[frames / 2] / 1.0e+3) + " us, 99% "
+				+ (sorted[(int) (frames * 0.99)] / 1.0e+3) + " us, max " + (sorted[frames - 1] / 1.0e+3) + " us");
+	}
+
+	/**
+	 * Records a session of drags, clicks and key presses at 60 frames per second
+	 * with a 1000 Hz mouse.
+	 */
+	private static ByteArrayInputStream generate() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Random random = new Random(42);
+		InputQueue queue = new InputQueue();
+		try (InputRecorder recorder = new InputRecorder(bytes)) {
+			queue.setRecorder(recorder);
+			float x = WIDTH / 2, y = HEIGHT / 2;
+			long time = 0;
+			for (int frame = 0; frame < 3600; frame++) {
+				recorder.nextFrame();
+				if (frame % 60 == 0) {
+					queue.push(InputQueue.MOUSE_BUTTON, GLFW_MOUSE_BUTTON_LEFT, GLFW_PRESS, 0, 0, x, y, time);
+				}
+				for (int i = 0; i < 16; i++) {
+					x = Math.max(0, Math.min(WIDTH - 1, x + random.nextFloat() * 8 - 4));
+					y = Math.max(0, Math.min(HEIGHT - 1, y + random.nextFloat() * 8 - 4));
+					time += 1_000_000;
+					queue.push(InputQueue.CURSOR_POS, 0, 0, 0, 0, x, y, time);
+				}
+				if (frame % 60 == 30) {
+					queue.push(InputQueue.MOUSE_BUTTON, GLFW_MOUSE_BUTTON_LEFT, GLFW_RELEASE, 0, 0, x, y, time);
+					int key = GLFW_KEY_A + random.nextInt(26);
+					queue.push(InputQueue.KEY, key, GLFW_PRESS, 0, 0, 0, 0, time);
+					queue.push(InputQueue.CHAR, 'a' + key - GLFW_KEY_A, 0, 0, 0, 0, 0, time);
+					queue.push(InputQueue.KEY, key, GLFW_RELEASE, 0, 0, 0, 0, time);
+				}
+				queue.clear();
+			}
+		}
+		return new ByteArrayInputStream(bytes.toByteArray());
+	}
+}
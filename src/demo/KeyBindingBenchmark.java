@@ -0,0 +1,116 @@
+package demo;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import components.Panel;
+import events.KeyBinding;
+import events.KeyEvent;
+import grayscale.Component;
+import grayscale.Rectangle;
+import grayscale.Window;
+
+/**
+ * Compares the time needed to dispatch key events to thousands of key bindings
+ * with the binding table of a {@link Window} and with a test of every binding
+ * of the tree, the way it was done before. It does not need a window on the
+ * screen.
+ *
+ * @author Niels
+ */
+public class KeyBindingBenchmark {
+	private static final int COMPONENTS = 2000, BINDINGS_PER_COMPONENT = 4, DEPTH = 20;
+	private static final int EVENTS = 100_000, RUNS = 5;
+
+	private static int performed = 0;
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		List<Component> components = new ArrayList<>();
+		List<KeyBinding> bindings = new ArrayList<>();
+		List<Component> owners = new ArrayList<>();
+
+		Panel root = new Panel();
+		components.add(root);
+		// a chain of DEPTH panels ending with the focused one, the others are
+		// attached to random panels
+		Component parent = root;
+		for (int i = 1; i < COMPONENTS; i++) {
+			Panel p = new Panel();
+			if (i < DEPTH) {
+				parent.add(p);
+				parent = p;
+			} else {
+				components.get(random.nextInt(components.size())).add(p);
+			}
+			components.add(p);
+		}
+		Component focused = parent;
+
+		for (Component c : components) {
+			for (int j = 0; j < BINDINGS_PER_COMPONENT; j++) {
+				int key = GLFW_KEY_A + random.nextInt(26);
+				int mods = random.nextInt(4);
+				KeyBinding kb = new KeyBinding(key, GLFW_PRESS, mods, KeyBinding.CONDITION_FOCUSED_OR_DESCENDANT_FOCUSED,
+						() -> performed++);
+				c.addKeyBinding(kb);
+				bindings.add(kb);
+				owners.add(c);
+			}
+		}
+
+		// Ctrl+K Ctrl+C
+		int[] chords = new int[1];
+		root.addKeyBinding(new KeyBinding(GLFW_KEY_K, GLFW_PRESS, GLFW_MOD_CONTROL,
+				KeyBinding.CONDITION_FOCUSED_OR_DESCENDANT_FOCUSED, () -> chords[0]++).then(GLFW_KEY_C, GLFW_MOD_CONTROL));
+
+		Window window = new Window(new Rectangle(0, 0, 800, 600));
+		window.setContent(root);
+		focused.grabFocus();
+		System.out.println(COMPONENTS + " components, " + bindings.size() + " bindings");
+
+		KeyEvent[] events = new KeyEvent[EVENTS];
+		for (int i = 0; i < EVENTS; i++) {
+			int key = GLFW_KEY_A + random.nextInt(26);
+			// the K key would start the chord
+			if (key == GLFW_KEY_K) {
+				key = GLFW_KEY_J;
+			}
+			events[i] = new KeyEvent(key, 0, GLFW_PRESS, random.nextInt(4));
+		}
+
+		for (int run = 0; run < RUNS; run++) {
+			performed = 0;
+			long start = System.nanoTime();
+			for (KeyEvent e : events) {
+				window.processKeyEvent(e);
+			}
+			long indexed = System.nanoTime() - start;
+			int indexedActions = performed;
+
+			performed = 0;
+			start = System.nanoTime();
+			for (KeyEvent e : events) {
+				for (int i = 0; i < bindings.size(); i++) {
+					Component c = owners.get(i);
+					if (bindings.get(i).test(e.getKey(), e.getAction(), e.getMods(), c.isFocused(),
+							c.descendantFocused())) {
+						bindings.get(i).performAction();
+					}
+				}
+			}
+			long walked = System.nanoTime() - start;
+
+			System.out.println("table : " + (indexed / EVENTS) + " ns/event, every binding : " + (walked / EVENTS)
+					+ " ns/event" + (indexedActions != performed ? " (results differ)" : ""));
+		}
+
+		window.processKeyEvent(new KeyEvent(GLFW_KEY_K, 0, GLFW_PRESS, GLFW_MOD_CONTROL));
+		window.processKeyEvent(new KeyEvent(GLFW_KEY_LEFT_CONTROL, 0, GLFW_PRESS, GLFW_MOD_CONTROL));
+		window.processKeyEvent(new KeyEvent(GLFW_KEY_C, 0, GLFW_PRESS, GLFW_MOD_CONTROL));
+		System.out.println("chord Ctrl+K Ctrl+C performed " + chords[0] + " time(s)");
+	}
+}
@@ -0,0 +1,99 @@
+package demo;
+
+import java.util.List;
+import java.util.Random;
+
+import components.Panel;
+import grayscale.Component;
+import grayscale.Layout;
+import grayscale.Rectangle;
+import grayscale.Rectanglec;
+import grayscale.Vector;
+import grayscale.Window;
+import layouts.DynamicColumn;
+import layouts.DynamicRow;
+
+/**
+ * Measures the cost of laying out a tree of about 50 000 components: during a
+ * storm of window resizes, where every component moves, and when the layout
+ * of a single leaf is invalidated, where only its ancestors are arranged
+ * again. It does not need a window on the screen.
+ *
+ * @author Niels
+ */
+public class LayoutBenchmark {
+	private static final int ROWS = 50, COLUMNS = 1000, RESIZES = 200, INVALIDATIONS = 20_000, RUNS = 5;
+	private static final float WIDTH = 4000, HEIGHT = 2500;
+
+	/**
+	 * The number of components arranged by the layouts
+	 */
+	private static long arranged = 0;
+
+	/**
+	 * Counts the children arranged by a layout.
+	 */
+	private static class CountingLayout extends Layout {
+		private final Layout layout;
+
+		CountingLayout(Layout layout) {
+			this.layout = layout;
+		}
+
+		@Override
+		public void measure(List<Component> comps, float maxWidth, float maxHeight, Vector dest) {
+			layout.measure(comps, maxWidth, maxHeight, dest);
+		}
+
+		@Override
+		public void arrange(List<Component> comps, Rectanglec r) {
+			arranged += comps.size();
+			layout.arrange(comps, r);
+		}
+	}
+
+	public static void main(String[] args) {
+		Panel content = new Panel();
+		content.setLayout(new CountingLayout(new DynamicColumn(0)));
+		Panel[] leaves = new Panel[ROWS * COLUMNS];
+		for (int i = 0; i < ROWS; i++) {
+			Panel row = new Panel();
+			row.setLayout(new CountingLayout(new DynamicRow(0, Panel.LEFT, Panel.CENTER)));
+			for (int j = 0; j < COLUMNS; j++) {
+				row.add(leaves[i * COLUMNS + j] = new Panel());
+			}
+			content.add(row);
+		}
+		Rectangle bounds = new Rectangle(0, 0, WIDTH, HEIGHT);
+		Window window = new Window(bounds);
+		window.setContent(content);
+		content.setBounds(bounds);
+		System.out.println((ROWS * COLUMNS + ROWS + 1) + " components");
+
+		Random random = new Random(42);
+		Rectangle size = new Rectangle();
+		for (int run = 0; run < RUNS; run++) {
+			arranged = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < RESIZES; i++) {
+				bounds.set(0, 0, WIDTH - random.nextFloat() * 1000, HEIGHT - random.nextFloat() * 1000);
+				content.setBounds(bounds);
+			}
+			long resizes = System.nanoTime() - start;
+			long resizeArranged = arranged / RESIZES;
+
+			arranged = 0;
+			start = System.nanoTime();
+			for (int i = 0; i < INVALIDATIONS; i++) {
+				Panel leaf = leaves[random.nextInt(leaves.length)];
+				leaf.setPreferedSize(size.set(0, 0, 10 + random.nextInt(100), 10));
+				content.setBounds(bounds);
+			}
+			long invalidations = System.nanoTime() - start;
+
+			System.out.println("resize : " + (resizes / 1000 / RESIZES) + " us, " + resizeArranged
+					+ " components arranged, leaf invalidated : " + (invalidations / INVALIDATIONS) + " ns, "
+					+ (arranged / INVALIDATIONS) + " components arranged");
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package demo;
+
+import java.util.Arrays;
+import java.util.List;
+
+import components.Button;
+import components.Panel;
+import components.ScrollPanel;
+import events.InputQueue;
+import events.Keyboard;
+import events.Mouse;
+import grayscale.Clock;
+import grayscale.Component;
+import grayscale.InputDispatcher;
+import grayscale.Rectangle;
+import grayscale.Window;
+import layouts.DynamicColumn;
+
+/**
+ * Scrolls a {@link ScrollPanel} over a column of 20 000 buttons with the mouse
+ * wheel, a step every 10 frames of 16 ms, and prints the time of a frame, the
+ * number of layouts done while scrolling and the number of components the
+ * frames would draw again. The layouts must stay at zero, and the run fails if
+ * the panel did not scroll. It does not need a window on the screen.
+ *
+ * @author Niels
+ */
+public class ScrollPanelBenchmark {
+	private static final int ROWS = 20_000, FRAMES = 6000;
+	private static final float WIDTH = 1280, HEIGHT = 720;
+	private static final long FRAME_NANOS = 16_000_000;
+
+	public static void main(String[] args) {
+		Panel column = new Panel();
+		column.setLayout(new DynamicColumn(0));
+		// an empty width or height means no prefered size
+		Rectangle size = new Rectangle(0, 0, 100, 30);
+		for (int i = 0; i < ROWS; i++) {
+			Component row = i % 2 == 0 ? new Button("" + i) : new Panel();
+			row.setPreferedSize(size);
+			column.add(row);
+		}
+		ScrollPanel scroll = new ScrollPanel(column);
+		Clock.Manual clock = new Clock.Manual();
+		scroll.setClock(clock);
+
+		Window window = new Window(new Rectangle(0, 0, WIDTH, HEIGHT));
+		window.setContent(scroll);
+		List<Window> windows = List.of(window);
+
+		InputQueue queue = new InputQueue();
+		Mouse mouse = new Mouse(queue);
+		Keyboard keyboard = new Keyboard(queue);
+		queue.push(InputQueue.CURSOR_POS, 0, 0, 0, 0, WIDTH / 2, HEIGHT / 2);
+		InputDispatcher.dispatch(queue, mouse, keyboard, windows);
+		window.update(mouse, keyboard);
+		window.getDamage().clear();
+
+		long layoutPasses = window.getLayoutPasses(), layouts = scroll.getLayoutCount();
+		long[] frameNanos = new long[FRAMES];
+		long dirty = 0;
+		for (int frame = 0; frame < FRAMES; frame++) {
+			clock.advance(FRAME_NANOS);
+			if (frame % 10 == 0) {
+				queue.push(InputQueue.SCROLL, 0, 0, 0, 0, 0, -1);
+			}
+			long start = System.nanoTime();
+			InputDispatcher.dispatch(queue, mouse, keyboard, windows);
+			window.update(mouse, keyboard);
+			frameNanos[frame] = System.nanoTime() - start;
+			dirty += window.getDirtyComponents().size();
+			window.getDamage().clear();
+		}
+
+		long[] sorted = frameNanos.clone();
+		Arrays.sort(sorted);
+		System.out.println(column.getChildren().size() + " rows, scrolled to " + scroll.getScrollY() + " / "
+				+ scroll.getMaxScrollY() + " in " + scroll.getScrollCount() + " steps");
+		System.out.println("per frame : median " + (sorted[FRAMES / 2] / 1.0e+3) + " us, 99% "
+				+ (sorted[(int) (FRAMES * 0.99)] / 1.0e+3) + " us, max " + (sorted[FRAMES - 1] / 1.0e+3) + " us");
+		System.out.println("layout passes while scrolling : " + (window.getLayoutPasses() - layoutPasses)
+				+ ", content layouts : " + (scroll.getLayoutCount() - layouts));
+		System.out.println("components drawn again per frame : " + (dirty / FRAMES) + ", under the mouse : "
+				+ window.getComponentAt(WIDTH / 2, HEIGHT / 2));
+		if (scroll.getScrollCount() == 0) {
+			throw new IllegalStateException("The panel did not scroll.");
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package demo;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGPaint;
+
+import components.Button;
+import components.Label;
+import components.Panel;
+import grayscale.Application;
+import grayscale.Clock;
+import grayscale.Font;
+import grayscale.FontStyle;
+import grayscale.FrameTimings;
+import grayscale.Graphics;
+import grayscale.Rectangle;
+import grayscale.SoftwareBackend;
+import grayscale.Window;
+import layouts.DynamicRow;
+import utils.Colors;
+
+/**
+ * Measures the throughput of the {@link SoftwareBackend}, in pixels per
+ * second, filling and stroking shapes on one thread and on the common
+ * {@link ForkJoinPool}, then draws a headless application with it and saves
+ * its last frame as {@code software.png}.
+ *
+ * @author Niels
+ */
+public class SoftwareRenderBenchmark extends Application {
+	private static final int SHAPES = 2000, FRAMES = 60;
+	private static final int WIDTH = 1280, HEIGHT = 720;
+
+	private SoftwareBackend backend = new SoftwareBackend(WIDTH, HEIGHT);
+	private int frame = 0;
+
+	public SoftwareRenderBenchmark() {
+		super(WIDTH, HEIGHT, Clock.SYSTEM);
+	}
+
+	public static void main(String[] args) {
+		for (int i = 0; i < 2; i++) {
+			// the first run warms up the JIT
+			shapes("sequential", null);
+			shapes("parallel  ", ForkJoinPool.commonPool());
+		}
+		new SoftwareRenderBenchmark().run();
+	}
+
+	private static void shapes(String name, ForkJoinPool pool) {
+		SoftwareBackend b = new SoftwareBackend(WIDTH, HEIGHT, pool);
+		NVGColor c0 = NVGColor.calloc(), c1 = NVGColor.calloc();
+		NVGPaint paint = NVGPaint.calloc();
+		b.beginFrame(WIDTH, HEIGHT, 1);
+
+		Random random = new Random(42);
+		long start = System.nanoTime();
+		for (int i = 0; i < SHAPES; i++) {
+			float x = random.nextFloat() * WIDTH, y = random.nextFloat() * HEIGHT;
+			float w = 50 + random.nextFloat() * 400, h = 50 + random.nextFloat() * 300;
+			b.beginPath();
+			b.roundedRect(x - w / 2, y - h / 2, w, h, 10);
+			if (i % 2 == 0) {
+				b.fillColor(Colors.rgba(random.nextFloat(), random.nextFloat(), random.nextFloat(), 0.5f, c0));
+			} else {
+				Colors.rgba(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1f, c0);
+				Colors.rgba(random.nextFloat(), random.nextFloat(), random.nextFloat(), 0f, c1);
+				b.fillPaint(b.linearGradient(x, y - h / 2, x, y + h / 2, c0, c1, paint));
+			}
+			b.fill();
+		}
+		long fill = System.nanoTime() - start;
+		long fillPixels = b.getPixelCount();
+
+		b.resetPixelCount();
+		b.strokeColor(Colors.rgba(0f, 0f, 0f, 1f, c0));
+		b.strokeWidth(4);
+		b.lineJoin(NVG_ROUND);
+		start = System.nanoTime();
+		for (int i = 0; i < SHAPES; i++) {
+			b.beginPath();
+			b.moveTo(random.nextFloat() * WIDTH, random.nextFloat() * HEIGHT);
+			for (int j = 0; j < 4; j++) {
+				b.bezierTo(random.nextFloat() * WIDTH, random.nextFloat() * HEIGHT, random.nextFloat() * WIDTH,
+						random.nextFloat() * HEIGHT, random.nextFloat() * WIDTH, random.nextFloat() * HEIGHT);
+			}
+			b.stroke();
+		}
+		long stroke = System.nanoTime() - start;
+		long strokePixels = b.getPixelCount();
+
+		b.endFrame();
+		b.destroy();
+		c0.free();
+		c1.free();
+		paint.free();
+		System.out.println(name + " : fill " + (fillPixels * 1e3 / fill) + " Mpixels/s, stroke "
+				+ (strokePixels * 1e3 / stroke) + " Mpixels/s");
+	}
+
+	@Override
+	protected Graphics createGraphics(List<Font> fonts) {
+		return new Graphics(backend, fonts);
+	}
+
+	@Override
+	protected boolean shouldClose() {
+		return frame >= FRAMES;
+	}
+
+	@Override
+	protected void init() {
+		loadFont("segoeui", "demo/segoeui.ttf");
+		setDefaultFontStyle(new FontStyle("segoeui", 14f));
+		setBackground(0.94f, 0.94f, 0.94f);
+
+		Panel content = new Panel();
+		content.setLayout(new DynamicRow(5, Panel.LEFT, Panel.TOP));
+		for (int i = 0; i < 400; i++) {
+			content.add(i % 2 == 0 ? new Button("Button " + i) : new Label("Label " + i));
+		}
+		Window window = new Window(new Rectangle(0, 0, WIDTH, HEIGHT));
+		window.setContent(content);
+		addWindow(window);
+	}
+
+	@Override
+	protected void update() {
+		if (frame == FRAMES - 1) {
+			// the canvas is freed with the Graphics object before destroy()
+			backend.saveImage("software.png");
+		}
+		frame++;
+	}
+
+	@Override
+	protected void render() {
+	}
+
+	@Override
+	protected void destroy() {
+		long pixels = backend.getPixelCount();
+		long nanos = getFrameTimings().getTotalNanos(FrameTimings.RENDER);
+		System.out.println("application : " + (nanos / 1e6 / FRAMES) + " ms per frame, "
+				+ (pixels * 1e3 / nanos) + " Mpixels/s");
+	}
+}
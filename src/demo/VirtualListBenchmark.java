@@ -0,0 +1,74 @@
+package demo;
+
+import java.util.Random;
+
+import components.Label;
+import components.VirtualList;
+import grayscale.Component;
+import grayscale.Rectangle;
+import grayscale.Window;
+
+/**
+ * Scrolls through a {@link VirtualList} of 10 000 000 rows, with steps of the
+ * mouse wheel and with jumps to random positions, first with rows of uniform
+ * height and then with a row out of a hundred of another height. It measures the
+ * time of a scroll, rows recycled and bound included. It does not need a
+ * window on the screen.
+ *
+ * @author Niels
+ */
+public class VirtualListBenchmark {
+	private static final int ROWS = 10_000_000, STEPS = 100_000, JUMPS = 10_000, RUNS = 5;
+	private static final float WIDTH = 800, HEIGHT = 1200, ROW_HEIGHT = 24;
+
+	public static void main(String[] args) {
+		VirtualList list = new VirtualList(new VirtualList.DataProvider() {
+			@Override
+			public int getRowCount() {
+				return ROWS;
+			}
+
+			@Override
+			public Component createRow() {
+				return new Label();
+			}
+
+			@Override
+			public void bindRow(Component row, int index) {
+				((Label) row).setText("Row " + index);
+			}
+		}, ROW_HEIGHT);
+		Window window = new Window(new Rectangle(0, 0, WIDTH, HEIGHT));
+		window.setContent(list);
+		list.setBounds(window.getBounds());
+		System.out.println(list.getRowCount() + " rows, " + list.getChildren().size() + " row components");
+
+		Random random = new Random(42);
+		run(list, random, "uniform heights");
+
+		for (int i = 0; i < ROWS; i += 100) {
+			list.setRowHeight(i, ROW_HEIGHT + 8 + random.nextInt(40));
+		}
+		run(list, random, "variable heights");
+		System.out.println(list.getChildren().size() + " row components");
+	}
+
+	private static void run(VirtualList list, Random random, String name) {
+		for (int run = 0; run < RUNS; run++) {
+			list.scrollTo(0);
+			long start = System.nanoTime();
+			for (int i = 0; i < STEPS; i++) {
+				list.scrollBy(40);
+			}
+			long steps = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < JUMPS; i++) {
+				list.scrollTo(random.nextDouble() * list.getTotalHeight());
+			}
+			long jumps = System.nanoTime() - start;
+
+			System.out.println(name + " : step " + (steps / STEPS) + " ns, jump " + (jumps / JUMPS) + " ns");
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package events;
+
+/**
+ * A ring buffer of input records, filled by the GLFW callbacks of
+ * {@link Mouse} and {@link Keyboard} and drained in order by the application,
+ * so that no event is lost when several of them arrive during one frame.
+ * <p>
+ * The records are stored in primitive arrays and read through
+ * {@link #poll()} and the getters of the current record, so that no object
+ * is allocated per event. The buffer grows when it is full instead of
+ * dropping events.
+ * </p>
+ *
+ * @author Niels
+ */
+public class InputQueue {
+	public static final int CURSOR_POS = 0, //
+			MOUSE_BUTTON = 1, //
+			SCROLL = 2, //
+			DROP = 3, //
+			KEY = 4, //
+			CHAR = 5; //
+
+	private int[] types;
+	/**
+	 * the button, the key or the codepoint
+	 */
+	private int[] codes;
+	private int[] actions;
+	private int[] mods;
+	private int[] scancodes;
+	private float[] xs;
+	private float[] ys;
+	private long[] times;
+
+	private int mask;
+	private int head = 0, tail = 0;
+
+	/**
+	 * The index of the record returned by the last call to {@link #poll()}
+	 */
+	private int current = -1;
+
+	private long pushed = 0;
+
+	private InputRecorder recorder;
+
+	public InputQueue() {
+		this(256);
+	}
+
+	/**
+	 * @param capacity the initial capacity, rounded up to a power of two
+	 */
+	public InputQueue(int capacity) {
+		allocate(Integer.highestOneBit(Math.max(2, capacity - 1)) << 1);
+	}
+
+	private void allocate(int capacity) {
+		types = new int[capacity];
+		codes = new int[capacity];
+		actions = new int[capacity];
+		mods = new int[capacity];
+		scancodes = new int[capacity];
+		xs = new float[capacity];
+		ys = new float[capacity];
+		times = new long[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Doubles the capacity, keeping the records in order at the start of the
+	 * arrays.
+	 */
+	private void grow() {
+		int size = size(), capacity = mask + 1;
+		int[] oldTypes = types, oldCodes = codes, oldActions = actions, oldMods = mods, oldScancodes = scancodes;
+		float[] oldXs = xs, oldYs = ys;
+		long[] oldTimes = times;
+		allocate(capacity * 2);
+		for (int i = 0; i < size; i++) {
+			int j = (head + i) & (capacity - 1);
+			types[i] = oldTypes[j];
+			codes[i] = oldCodes[j];
+			actions[i] = oldActions[j];
+			mods[i] = oldMods[j];
+			scancodes[i] = oldScancodes[j];
+			xs[i] = oldXs[j];
+			ys[i] = oldYs[j];
+			times[i] = oldTimes[j];
+		}
+		head = 0;
+		tail = size;
+		current = -1;
+	}
+
+	/**
+	 * Adds a record, timestamped with {@link System#nanoTime()}.
+	 */
+	public void push(int type, int code, int action, int mods, int scancode, float x, float y) {
+		push(type, code, action, mods, scancode, x, y, System.nanoTime());
+	}
+
+	public void push(int type, int code, int action, int mods, int scancode, float x, float y, long time) {
+		if (size() == mask) {
+			grow();
+		}
+		int i = tail;
+		types[i] = type;
+		codes[i] = code;
+		actions[i] = action;
+		this.mods[i] = mods;
+		scancodes[i] = scancode;
+		xs[i] = x;
+		ys[i] = y;
+		times[i] = time;
+		tail = (tail + 1) & mask;
+		pushed++;
+		if (recorder != null) {
+			recorder.record(type, code, action, mods, scancode, x, y, time);
+		}
+	}
+
+	/**
+	 * Removes the oldest record, which becomes the current one.
+	 *
+	 * @return {@code false} if the queue is empty
+	 */
+	public boolean poll() {
+		if (head == tail) {
+			current = -1;
+			return false;
+		}
+		current = head;
+		head = (head + 1) & mask;
+		return true;
+	}
+
+	/**
+	 * @return the type of the record the next call to {@link #poll()} would
+	 *         return, or -1 if the queue is empty
+	 */
+	public int peekType() {
+		return head == tail ? -1 : types[head];
+	}
+
+	public boolean isEmpty() {
+		return head == tail;
+	}
+
+	public int size() {
+		return (tail - head) & mask;
+	}
+
+	public void clear() {
+		head = tail = 0;
+		current = -1;
+	}
+
+	/**
+	 * @return the number of records pushed since the creation of this queue
+	 */
+	public long getPushedCount() {
+		return pushed;
+	}
+
+	public InputRecorder getRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * @param recorder the recorder receiving every record pushed into this
+	 *                 queue, or {@code null}
+	 */
+	public void setRecorder(InputRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	/**
+	 * @return the number of records this queue can hold before growing
+	 */
+	public int getCapacity() {
+		return mask;
+	}
+
+	private int current() {
+		if (current < 0) {
+			throw new IllegalStateException("No current record, poll() must be called first.");
+		}
+		return current;
+	}
+
+	/**
+	 * @return the type of the current record, {@link #CURSOR_POS},
+	 *         {@link #MOUSE_BUTTON}, {@link #SCROLL}, {@link #DROP}, {@link #KEY}
+	 *         or {@link #CHAR}
+	 */
+	public int type() {
+		return types[current()];
+	}
+
+	/**
+	 * @return the mouse button, the key, the codepoint or the number of dropped
+	 *         files of the current record
+	 */
+	public int code() {
+		return codes[current()];
+	}
+
+	public int action() {
+		return actions[current()];
+	}
+
+	public int mods() {
+		return mods[current()];
+	}
+
+	public int scancode() {
+		return scancodes[current()];
+	}
+
+	/**
+	 * @return the position of the cursor, or the scroll offset
+	 */
+	public float x() {
+		return xs[current()];
+	}
+
+	public float y() {
+		return ys[current()];
+	}
+
+	/**
+	 * @return the time the current record was pushed, in nanoseconds
+	 */
+	public long time() {
+		return times[current()];
+	}
+}
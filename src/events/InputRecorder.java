@@ -0,0 +1,138 @@
+package events;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the raw input records pushed into an {@link InputQueue} to a compact
+ * binary stream, with the index of the frame they were received in, so that
+ * the session can be replayed by an {@link InputReplayer}.
+ * <p>
+ * Each record is written as its type, the frame and time elapsed since the
+ * previous record as variable length integers, then only the fields used by
+ * its type. The names of dropped files are not recorded.
+ * </p>
+ *
+ * @see InputQueue#setRecorder(InputRecorder)
+ * @author Niels
+ */
+public class InputRecorder implements AutoCloseable {
+	static final int MAGIC = 0x4753494E; // GSIN
+	static final int VERSION = 1;
+	/**
+	 * The type of the last record, storing the number of frames
+	 */
+	static final int END = 0xFF;
+
+	private final DataOutputStream out;
+
+	private int frame = 0;
+	private int lastFrame = 0;
+	private long startTime = -1;
+	private long lastTime = 0;
+	private int recordCount = 0;
+	private boolean closed = false;
+
+	/**
+	 * @param path the file to create
+	 * @throws IOException if the file cannot be created
+	 */
+	public InputRecorder(String path) throws IOException {
+		this(new FileOutputStream(path));
+	}
+
+	public InputRecorder(OutputStream out) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.out.writeInt(MAGIC);
+		this.out.writeInt(VERSION);
+	}
+
+	/**
+	 * Must be called at the beginning of each frame, before the events of the
+	 * frame are received.
+	 */
+	public void nextFrame() {
+		frame++;
+	}
+
+	public int getFrame() {
+		return frame;
+	}
+
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Writes a record. Called by the queue the recorder is attached to.
+	 *
+	 * @throws IllegalStateException if this recorder is closed
+	 */
+	void record(int type, int code, int action, int mods, int scancode, float x, float y, long time) {
+		if (closed) {
+			throw new IllegalStateException("The recorder is closed.");
+		}
+		if (startTime < 0) {
+			startTime = time;
+		}
+		long t = time - startTime;
+		try {
+			out.writeByte(type);
+			writeVarLong(frame - lastFrame);
+			writeVarLong(Math.max(0, t - lastTime));
+			writeVarLong(zigzag(code));
+			switch (type) {
+			case InputQueue.CURSOR_POS:
+			case InputQueue.SCROLL:
+				out.writeFloat(x);
+				out.writeFloat(y);
+				break;
+			case InputQueue.MOUSE_BUTTON:
+				out.writeByte(action);
+				out.writeByte(mods);
+				out.writeFloat(x);
+				out.writeFloat(y);
+				break;
+			case InputQueue.KEY:
+				out.writeByte(action);
+				out.writeByte(mods);
+				writeVarLong(zigzag(scancode));
+				break;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Could not record the input", e);
+		}
+		lastFrame = frame;
+		lastTime = Math.max(lastTime, t);
+		recordCount++;
+	}
+
+	private static long zigzag(int v) {
+		return ((long) v << 1) ^ ((long) v >> 63);
+	}
+
+	private void writeVarLong(long v) throws IOException {
+		while ((v & ~0x7FL) != 0) {
+			out.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.writeByte((int) v);
+	}
+
+	/**
+	 * Writes the number of recorded frames and closes the stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		out.writeByte(END);
+		writeVarLong(frame);
+		out.close();
+	}
+}
@@ -0,0 +1,151 @@
+package events;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads a session written by an {@link InputRecorder} and feeds it back into
+ * an {@link InputQueue}, frame by frame, without GLFW. The queue is then
+ * drained by a {@link Mouse} and a {@link Keyboard} created with
+ * {@link Mouse#Mouse(InputQueue)} and {@link Keyboard#Keyboard(InputQueue)}.
+ * <p>
+ * The records keep their recorded timestamps, relative to the first record,
+ * so that a replay does not depend on the speed it runs at.
+ * </p>
+ *
+ * @author Niels
+ */
+public class InputReplayer {
+	/**
+	 * The records, in order, and the frame of each one
+	 */
+	private final InputQueue records = new InputQueue(1024);
+	private int[] frames = new int[1024];
+	private int recordCount = 0;
+	private int frameCount = 0;
+
+	private int nextRecord = 0;
+	private int frame = 0;
+
+	/**
+	 * @param path a file written by an {@link InputRecorder}
+	 * @throws IOException if the file cannot be read or is not a recording
+	 */
+	public InputReplayer(String path) throws IOException {
+		this(new FileInputStream(path));
+	}
+
+	/**
+	 * Reads the whole stream and closes it.
+	 */
+	public InputReplayer(InputStream stream) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+			if (in.readInt() != InputRecorder.MAGIC) {
+				throw new IOException("Not an input recording");
+			}
+			int version = in.readInt();
+			if (version != InputRecorder.VERSION) {
+				throw new IOException("Unsupported recording version " + version);
+			}
+			read(in);
+		}
+	}
+
+	private void read(DataInputStream in) throws IOException {
+		int f = 0;
+		long time = 0;
+		while (true) {
+			int type = in.readUnsignedByte();
+			if (type == InputRecorder.END) {
+				frameCount = (int) readVarLong(in);
+				return;
+			}
+			f += (int) readVarLong(in);
+			time += readVarLong(in);
+			int code = unzigzag(readVarLong(in));
+			int action = 0, mods = 0, scancode = 0;
+			float x = 0, y = 0;
+			switch (type) {
+			case InputQueue.CURSOR_POS:
+			case InputQueue.SCROLL:
+				x = in.readFloat();
+				y = in.readFloat();
+				break;
+			case InputQueue.MOUSE_BUTTON:
+				action = in.readByte();
+				mods = in.readByte();
+				x = in.readFloat();
+				y = in.readFloat();
+				break;
+			case InputQueue.KEY:
+				action = in.readByte();
+				mods = in.readByte();
+				scancode = unzigzag(readVarLong(in));
+				break;
+			}
+			if (recordCount == frames.length) {
+				frames = Arrays.copyOf(frames, recordCount * 2);
+			}
+			frames[recordCount++] = f;
+			records.push(type, code, action, mods, scancode, x, y, time);
+		}
+	}
+
+	private static int unzigzag(long v) {
+		return (int) ((v >>> 1) ^ -(v & 1));
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long v = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return v;
+			}
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+
+	/**
+	 * Pushes into {@code queue} the records of the next frame.
+	 *
+	 * @return {@code false} once every frame was replayed
+	 */
+	public boolean nextFrame(InputQueue queue) {
+		if (isFinished()) {
+			return false;
+		}
+		frame++;
+		while (nextRecord < recordCount && frames[nextRecord] <= frame) {
+			records.poll();
+			queue.push(records.type(), records.code(), records.action(), records.mods(), records.scancode(),
+					records.x(), records.y(), records.time());
+			nextRecord++;
+		}
+		return true;
+	}
+
+	public boolean isFinished() {
+		return frame >= frameCount && nextRecord >= recordCount;
+	}
+
+	/**
+	 * @return the index of the last replayed frame, from 1
+	 */
+	public int getFrame() {
+		return frame;
+	}
+
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	public int getRecordCount() {
+		return recordCount;
+	}
+}
@@ -2,6 +2,8 @@ package events;
 
 import static org.lwjgl.glfw.GLFW.*;
 
+import java.util.Arrays;
+
 import org.lwjgl.glfw.GLFW;
 
 import grayscale.Component;
@@ -17,17 +19,76 @@ public class KeyBinding {
 
 	private final Runnable action;
 
+	/**
+	 * The keys and modifiers of the strokes following the first one, for a
+	 * chord like Ctrl+K Ctrl+C
+	 */
+	private final int[] nextKeys;
+	private final int[] nextMods;
+
 	/**
 	 * @param key       a glfw key
 	 * @param keyAction can be {@link GLFW#GLFW_DONT_CARE}
 	 * @param mods      can be {@link GLFW#GLFW_DONT_CARE}
 	 */
 	public KeyBinding(int key, int keyAction, int mods, int condition, Runnable action) {
+		this(key, keyAction, mods, condition, action, new int[0], new int[0]);
+	}
+
+	private KeyBinding(int key, int keyAction, int mods, int condition, Runnable action, int[] nextKeys,
+			int[] nextMods) {
 		this.key = key;
 		this.keyAction = keyAction;
 		this.mods = mods;
 		this.condition = condition;
 		this.action = action;
+		this.nextKeys = nextKeys;
+		this.nextMods = nextMods;
+	}
+
+	/**
+	 * Creates a chord, a binding whose action is performed once its strokes are
+	 * pressed one after the other. The following strokes are tested on
+	 * {@link GLFW#GLFW_PRESS PRESS} events, the modifier keys being ignored
+	 * between two strokes.
+	 * 
+	 * @param key  the key of the next stroke
+	 * @param mods can be {@link GLFW#GLFW_DONT_CARE}
+	 * @return a new binding, with one more stroke than this one
+	 */
+	public KeyBinding then(int key, int mods) {
+		int n = nextKeys.length;
+		int[] keys = Arrays.copyOf(nextKeys, n + 1);
+		int[] modifiers = Arrays.copyOf(nextMods, n + 1);
+		keys[n] = key;
+		modifiers[n] = mods;
+		return new KeyBinding(this.key, keyAction, this.mods, condition, action, keys, modifiers);
+	}
+
+	/**
+	 * @return the number of strokes of this binding, 1 if it is not a chord
+	 */
+	public int getStrokeCount() {
+		return nextKeys.length + 1;
+	}
+
+	/**
+	 * Tests a stroke of a chord, other than the first one.
+	 * 
+	 * @param stroke the index of the stroke, from 1 to
+	 *               {@code getStrokeCount() - 1}
+	 */
+	public final boolean testStroke(int stroke, int key, int mods) {
+		int i = stroke - 1;
+		return nextKeys[i] == key && (nextMods[i] == GLFW_DONT_CARE || nextMods[i] == mods);
+	}
+
+	/**
+	 * @return {@code true} if {@code key} is a modifier key, like shift or
+	 *         control, that does not break a chord
+	 */
+	public static boolean isModifierKey(int key) {
+		return key >= GLFW_KEY_LEFT_SHIFT && key <= GLFW_KEY_RIGHT_SUPER;
 	}
 
 	/**
@@ -5,6 +5,7 @@ public class KeyEvent {
 	private int scancode;
 	private int action;
 	private int mods;
+	private long time;
 	
 	public KeyEvent(int key, int scancode, int action, int mods) {
 		this.key = key;
@@ -14,6 +15,14 @@ public class KeyEvent {
 		
 	}
 
+	void set(int key, int scancode, int action, int mods, long time) {
+		this.key = key;
+		this.scancode = scancode;
+		this.action = action;
+		this.mods = mods;
+		this.time = time;
+	}
+
 	public int getKey() {
 		return key;
 	}
@@ -29,4 +38,12 @@ public class KeyEvent {
 	public int getMods() {
 		return mods;
 	}
+
+	/**
+	 * @return the time the event was received, in nanoseconds, or 0 if it was
+	 *         created by hand
+	 */
+	public long getTime() {
+		return time;
+	}
 }
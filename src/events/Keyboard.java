@@ -27,20 +27,46 @@ public class Keyboard {
 
 	private int editStringKey = KEY_NONE;
 	private boolean replaceMode = false;
-	private String typedChars = "";
+	private StringBuilder typedChars = new StringBuilder();
 
-	private List<KeyEvent> events = new ArrayList<>();
+	/**
+	 * Contains {@code event} if the last processed record is a key event
+	 */
+	private List<KeyEvent> events = new ArrayList<>(1);
+	private final KeyEvent event = new KeyEvent(0, 0, 0, 0);
+
+	/**
+	 * The state of the keys according to the processed events, used when this
+	 * keyboard is not connected to GLFW
+	 */
+	private boolean[] keysDown = new boolean[GLFW_KEY_LAST + 1];
 
 	private final Application app;
+	private final InputQueue queue;
+
+	/**
+	 * Creates a keyboard that is not connected to GLFW, whose events are pushed
+	 * into the queue by hand, for example by an {@link InputReplayer}.
+	 */
+	public Keyboard(InputQueue queue) {
+		this(null, queue);
+	}
 
-	public Keyboard(Application application) {
+	/**
+	 * @param queue the queue receiving the events of the callbacks
+	 */
+	public Keyboard(Application application, InputQueue queue) {
 		this.app = application;
+		this.queue = queue;
+		if (application == null) {
+			return;
+		}
 		glfwSetCharCallback(app.getHandle(), this::GLFWCharCallback);
 		glfwSetKeyCallback(app.getHandle(), this::GLFWKeyCallback);
 	}
 
 	private void GLFWCharCallback(long window, int codepoint) {
-		typedChars += Character.toString(codepoint);
+		queue.push(InputQueue.CHAR, codepoint, 0, 0, 0, 0, 0);
 	}
 
 	/**
@@ -60,16 +86,39 @@ public class Keyboard {
 	 * @param mods     bitfield describing which modifiers keys were held down
 	 */
 	private void GLFWKeyCallback(long window, int key, int scancode, int action, int mods) {
-		events.add(new KeyEvent(key, scancode, action, mods));
-		
+		queue.push(InputQueue.KEY, key, action, mods, scancode, 0, 0);
+	}
+
+	/**
+	 * Updates the state of this keyboard with the current record of the queue,
+	 * which must have been polled. The records of the mouse are ignored.
+	 */
+	public void process(InputQueue queue) {
+		switch (queue.type()) {
+		case InputQueue.KEY:
+			event.set(queue.code(), queue.scancode(), queue.action(), queue.mods(), queue.time());
+			events.add(event);
+			if (event.getKey() >= 0 && event.getKey() < keysDown.length) {
+				keysDown[event.getKey()] = event.getAction() != GLFW_RELEASE;
+			}
+			processKey(event.getKey(), event.getAction(), event.getMods());
+			break;
+		case InputQueue.CHAR:
+			typedChars.appendCodePoint(queue.code());
+			break;
+		}
+	}
+
+	private void processKey(int key, int action, int mods) {
+		boolean control = (mods & GLFW_MOD_CONTROL) != 0;
 		boolean press = action == GLFW_PRESS;
 		boolean repeated = action == GLFW_REPEAT;
 		boolean released = action == GLFW_RELEASE;
 
 		switch (key) {
 		case GLFW_KEY_ESCAPE:
-			if (released) {
-				glfwSetWindowShouldClose(window, true);
+			if (released && app != null) {
+				glfwSetWindowShouldClose(app.getHandle(), true);
 			}
 			break;
 		case GLFW_KEY_INSERT:
@@ -97,7 +146,7 @@ public class Keyboard {
 			break;
 		case GLFW_KEY_LEFT:
 			if (press || repeated) {
-				if (glfwGetKey(window, GLFW_KEY_LEFT_CONTROL) == GLFW_PRESS) {
+				if (control) {
 					editStringKey = KEY_TEXT_WORD_LEFT;
 				} else {
 					editStringKey = KEY_LEFT;
@@ -106,7 +155,7 @@ public class Keyboard {
 			break;
 		case GLFW_KEY_RIGHT:
 			if (press || repeated) {
-				if (glfwGetKey(window, GLFW_KEY_LEFT_CONTROL) == GLFW_PRESS) {
+				if (control) {
 					editStringKey = KEY_TEXT_WORD_RIGHT;
 				} else {
 					editStringKey = KEY_RIGHT;
@@ -124,22 +173,22 @@ public class Keyboard {
 			}
 			break;
 		case GLFW_KEY_A:
-			if (press && glfwGetKey(window, GLFW_KEY_LEFT_CONTROL) == GLFW_PRESS) {
+			if (press && control) {
 				editStringKey = KEY_TEXT_SELECT_ALL;
 			}
 			break;
 		case GLFW_KEY_C:
-			if (press && glfwGetKey(window, GLFW_KEY_LEFT_CONTROL) == GLFW_PRESS) {
+			if (press && control) {
 				editStringKey = KEY_COPY;
 			}
 			break;
 		case GLFW_KEY_V:
-			if (press && glfwGetKey(window, GLFW_KEY_LEFT_CONTROL) == GLFW_PRESS) {
+			if (press && control) {
 				editStringKey = KEY_PASTE;
 			}
 			break;
 		case GLFW_KEY_X:
-			if (press && glfwGetKey(window, GLFW_KEY_LEFT_CONTROL) == GLFW_PRESS) {
+			if (press && control) {
 				editStringKey = KEY_CUT;
 			}
 			break;
@@ -147,15 +196,23 @@ public class Keyboard {
 	}
 
 	/**
-	 * Prepares this keyboard for the next callback.<br>
-	 * Must be called before glfwPollEvents
+	 * Clears the events of the previously processed record. Must be called
+	 * before {@link #process(InputQueue)}.
 	 */
 	public void prepare() {
 		editStringKey = KEY_NONE;
-		typedChars = "";
+		typedChars.setLength(0);
 		events.clear();
 	}
 
+	/**
+	 * @return {@code true} if a key event was received or a character was typed
+	 *         since the last call to {@link #prepare()}
+	 */
+	public boolean hasEvents() {
+		return !events.isEmpty() || typedChars.length() > 0;
+	}
+
 	public int getEditStringKey() {
 		return editStringKey;
 	}
@@ -164,14 +221,25 @@ public class Keyboard {
 		return replaceMode;
 	}
 
-	public String getTypedChars() {
+	/**
+	 * @return the characters typed, only valid until the next call to
+	 *         {@link #prepare()}
+	 */
+	public CharSequence getTypedChars() {
 		return typedChars;
 	}
 
 	public boolean keyPressed(int keyCode) {
+		if (app == null) {
+			return keyCode >= 0 && keyCode < keysDown.length && keysDown[keyCode];
+		}
 		return glfwGetKey(app.getHandle(), keyCode) == GLFW_PRESS;
 	}
 
+	/**
+	 * @return the key events of the last processed record. The events are reused
+	 *         and must not be kept.
+	 */
 	public List<KeyEvent> getEvents() {
 		return events;
 	}
@@ -51,11 +51,45 @@ public class Mouse {
 	private int modifiers = 0;
 
 	private List<String> droppedFiles = new ArrayList<>();
+	/**
+	 * The files received by the drop callback and not processed yet
+	 */
+	private List<String> pendingDrops = new ArrayList<>();
+
+	/**
+	 * The state of the buttons, updated by the processed events
+	 */
+	private boolean downL = false, downW = false, downR = false;
+
+	private long eventTime = 0;
+
+	private PointerHistory history = new PointerHistory();
+	private boolean coalescing = true;
 
 	private final Application app;
+	private final InputQueue queue;
+
+	/**
+	 * @param queue the queue receiving the events of the callbacks
+	 */
+	public Mouse(Application application, InputQueue queue) {
+		this(application, queue, true);
+	}
 
-	public Mouse(Application application) {
+	/**
+	 * Creates a mouse that is not connected to GLFW, whose events are pushed
+	 * into the queue by hand, for example by an {@link InputReplayer}.
+	 */
+	public Mouse(InputQueue queue) {
+		this(null, queue, false);
+	}
+
+	private Mouse(Application application, InputQueue queue, boolean callbacks) {
 		this.app = application;
+		this.queue = queue;
+		if (!callbacks) {
+			return;
+		}
 		long w = application.getHandle();
 		glfwSetCursorPosCallback(w, this::GLFWCursorPosCallback);
 		glfwSetScrollCallback(w, this::GLFWScrollCallback);
@@ -64,36 +98,70 @@ public class Mouse {
 	}
 
 	private void GLFWCursorPosCallback(long window, double xpos, double ypos) {
-		pos.set(xpos, ypos).div(app.getContentScale());
-
-		moved = true;
-
-		if (glfwGetMouseButton(window, BTN_LEFT) == GLFW_PRESS) {
-			draggedL = true;
-		}
-
-		if (glfwGetMouseButton(window, BTN_MIDDLE) == GLFW_PRESS) {
-			draggedW = true;
-		}
-
-		if (glfwGetMouseButton(window, BTN_RIGHT) == GLFW_PRESS) {
-			draggedR = true;
-		}
+		Vectorc scale = app.getContentScale();
+		queue.push(InputQueue.CURSOR_POS, 0, 0, 0, 0, (float) xpos / scale.x(), (float) ypos / scale.y());
 	}
 
 	private void GLFWScrollCallback(long window, double xoffset, double yoffset) {
-		scroll.set(xoffset, yoffset);
+		queue.push(InputQueue.SCROLL, 0, 0, 0, 0, (float) xoffset, (float) yoffset);
 	}
 
 	private void GLFWMouseButtonCallback(long window, int button, int action, int mods) {
-		Vector currentPos = new Vector();
+		Vectorc scale = app.getContentScale();
 		try (MemoryStack stack = stackPush()) {
 			DoubleBuffer x = stack.mallocDouble(1);
 			DoubleBuffer y = stack.mallocDouble(1);
 			glfwGetCursorPos(window, x, y);
-			currentPos.set(x.get(0), y.get(0)).div(app.getContentScale());
+			queue.push(InputQueue.MOUSE_BUTTON, button, action, mods, 0, (float) x.get(0) / scale.x(),
+					(float) y.get(0) / scale.y());
 		}
+	}
 
+	private void GLFWDropCallback(long window, int count, long names) {
+		PointerBuffer namesBuff = PointerBuffer.create(names, count);
+		for (int index = 0; index < count; index++) {
+			pendingDrops.add(namesBuff.getStringUTF8(index));
+		}
+		queue.push(InputQueue.DROP, count, 0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Updates the state of this mouse with the current record of the queue,
+	 * which must have been polled. The records of the keyboard are ignored.
+	 */
+	public void process(InputQueue queue) {
+		eventTime = queue.time();
+		switch (queue.type()) {
+		case InputQueue.CURSOR_POS:
+			history.add(queue.x(), queue.y(), queue.time());
+			// the following positions are merged into a single event
+			while (coalescing && queue.peekType() == InputQueue.CURSOR_POS) {
+				queue.poll();
+				history.add(queue.x(), queue.y(), queue.time());
+			}
+			eventTime = queue.time();
+			pos.set(queue.x(), queue.y());
+			moved = true;
+			draggedL |= downL;
+			draggedW |= downW;
+			draggedR |= downR;
+			break;
+		case InputQueue.SCROLL:
+			scroll.set(queue.x(), queue.y());
+			break;
+		case InputQueue.MOUSE_BUTTON:
+			processButton(queue.code(), queue.action(), queue.mods(), queue.x(), queue.y());
+			break;
+		case InputQueue.DROP:
+			droppedFiles.clear();
+			for (int i = 0; i < queue.code() && !pendingDrops.isEmpty(); i++) {
+				droppedFiles.add(pendingDrops.remove(0));
+			}
+			break;
+		}
+	}
+
+	private void processButton(int button, int action, int mods, float x, float y) {
 		modifiers = mods;
 
 		if (button == GLFW_MOUSE_BUTTON_RIGHT) {
@@ -102,9 +170,11 @@ public class Mouse {
 				clickedR = !draggedR;
 				draggedR = false;
 				releasedR = true;
+				downR = false;
 			} else {
 				pressedR = true;
-				RPressedStartPos.set(currentPos);
+				RPressedStartPos.set(x, y);
+				downR = true;
 			}
 		}
 
@@ -114,9 +184,11 @@ public class Mouse {
 				clickedW = !draggedW;
 				draggedW = false;
 				releasedW = true;
+				downW = false;
 			} else {
 				pressedW = true;
-				WPressedStartPos.set(currentPos);
+				WPressedStartPos.set(x, y);
+				downW = true;
 			}
 		}
 
@@ -126,23 +198,18 @@ public class Mouse {
 				clickedL = !draggedL;
 				draggedL = false;
 				releasedL = true;
+				downL = false;
 			} else {
 				pressedL = true;
-				LPressedStartPos.set(currentPos);
+				LPressedStartPos.set(x, y);
+				downL = true;
 			}
 		}
 	}
 
-	private void GLFWDropCallback(long window, int count, long names) {
-		PointerBuffer namesBuff = PointerBuffer.create(names, count);
-		for (int index = 0; index < count; index++) {
-			droppedFiles.add(namesBuff.getStringUTF8(index));
-		}
-	}
-
 	/**
-	 * Prepares this mouse for the next callback.<br>
-	 * Must be called before glfwPollEvents
+	 * Clears the events of the previously processed record. Must be called
+	 * before {@link #process(InputQueue)}.
 	 */
 	public void prepare() {
 		pressedL = false;
@@ -155,6 +222,7 @@ public class Mouse {
 		clickedW = false;
 		clickedR = false;
 		moved = false;
+		history.clear();
 		modifiers = 0;
 		scroll.set(0);
 		prevPos.set(pos);
@@ -162,6 +230,15 @@ public class Mouse {
 		droppedFiles.clear();
 	}
 
+	/**
+	 * @return {@code true} if anything happened since the last call to
+	 *         {@link #prepare()}
+	 */
+	public boolean hasEvents() {
+		return moved || pressedL || pressedW || pressedR || releasedL || releasedW || releasedR
+				|| scroll.getX() != 0 || scroll.getY() != 0 || !droppedFiles.isEmpty();
+	}
+
 	public Vectorc getPos() {
 		return pos;
 	}
@@ -234,10 +311,111 @@ public class Mouse {
 		return releasedW;
 	}
 
+	/**
+	 * @param button one of {@link #BTN_LEFT}, {@link #BTN_MIDDLE} or
+	 *               {@link #BTN_RIGHT}
+	 * @throws IllegalArgumentException if {@code button} is not one of them
+	 */
+	public boolean pressed(int button) {
+		if (button == BTN_LEFT) {
+			return pressedL;
+		} else if (button == BTN_MIDDLE) {
+			return pressedW;
+		} else if (button == BTN_RIGHT) {
+			return pressedR;
+		}
+		throw new IllegalArgumentException("Unexpected value: " + button);
+	}
+
+	/**
+	 * @see #pressed(int)
+	 */
+	public boolean released(int button) {
+		if (button == BTN_LEFT) {
+			return releasedL;
+		} else if (button == BTN_MIDDLE) {
+			return releasedW;
+		} else if (button == BTN_RIGHT) {
+			return releasedR;
+		}
+		throw new IllegalArgumentException("Unexpected value: " + button);
+	}
+
+	/**
+	 * @see #pressed(int)
+	 */
+	public boolean clicked(int button) {
+		if (button == BTN_LEFT) {
+			return clickedL;
+		} else if (button == BTN_MIDDLE) {
+			return clickedW;
+		} else if (button == BTN_RIGHT) {
+			return clickedR;
+		}
+		throw new IllegalArgumentException("Unexpected value: " + button);
+	}
+
+	/**
+	 * @see #pressed(int)
+	 */
+	public boolean dragged(int button) {
+		if (button == BTN_LEFT) {
+			return draggedL;
+		} else if (button == BTN_MIDDLE) {
+			return draggedW;
+		} else if (button == BTN_RIGHT) {
+			return draggedR;
+		}
+		throw new IllegalArgumentException("Unexpected value: " + button);
+	}
+
+	/**
+	 * @see #pressed(int)
+	 */
+	public Vectorc getPressedStartPos(int button) {
+		if (button == BTN_LEFT) {
+			return LPressedStartPos;
+		} else if (button == BTN_MIDDLE) {
+			return WPressedStartPos;
+		} else if (button == BTN_RIGHT) {
+			return RPressedStartPos;
+		}
+		throw new IllegalArgumentException("Unexpected value: " + button);
+	}
+
 	public boolean isMoved() {
 		return moved;
 	}
 
+	/**
+	 * @return the cursor positions of the last moved or dragged event, the last
+	 *         one being {@link #getPos()}. It is empty for the other events.
+	 */
+	public PointerHistory getHistory() {
+		return history;
+	}
+
+	public boolean isCoalescing() {
+		return coalescing;
+	}
+
+	/**
+	 * @param coalescing if true, which is the default, the consecutive cursor
+	 *                   positions received during a frame are merged into a
+	 *                   single event and kept in the {@link #getHistory()
+	 *                   history}. Otherwise, each position is a separate event.
+	 */
+	public void setCoalescing(boolean coalescing) {
+		this.coalescing = coalescing;
+	}
+
+	/**
+	 * @return the time of the last processed record, in nanoseconds
+	 */
+	public long getEventTime() {
+		return eventTime;
+	}
+
 	public int getModifiers() {
 		return modifiers;
 	}
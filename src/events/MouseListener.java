@@ -5,7 +5,23 @@ import grayscale.Vector;
 import grayscale.Vectorc;
 
 public abstract class MouseListener {
+	private final boolean capture;
+
 	protected MouseListener() {
+		this(false);
+	}
+
+	/**
+	 * @param capture if true, this listener receives the events on its way down
+	 *                from the root to the component under the mouse, before the
+	 *                listeners that receive them on their way back up
+	 */
+	protected MouseListener(boolean capture) {
+		this.capture = capture;
+	}
+
+	public final boolean isCapture() {
+		return capture;
 	}
 
 	public void mouseClicked(Component comp, int button, int mods, Vectorc pos, boolean strict_clicked) {
@@ -31,4 +47,31 @@ public abstract class MouseListener {
 
 	public void mouseDragged(Component comp, int buttons, int mods, Vectorc press_start_pos, Vectorc prev_pos, Vectorc pos) {
 	}
+
+	/**
+	 * Called when the wheel or the touchpad scrolls over comp. Unlike the other
+	 * events, a scroll is consumed by the first listener that handles it.
+	 * 
+	 * @param scroll the scroll offset, positive {@code y} towards the top
+	 * @return {@code true} if the scroll was handled, the next listeners of the
+	 *         hit path do not receive it
+	 */
+	public boolean mouseScrolled(Component comp, int mods, Vectorc pos, Vectorc scroll) {
+		return false;
+	}
+
+	/**
+	 * Called instead of
+	 * {@link #mouseDragged(Component, int, int, Vectorc, Vectorc, Vectorc)}, which
+	 * it calls by default. Overridden by the listeners that need every cursor
+	 * position received since {@code prev_pos}, not only the last one.
+	 * 
+	 * @param history the cursor positions since the previous event, ending with
+	 *                {@code pos} and in the same coordinates. Only valid during
+	 *                this call.
+	 */
+	public void mouseDragged(Component comp, int buttons, int mods, Vectorc press_start_pos, Vectorc prev_pos, Vectorc pos,
+			PointerHistory history) {
+		mouseDragged(comp, buttons, mods, press_start_pos, prev_pos, pos);
+	}
 }
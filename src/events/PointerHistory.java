@@ -0,0 +1,120 @@
+package events;
+
+import java.util.Arrays;
+
+/**
+ * The cursor positions received since the last mouse event, oldest first,
+ * with their timestamps. With a high frequency mouse, many positions are
+ * received during a frame and coalesced into a single moved or dragged event;
+ * they are kept here so that drawing tools can follow the exact path of the
+ * cursor.
+ * <p>
+ * The samples are stored in primitive arrays reused from one event to the
+ * next, so the history is only valid during the event it was given with.
+ * </p>
+ *
+ * @see Mouse#getHistory()
+ * @author Niels
+ */
+public class PointerHistory {
+	private float[] xs = new float[64];
+	private float[] ys = new float[64];
+	private long[] times = new long[64];
+	private int size = 0;
+
+	/**
+	 * The history this one is a translated view of, or {@code null}
+	 */
+	private final PointerHistory source;
+	private float dx, dy;
+	private PointerHistory view;
+
+	public PointerHistory() {
+		source = null;
+	}
+
+	private PointerHistory(PointerHistory source) {
+		this.source = source;
+	}
+
+	/**
+	 * Gives the samples in other coordinates, for example the ones of a
+	 * component inside a scrolled container. The view is reused from one call
+	 * to the next.
+	 * 
+	 * @return a view of this history with positions translated by
+	 *         {@code (dx, dy)}, or this history if there is no translation
+	 */
+	public PointerHistory translate(float dx, float dy) {
+		if (dx == 0 && dy == 0) {
+			return this;
+		}
+		if (view == null) {
+			view = new PointerHistory(this);
+		}
+		view.dx = dx;
+		view.dy = dy;
+		return view;
+	}
+
+	void add(float x, float y, long time) {
+		if (size == xs.length) {
+			xs = Arrays.copyOf(xs, size * 2);
+			ys = Arrays.copyOf(ys, size * 2);
+			times = Arrays.copyOf(times, size * 2);
+		}
+		xs[size] = x;
+		ys[size] = y;
+		times[size] = time;
+		size++;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return the number of samples, the last one being the current position of
+	 *         the mouse
+	 */
+	public int size() {
+		return source != null ? source.size() : size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public float getX(int i) {
+		if (source != null) {
+			return source.getX(i) + dx;
+		}
+		checkIndex(i);
+		return xs[i];
+	}
+
+	public float getY(int i) {
+		if (source != null) {
+			return source.getY(i) + dy;
+		}
+		checkIndex(i);
+		return ys[i];
+	}
+
+	/**
+	 * @return the time the sample was received, in nanoseconds
+	 */
+	public long getTime(int i) {
+		if (source != null) {
+			return source.getTime(i);
+		}
+		checkIndex(i);
+		return times[i];
+	}
+
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size);
+		}
+	}
+}
@@ -5,15 +5,21 @@ import static org.lwjgl.glfw.Callbacks.*;
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.system.MemoryUtil.*;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.nanovg.NVGColor;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL11;
 
+import events.InputQueue;
+import events.InputRecorder;
+import events.InputReplayer;
 import events.Keyboard;
 import events.Mouse;
 import utils.Colors;
@@ -27,17 +33,48 @@ public abstract class Application {
 	protected Vector contentScale = new Vector();
 	protected Mouse mouse;
 	protected Keyboard keyboard;
+	private InputQueue inputQueue = new InputQueue();
+	private InputReplayer inputReplayer;
+
+	private final boolean headless;
+	private final Clock clock;
+	private long lastFrameStart = -1;
+	private FrameTimings timings = new FrameTimings();
 
 	private double frameTime = 0;
 	private NVGColor clearColor = NVGColor.create();
 	private List<Font> fonts = new ArrayList<>();
 	private List<Image> images = new ArrayList<>();
 	protected Graphics graphics;
+	private boolean retainedRendering = false;
+	private boolean partialRepaint = false;
 
 	private static FontStyle defaultFontStyle = new FontStyle("", 10f);
 
 	private List<Window> windows = new ArrayList<>();
 	private List<Window> windowsToAdd = new ArrayList<>();
+	/**
+	 * The window receiving the keyboard, the one of the last press or of the last
+	 * focused component
+	 */
+	private Window activeWindow;
+
+	private Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+	private ImageLoader imageLoader = new ImageLoader(2) {
+		@Override
+		protected void imageDecoded() {
+			if (!headless) {
+				glfwPostEmptyEvent();
+			}
+		}
+	};
+
+	private boolean renderOnDemand = false;
+	private double idleTimeout = 0.5;
+	private boolean frameRequested = true;
+	private long renderedFrames = 0;
+	private long skippedFrames = 0;
 
 	/**
 	 * <ul>
@@ -70,6 +107,8 @@ public abstract class Application {
 			NOT_ALLOWED_CURSOR;
 
 	public Application(String title, int width, int height) {
+		headless = false;
+		clock = Clock.SYSTEM;
 		GLFWErrorCallback.createPrint(System.err).set();
 
 		if (!glfwInit())
@@ -111,6 +150,45 @@ public abstract class Application {
 		contentScale.set(sx[0], sy[0]);
 	}
 
+	/**
+	 * Creates a headless application, which does not use GLFW nor OpenGL. It
+	 * runs as fast as possible, its input comes from its
+	 * {@link #getInputQueue() input queue}, filled by hand or by an
+	 * {@link #setInputReplayer(InputReplayer) input replayer}, and it only
+	 * renders if {@link #createGraphics(List)} is overridden to return a
+	 * {@code Graphics} object.
+	 * 
+	 * @param width  the width of the canvas
+	 * @param height the height of the canvas
+	 * @param clock  the time source of the frame timings
+	 */
+	protected Application(int width, int height, Clock clock) {
+		headless = true;
+		this.clock = Objects.requireNonNull(clock);
+		window = NULL;
+		mouse = new Mouse(inputQueue);
+		keyboard = new Keyboard(inputQueue);
+		windowSize.set(width, height);
+		contentSize.set(width, height);
+		contentScale.set(1, 1);
+		ARROW_CURSOR = IBEAM_CURSOR = CROSSHAIR_CURSOR = POINTING_HAND_CURSOR = RESIZE_EW_CURSOR = NULL;
+		RESIZE_NS_CURSOR = RESIZE_NWSE_CURSOR = RESIZE_NESW_CURSOR = RESIZE_ALL_CURSOR = NOT_ALLOWED_CURSOR = NULL;
+	}
+
+	/**
+	 * Creates the {@code Graphics} object the windows are drawn with, once
+	 * {@link #init()} was called. A headless application has none by default,
+	 * and skips the rendering, it can draw with a {@link CountingBackend} to
+	 * measure the cost of the rendering without OpenGL, or with a
+	 * {@link SoftwareBackend} to render without a GPU.
+	 * 
+	 * @param fonts the loaded fonts
+	 * @return the {@code Graphics} object, or {@code null} to skip the rendering
+	 */
+	protected Graphics createGraphics(List<Font> fonts) {
+		return headless ? null : new Graphics(Graphics.ANTIALIAS, fonts);
+	}
+
 	/**
 	 * may be overriden
 	 * 
@@ -141,19 +219,26 @@ public abstract class Application {
 	}
 
 	private void initCallBacks() {
-		mouse = new Mouse(this);
-		keyboard = new Keyboard(this);
+		mouse = new Mouse(this, inputQueue);
+		keyboard = new Keyboard(this, inputQueue);
 
 		glfwSetWindowSizeCallback(window, (handle, w, h) -> {
 			windowSize.set(w, h);
+			frameRequested = true;
 		});
 
 		glfwSetFramebufferSizeCallback(window, (handle, w, h) -> {
 			contentSize.set(w, h);
+			frameRequested = true;
 		});
 
 		glfwSetWindowContentScaleCallback(window, (handle, xscale, yscale) -> {
 			contentScale.set(xscale, yscale);
+			frameRequested = true;
+		});
+
+		glfwSetWindowRefreshCallback(window, (handle) -> {
+			frameRequested = true;
 		});
 	}
 
@@ -183,21 +268,117 @@ public abstract class Application {
 	 *               </p>
 	 */
 	public void setCursor(long cursor) {
-		glfwSetCursor(window, cursor);
+		if (!headless) {
+			glfwSetCursor(window, cursor);
+		}
 	}
 
 	public void loadFont(String name, String filePath) {
 		fonts.add(new Font(name, filePath));
 	}
 
+	/**
+	 * Loads an image on the calling thread.
+	 * 
+	 * @see #loadImageAsync(String, int, Image)
+	 */
 	public Image loadImage(String path, int imageFlags) {
 		Image image = new Image(path, imageFlags);
 		images.add(image);
 		return image;
 	}
 
+	/**
+	 * Loads an image in the background. The returned image is drawn as its
+	 * placeholder until it is ready. The components that drew the placeholder
+	 * are repainted when it is.
+	 * 
+	 * @param path        the file path to the image
+	 * @param imageFlags  the NanoVG image flags
+	 * @param placeholder the image drawn while this one is loading, or
+	 *                    {@code null} to draw nothing
+	 * @see ImageLoader
+	 */
+	public Image loadImageAsync(String path, int imageFlags, Image placeholder) {
+		Image image = imageLoader.load(path, imageFlags, placeholder);
+		images.add(image);
+		return image;
+	}
+
+	public ImageLoader getImageLoader() {
+		return imageLoader;
+	}
+
+	/**
+	 * Starts writing the input received by this application to a file, which
+	 * can be replayed with an {@link events.InputReplayer InputReplayer}.
+	 * 
+	 * @throws IOException           if the file cannot be created
+	 * @throws IllegalStateException if the input is already being recorded
+	 */
+	public void startRecording(String path) throws IOException {
+		if (inputQueue.getRecorder() != null) {
+			throw new IllegalStateException("The input is already being recorded.");
+		}
+		inputQueue.setRecorder(new InputRecorder(path));
+	}
+
+	/**
+	 * Stops the recording started by {@link #startRecording(String)}, if any.
+	 * 
+	 * @throws IOException if the end of the file cannot be written
+	 */
+	public void stopRecording() throws IOException {
+		InputRecorder recorder = inputQueue.getRecorder();
+		if (recorder != null) {
+			inputQueue.setRecorder(null);
+			recorder.close();
+		}
+	}
+
 	public void addWindow(Window window) {
+		window.application = this;
 		windowsToAdd.add(window);
+		requestFrame();
+	}
+
+	/**
+	 * @return the window receiving the key and character events, or {@code null}
+	 * @see Window#activate()
+	 */
+	public Window getActiveWindow() {
+		return activeWindow;
+	}
+
+	void setActiveWindow(Window window) {
+		if (activeWindow != window) {
+			activeWindow = window;
+			frameRequested = true;
+		}
+	}
+
+	/**
+	 * Runs a task on the rendering thread, before the next call to
+	 * {@link #update()}. This method can be called from any thread, it wakes the
+	 * application up if it is waiting for events.
+	 * 
+	 * @param task the task to run
+	 */
+	public void post(Runnable task) {
+		tasks.add(task);
+		if (!headless) {
+			glfwPostEmptyEvent();
+		}
+	}
+
+	/**
+	 * Makes sure the next frame is rendered, even in render on demand mode.
+	 * Animations must call it every frame while they are running.
+	 * 
+	 * @see #setRenderOnDemand(boolean)
+	 */
+	public void requestFrame() {
+		frameRequested = true;
 	}
 
 	/**
@@ -206,10 +387,22 @@ public abstract class Application {
 	 */
 	public void run() {
 		init();
-		graphics = new Graphics(Graphics.ANTIALIAS, fonts);
+		graphics = createGraphics(fonts);
+		if (graphics != null) {
+			graphics.setRetainedMode(retainedRendering);
+		}
 		while (!shouldClose()) {
 			privateUpdate();
-			privateRender();
+			if (!renderOnDemand || needsRender()) {
+				frameRequested = false;
+				long start = clock.nanoTime();
+				privateRender();
+				timings.add(FrameTimings.RENDER, clock.nanoTime() - start);
+				renderedFrames++;
+			} else {
+				skippedFrames++;
+			}
+			timings.endFrame();
 		}
 		privateDestroy();
 		destroy();
@@ -220,19 +413,58 @@ public abstract class Application {
 	protected abstract void init();
 
 	protected void privateUpdate() {
-		frameTime = glfwGetTime();
-		glfwSetTime(0);
+		long start = clock.nanoTime();
+		frameTime = lastFrameStart < 0 ? 0 : (start - lastFrameStart) / 1.0e+9;
+		lastFrameStart = start;
 		setCursor(ARROW_CURSOR);
 
-		mouse.prepare();
-		keyboard.prepare();
+		InputRecorder recorder = inputQueue.getRecorder();
+		if (recorder != null) {
+			recorder.nextFrame();
+		}
+
+		if (headless) {
+			if (inputReplayer != null) {
+				inputReplayer.nextFrame(inputQueue);
+			}
+		} else if (renderOnDemand && !needsRender() && tasks.isEmpty() && !imageLoader.hasDecodedImages()) {
+			glfwWaitEventsTimeout(idleTimeout);
+			// the time spent waiting is not part of the frame
+			start = clock.nanoTime();
+		} else {
+			glfwPollEvents();
+		}
+		if (!inputQueue.isEmpty()) {
+			frameRequested = true;
+		}
+		long time = clock.nanoTime();
+		timings.add(FrameTimings.INPUT, time - start);
+		start = time;
+
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			task.run();
+			frameRequested = true;
+		}
+
+		if (graphics != null && imageLoader.update() > 0) {
+			// the components that drew the placeholders were repainted
+			frameRequested = true;
+		}
 
-		glfwPollEvents();
 		update();
 
 		windows.addAll(windowsToAdd);
 		windowsToAdd.clear();
 
+		time = clock.nanoTime();
+		timings.add(FrameTimings.UPDATE, time - start);
+		start = time;
+		InputDispatcher.dispatch(inputQueue, mouse, keyboard, windows);
+		time = clock.nanoTime();
+		timings.add(FrameTimings.INPUT, time - start);
+		start = time;
+
 		List<Window> windowsToRemove = new ArrayList<>();
 
 		for (Window w : windows) {
@@ -243,52 +475,158 @@ public abstract class Application {
 		}
 
 		windows.removeAll(windowsToRemove);
+		for (Window w : windowsToRemove) {
+			frameRequested = true;
+			w.application = null;
+			if (activeWindow == w) {
+				activeWindow = null;
+			}
+			if (graphics != null) {
+				w.deleteCache(graphics);
+			}
+			w.deleteLayers(graphics);
+		}
 		windowsToRemove.clear();
+		timings.add(FrameTimings.UPDATE, clock.nanoTime() - start);
 	}
 	
 	protected abstract void update();
 
+	/**
+	 * @return {@code true} if the next frame must be rendered in render on demand
+	 *         mode : a frame was requested, input was received, a window was
+	 *         damaged or components are animated
+	 */
+	private boolean needsRender() {
+		if (frameRequested) {
+			return true;
+		}
+		for (Window w : windows) {
+			if (!w.getDamage().isEmpty() || w.isAnimating()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	protected void privateRender() {
-		GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
-		GL11.glViewport(0, 0, Math.round(contentSize.x()), Math.round(contentSize.y()));
-		GL11.glClearColor(clearColor.r(), clearColor.g(), clearColor.b(), 1f);
+		for (Window w : windows) {
+			w.releaseLayers(graphics);
+		}
+		if (graphics == null) {
+			return;
+		}
+		for (Window w : windows) {
+			w.renderLayers(graphics, contentSize, contentScale);
+		}
+		if (partialRepaint) {
+			for (Window w : windows) {
+				w.renderDamage(graphics, contentSize, contentScale);
+			}
+		}
+
+		if (!headless) {
+			GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
+			GL11.glViewport(0, 0, Math.round(contentSize.x()), Math.round(contentSize.y()));
+			GL11.glClearColor(clearColor.r(), clearColor.g(), clearColor.b(), 1f);
+		}
 		render();
 
 		graphics.beginFrame(contentSize, contentScale);
+		if (headless) {
+			graphics.clear(clearColor.r(), clearColor.g(), clearColor.b(), 1f);
+		}
 		for (Window w : windows) {
-			w.render(graphics);
+			if (partialRepaint) {
+				w.renderCache(graphics);
+			} else {
+				w.render(graphics);
+			}
 		}
 
 		graphics.endFrame();
 
-		glfwSwapBuffers(window);
+		if (!headless) {
+			glfwSwapBuffers(window);
+		}
 	}
 	
 	protected abstract void render();
 
 	private final void privateDestroy() {
-		glfwFreeCallbacks(window);
-		glfwDestroyWindow(window);
+		if (!headless) {
+			glfwFreeCallbacks(window);
+			glfwDestroyWindow(window);
+		}
 
-		graphics.destroy();
+		if (graphics != null) {
+			for (Window w : windows) {
+				w.deleteCache(graphics);
+			}
+			graphics.destroy();
+		}
 
+		imageLoader.shutdown();
+		try {
+			stopRecording();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not close the input recording", e);
+		}
 		for (Image i : images) {
 			i.delete();
 		}
 
-		glfwTerminate();
-		glfwSetErrorCallback(null).free();
+		if (!headless) {
+			glfwTerminate();
+			glfwSetErrorCallback(null).free();
+		}
 	}
 
 	protected abstract void destroy();
 
 	/**
-	 * @return the glfw window
+	 * @return the glfw window, or {@code NULL} for a headless application
 	 */
 	public long getHandle() {
 		return window;
 	}
 
+	public boolean isHeadless() {
+		return headless;
+	}
+
+	/**
+	 * @return the queue the input records are received in. Records can be
+	 *         pushed into it to simulate input.
+	 */
+	public InputQueue getInputQueue() {
+		return inputQueue;
+	}
+
+	/**
+	 * @param replayer the recorded session fed into the input queue of this
+	 *                 headless application, one recorded frame per frame, or
+	 *                 {@code null}
+	 * @throws IllegalStateException if this application is not headless
+	 */
+	public void setInputReplayer(InputReplayer replayer) {
+		if (!headless) {
+			throw new IllegalStateException("Only a headless application can replay input.");
+		}
+		this.inputReplayer = replayer;
+	}
+
+	/**
+	 * @return the time spent in each phase of the frames
+	 */
+	public FrameTimings getFrameTimings() {
+		return timings;
+	}
+
+	public Clock getClock() {
+		return clock;
+	}
+
 	public Vectorc getContentSize() {
 		return contentSize;
 	}
@@ -297,16 +635,99 @@ public abstract class Application {
 		return contentScale;
 	}
 
+	/**
+	 * Enables or disables the retained rendering of the components. Once
+	 * enabled, a component only calls its {@code ComponentUI} when it has been
+	 * repainted, and replays its recorded drawing calls otherwise.
+	 * 
+	 * @see Graphics#setRetainedMode(boolean)
+	 * @see Component#repaint()
+	 */
+	public void setRetainedRendering(boolean retainedRendering) {
+		this.retainedRendering = retainedRendering;
+		if (graphics != null) {
+			graphics.setRetainedMode(retainedRendering);
+		}
+	}
+
+	public boolean isRetainedRendering() {
+		return retainedRendering;
+	}
+
+	/**
+	 * Enables or disables the partial repaints. Once enabled, each window is
+	 * drawn into an offscreen cache where only the regions damaged since the
+	 * previous frame are drawn again, the cache is then copied to the screen.
+	 * 
+	 * @see Window#getDamage()
+	 * @see Component#repaint()
+	 */
+	public void setPartialRepaint(boolean partialRepaint) {
+		if (this.partialRepaint != partialRepaint) {
+			this.partialRepaint = partialRepaint;
+			for (Window w : windows) {
+				w.repaint();
+			}
+		}
+	}
+
+	public boolean isPartialRepaint() {
+		return partialRepaint;
+	}
+
+	/**
+	 * Enables or disables the render on demand mode. Once enabled, the
+	 * application waits for events instead of rendering at every vsync, and
+	 * only renders a frame when input was received, a component was repainted,
+	 * a task was posted, a frame was requested or components receive ticks.
+	 * 
+	 * @see #requestFrame()
+	 * @see #post(Runnable)
+	 * @see #setIdleTimeout(double)
+	 */
+	public void setRenderOnDemand(boolean renderOnDemand) {
+		this.renderOnDemand = renderOnDemand;
+		requestFrame();
+	}
+
+	public boolean isRenderOnDemand() {
+		return renderOnDemand;
+	}
+
+	/**
+	 * @param idleTimeout the maximum time to wait for events in render on demand
+	 *                    mode, in seconds. {@link #update()} is called at least
+	 *                    once per timeout.
+	 */
+	public void setIdleTimeout(double idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * @return the number of frames rendered since the application started
+	 */
+	public long getRenderedFrames() {
+		return renderedFrames;
+	}
+
+	/**
+	 * @return the number of frames that were not rendered because nothing
+	 *         changed, in render on demand mode
+	 */
+	public long getSkippedFrames() {
+		return skippedFrames;
+	}
+
 	public void setBackground(float r, float g, float b) {
 		Colors.rgb(r, g, b, clearColor);
 	}
 
 	/**
-	 * @return The time the last frame took to render, in seconds.
+	 * @return The time between the start of the last two frames, in seconds.
 	 *         <p>
 	 *         <strong>Note</strong> : <br>
-	 *         The frame time is measured with {@link GLFW#glfwGetTime()
-	 *         glfwGetTime()}
+	 *         The frame time is measured with the {@link #getClock() clock} of
+	 *         this application
 	 *         </p>
 	 */
 	public double getFrameTime() {
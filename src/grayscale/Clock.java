@@ -0,0 +1,40 @@
+package grayscale;
+
+/**
+ * The time source of an {@link Application}, used to measure the frame time
+ * and the duration of each phase of a frame. A headless application can be
+ * given a {@link Manual} clock to run with a deterministic time.
+ *
+ * @author Niels
+ */
+public interface Clock {
+	/**
+	 * The clock of {@link System#nanoTime()}
+	 */
+	public static final Clock SYSTEM = System::nanoTime;
+
+	/**
+	 * @return the current time, in nanoseconds, from an arbitrary origin
+	 */
+	long nanoTime();
+
+	/**
+	 * A clock that only moves when told to.
+	 */
+	public static class Manual implements Clock {
+		private long time = 0;
+
+		@Override
+		public long nanoTime() {
+			return time;
+		}
+
+		public void set(long time) {
+			this.time = time;
+		}
+
+		public void advance(long nanos) {
+			time += nanos;
+		}
+	}
+}
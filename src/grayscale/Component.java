@@ -1,6 +1,7 @@
 package grayscale;
 
 import java.util.ArrayList;
+import java.util.Collections;
 
 import java.util.List;
 
@@ -9,10 +10,10 @@ import org.lwjgl.nanovg.NVGColor;
 import events.DropTargetListener;
 import events.KeyBinding;
 import events.KeyEvent;
-import events.Keyboard;
 import events.KeyboardListener;
 import events.Mouse;
 import events.MouseListener;
+import events.PointerHistory;
 import layouts.DynamicRow;
 import utils.ColorSetter;
 
@@ -22,30 +23,63 @@ public abstract class Component {
 	 */
 	public static final int TOP = 0, LEFT = 1, BOTTOM = 2, RIGHT = 3, CENTER = 4;
 
+	private Component parent;
+
 	/**
-	 * The component that has the focus --> only one component can be focused
+	 * Maintained by the window: {@code focused} if this component has the focus
+	 * of its window, {@code onFocusPath} if it or one of its descendants has it
 	 */
-	private static Component FOCUSED = null;
+	boolean focused = false;
+	boolean onFocusPath = false;
 
-	private Component parent;
+	/**
+	 * The window this component is the content or the decoration of. Only set on
+	 * root components.
+	 */
+	Window window;
 
 	// not updated
 	private boolean visible = true;
 	private boolean disabled = false;
 
+	/**
+	 * if true the children of this component are clipped to its bounds
+	 */
+	private boolean clipChildren = false;
+
+	/**
+	 * if true this component and its children are drawn into an offscreen layer
+	 */
+	private boolean cacheAsLayer = false;
+
 	/**
 	 * if true this component will listen to all events if its parent is focused
 	 */
 	private boolean isGlass = false;
 
+	/**
+	 * The scroll offset of a scrolling component: its children are laid out in
+	 * the coordinates of its content and drawn translated by minus this offset
+	 */
+	private float scrollX = 0, scrollY = 0;
+	/**
+	 * The hit test index of the children, if this component scrolls them
+	 */
+	HitTestIndex contentIndex;
+
 	private DropTargetListener dropListener;
 	private MouseListener mouseListener;
 	private KeyboardListener keyboardListener;
 	private List<KeyBinding> bindings = new ArrayList<>();
 
 	private Layout layout = new DynamicRow(0, LEFT, CENTER);
+	/**
+	 * The constraints of this component for the layout of its parent
+	 */
+	private Object layoutData;
 	private ComponentUI componentUI;
 	private List<Component> children = new ArrayList<>();
+	private List<Component> childrenView = Collections.unmodifiableList(children);
 
 	protected NVGColor background = NVGColor.create();
 	protected NVGColor foreground = NVGColor.create();
@@ -61,162 +95,548 @@ public abstract class Component {
 
 	protected Insets insets = new Insets();
 
+	/**
+	 * Incremented each time the layout of this component or of one of its
+	 * descendants is invalidated. The results of the measure and arrange passes
+	 * are reused while they were computed at the current generation.
+	 */
+	private int layoutGeneration = 0;
+	private int measuredGeneration = -1, arrangedGeneration = -1;
+	/**
+	 * The available size the desired size was measured for
+	 */
+	private float measuredMaxWidth, measuredMaxHeight;
+	private final Vector desiredSize = new Vector();
+
 	private boolean hovered = false;
+	/**
+	 * The value of {@code hovered} the listener was last notified of
+	 */
+	private boolean notifiedHovered = false;
+
+	/**
+	 * The cells of the {@link HitTestIndex} of the window this component is in,
+	 * {@code cellX1} is -1 if it is in none
+	 */
+	int cellX1 = -1, cellY1, cellX2, cellY2;
+	boolean indexMoved = false;
+	/**
+	 * Equal to the hover stamp of the window if a child of this component is
+	 * under the mouse
+	 */
+	int childHoverStamp;
+
+	/**
+	 * The drawing calls of the {@code ComponentUI}, used in retained mode
+	 */
+	private DisplayList displayList;
+	private boolean repaintNeeded = true;
+
+	/**
+	 * true if the offscreen layer of this component must be drawn again
+	 */
+	private boolean layerDirty = true;
+
+	/**
+	 * For each mouse button, true if it was pressed while this component was
+	 * hovered
+	 */
+	private boolean[] pressStarted = new boolean[3];
 
-	private boolean pressLstartedOnComp = false;
-	private boolean pressWstartedOnComp = false;
-	private boolean pressRstartedOnComp = false;
+	/**
+	 * if true the ComponentUI is updated every frame
+	 */
+	private boolean ticking = false;
+
+	/**
+	 * Used by the {@link EventRouter} to build the event paths
+	 */
+	int routeStamp;
+	int routeDepth;
 
 	protected Component(ComponentUI componentUI) {
 		setUI(componentUI);
 	}
 
 	/**
-	 * This method will update and recalculate all of the child's bounds as well
+	 * The arrange pass: sets the bounds of this component, then arranges its
+	 * children with its layout. The children are skipped if the bounds did not
+	 * change and the layout of this subtree was not invalidated since it was
+	 * last arranged.
 	 * 
-	 * @param b the new bounds for this component
+	 * @param b the new bounds for this component, its insets included
 	 */
 	public void setBounds(Rectanglec b) {
+		double x = bounds.getX(), y = bounds.getY(), w = bounds.getWidth(), h = bounds.getHeight();
 		bounds.set(b).addInsets(insets);
+		boolean moved = x != bounds.getX() || y != bounds.getY() || w != bounds.getWidth()
+				|| h != bounds.getHeight();
+		if (moved) {
+			damage(x, y, w, h);
+			repaint();
+			HitTestIndex index = getHitTestIndex();
+			if (index != null) {
+				index.moved(this);
+			}
+		} else if (arrangedGeneration == layoutGeneration) {
+			return;
+		}
 
+		arrangedGeneration = layoutGeneration;
 		if (!children.isEmpty()) {
-			layout.update(children, bounds);
+			layout.arrange(children, bounds);
 		}
 	}
 
 	/**
-	 * if disabled, the child class won't be updated
+	 * The measure pass: computes the size this component wants, its insets
+	 * included, within the available size. It is the prefered size if set,
+	 * otherwise the size given by {@link #measureContent(float, float, Vector)}.
+	 * <p>
+	 * The result is cached until the layout of this component is invalidated or
+	 * the available size changes.
+	 * </p>
+	 * 
+	 * @param maxWidth  the available width, {@link Float#POSITIVE_INFINITY} if
+	 *                  unbounded
+	 * @param maxHeight the available height, {@link Float#POSITIVE_INFINITY} if
+	 *                  unbounded
+	 * @return the desired size, overwritten by the next measure of this
+	 *         component
 	 */
-	public final void update(Mouse mouse, Keyboard keyboard) {
-		testMouse(mouse);
-		testKeyboard(keyboard);
-
-		if (dropListener != null && hovered && !isDisabled()) {
-			List<String> drop = mouse.consumeDrop();
-			if (!drop.isEmpty()) {
-				dropListener.acceptDrop(this, drop);
-			}
+	public Vectorc measure(float maxWidth, float maxHeight) {
+		if (measuredGeneration == layoutGeneration && measuredMaxWidth == maxWidth
+				&& measuredMaxHeight == maxHeight) {
+			return desiredSize;
 		}
+		measuredGeneration = layoutGeneration;
+		measuredMaxWidth = maxWidth;
+		measuredMaxHeight = maxHeight;
+		if (hasPreferedSize()) {
+			desiredSize.set(preferedSize.getWidth(), preferedSize.getHeight());
+		} else {
+			float iw = insets.left + insets.right, ih = insets.top + insets.bottom;
+			measureContent(Math.max(0, maxWidth - iw), Math.max(0, maxHeight - ih), desiredSize);
+			desiredSize.add(iw, ih);
+		}
+		return desiredSize;
+	}
 
-		componentUI.update(this);
-
-		children.forEach((c) -> c.update(mouse, keyboard));
+	/**
+	 * Computes the size the content of this component wants, without its
+	 * insets. By default, the size its layout needs for its children.
+	 * <p>
+	 * A component measuring its own content must call
+	 * {@link #invalidateLayout()} when that content changes.
+	 * </p>
+	 * 
+	 * @param dest receives the desired size
+	 */
+	protected void measureContent(float maxWidth, float maxHeight, Vector dest) {
+		if (children.isEmpty()) {
+			dest.set(0, 0);
+		} else {
+			layout.measure(children, maxWidth, maxHeight, dest);
+		}
 	}
 
-	private void testMouse(Mouse mouse) {
-		Vectorc pos = mouse.getPos(), prevPos = mouse.getPrevPos();
-		boolean prevHovered = hovered;
+	/**
+	 * Discards the cached layout of this component and of its ancestors. They
+	 * are measured and arranged again on the next update of their window, while
+	 * the other branches keep their bounds.
+	 */
+	public void invalidateLayout() {
+		Component root = this;
+		for (Component c = this; c != null; c = c.parent) {
+			c.layoutGeneration++;
+			root = c;
+		}
+		if (root.window != null) {
+			root.window.layoutInvalidated();
+		}
+	}
 
-		boolean anyChildHovered = children.stream().allMatch((c) -> !c.bounds.contains(pos));
-		hovered = bounds.contains(pos) && (isGlass || anyChildHovered);
+	// Event dispatch, done by the EventRouter of the window ---
 
+	/**
+	 * Notifies the listener if the mouse entered or exited this component.
+	 */
+	void fireHoverChange() {
+		if (notifiedHovered == hovered) {
+			return;
+		}
+		notifiedHovered = hovered;
 		if (isDisabled() || mouseListener == null) {
 			return;
 		}
-
-		if (!prevHovered && hovered) {
+		if (hovered) {
 			mouseListener.mouseEntered(this);
-		} else if (prevHovered && !hovered) {
+		} else {
 			mouseListener.mouseExited(this);
 		}
+	}
 
+	void fireMouseMoved(Mouse mouse) {
+		if (isDisabled() || mouseListener == null || !hovered) {
+			return;
+		}
+		Vectorc pos = toLocal(mouse.getPos()), prevPos = toLocal(mouse.getPrevPos());
+		PointerHistory history = toLocal(mouse.getHistory());
 		int mods = mouse.getModifiers();
+		if (mouse.draggedL()) {
+			mouseListener.mouseDragged(this, Mouse.BTN_LEFT, mods, toLocal(mouse.getLPressedStartPos()), prevPos, pos,
+					history);
+		} else if (mouse.draggedW()) {
+			mouseListener.mouseDragged(this, Mouse.BTN_MIDDLE, mods, toLocal(mouse.getWPressedStartPos()), prevPos, pos,
+					history);
+		} else if (mouse.draggedR()) {
+			mouseListener.mouseDragged(this, Mouse.BTN_RIGHT, mods, toLocal(mouse.getRPressedStartPos()), prevPos, pos,
+					history);
+		} else {
+			mouseListener.mouseMoved(this, prevPos, pos);
+		}
+	}
 
-		if (mouse.isMoved() && hovered) {
-			if (mouse.draggedL()) {
-				mouseListener.mouseDragged(this, Mouse.BTN_LEFT, mods, mouse.getLPressedStartPos(), prevPos, pos);
-			} else if (mouse.draggedW()) {
-				mouseListener.mouseDragged(this, Mouse.BTN_MIDDLE, mods, mouse.getWPressedStartPos(), prevPos, pos);
-			} else if (mouse.draggedR()) {
-				mouseListener.mouseDragged(this, Mouse.BTN_RIGHT, mods, mouse.getRPressedStartPos(), prevPos, pos);
-			} else {
-				mouseListener.mouseMoved(this, prevPos, pos);
-			}
+	void fireMousePressed(Mouse mouse, int button) {
+		if (isDisabled() || mouseListener == null) {
+			return;
 		}
+		pressStarted[button] = hovered;
+		mouseListener.mousePressed(this, button, mouse.getModifiers(), toLocal(mouse.getPos()));
+	}
 
-		if (mouse.pressedL()) {
-			pressLstartedOnComp = hovered;
-			mouseListener.mousePressed(this, Mouse.BTN_LEFT, mods, pos);
-		} else if (mouse.releasedL()) {
-			if (pressLstartedOnComp) {
-				mouseListener.mouseClicked(this, Mouse.BTN_LEFT, mods, pos, mouse.clickedL());
-			} else {
-				mouseListener.mouseReleased(this, Mouse.BTN_LEFT, mods, pos, hovered);
-			}
-			pressLstartedOnComp = false;
+	/**
+	 * A release is a click if the press started on this component, otherwise
+	 * it is a drop if the mouse is on this component.
+	 */
+	void fireMouseReleased(Mouse mouse, int button) {
+		if (isDisabled() || mouseListener == null) {
+			return;
 		}
+		int mods = mouse.getModifiers();
+		if (pressStarted[button]) {
+			mouseListener.mouseClicked(this, button, mods, toLocal(mouse.getPos()), mouse.clicked(button));
+		} else {
+			mouseListener.mouseReleased(this, button, mods, toLocal(mouse.getPos()), hovered);
+		}
+		pressStarted[button] = false;
+	}
 
-		if (mouse.pressedW()) {
-			pressWstartedOnComp = hovered;
-			mouseListener.mousePressed(this, Mouse.BTN_MIDDLE, mods, pos);
-		} else if (mouse.releasedW()) {
-			if (pressWstartedOnComp) {
-				mouseListener.mouseClicked(this, Mouse.BTN_MIDDLE, mods, pos, mouse.clickedW());
-			} else {
-				mouseListener.mouseReleased(this, Mouse.BTN_MIDDLE, mods, pos, hovered);
-			}
-			pressWstartedOnComp = false;
+	/**
+	 * @return {@code true} if the scroll was consumed
+	 */
+	boolean fireMouseScrolled(Mouse mouse) {
+		if (isDisabled() || mouseListener == null) {
+			return false;
 		}
+		return mouseListener.mouseScrolled(this, mouse.getModifiers(), toLocal(mouse.getPos()), mouse.getScroll());
+	}
 
-		if (mouse.pressedR()) {
-			pressRstartedOnComp = hovered;
-			mouseListener.mousePressed(this, Mouse.BTN_RIGHT, mods, pos);
-		} else if (mouse.releasedR()) {
-			if (pressRstartedOnComp) {
-				mouseListener.mouseClicked(this, Mouse.BTN_RIGHT, mods, pos, mouse.clickedR());
-			} else {
-				mouseListener.mouseReleased(this, Mouse.BTN_RIGHT, mods, pos, hovered);
-			}
-			pressRstartedOnComp = false;
+	/**
+	 * Converts a position in the window to the coordinates of the bounds of
+	 * this component, that differ inside of scrolling components.
+	 */
+	private Vectorc toLocal(Vectorc pos) {
+		float dx = 0, dy = 0;
+		for (Component p = parent; p != null; p = p.parent) {
+			dx += p.scrollX;
+			dy += p.scrollY;
+		}
+		if (dx == 0 && dy == 0) {
+			return pos;
 		}
+		return new Vector(pos).add(dx, dy);
 	}
 
-	private void testKeyboard(Keyboard keyboard) {
-		boolean focused = isFocused();
-		boolean descendantFocused = descendantFocused();
+	/**
+	 * @see #toLocal(Vectorc)
+	 */
+	private PointerHistory toLocal(PointerHistory history) {
+		float dx = 0, dy = 0;
+		for (Component p = parent; p != null; p = p.parent) {
+			dx += p.scrollX;
+			dy += p.scrollY;
+		}
+		return history.translate(dx, dy);
+	}
 
-		for (KeyEvent e : keyboard.getEvents()) {
-			for (KeyBinding kb : bindings) {
-				if (kb.test(e.getKey(), e.getAction(), e.getMods(), focused, descendantFocused)) {
-					kb.performAction();
-				}
+	void fireDrop(Mouse mouse) {
+		if (dropListener != null && hovered && !isDisabled()) {
+			List<String> drop = mouse.consumeDrop();
+			if (!drop.isEmpty()) {
+				dropListener.acceptDrop(this, drop);
 			}
 		}
+	}
+
+	/**
+	 * Called on the focused component, once its key bindings and the ones of its
+	 * ancestors were tested.
+	 */
+	void fireKeyEvent(KeyEvent e) {
+		if (keyboardListener != null) {
+			keyboardListener.processKeyEvent(this, e);
+		}
+	}
+
+	/**
+	 * @return {@code true} if the mouse listener of this component receives the
+	 *         events before its descendants
+	 */
+	boolean capturesMouse() {
+		return mouseListener != null && mouseListener.isCapture();
+	}
 
-		if (focused && keyboardListener != null) {
-			for (KeyEvent e : keyboard.getEvents()) {
-				keyboardListener.processKeyEvent(this, e);
+	/**
+	 * Calls {@link ComponentUI#update(Component)}, for the components that
+	 * receive ticks.
+	 */
+	void tick() {
+		componentUI.update(this);
+	}
+
+	public boolean isTicking() {
+		return ticking;
+	}
+
+	/**
+	 * Components only receive the events that concern them. A component whose
+	 * {@code ComponentUI} must be updated every frame, for example to animate
+	 * it, must request it with this method.
+	 * 
+	 * @param ticking if true, {@link ComponentUI#update(Component)} is called
+	 *                every frame
+	 */
+	public void setTicking(boolean ticking) {
+		if (this.ticking != ticking) {
+			this.ticking = ticking;
+			Window window = getWindow();
+			if (window != null) {
+				window.getEventRouter().treeChanged();
 			}
 		}
 	}
 
+	/**
+	 * Draws this component and its children.
+	 * <p>
+	 * The children are expected to lie within the bounds of their parent, so the
+	 * whole subtree is skipped when the bounds of this component are outside of
+	 * the visible region of {@code g}.
+	 * </p>
+	 * 
+	 * @see Graphics#isClipped(Rectanglec)
+	 */
 	public void render(Graphics g) {
 		if (!visible || bounds.isEmpty()) {
 			return;
 		}
+		if (g.isClipped(bounds)) {
+			g.getCurrentStats().culledComponents++;
+			return;
+		}
+		if (cacheAsLayer && g.getLayerCache().draw(this, g)) {
+			g.getCurrentStats().drawnComponents++;
+			return;
+		}
+		renderContent(g);
+	}
 
-		componentUI.render(this, g);
+	/**
+	 * Draws this component and its children, ignoring its layer.
+	 */
+	void renderContent(Graphics g) {
+		if (g.isInDirtyRegion(bounds)) {
+			g.setDrawnComponent(this);
+			if (g.isRetainedMode()) {
+				renderRetained(g);
+			} else {
+				componentUI.render(this, g);
+			}
+			g.setDrawnComponent(null);
+			g.getCurrentStats().drawnComponents++;
+		}
+
+		if (children.isEmpty()) {
+			return;
+		}
+		boolean scrolled = scrollX != 0 || scrollY != 0;
+		if (clipChildren || scrolled) {
+			g.save();
+		}
+		if (clipChildren) {
+			g.intersectScissor(bounds.x(), bounds.y(), bounds.width(), bounds.height());
+		}
+		if (scrolled) {
+			g.translate(-scrollX, -scrollY);
+		}
 		for (Component c : children) {
 			c.render(g);
 		}
+		if (clipChildren || scrolled) {
+			g.restore();
+		}
+	}
+
+	/**
+	 * Draws again the outdated layers of this subtree. Must be called outside of
+	 * {@link Graphics#beginFrame(Vectorc, Vectorc)} and
+	 * {@link Graphics#endFrame()}.
+	 * 
+	 * @param canvas       the region of the screen, layers outside of it are not
+	 *                     updated
+	 * @param contentScale the content scale
+	 */
+	void renderLayers(Graphics g, Rectanglec canvas, Vectorc contentScale) {
+		if (!visible || bounds.isEmpty() || !canvas.intersects(bounds)) {
+			return;
+		}
+		// the layers of the children are composited in the layer of their parent
+		Rectanglec childCanvas = scrolled(canvas);
+		for (Component c : children) {
+			c.renderLayers(g, childCanvas, contentScale);
+		}
+		if (cacheAsLayer) {
+			g.getLayerCache().update(this, contentScale);
+		}
+	}
+
+	/**
+	 * Replays the display list of this component, or records it again if a
+	 * repaint was requested.
+	 */
+	private void renderRetained(Graphics g) {
+		if (displayList == null) {
+			displayList = new DisplayList();
+		}
+		if (repaintNeeded || !g.isUpToDate(displayList)) {
+			g.beginRecording(displayList);
+			componentUI.render(this, g);
+			g.endRecording();
+			repaintNeeded = false;
+		} else {
+			g.replay(displayList);
+		}
+	}
+
+	/**
+	 * Marks this component as needing to be drawn again. It must be called
+	 * whenever something changes the way this component looks, otherwise the
+	 * old drawing calls will be replayed in retained mode.
+	 * <p>
+	 * The colors returned by {@link #getBackground()} and
+	 * {@link #getForeground()} are mutable, modifying them directly requires a
+	 * call to this method.
+	 * </p>
+	 * 
+	 * @see Graphics#setRetainedMode(boolean)
+	 */
+	public void repaint() {
+		repaintNeeded = true;
+		for (Component c = this; c != null; c = c.parent) {
+			c.layerDirty = true;
+		}
+		damage(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+	}
+
+	/**
+	 * Reports a region of the window that must be drawn again, given in the
+	 * coordinates of the bounds of this component. It is clipped by the
+	 * ancestors clipping their children.
+	 */
+	private void damage(double x, double y, double w, double h) {
+		Component root = this;
+		for (Component p = parent; p != null; p = p.parent) {
+			x -= p.scrollX;
+			y -= p.scrollY;
+			if (p.clipChildren) {
+				Rectangle b = p.bounds;
+				double x2 = Math.min(x + w, b.getMaxX()), y2 = Math.min(y + h, b.getMaxY());
+				x = Math.max(x, b.getMinX());
+				y = Math.max(y, b.getMinY());
+				w = x2 - x;
+				h = y2 - y;
+				if (w <= 0 || h <= 0) {
+					return;
+				}
+			}
+			root = p;
+		}
+		if (root.window != null) {
+			root.window.damage(x, y, w, h);
+		}
+	}
+
+	/**
+	 * Adds to {@code dest} the components of this subtree that intersect
+	 * {@code region}, in the same order as they would be drawn by
+	 * {@link #render(Graphics)}.
+	 */
+	void collectDirty(Rectanglec region, List<Component> dest) {
+		if (!visible || bounds.isEmpty()) {
+			return;
+		}
+		if (region.intersects(bounds)) {
+			dest.add(this);
+		}
+		Rectanglec childRegion = scrolled(region);
+		for (Component c : children) {
+			c.collectDirty(childRegion, dest);
+		}
+	}
+
+	public boolean isRepaintNeeded() {
+		return repaintNeeded;
 	}
 
+	/**
+	 * Gives the focus of its window to this component and makes the window
+	 * active, so that this component receives the keyboard. Each window keeps
+	 * its own focused component, which receives the keyboard again when the
+	 * window is activated again. Does nothing if this component is not in a
+	 * window.
+	 */
 	public void grabFocus() {
-		FOCUSED = this;
+		Window window = getWindow();
+		if (window != null) {
+			window.setFocused(this);
+		}
+	}
+
+	/**
+	 * Removes the focus from this component, if it has it.
+	 */
+	public void releaseFocus() {
+		if (focused) {
+			getWindow().setFocused(null);
+		}
 	}
 
 	public boolean isFocused() {
-		return FOCUSED == this;
+		return focused;
 	}
 
 	/**
 	 * @return true if one of the descendant is focused
 	 */
 	public boolean descendantFocused() {
-		if (!children.isEmpty()) {
-			return children.stream().anyMatch((c) -> c.isFocused() || c.descendantFocused());
+		return onFocusPath && !focused;
+	}
+
+	/**
+	 * @return the window containing this component, or {@code null} if it is not
+	 *         displayed in any window
+	 */
+	public Window getWindow() {
+		Component root = this;
+		while (root.parent != null) {
+			root = root.parent;
 		}
-		return false;
+		return root.window;
+	}
+
+	public Component getParent() {
+		return parent;
 	}
 
 	public float getX() {
@@ -245,6 +665,8 @@ public abstract class Component {
 
 	public void setInsets(Insets insets) {
 		this.insets = insets;
+		repaint();
+		invalidateLayout();
 	}
 
 	public boolean hasPreferedSize() {
@@ -257,6 +679,7 @@ public abstract class Component {
 
 	public void setPreferedSize(Rectanglec preferedSize) {
 		this.preferedSize.set(preferedSize);
+		invalidateLayout();
 	}
 
 	public NVGColor getBackground() {
@@ -265,10 +688,12 @@ public abstract class Component {
 
 	public void setBackground(NVGColor color) {
 		background.set(color);
+		repaint();
 	}
 
 	public void setBackground(ColorSetter color) {
 		color.set(background);
+		repaint();
 	}
 
 	public NVGColor getForeground() {
@@ -277,10 +702,12 @@ public abstract class Component {
 
 	public void setForeground(NVGColor color) {
 		foreground.set(color);
+		repaint();
 	}
 
 	public void setForeground(ColorSetter color) {
 		color.set(foreground);
+		repaint();
 	}
 
 	public boolean isDisabled() {
@@ -300,7 +727,142 @@ public abstract class Component {
 	}
 
 	public void setVisible(boolean visible) {
-		this.visible = visible;
+		if (this.visible != visible) {
+			this.visible = visible;
+			repaint();
+		}
+	}
+
+	public boolean isClipChildren() {
+		return clipChildren;
+	}
+
+	/**
+	 * @param clipChildren if true, the children of this component are not drawn
+	 *                     outside of its bounds
+	 */
+	public void setClipChildren(boolean clipChildren) {
+		if (this.clipChildren != clipChildren) {
+			this.clipChildren = clipChildren;
+			repaint();
+		}
+	}
+
+	public boolean isScrollable() {
+		return contentIndex != null;
+	}
+
+	/**
+	 * Makes this component scroll its children: they are laid out in the
+	 * coordinates of its content, as if they were not scrolled, and drawn
+	 * translated by minus the scroll offset. Scrolling then only changes the
+	 * translation, nothing is laid out again.
+	 * <p>
+	 * The mouse positions given to the listeners of the descendants are in the
+	 * coordinates of their bounds.
+	 * </p>
+	 * 
+	 * @see #setScrollOffset(float, float)
+	 */
+	protected void setScrollable(boolean scrollable) {
+		if (scrollable == isScrollable()) {
+			return;
+		}
+		setScrollOffset(0, 0);
+		contentIndex = scrollable ? new HitTestIndex(this) : null;
+		treeChanged();
+		HitTestIndex index = getHitTestIndex();
+		if (index != null) {
+			// the children move in or out of the index of this component
+			index.invalidate();
+		}
+		repaint();
+	}
+
+	public float getScrollX() {
+		return scrollX;
+	}
+
+	public float getScrollY() {
+		return scrollY;
+	}
+
+	/**
+	 * Sets the position of the content of this scrolling component that is
+	 * drawn at the top left corner of its bounds, relative to the bounds.
+	 * 
+	 * @throws IllegalStateException if this component is not scrollable
+	 */
+	protected void setScrollOffset(float x, float y) {
+		if (x == scrollX && y == scrollY) {
+			return;
+		}
+		if (contentIndex == null) {
+			throw new IllegalStateException("This component does not scroll its children.");
+		}
+		scrollX = x;
+		scrollY = y;
+		for (Component c = this; c != null; c = c.parent) {
+			c.layerDirty = true;
+		}
+		damage(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+		contentIndex.scrolled();
+	}
+
+	/**
+	 * @return {@code r} in the coordinates of the children
+	 */
+	private Rectanglec scrolled(Rectanglec r) {
+		if (scrollX == 0 && scrollY == 0) {
+			return r;
+		}
+		return new Rectangle(r.getX() + scrollX, r.getY() + scrollY, r.getWidth(), r.getHeight());
+	}
+
+	public boolean isCacheAsLayer() {
+		return cacheAsLayer;
+	}
+
+	/**
+	 * Caches this component and its children in an offscreen layer. The layer is
+	 * drawn once and then composited on the next frames, until a component of
+	 * the subtree is repainted or the content scale changes. It is worth it for
+	 * complex subtrees that rarely change.
+	 * <p>
+	 * The children must lie within the bounds of this component.
+	 * </p>
+	 * 
+	 * @see LayerCache
+	 */
+	public void setCacheAsLayer(boolean cacheAsLayer) {
+		if (this.cacheAsLayer != cacheAsLayer) {
+			this.cacheAsLayer = cacheAsLayer;
+			Window window = getWindow();
+			if (!cacheAsLayer && window != null) {
+				window.releaseLayer(this);
+			}
+			repaint();
+		}
+	}
+
+	/**
+	 * Releases the layers of this subtree, when it leaves its window.
+	 */
+	void releaseLayers(Window window) {
+		if (cacheAsLayer) {
+			window.releaseLayer(this);
+		}
+		for (Component c : children) {
+			c.releaseLayers(window);
+		}
+	}
+
+	boolean isLayerDirty() {
+		return layerDirty;
+	}
+
+	void setLayerDirty(boolean layerDirty) {
+		this.layerDirty = layerDirty;
 	}
 
 	public boolean isGlass() {
@@ -313,10 +875,13 @@ public abstract class Component {
 
 	public void addKeyBinding(KeyBinding kb) {
 		bindings.add(kb);
+		bindingsChanged();
 	}
 
 	public void removeKeyBinding(KeyBinding kb) {
-		bindings.remove(kb);
+		if (bindings.remove(kb)) {
+			bindingsChanged();
+		}
 	}
 
 	public DropTargetListener setDropTargetListener(DropTargetListener dropListener) {
@@ -343,27 +908,130 @@ public abstract class Component {
 		}
 		children.add(child);
 		child.parent = this;
+		child.repaint();
+		treeChanged();
+		invalidateLayout();
 	}
 
 	public void remove(Component child) {
 		if (children.remove(child)) {
 			// The child component was owned by this component
+			Window window = getWindow();
+			if (child.onFocusPath) {
+				window.setFocused(null);
+			}
+			if (window != null) {
+				child.releaseLayers(window);
+			}
+			child.repaint();
 			child.parent = null;
+			treeChanged();
+			invalidateLayout();
+		}
+	}
+
+	/**
+	 * Rebuilds the hit test index of the children after a child was added or
+	 * removed.
+	 */
+	private void treeChanged() {
+		Window window = getWindow();
+		if (window != null) {
+			if (contentIndex != null) {
+				contentIndex.invalidate();
+			} else {
+				getHitTestIndex().invalidate();
+			}
+			window.getEventRouter().treeChanged();
+			window.getKeyBindings().invalidate();
 		}
 	}
 
+	/**
+	 * @return the hit test index this component is in: the one of its closest
+	 *         scrolling ancestor, or the one of its window. {@code null} if it is
+	 *         not in a window.
+	 */
+	private HitTestIndex getHitTestIndex() {
+		HitTestIndex index = null;
+		Component root = this;
+		for (Component p = parent; p != null; p = p.parent) {
+			if (index == null) {
+				index = p.contentIndex;
+			}
+			root = p;
+		}
+		if (root.window == null) {
+			return null;
+		}
+		return index != null ? index : root.window.getHitTestIndex();
+	}
+
+	private void bindingsChanged() {
+		Window window = getWindow();
+		if (window != null) {
+			window.getKeyBindings().invalidate();
+		}
+	}
+
+	List<KeyBinding> getKeyBindings() {
+		return bindings;
+	}
+
+	/**
+	 * @return an unmodifiable view of the children of this component
+	 */
+	public List<Component> getChildren() {
+		return childrenView;
+	}
+
+	/**
+	 * Sets whether this component is under the mouse. Called by the window
+	 * before updating its components.
+	 */
+	void setHovered(boolean hovered) {
+		this.hovered = hovered;
+	}
+
 	/**
 	 * Default layout is {@code DynamicRow} with a minimal component width of 0
 	 * 
-	 * @param layout
+	 * @param layout the layout, it lays out this component again when its
+	 *               parameters change
 	 */
 	public void setLayout(Layout layout) {
+		if (this.layout != null && this.layout.owner == this) {
+			this.layout.owner = null;
+		}
 		this.layout = layout;
+		if (layout != null) {
+			layout.owner = this;
+		}
+		invalidateLayout();
+	}
+
+	public Layout getLayout() {
+		return layout;
+	}
+
+	public Object getLayoutData() {
+		return layoutData;
+	}
+
+	/**
+	 * Sets the constraints of this component for the layout of its parent, for
+	 * example a {@link layouts.FlexLayout.Item}. Layouts ignore the data they do
+	 * not know.
+	 */
+	public void setLayoutData(Object layoutData) {
+		this.layoutData = layoutData;
+		invalidateLayout();
 	}
 
 	public void setUI(ComponentUI componentUI) {
 		this.componentUI = componentUI;
 		componentUI.installUI(this);
+		repaint();
 	}
 
 }
@@ -0,0 +1,717 @@
+package grayscale;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGGlyphPosition;
+import org.lwjgl.nanovg.NVGPaint;
+import org.lwjgl.nanovg.NVGTextRow;
+
+/**
+ * A backend that draws nothing and only counts the calls it receives, by kind,
+ * so that the cost of the UI layer can be measured without a GPU. It does not
+ * need an OpenGL context.
+ * <p>
+ * The transform is tracked as NanoVG would, and the text is measured as if
+ * every glyph was {@code fontSize / 2} wide, so that layouts depending on text
+ * measurements still behave plausibly.
+ * </p>
+ *
+ * @author Niels
+ */
+public class CountingBackend implements RenderBackend {
+	/**
+	 * The kinds of calls
+	 */
+	public static final int FRAME = 0, //
+			RESOURCE = 1, //
+			STATE = 2, //
+			PAINT = 3, //
+			TRANSFORM = 4, //
+			SCISSOR = 5, //
+			PATH = 6, //
+			FILL = 7, //
+			STROKE = 8, //
+			TEXT = 9, //
+			MEASURE = 10; //
+
+	private static final int KINDS = 11;
+	private static final int MAX_STATES = 32;
+
+	/**
+	 * The width of a glyph relative to the font size
+	 */
+	private static final float GLYPH_WIDTH = 0.5f;
+	private static final float ASCENDER = 0.8f, DESCENDER = -0.2f;
+
+	private final long[] counts = new long[KINDS];
+
+	private int nextImage = 1;
+	private int nextFont = 0;
+
+	/**
+	 * The state stack, only what the measurements and the transform depend on
+	 */
+	private float[] xforms = new float[6 * MAX_STATES];
+	private float[] fontSizes = new float[MAX_STATES];
+	private float[] letterSpacings = new float[MAX_STATES];
+	private float[] lineHeights = new float[MAX_STATES];
+	private int[] aligns = new int[MAX_STATES];
+	private int state = 0;
+
+	/**
+	 * The text of the last glyph positions measured from a {@code CharSequence}
+	 */
+	private ByteBuffer glyphText;
+	private float[] widest = new float[1];
+
+	public CountingBackend() {
+		resetState();
+	}
+
+	/**
+	 * @param kind one of {@link #FRAME}, {@link #RESOURCE}, {@link #STATE},
+	 *             {@link #PAINT}, {@link #TRANSFORM}, {@link #SCISSOR},
+	 *             {@link #PATH}, {@link #FILL}, {@link #STROKE}, {@link #TEXT}
+	 *             or {@link #MEASURE}
+	 * @return the number of calls of that kind received since the creation of
+	 *         this backend or the last call to {@link #resetCounts()}
+	 */
+	public long getCount(int kind) {
+		if (kind < 0 || kind >= KINDS) {
+			throw new IllegalArgumentException("Unknown kind of call: " + kind);
+		}
+		return counts[kind];
+	}
+
+	/**
+	 * @return the number of calls received, of any kind
+	 */
+	public long getTotalCount() {
+		long total = 0;
+		for (long c : counts) {
+			total += c;
+		}
+		return total;
+	}
+
+	public void resetCounts() {
+		Arrays.fill(counts, 0);
+	}
+
+	@Override
+	public String toString() {
+		return "frames " + counts[FRAME] + ", resources " + counts[RESOURCE] + ", state " + counts[STATE]
+				+ ", paints " + counts[PAINT] + ", transforms " + counts[TRANSFORM] + ", scissors " + counts[SCISSOR]
+				+ ", path " + counts[PATH] + ", fills " + counts[FILL] + ", strokes " + counts[STROKE] + ", text "
+				+ counts[TEXT] + ", measures " + counts[MEASURE];
+	}
+
+	// Frames and resources -----------------------------
+
+	@Override
+	public void beginFrame(float width, float height, float devicePixelRatio) {
+		counts[FRAME]++;
+		state = 0;
+		resetState();
+	}
+
+	@Override
+	public void endFrame() {
+		counts[FRAME]++;
+	}
+
+	@Override
+	public void destroy() {
+		if (glyphText != null) {
+			memFree(glyphText);
+			glyphText = null;
+		}
+	}
+
+	@Override
+	public int createFont(String name, ByteBuffer data) {
+		counts[RESOURCE]++;
+		return nextFont++;
+	}
+
+	@Override
+	public int createImageFromHandle(int textureID, int width, int height, int flags) {
+		counts[RESOURCE]++;
+		return nextImage++;
+	}
+
+	@Override
+	public void deleteImage(int image) {
+		counts[RESOURCE]++;
+	}
+
+	@Override
+	public int createFramebuffer(int width, int height, int flags) {
+		return createImageFromHandle(0, width, height, flags);
+	}
+
+	@Override
+	public void bindFramebuffer(int fbo) {
+		counts[RESOURCE]++;
+	}
+
+	@Override
+	public void deleteFramebuffer(int fbo) {
+		counts[RESOURCE]++;
+	}
+
+	@Override
+	public void viewport(int x, int y, int width, int height) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void clear(float r, float g, float b, float a) {
+		counts[FILL]++;
+	}
+
+	// State --------------------------------------------
+
+	@Override
+	public void save() {
+		counts[STATE]++;
+		if (state == MAX_STATES - 1) {
+			return;
+		}
+		System.arraycopy(xforms, 6 * state, xforms, 6 * (state + 1), 6);
+		fontSizes[state + 1] = fontSizes[state];
+		letterSpacings[state + 1] = letterSpacings[state];
+		lineHeights[state + 1] = lineHeights[state];
+		aligns[state + 1] = aligns[state];
+		state++;
+	}
+
+	@Override
+	public void restore() {
+		counts[STATE]++;
+		if (state > 0) {
+			state--;
+		}
+	}
+
+	@Override
+	public void reset() {
+		counts[STATE]++;
+		resetState();
+	}
+
+	private void resetState() {
+		setTransform(1, 0, 0, 1, 0, 0);
+		fontSizes[state] = 16;
+		letterSpacings[state] = 0;
+		lineHeights[state] = 1;
+		aligns[state] = NVG_ALIGN_LEFT | NVG_ALIGN_BASELINE;
+	}
+
+	@Override
+	public void globalCompositeOperation(int op) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void globalCompositeBlendFunc(int sfactor, int dfactor) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void globalCompositeBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void globalAlpha(float alpha) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void strokeColor(NVGColor color) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void strokePaint(NVGPaint paint) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void fillColor(NVGColor color) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void fillPaint(NVGPaint paint) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void miterLimit(float limit) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void strokeWidth(float size) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void lineCap(int cap) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void lineJoin(int join) {
+		counts[STATE]++;
+	}
+
+	// Paints -------------------------------------------
+
+	@Override
+	public NVGPaint imagePattern(float x, float y, float w, float h, float angle, int image, float alpha,
+			NVGPaint result) {
+		counts[PAINT]++;
+		return result;
+	}
+
+	@Override
+	public NVGPaint boxGradient(float x, float y, float w, float h, float r, float f, NVGColor icol,
+			NVGColor ocol, NVGPaint result) {
+		counts[PAINT]++;
+		return result;
+	}
+
+	@Override
+	public NVGPaint linearGradient(float sx, float sy, float ex, float ey, NVGColor icol, NVGColor ocol,
+			NVGPaint result) {
+		counts[PAINT]++;
+		return result;
+	}
+
+	@Override
+	public NVGPaint radialGradient(float cx, float cy, float inr, float outr, NVGColor icol, NVGColor ocol,
+			NVGPaint result) {
+		counts[PAINT]++;
+		return result;
+	}
+
+	// Transforms and scissor ---------------------------
+
+	private void setTransform(float a, float b, float c, float d, float e, float f) {
+		int i = 6 * state;
+		xforms[i] = a;
+		xforms[i + 1] = b;
+		xforms[i + 2] = c;
+		xforms[i + 3] = d;
+		xforms[i + 4] = e;
+		xforms[i + 5] = f;
+	}
+
+	/**
+	 * Applies {@code [a-f]} before the current transform, as NanoVG does.
+	 */
+	private void premultiply(float a, float b, float c, float d, float e, float f) {
+		counts[TRANSFORM]++;
+		int i = 6 * state;
+		float s0 = xforms[i], s1 = xforms[i + 1], s2 = xforms[i + 2], s3 = xforms[i + 3];
+		float s4 = xforms[i + 4], s5 = xforms[i + 5];
+		setTransform(a * s0 + b * s2, a * s1 + b * s3, c * s0 + d * s2, c * s1 + d * s3, e * s0 + f * s2 + s4,
+				e * s1 + f * s3 + s5);
+	}
+
+	@Override
+	public void resetTransform() {
+		counts[TRANSFORM]++;
+		setTransform(1, 0, 0, 1, 0, 0);
+	}
+
+	@Override
+	public void transform(float a, float b, float c, float d, float e, float f) {
+		premultiply(a, b, c, d, e, f);
+	}
+
+	@Override
+	public void translate(float x, float y) {
+		premultiply(1, 0, 0, 1, x, y);
+	}
+
+	@Override
+	public void rotate(float angle) {
+		float cs = (float) Math.cos(angle), sn = (float) Math.sin(angle);
+		premultiply(cs, sn, -sn, cs, 0, 0);
+	}
+
+	@Override
+	public void skewX(float angle) {
+		premultiply(1, 0, (float) Math.tan(angle), 1, 0, 0);
+	}
+
+	@Override
+	public void skewY(float angle) {
+		premultiply(1, (float) Math.tan(angle), 0, 1, 0, 0);
+	}
+
+	@Override
+	public void scale(float x, float y) {
+		premultiply(x, 0, 0, y, 0, 0);
+	}
+
+	@Override
+	public void currentTransform(float[] dest) {
+		System.arraycopy(xforms, 6 * state, dest, 0, 6);
+	}
+
+	@Override
+	public void scissor(float x, float y, float w, float h) {
+		counts[SCISSOR]++;
+	}
+
+	@Override
+	public void intersectScissor(float x, float y, float w, float h) {
+		counts[SCISSOR]++;
+	}
+
+	@Override
+	public void resetScissor() {
+		counts[SCISSOR]++;
+	}
+
+	// Paths --------------------------------------------
+
+	@Override
+	public void beginPath() {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void moveTo(float x, float y) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void lineTo(float x, float y) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void bezierTo(float c1x, float c1y, float c2x, float c2y, float x, float y) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void quadTo(float cx, float cy, float x, float y) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void arcTo(float x1, float y1, float x2, float y2, float radius) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void closePath() {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void pathWinding(int dir) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void arc(float cx, float cy, float r, float a0, float a1, int dir) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void rect(float x, float y, float w, float h) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void roundedRect(float x, float y, float w, float h, float r) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void roundedRectVarying(float x, float y, float w, float h, float radTopLeft, float radTopRight,
+			float radBottomRight, float radBottomLeft) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void ellipse(float cx, float cy, float rx, float ry) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void circle(float cx, float cy, float r) {
+		counts[PATH]++;
+	}
+
+	@Override
+	public void fill() {
+		counts[FILL]++;
+	}
+
+	@Override
+	public void stroke() {
+		counts[STROKE]++;
+	}
+
+	// Text ---------------------------------------------
+
+	@Override
+	public void fontSize(float size) {
+		counts[STATE]++;
+		fontSizes[state] = size;
+	}
+
+	@Override
+	public void fontBlur(float blur) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void textLetterSpacing(float spacing) {
+		counts[STATE]++;
+		letterSpacings[state] = spacing;
+	}
+
+	@Override
+	public void textLineHeight(float lineHeight) {
+		counts[STATE]++;
+		lineHeights[state] = lineHeight;
+	}
+
+	@Override
+	public void textAlign(int align) {
+		counts[STATE]++;
+		aligns[state] = align;
+	}
+
+	@Override
+	public void fontFace(String font) {
+		counts[STATE]++;
+	}
+
+	@Override
+	public void text(float x, float y, long string, long end) {
+		counts[TEXT]++;
+	}
+
+	@Override
+	public void text(float x, float y, CharSequence string) {
+		counts[TEXT]++;
+	}
+
+	@Override
+	public void textBox(float x, float y, float breakRowWidth, long string, long end) {
+		counts[TEXT]++;
+	}
+
+	@Override
+	public void textBox(float x, float y, float breakRowWidth, CharSequence string) {
+		counts[TEXT]++;
+	}
+
+	/**
+	 * @return the advance of one glyph
+	 */
+	private float advance() {
+		return fontSizes[state] * GLYPH_WIDTH + letterSpacings[state];
+	}
+
+	/**
+	 * @return the top of the text relative to the y coordinate it is drawn at
+	 */
+	private float top() {
+		int align = aligns[state];
+		float size = fontSizes[state];
+		if ((align & NVG_ALIGN_TOP) != 0) {
+			return 0;
+		} else if ((align & NVG_ALIGN_MIDDLE) != 0) {
+			return -size / 2;
+		} else if ((align & NVG_ALIGN_BOTTOM) != 0) {
+			return -size;
+		}
+		return -ASCENDER * size;
+	}
+
+	/**
+	 * @return the left of a text of width {@code w} relative to the x
+	 *         coordinate it is drawn at
+	 */
+	private float left(float w) {
+		int align = aligns[state];
+		if ((align & NVG_ALIGN_CENTER) != 0) {
+			return -w / 2;
+		} else if ((align & NVG_ALIGN_RIGHT) != 0) {
+			return -w;
+		}
+		return 0;
+	}
+
+	private static int codepoints(long string, long end) {
+		int n = 0;
+		for (long p = string; p < end; p++) {
+			if ((memGetByte(p) & 0xC0) != 0x80) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	@Override
+	public float textBounds(float x, float y, ByteBuffer string, float[] bounds) {
+		counts[MEASURE]++;
+		long address = memAddress(string);
+		float w = codepoints(address, address + string.remaining()) * advance();
+		if (bounds != null) {
+			bounds[0] = x + left(w);
+			bounds[1] = y + top();
+			bounds[2] = bounds[0] + w;
+			bounds[3] = bounds[1] + fontSizes[state];
+		}
+		return w;
+	}
+
+	@Override
+	public void textBoxBounds(float x, float y, float breakRowWidth, ByteBuffer string, float[] bounds) {
+		counts[MEASURE]++;
+		long address = memAddress(string);
+		int rows = breakLines(address, address + string.remaining(), breakRowWidth, 0, Integer.MAX_VALUE, widest);
+		bounds[0] = x;
+		bounds[1] = y + top();
+		bounds[2] = x + widest[0];
+		bounds[3] = bounds[1] + rows * fontSizes[state] * lineHeights[state];
+	}
+
+	@Override
+	public int textBreakLines(ByteBuffer string, float breakRowWidth, NVGTextRow.Buffer rows) {
+		counts[MEASURE]++;
+		long address = memAddress(string);
+		return breakLines(address, address + string.remaining(), breakRowWidth, rows.address(), rows.remaining(),
+				null);
+	}
+
+	/**
+	 * Splits the text at new lines and at the glyph that would overflow the row.
+	 *
+	 * @param rows     the address of the rows to fill, or 0
+	 * @param maxWidth returns the width of the widest row, may be {@code null}
+	 * @return the number of rows
+	 */
+	private int breakLines(long string, long end, float breakRowWidth, long rows, int maxRows, float[] maxWidth) {
+		float advance = advance();
+		int count = 0;
+		long start = string;
+		float width = 0, widest = 0;
+		long p = string;
+		while (p < end && count < maxRows) {
+			int b = memGetByte(p) & 0xFF;
+			if (b == '\n') {
+				putRow(rows, count++, start, p, p + 1, width);
+				widest = Math.max(widest, width);
+				start = p + 1;
+				width = 0;
+				p++;
+				continue;
+			}
+			if (width + advance > breakRowWidth && p > start) {
+				putRow(rows, count++, start, p, p, width);
+				widest = Math.max(widest, width);
+				start = p;
+				width = 0;
+				continue;
+			}
+			width += advance;
+			p++;
+			while (p < end && (memGetByte(p) & 0xC0) == 0x80) {
+				p++;
+			}
+		}
+		if (start < end && count < maxRows) {
+			putRow(rows, count++, start, end, end, width);
+			widest = Math.max(widest, width);
+		}
+		if (maxWidth != null) {
+			maxWidth[0] = widest;
+		}
+		return count;
+	}
+
+	private void putRow(long rows, int i, long start, long end, long next, float width) {
+		if (rows == 0) {
+			return;
+		}
+		long row = rows + (long) i * NVGTextRow.SIZEOF;
+		memPutAddress(row + NVGTextRow.START, start);
+		memPutAddress(row + NVGTextRow.END, end);
+		memPutAddress(row + NVGTextRow.NEXT, next);
+		memPutFloat(row + NVGTextRow.WIDTH, width);
+		memPutFloat(row + NVGTextRow.MINX, 0);
+		memPutFloat(row + NVGTextRow.MAXX, width);
+	}
+
+	@Override
+	public int textGlyphPositions(float x, float y, ByteBuffer string, NVGGlyphPosition.Buffer positions) {
+		counts[MEASURE]++;
+		long address = memAddress(string), end = address + string.remaining();
+		float advance = advance();
+		long glyphs = positions.address();
+		int max = positions.remaining();
+		int count = 0;
+		float gx = x + left(codepoints(address, end) * advance);
+		for (long p = address; p < end && count < max; p++) {
+			if ((memGetByte(p) & 0xC0) == 0x80) {
+				continue;
+			}
+			long glyph = glyphs + (long) count * NVGGlyphPosition.SIZEOF;
+			memPutAddress(glyph + NVGGlyphPosition.STR, p);
+			memPutFloat(glyph + NVGGlyphPosition.X, gx);
+			memPutFloat(glyph + NVGGlyphPosition.MINX, gx);
+			memPutFloat(glyph + NVGGlyphPosition.MAXX, gx + advance);
+			gx += advance;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * The pointers of the positions refer to a copy of {@code string} that is
+	 * only valid until the next call.
+	 */
+	@Override
+	public int textGlyphPositions(float x, float y, CharSequence string, NVGGlyphPosition.Buffer positions) {
+		ByteBuffer utf8 = memUTF8(string, false);
+		if (glyphText != null) {
+			memFree(glyphText);
+		}
+		glyphText = utf8;
+		return textGlyphPositions(x, y, utf8, positions);
+	}
+
+	@Override
+	public void textMetrics(float[] ascender, float[] descender, float[] lineh) {
+		counts[MEASURE]++;
+		float size = fontSizes[state];
+		if (ascender != null) {
+			ascender[0] = ASCENDER * size;
+		}
+		if (descender != null) {
+			descender[0] = DESCENDER * size;
+		}
+		if (lineh != null) {
+			lineh[0] = size;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package grayscale;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accumulates the regions of a {@link Window} that must be drawn again.
+ * <p>
+ * The damaged rectangles are kept individually until there are too many of
+ * them, after which only their union is kept. The rectangles are reused from
+ * one frame to the next.
+ * </p>
+ *
+ * @author Niels
+ */
+public class DamageTracker {
+	private static final int MAX_RECTS = 64;
+
+	private final List<Rectangle> rects = new ArrayList<>();
+	private int count = 0;
+	private boolean overflow = false;
+
+	private final Rectangle union = new Rectangle();
+
+	/**
+	 * Marks a region as damaged. Empty regions are ignored.
+	 */
+	public void add(double x, double y, double width, double height) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+
+		if (isEmpty()) {
+			union.set(x, y, width, height);
+		} else {
+			double x1 = Math.min(union.getMinX(), x);
+			double y1 = Math.min(union.getMinY(), y);
+			double x2 = Math.max(union.getMaxX(), x + width);
+			double y2 = Math.max(union.getMaxY(), y + height);
+			union.setRectFromDiagonal(x1, y1, x2, y2);
+		}
+
+		if (count < MAX_RECTS) {
+			if (count == rects.size()) {
+				rects.add(new Rectangle());
+			}
+			rects.get(count).set(x, y, width, height);
+		} else {
+			overflow = true;
+		}
+		count++;
+	}
+
+	public void add(Rectanglec r) {
+		add(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * @return the bounding box of all the damaged regions. It is empty if
+	 *         nothing was damaged.
+	 */
+	public Rectanglec getUnion() {
+		return union;
+	}
+
+	/**
+	 * @return {@code true} if {@code r} intersects the union of the damaged
+	 *         regions. Since the whole union is drawn again, a component
+	 *         intersecting it must be drawn as well.
+	 */
+	public boolean intersects(Rectanglec r) {
+		return !isEmpty() && union.intersects(r);
+	}
+
+	/**
+	 * @return a copy of the damaged regions, or only their union if there were
+	 *         too many of them
+	 */
+	public List<Rectanglec> getRegions() {
+		List<Rectanglec> regions = new ArrayList<>();
+		if (overflow) {
+			regions.add(new Rectangle(union));
+		} else {
+			for (int i = 0; i < count; i++) {
+				regions.add(new Rectangle(rects.get(i)));
+			}
+		}
+		return regions;
+	}
+
+	/**
+	 * @return the number of regions damaged since the last call to
+	 *         {@link #clear()}
+	 */
+	public int getDamageCount() {
+		return count;
+	}
+
+	public void clear() {
+		count = 0;
+		overflow = false;
+		union.set(0, 0, 0, 0);
+	}
+}
@@ -0,0 +1,276 @@
+package grayscale;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGPaint;
+
+/**
+ * A compact, off-heap buffer of drawing commands recorded by a
+ * {@link Graphics} object.
+ * <p>
+ * Each command is stored as an {@code int} opcode followed by its arguments
+ * (floats, ints, raw colors, paints or UTF-8 text). No object is created per
+ * recorded call, and the list can be replayed with
+ * {@link Graphics#replay(DisplayList)} as many times as needed.
+ * </p>
+ *
+ * @see Graphics#beginRecording(DisplayList)
+ * @author Niels
+ */
+public class DisplayList {
+	static final int OP_SAVE = 1, //
+			OP_RESTORE = 2, //
+			OP_RESET = 3, //
+			OP_COMPOSITE_OPERATION = 4, //
+			OP_COMPOSITE_BLEND_FUNC = 5, //
+			OP_COMPOSITE_BLEND_FUNC_SEPARATE = 6, //
+			OP_STROKE_COLOR = 7, //
+			OP_STROKE_PAINT = 8, //
+			OP_FILL_COLOR = 9, //
+			OP_FILL_PAINT = 10, //
+			OP_MITER_LIMIT = 11, //
+			OP_STROKE_WIDTH = 12, //
+			OP_LINE_CAP = 13, //
+			OP_LINE_JOIN = 14, //
+			OP_GLOBAL_ALPHA = 15, //
+			OP_RESET_TRANSFORM = 16, //
+			OP_TRANSFORM = 17, //
+			OP_TRANSLATE = 18, //
+			OP_SCALE = 19, //
+			OP_SKEW_X = 20, //
+			OP_SKEW_Y = 21, //
+			OP_ROTATE = 22, //
+			OP_SCISSOR = 23, //
+			OP_INTERSECT_SCISSOR = 24, //
+			OP_RESET_SCISSOR = 25, //
+			OP_BEGIN_PATH = 26, //
+			OP_MOVE_TO = 27, //
+			OP_LINE_TO = 28, //
+			OP_BEZIER_TO = 29, //
+			OP_QUAD_TO = 30, //
+			OP_ARC_TO = 31, //
+			OP_CLOSE_PATH = 32, //
+			OP_PATH_WINDING = 33, //
+			OP_ARC = 34, //
+			OP_RECT = 35, //
+			OP_ROUNDED_RECT = 36, //
+			OP_ROUNDED_RECT_VARYING = 37, //
+			OP_ELLIPSE = 38, //
+			OP_CIRCLE = 39, //
+			OP_FILL = 40, //
+			OP_STROKE = 41, //
+			OP_FONT_SIZE = 42, //
+			OP_FONT_BLUR = 43, //
+			OP_TEXT_LETTER_SPACING = 44, //
+			OP_TEXT_LINE_HEIGHT = 45, //
+			OP_TEXT_ALIGN = 46, //
+			OP_FONT_FACE = 47, //
+			OP_TEXT = 48, //
+			OP_TEXT_BOX = 49;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private ByteBuffer buffer = BufferUtils.createByteBuffer(INITIAL_CAPACITY);
+	private int commandCount = 0;
+
+	/**
+	 * Strings referenced by the commands, such as font names. They are few and
+	 * reused, so the commands only store an index in this list.
+	 */
+	private List<String> strings = new ArrayList<>();
+
+	/**
+	 * The {@link Graphics} generation this list was recorded for.
+	 */
+	int generation = -1;
+
+	/**
+	 * Removes all the recorded commands. The allocated memory is kept for the
+	 * next recording.
+	 */
+	public void clear() {
+		buffer.clear();
+		strings.clear();
+		commandCount = 0;
+		generation = -1;
+	}
+
+	/**
+	 * @return the number of recorded commands
+	 */
+	public int getCommandCount() {
+		return commandCount;
+	}
+
+	/**
+	 * @return the number of bytes used by the recorded commands
+	 */
+	public int size() {
+		return buffer.position();
+	}
+
+	public boolean isEmpty() {
+		return commandCount == 0;
+	}
+
+	/**
+	 * Makes sure at least {@code bytes} more bytes can be written.
+	 */
+	private void ensureRemaining(int bytes) {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+		int newCapacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+		ByteBuffer newBuffer = BufferUtils.createByteBuffer(newCapacity);
+		buffer.flip();
+		newBuffer.put(buffer);
+		buffer = newBuffer;
+	}
+
+	// Recording ----------------------------------------
+
+	void op(int opcode) {
+		ensureRemaining(4);
+		buffer.putInt(opcode);
+		commandCount++;
+	}
+
+	void op(int opcode, int i) {
+		ensureRemaining(8);
+		buffer.putInt(opcode).putInt(i);
+		commandCount++;
+	}
+
+	void op(int opcode, int i, int j) {
+		ensureRemaining(12);
+		buffer.putInt(opcode).putInt(i).putInt(j);
+		commandCount++;
+	}
+
+	void op(int opcode, int i, int j, int k, int l) {
+		ensureRemaining(20);
+		buffer.putInt(opcode).putInt(i).putInt(j).putInt(k).putInt(l);
+		commandCount++;
+	}
+
+	void op(int opcode, float a) {
+		ensureRemaining(8);
+		buffer.putInt(opcode).putFloat(a);
+		commandCount++;
+	}
+
+	void op(int opcode, float a, float b) {
+		ensureRemaining(12);
+		buffer.putInt(opcode).putFloat(a).putFloat(b);
+		commandCount++;
+	}
+
+	void op(int opcode, float a, float b, float c) {
+		ensureRemaining(16);
+		buffer.putInt(opcode).putFloat(a).putFloat(b).putFloat(c);
+		commandCount++;
+	}
+
+	void op(int opcode, float a, float b, float c, float d) {
+		ensureRemaining(20);
+		buffer.putInt(opcode).putFloat(a).putFloat(b).putFloat(c).putFloat(d);
+		commandCount++;
+	}
+
+	void op(int opcode, float a, float b, float c, float d, float e) {
+		ensureRemaining(24);
+		buffer.putInt(opcode).putFloat(a).putFloat(b).putFloat(c).putFloat(d).putFloat(e);
+		commandCount++;
+	}
+
+	void op(int opcode, float a, float b, float c, float d, float e, float f) {
+		ensureRemaining(28);
+		buffer.putInt(opcode).putFloat(a).putFloat(b).putFloat(c).putFloat(d).putFloat(e).putFloat(f);
+		commandCount++;
+	}
+
+	void op(int opcode, float a, float b, float c, float d, float e, float f, float g, float h) {
+		ensureRemaining(36);
+		buffer.putInt(opcode).putFloat(a).putFloat(b).putFloat(c).putFloat(d) //
+				.putFloat(e).putFloat(f).putFloat(g).putFloat(h);
+		commandCount++;
+	}
+
+	/**
+	 * Records a command whose single argument is a color.
+	 */
+	void op(int opcode, NVGColor color) {
+		op(opcode, color.r(), color.g(), color.b(), color.a());
+	}
+
+	/**
+	 * Records a command whose single argument is a paint. The paint struct is
+	 * copied as is.
+	 */
+	void op(int opcode, NVGPaint paint) {
+		ensureRemaining(4 + NVGPaint.SIZEOF);
+		buffer.putInt(opcode);
+		int pos = buffer.position();
+		memCopy(paint.address(), memAddress0(buffer) + pos, NVGPaint.SIZEOF);
+		buffer.position(pos + NVGPaint.SIZEOF);
+		commandCount++;
+	}
+
+	/**
+	 * Records a command whose single argument is a string reference.
+	 */
+	void op(int opcode, String string) {
+		int index = strings.indexOf(string);
+		if (index < 0) {
+			index = strings.size();
+			strings.add(string);
+		}
+		op(opcode, index);
+	}
+
+	/**
+	 * Records a text command. The remaining bytes of {@code text} are copied.
+	 * {@code breakRowWidth} is only meaningful for {@link #OP_TEXT_BOX}.
+	 */
+	void text(int opcode, float x, float y, float breakRowWidth, ByteBuffer text) {
+		int length = text.remaining();
+		ensureRemaining(20 + length);
+		buffer.putInt(opcode).putFloat(x).putFloat(y).putFloat(breakRowWidth).putInt(length);
+		int pos = buffer.position();
+		memCopy(memAddress(text), memAddress0(buffer) + pos, length);
+		buffer.position(pos + length);
+		commandCount++;
+	}
+
+	/**
+	 * Records a text command. The text is encoded in UTF-8.
+	 * {@code breakRowWidth} is only meaningful for {@link #OP_TEXT_BOX}.
+	 */
+	void text(int opcode, float x, float y, float breakRowWidth, CharSequence text) {
+		int length = memLengthUTF8(text, false);
+		ensureRemaining(20 + length);
+		buffer.putInt(opcode).putFloat(x).putFloat(y).putFloat(breakRowWidth).putInt(length);
+		memUTF8(text, false, buffer);
+		buffer.position(buffer.position() + length);
+		commandCount++;
+	}
+
+	// Replay -------------------------------------------
+
+	String string(int index) {
+		return strings.get(index);
+	}
+
+	/**
+	 * @return the address of the first byte of this list
+	 */
+	long address() {
+		return memAddress0(buffer);
+	}
+}
@@ -0,0 +1,279 @@
+package grayscale;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import events.KeyEvent;
+import events.Keyboard;
+import events.Mouse;
+
+/**
+ * Delivers the input events of a {@link Window} to the components they
+ * concern, instead of visiting the whole tree each frame.
+ * <ul>
+ * <li>the mouse events go to the hovered components and their ancestors, the
+ * hit path. The capture listeners receive them from the root to the hovered
+ * components, then the other listeners from the hovered components to the
+ * root.</li>
+ * <li>a release also goes to the components that received the press, so that
+ * they are notified even if the mouse left them.</li>
+ * <li>a scroll follows the hit path like the other mouse events, until a
+ * listener consumes it.</li>
+ * <li>the keyboard events go to the focused component and its ancestors, the
+ * focus path.</li>
+ * <li>{@link ComponentUI#update(Component)} is only called on the components
+ * that requested it with {@link Component#setTicking(boolean)}.</li>
+ * </ul>
+ *
+ * @author Niels
+ */
+class EventRouter {
+	private static final Comparator<Component> BY_DEPTH = Comparator.comparingInt(c -> c.routeDepth);
+	private static final int[] BUTTONS = { Mouse.BTN_LEFT, Mouse.BTN_MIDDLE, Mouse.BTN_RIGHT };
+
+	private final Window window;
+
+	private int stamp = 0;
+
+	/**
+	 * The hovered components and their ancestors, sorted by depth
+	 */
+	private List<Component> path = new ArrayList<>();
+	private boolean pathOutdated = true;
+
+	/**
+	 * For each mouse button, the path at the time it was pressed
+	 */
+	private List<List<Component>> pressTargets = new ArrayList<>();
+	private List<Component> releaseTargets = new ArrayList<>();
+
+	private List<Component> ticking = new ArrayList<>();
+	private boolean tickingOutdated = true;
+
+	EventRouter(Window window) {
+		this.window = window;
+		for (int i = 0; i < BUTTONS.length; i++) {
+			pressTargets.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Called when components are added or removed, or when the components
+	 * receiving ticks change.
+	 */
+	void treeChanged() {
+		tickingOutdated = true;
+		pathOutdated = true;
+	}
+
+	/**
+	 * Sends the entered and exited events after the hovered components changed.
+	 *
+	 * @param previous the components that were hovered before
+	 * @param hovered  the components hovered now
+	 */
+	void hoverChanged(List<Component> previous, List<Component> hovered) {
+		for (int i = 0; i < previous.size(); i++) {
+			previous.get(i).fireHoverChange();
+		}
+		for (int i = 0; i < hovered.size(); i++) {
+			hovered.get(i).fireHoverChange();
+		}
+		pathOutdated = true;
+	}
+
+	void dispatch(Mouse mouse, Keyboard keyboard, List<Component> hovered) {
+		if (pathOutdated) {
+			buildPath(hovered);
+		}
+
+		if (mouse.isMoved()) {
+			for (int i = 0; i < hovered.size(); i++) {
+				hovered.get(i).fireMouseMoved(mouse);
+			}
+		}
+
+		for (int b = 0; b < BUTTONS.length; b++) {
+			int button = BUTTONS[b];
+			List<Component> targets = pressTargets.get(b);
+			if (mouse.pressed(button)) {
+				targets.clear();
+				targets.addAll(path);
+				firePressed(mouse, button, targets);
+			} else if (mouse.released(button)) {
+				releaseTargets.clear();
+				stamp++;
+				union(targets, releaseTargets);
+				union(path, releaseTargets);
+				targets.clear();
+				for (int i = 0; i < releaseTargets.size(); i++) {
+					Component c = releaseTargets.get(i);
+					c.routeDepth = depth(c);
+				}
+				releaseTargets.sort(BY_DEPTH);
+				fireReleased(mouse, button, releaseTargets);
+			}
+		}
+
+		Vectorc scroll = mouse.getScroll();
+		if (scroll.getX() != 0 || scroll.getY() != 0) {
+			fireScrolled(mouse, path);
+		}
+
+		for (int i = 0; i < hovered.size(); i++) {
+			hovered.get(i).fireDrop(mouse);
+		}
+
+		List<KeyEvent> events = keyboard.getEvents();
+		for (int i = 0; i < events.size(); i++) {
+			dispatchKey(events.get(i));
+		}
+	}
+
+	/**
+	 * Calls {@link ComponentUI#update(Component)} on the ticking components.
+	 */
+	void tick() {
+		updateTicking();
+		for (int i = 0; i < ticking.size(); i++) {
+			ticking.get(i).tick();
+		}
+	}
+
+	/**
+	 * @return {@code true} if components receive ticks, so that the next frame
+	 *         must not wait for input
+	 */
+	boolean hasTicking() {
+		updateTicking();
+		return !ticking.isEmpty();
+	}
+
+	private void updateTicking() {
+		if (tickingOutdated) {
+			ticking.clear();
+			Component decoration = window.getDecorationComponent();
+			if (decoration != null) {
+				collectTicking(decoration);
+			}
+			collectTicking(window.getContent());
+			tickingOutdated = false;
+		}
+	}
+
+	private void buildPath(List<Component> hovered) {
+		path.clear();
+		stamp++;
+		for (int i = 0; i < hovered.size(); i++) {
+			for (Component c = hovered.get(i); c != null && c.routeStamp != stamp; c = c.getParent()) {
+				c.routeStamp = stamp;
+				c.routeDepth = depth(c);
+				path.add(c);
+			}
+		}
+		path.sort(BY_DEPTH);
+		pathOutdated = false;
+	}
+
+	/**
+	 * Adds to {@code dest} the components of {@code src} that are not already in
+	 * it, for the current stamp.
+	 */
+	private void union(List<Component> src, List<Component> dest) {
+		for (int i = 0; i < src.size(); i++) {
+			Component c = src.get(i);
+			if (c.routeStamp != stamp) {
+				c.routeStamp = stamp;
+				dest.add(c);
+			}
+		}
+	}
+
+	private static int depth(Component c) {
+		int depth = 0;
+		for (Component p = c.getParent(); p != null; p = p.getParent()) {
+			depth++;
+		}
+		return depth;
+	}
+
+	/**
+	 * Capture listeners from the root to the leaves, then the others from the
+	 * leaves to the root.
+	 */
+	private static void firePressed(Mouse mouse, int button, List<Component> targets) {
+		for (int i = 0; i < targets.size(); i++) {
+			Component c = targets.get(i);
+			if (c.capturesMouse()) {
+				c.fireMousePressed(mouse, button);
+			}
+		}
+		for (int i = targets.size() - 1; i >= 0; i--) {
+			Component c = targets.get(i);
+			if (!c.capturesMouse()) {
+				c.fireMousePressed(mouse, button);
+			}
+		}
+	}
+
+	/**
+	 * @see #firePressed(Mouse, int, List)
+	 */
+	private static void fireReleased(Mouse mouse, int button, List<Component> targets) {
+		for (int i = 0; i < targets.size(); i++) {
+			Component c = targets.get(i);
+			if (c.capturesMouse()) {
+				c.fireMouseReleased(mouse, button);
+			}
+		}
+		for (int i = targets.size() - 1; i >= 0; i--) {
+			Component c = targets.get(i);
+			if (!c.capturesMouse()) {
+				c.fireMouseReleased(mouse, button);
+			}
+		}
+	}
+
+	/**
+	 * @see #firePressed(Mouse, int, List)
+	 */
+	private static void fireScrolled(Mouse mouse, List<Component> targets) {
+		for (int i = 0; i < targets.size(); i++) {
+			Component c = targets.get(i);
+			if (c.capturesMouse() && c.fireMouseScrolled(mouse)) {
+				return;
+			}
+		}
+		for (int i = targets.size() - 1; i >= 0; i--) {
+			Component c = targets.get(i);
+			if (!c.capturesMouse() && c.fireMouseScrolled(mouse)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * The key bindings of the focus path are tested from the root to the focused
+	 * component, which then receives the event in its keyboard listener unless
+	 * the event belongs to a chord.
+	 */
+	void dispatchKey(KeyEvent e) {
+		Component focused = window.getFocused();
+		if (focused == null) {
+			return;
+		}
+		if (!window.getKeyBindings().dispatch(e)) {
+			focused.fireKeyEvent(e);
+		}
+	}
+
+	private void collectTicking(Component c) {
+		if (c.isTicking()) {
+			ticking.add(c);
+		}
+		for (Component child : c.getChildren()) {
+			collectTicking(child);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package grayscale;
+
+/**
+ * The time spent by an {@link Application} in each phase of its frames,
+ * measured with its {@link Clock}.
+ * <ul>
+ * <li>{@link #INPUT}: receiving the input and dispatching it to the
+ * components</li>
+ * <li>{@link #UPDATE}: the posted tasks, the image uploads,
+ * {@link Application#update()} and the update of the windows</li>
+ * <li>{@link #RENDER}: the layers, the damaged regions and the drawing of the
+ * windows</li>
+ * </ul>
+ *
+ * @see Application#getFrameTimings()
+ * @author Niels
+ */
+public class FrameTimings {
+	public static final int INPUT = 0, UPDATE = 1, RENDER = 2;
+	private static final int PHASES = 3;
+
+	private long[] current = new long[PHASES];
+	private long[] last = new long[PHASES];
+	private long[] total = new long[PHASES];
+	private long[] max = new long[PHASES];
+	private long frames = 0;
+
+	void add(int phase, long nanos) {
+		current[phase] += nanos;
+	}
+
+	void endFrame() {
+		for (int i = 0; i < PHASES; i++) {
+			last[i] = current[i];
+			total[i] += current[i];
+			max[i] = Math.max(max[i], current[i]);
+			current[i] = 0;
+		}
+		frames++;
+	}
+
+	/**
+	 * @param phase {@link #INPUT}, {@link #UPDATE} or {@link #RENDER}
+	 * @return the time spent in this phase during the last frame, in nanoseconds
+	 */
+	public long getLastNanos(int phase) {
+		return last[phase];
+	}
+
+	public long getTotalNanos(int phase) {
+		return total[phase];
+	}
+
+	public long getMaxNanos(int phase) {
+		return max[phase];
+	}
+
+	public double getAverageNanos(int phase) {
+		return frames == 0 ? 0 : total[phase] / (double) frames;
+	}
+
+	/**
+	 * @return the number of frames measured since the last reset
+	 */
+	public long getFrameCount() {
+		return frames;
+	}
+
+	public void reset() {
+		for (int i = 0; i < PHASES; i++) {
+			last[i] = total[i] = max[i] = 0;
+		}
+		frames = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "FrameTimings [frames=" + frames + ", input=" + (getAverageNanos(INPUT) / 1.0e+3) + " us, update="
+				+ (getAverageNanos(UPDATE) / 1.0e+3) + " us, render=" + (getAverageNanos(RENDER) / 1.0e+3)
+				+ " us (average per frame)]";
+	}
+}
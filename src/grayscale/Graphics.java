@@ -3,16 +3,19 @@ package grayscale;
 import static org.lwjgl.nanovg.NanoVG.*;
 
 import static org.lwjgl.nanovg.NanoVGGL3.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.nanovg.NVGColor;
 import org.lwjgl.nanovg.NVGGlyphPosition;
-import org.lwjgl.nanovg.NVGLUFramebuffer;
 import org.lwjgl.nanovg.NVGPaint;
 import org.lwjgl.nanovg.NVGTextRow;
 import org.lwjgl.nanovg.NanoVG;
@@ -22,7 +25,9 @@ import utils.ColorSetter;
 
 /**
  * <p>
- * This {@code Graphics} class uses NanoVG for the rendering.
+ * This {@code Graphics} class uses NanoVG for the rendering by default. The
+ * drawing calls are sent to a {@link RenderBackend}, which can be replaced to
+ * run without OpenGL.
  * </p>
  * 
  * @author Niels
@@ -135,9 +140,29 @@ public class Graphics {
 			ALIGN_BOTTOM = NVG_ALIGN_BOTTOM, //
 			ALIGN_BASELINE = NVG_ALIGN_BASELINE;
 
-	private final long ctx;
+	/**
+	 * The size of the NanoVG state stack
+	 */
+	private static final int MAX_STATES = 32;
+
+	/**
+	 * Above this number of rectangle pairs, a fill that is not opaque is
+	 * considered as overlapping the batch instead of being tested
+	 */
+	private static final int MAX_OVERLAP_TESTS = 1024;
 
-	private HashMap<Image, Integer> images = new HashMap<>();
+	private final RenderBackend backend;
+
+	/**
+	 * The images that have a NanoVG handle. The handle itself is stored in the
+	 * image.
+	 */
+	private Set<Image> images = new HashSet<>();
+	/**
+	 * The images deleted since the last frame, their handles are released by
+	 * {@link #endFrame()}
+	 */
+	private List<Image> deadImages = new ArrayList<>();
 
 	private NVGColor colorA = NVGColor.create();
 	private NVGColor colorB = NVGColor.create();
@@ -146,6 +171,76 @@ public class Graphics {
 
 	private Vector contentScale = new Vector();
 
+	/**
+	 * The display list currently recording the drawing calls, or {@code null}
+	 */
+	private DisplayList recording = null;
+	private boolean retainedMode = false;
+	/**
+	 * The component whose UI is drawing, or {@code null}
+	 */
+	private Component drawnComponent = null;
+
+	/**
+	 * Incremented each time previously recorded display lists become outdated,
+	 * for example when the content scale changes.
+	 */
+	private int generation = 0;
+
+	/**
+	 * Components outside of this region are not drawn, {@code null} if
+	 * everything must be drawn
+	 */
+	private Rectanglec dirtyRegion = null;
+
+	/**
+	 * Shadow copy of the NanoVG state stack, used to drop the calls that would
+	 * not change anything
+	 */
+	private GraphicsState[] states = new GraphicsState[MAX_STATES];
+	private int stateIndex = 0;
+
+	/**
+	 * The dimensions of the canvas of the current frame
+	 */
+	private float viewportWidth, viewportHeight;
+
+	private LayerCache layerCache = new LayerCache(this);
+	private TextCache textCache;
+	private float[] measure = new float[4];
+	private Rectangle transformed = new Rectangle();
+	private float[] xform = new float[6];
+	private float[][] metrics = new float[3][1];
+
+	private RenderStats stats = new RenderStats();
+	private RenderStats lastFrameStats = new RenderStats();
+
+	/**
+	 * Batching of the solid color rectangle fills.<br>
+	 * Rectangles are stored as {@code x, y, w, h, radius} instead of being sent
+	 * to NanoVG as long as the current path only contains rectangles. The
+	 * rectangles in {@code [0, batchEnd[} have been filled and will be drawn
+	 * with a single fill, the current path is {@code [pathStart, rectCount[}.
+	 * Any call that could change the result of the batch flushes it first.<br>
+	 * Overlapping rectangles of a single fill are only blended once, so a fill
+	 * that is not opaque is only batched if it does not overlap the batch.
+	 */
+	private float[] rects = new float[5 * 64];
+	private int rectCount = 0;
+	private int pathStart = 0;
+	private int batchEnd = 0;
+	/**
+	 * {@code true} if the current path only exists in {@code rects}
+	 */
+	private boolean pathDeferred = true;
+	/**
+	 * {@code true} if the current path has already been filled
+	 */
+	private boolean pathFilled = false;
+
+	private NVGColor replayColor = NVGColor.create();
+	private NVGPaint replayPaint = NVGPaint.create();
+
 	/**
 	 * @param flags the context flags. One of:<br>
 	 *              <ul>
@@ -155,7 +250,24 @@ public class Graphics {
 	 *              </ul>
 	 */
 	public Graphics(int nvgFlags, List<Font> fonts) {
-		ctx = nvgCreate(nvgFlags);
+		this(new NanoVGBackend(nvgFlags), fonts);
+	}
+
+	/**
+	 * @param backend the backend the drawing calls are sent to, it is destroyed
+	 *                with this object
+	 * @param fonts   the fonts to add
+	 */
+	public Graphics(RenderBackend backend, List<Font> fonts) {
+		if (backend == null) {
+			throw new IllegalArgumentException("The backend cannot be null.");
+		}
+		this.backend = backend;
+		textCache = new TextCache(backend, this);
+
+		for (int i = 0; i < states.length; i++) {
+			states[i] = new GraphicsState();
+		}
 
 		for (Font f : fonts) {
 			addFont(f);
@@ -166,35 +278,50 @@ public class Graphics {
 	 * @return a handle to the image, you must delete it manually
 	 */
 	private int createNVGImage(int textureID, int width, int height, int flags) {
-		return nvglCreateImageFromHandle(ctx, textureID, width, height, flags);
+		return backend.createImageFromHandle(textureID, width, height, flags);
 	}
 //	
 //	public void deleteNVGImage(int image) {
-//		nvgDeleteImage(ctx, image);
+//		backend.deleteImage(image);
 //	}
 
 	public int addImage(Image img) {
 		check(img);
-		int id = createNVGImage(img.getOpenglID(), img.getWidth(), img.getHeight(), img.getFlags());
-		images.put(img, id);
+		int id = img.getHandle(this);
+		if (id == -1) {
+			id = createNVGImage(img.getOpenglID(), img.getWidth(), img.getHeight(), img.getFlags());
+			img.setHandle(this, id);
+			images.add(img);
+		}
 		return id;
 	}
 
 	public void removeImage(Image img) {
-		nvgDeleteImage(ctx, images.remove(img));
+		int id = img.removeHandle(this);
+		if (id != -1) {
+			images.remove(img);
+			backend.deleteImage(id);
+			img.releaseTexture();
+		}
 	}
 
 	/**
-	 * check to see if there are any dead images that should be removed
+	 * Called by {@link Image#delete()} on the {@code Graphics} objects that have
+	 * a handle to the image.
 	 */
-	private void checkImages() {
-		List<Image> deadImages = new ArrayList<>();
-		images.forEach((im, id) -> {
-			if (!im.isAlive()) {
-				deadImages.add(im);
-			}
-		});
-		deadImages.forEach(this::removeImage);
+	void imageDeleted(Image img) {
+		deadImages.add(img);
+	}
+
+	/**
+	 * Releases the handles of the images deleted since the last call, and their
+	 * textures once no {@code Graphics} uses them.
+	 */
+	private void sweepImages() {
+		for (int i = 0; i < deadImages.size(); i++) {
+			removeImage(deadImages.get(i));
+		}
+		deadImages.clear();
 	}
 
 	private static void check(Image img) {
@@ -205,9 +332,7 @@ public class Graphics {
 
 	/**
 	 * If img was not added, it will create an ID for img and save it for the next
-	 * call to this function.<br>
-	 * This function also checks for dead images and delete the nanoVG id associated
-	 * with them.
+	 * call to this function.
 	 * 
 	 * @param img
 	 * @return the nanoVG id associated with img.
@@ -215,38 +340,41 @@ public class Graphics {
 	 */
 	private int getID(Image img) {
 		check(img);
-		checkImages();
-		Integer id = images.get(img);
-		return id == null ? addImage(img) : id.intValue();
+		int id = img.getHandle(this);
+		return id == -1 ? addImage(img) : id;
 	}
 
 	public void addFont(Font font) {
-		nvgCreateFontMem(ctx, font.getName(), font.getData(), false);
+		backend.createFont(font.getName(), font.getData());
+		textCache.clear();
 	}
 
 	/**
 	 * Creates a framebuffer object to render to.
+	 * 
+	 * @return a handle to the framebuffer, owned by the backend, or 0 if it could
+	 *         not be created
 	 */
-	public NVGLUFramebuffer createFBO(int width, int height, int flags) {
-		return nvgluCreateFramebuffer(ctx, width, height, flags);
+	public int createFBO(int width, int height, int flags) {
+		return backend.createFramebuffer(width, height, flags);
 	}
 
 	/**
-	 * Binds the framebuffer object associated with the specified NVGLUFramebuffer.
+	 * Binds a framebuffer object created by {@link #createFBO(int, int, int)}.
 	 * 
-	 * @param fbo the framebuffer to bind
+	 * @param fbo the framebuffer to bind, or 0 for the screen
 	 */
-	public void bindFBO(NVGLUFramebuffer fbo) {
-		nvgluBindFramebuffer(ctx, fbo);
+	public void bindFBO(int fbo) {
+		backend.bindFramebuffer(fbo);
 	}
 
 	/**
-	 * Deletes an NVGLUFramebuffer.
+	 * Deletes a framebuffer object.
 	 * 
 	 * @param fbo the framebuffer to delete
 	 */
-	public void deleteFBO(NVGLUFramebuffer fbo) {
-		nvgluDeleteFramebuffer(ctx, fbo);
+	public void deleteFBO(int fbo) {
+		backend.deleteFramebuffer(fbo);
 	}
 
 	/**
@@ -262,17 +390,484 @@ public class Graphics {
 	 * @see {@link GLFW#glfwGetWindowContentScale(long, FloatBuffer, FloatBuffer)}
 	 */
 	public void beginFrame(Vectorc contentSize, Vectorc contentScale) {
+		lastFrameStats.set(stats);
+		stats.clear();
+		startFrame(contentSize, contentScale);
+	}
+
+	private void startFrame(Vectorc contentSize, Vectorc contentScale) {
 		Vector dim = new Vector(contentSize).div(contentScale);
 		float dpr = Math.max(contentScale.x(), contentScale.y());
-		nvgBeginFrame(ctx, dim.x(), dim.y(), dpr);
-		this.contentScale.set(contentScale);
+		backend.beginFrame(dim.x(), dim.y(), dpr);
+		viewportWidth = dim.x();
+		viewportHeight = dim.y();
+		stateIndex = 0;
+		states[0].reset();
+		rectCount = pathStart = batchEnd = 0;
+		pathDeferred = true;
+		pathFilled = false;
+		if (!this.contentScale.equals(contentScale)) {
+			this.contentScale.set(contentScale);
+			generation++;
+		}
+	}
+
+	/**
+	 * Begins drawing a new frame into a framebuffer object.
+	 * <p>
+	 * {@link #endFrame()} must be followed by a call to {@link #bindFBO(int)
+	 * bindFBO(0)} to render to the screen again.
+	 * </p>
+	 * <p>
+	 * The drawing done offscreen is counted in the stats of the next frame drawn
+	 * on the screen.
+	 * </p>
+	 * 
+	 * @param target       the framebuffer to render to
+	 * @param contentSize  the dimensions of the framebuffer, in pixels
+	 * @param contentScale the content scale
+	 * @see #beginFrame(Vectorc, Vectorc)
+	 */
+	public void beginFrame(int target, Vectorc contentSize, Vectorc contentScale) {
+		backend.bindFramebuffer(target);
+		backend.viewport(0, 0, Math.round(contentSize.x()), Math.round(contentSize.y()));
+		startFrame(contentSize, contentScale);
+	}
+
+	/**
+	 * Fills the framebuffer of the frame with a color, ignoring the scissor.
+	 * Call it right after {@code beginFrame}, before drawing anything.
+	 */
+	public void clear(float r, float g, float b, float a) {
+		flushBatch();
+		backend.clear(r, g, b, a);
 	}
 
 	/**
 	 * Ends drawing flushing remaining render state.
 	 */
 	public void endFrame() {
-		nvgEndFrame(ctx);
+		flushBatch();
+		backend.endFrame();
+		sweepImages();
+	}
+
+	/**
+	 * Enables or disables the retained mode. In retained mode, components record
+	 * their drawing calls into a {@link DisplayList} and replay it on the next
+	 * frames until they are repainted.
+	 * 
+	 * @see Component#repaint()
+	 */
+	public void setRetainedMode(boolean retainedMode) {
+		this.retainedMode = retainedMode;
+	}
+
+	public boolean isRetainedMode() {
+		return retainedMode;
+	}
+
+	/**
+	 * Starts recording the drawing calls into {@code list}. The calls are still
+	 * executed while recording.<br>
+	 * The previous content of the list is cleared.
+	 * 
+	 * @param list the list to record to
+	 * @throws IllegalStateException if this {@code Graphics} is already recording
+	 */
+	public void beginRecording(DisplayList list) {
+		if (recording != null) {
+			throw new IllegalStateException("Already recording a display list.");
+		}
+		list.clear();
+		list.generation = generation;
+		recording = list;
+	}
+
+	/**
+	 * Stops recording the drawing calls.
+	 * 
+	 * @return the list that was recorded
+	 */
+	public DisplayList endRecording() {
+		DisplayList list = recording;
+		recording = null;
+		return list;
+	}
+
+	public boolean isRecording() {
+		return recording != null;
+	}
+
+	/**
+	 * @param list a recorded display list
+	 * @return {@code false} if {@code list} must be recorded again before being
+	 *         replayed, for example because the content scale has changed
+	 */
+	public boolean isUpToDate(DisplayList list) {
+		return list.generation == generation;
+	}
+
+	/**
+	 * @return a number that changes whenever the content previously drawn
+	 *         becomes outdated
+	 */
+	int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Makes all the recorded display lists and cached layers outdated.
+	 */
+	public void invalidate() {
+		generation++;
+	}
+
+	/**
+	 * Replays all the commands of a display list. If this {@code Graphics} is
+	 * recording, the replayed commands are recorded as well.
+	 * 
+	 * @param list the list to replay
+	 */
+	public void replay(DisplayList list) {
+		long address = list.address();
+		long end = address + list.size();
+		long p = address;
+		while (p < end) {
+			int opcode = memGetInt(p);
+			p += 4;
+			switch (opcode) {
+			case DisplayList.OP_SAVE -> save();
+			case DisplayList.OP_RESTORE -> restore();
+			case DisplayList.OP_RESET -> reset();
+			case DisplayList.OP_COMPOSITE_OPERATION -> {
+				setGlobalCompositeOperation(memGetInt(p));
+				p += 4;
+			}
+			case DisplayList.OP_COMPOSITE_BLEND_FUNC -> {
+				setGlobalCompositeBlendFunc(memGetInt(p), memGetInt(p + 4));
+				p += 8;
+			}
+			case DisplayList.OP_COMPOSITE_BLEND_FUNC_SEPARATE -> {
+				setGlobalCompositeBlendFuncSeparate(memGetInt(p), memGetInt(p + 4), memGetInt(p + 8),
+						memGetInt(p + 12));
+				p += 16;
+			}
+			case DisplayList.OP_STROKE_COLOR -> {
+				setStrokeColor(readColor(p));
+				p += 16;
+			}
+			case DisplayList.OP_STROKE_PAINT -> {
+				setStrokePaint(readPaint(p));
+				p += NVGPaint.SIZEOF;
+			}
+			case DisplayList.OP_FILL_COLOR -> {
+				setFillColor(readColor(p));
+				p += 16;
+			}
+			case DisplayList.OP_FILL_PAINT -> {
+				setFillPaint(readPaint(p));
+				p += NVGPaint.SIZEOF;
+			}
+			case DisplayList.OP_MITER_LIMIT -> {
+				setMiterLimit(memGetFloat(p));
+				p += 4;
+			}
+			case DisplayList.OP_STROKE_WIDTH -> {
+				setStrokeWidth(memGetFloat(p));
+				p += 4;
+			}
+			case DisplayList.OP_LINE_CAP -> {
+				setLineCap(memGetInt(p));
+				p += 4;
+			}
+			case DisplayList.OP_LINE_JOIN -> {
+				setLineJoin(memGetInt(p));
+				p += 4;
+			}
+			case DisplayList.OP_GLOBAL_ALPHA -> {
+				setGlobalAlpha(memGetFloat(p));
+				p += 4;
+			}
+			case DisplayList.OP_RESET_TRANSFORM -> resetTransform();
+			case DisplayList.OP_TRANSFORM -> {
+				premultiply(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8), memGetFloat(p + 12),
+						memGetFloat(p + 16), memGetFloat(p + 20));
+				p += 24;
+			}
+			case DisplayList.OP_TRANSLATE -> {
+				translate(memGetFloat(p), memGetFloat(p + 4));
+				p += 8;
+			}
+			case DisplayList.OP_SCALE -> {
+				scale(memGetFloat(p), memGetFloat(p + 4));
+				p += 8;
+			}
+			case DisplayList.OP_SKEW_X -> {
+				skewX(memGetFloat(p));
+				p += 4;
+			}
+			case DisplayList.OP_SKEW_Y -> {
+				skewY(memGetFloat(p));
+				p += 4;
+			}
+			case DisplayList.OP_ROTATE -> {
+				rotate(memGetFloat(p));
+				p += 4;
+			}
+			case DisplayList.OP_SCISSOR -> {
+				setScissor(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8), memGetFloat(p + 12));
+				p += 16;
+			}
+			case DisplayList.OP_INTERSECT_SCISSOR -> {
+				intersectScissor(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8), memGetFloat(p + 12));
+				p += 16;
+			}
+			case DisplayList.OP_RESET_SCISSOR -> resetScissor();
+			case DisplayList.OP_BEGIN_PATH -> beginPath();
+			case DisplayList.OP_MOVE_TO -> {
+				moveTo(memGetFloat(p), memGetFloat(p + 4));
+				p += 8;
+			}
+			case DisplayList.OP_LINE_TO -> {
+				lineTo(memGetFloat(p), memGetFloat(p + 4));
+				p += 8;
+			}
+			case DisplayList.OP_BEZIER_TO -> {
+				bezierTo(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8), memGetFloat(p + 12),
+						memGetFloat(p + 16), memGetFloat(p + 20));
+				p += 24;
+			}
+			case DisplayList.OP_QUAD_TO -> {
+				quadTo(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8), memGetFloat(p + 12));
+				p += 16;
+			}
+			case DisplayList.OP_ARC_TO -> {
+				arcTo(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8), memGetFloat(p + 12),
+						memGetFloat(p + 16));
+				p += 20;
+			}
+			case DisplayList.OP_CLOSE_PATH -> closePath();
+			case DisplayList.OP_PATH_WINDING -> {
+				setPathWinding(memGetInt(p));
+				p += 4;
+			}
+			case DisplayList.OP_ARC -> {
+				arc(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8), memGetFloat(p + 12),
+						memGetFloat(p + 16), (int) memGetFloat(p + 20));
+				p += 24;
+			}
+			case DisplayList.OP_RECT -> {
+				rect(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8), memGetFloat(p + 12));
+				p += 16;
+			}
+			case DisplayList.OP_ROUNDED_RECT -> {
+				roundedRect(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8), memGetFloat(p + 12),
+						memGetFloat(p + 16));
+				p += 20;
+			}
+			case DisplayList.OP_ROUNDED_RECT_VARYING -> {
+				roundedRectVarying(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8), memGetFloat(p + 12),
+						memGetFloat(p + 16), memGetFloat(p + 20), memGetFloat(p + 24), memGetFloat(p + 28));
+				p += 32;
+			}
+			case DisplayList.OP_ELLIPSE -> {
+				ellipse(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8), memGetFloat(p + 12));
+				p += 16;
+			}
+			case DisplayList.OP_CIRCLE -> {
+				circle(memGetFloat(p), memGetFloat(p + 4), memGetFloat(p + 8));
+				p += 12;
+			}
+			case DisplayList.OP_FILL -> fill();
+			case DisplayList.OP_STROKE -> stroke();
+			case DisplayList.OP_FONT_SIZE -> {
+				setFontSize(memGetFloat(p));
+				p += 4;
+			}
+			case DisplayList.OP_FONT_BLUR -> {
+				setFontBlur(memGetFloat(p));
+				p += 4;
+			}
+			case DisplayList.OP_TEXT_LETTER_SPACING -> {
+				setTextLetterSpacing(memGetFloat(p));
+				p += 4;
+			}
+			case DisplayList.OP_TEXT_LINE_HEIGHT -> {
+				setTextLineHeight(memGetFloat(p));
+				p += 4;
+			}
+			case DisplayList.OP_TEXT_ALIGN -> {
+				setTextAlign(memGetInt(p));
+				p += 4;
+			}
+			case DisplayList.OP_FONT_FACE -> {
+				setFontFace(list.string(memGetInt(p)));
+				p += 4;
+			}
+			case DisplayList.OP_TEXT, DisplayList.OP_TEXT_BOX -> {
+				float x = memGetFloat(p), y = memGetFloat(p + 4), breakRowWidth = memGetFloat(p + 8);
+				int length = memGetInt(p + 12);
+				p += 16;
+				replayText(opcode, x, y, breakRowWidth, p, length);
+				p += length;
+			}
+			default -> throw new IllegalStateException("Corrupted display list, unknown opcode: " + opcode);
+			}
+		}
+	}
+
+	private void addRect(float x, float y, float w, float h, float r) {
+		if (!pathDeferred || pathFilled) {
+			materializePath();
+			if (r == 0) {
+				backend.rect(x, y, w, h);
+			} else {
+				backend.roundedRect(x, y, w, h, r);
+			}
+			return;
+		}
+		if (5 * rectCount == rects.length) {
+			rects = Arrays.copyOf(rects, 2 * rects.length);
+		}
+		int i = 5 * rectCount;
+		rects[i] = x;
+		rects[i + 1] = y;
+		rects[i + 2] = w;
+		rects[i + 3] = h;
+		rects[i + 4] = r;
+		rectCount++;
+	}
+
+	private void emitRects(int from, int to) {
+		for (int i = 5 * from; i < 5 * to; i += 5) {
+			if (rects[i + 4] == 0) {
+				backend.rect(rects[i], rects[i + 1], rects[i + 2], rects[i + 3]);
+			} else {
+				backend.roundedRect(rects[i], rects[i + 1], rects[i + 2], rects[i + 3], rects[i + 4]);
+			}
+		}
+	}
+
+	/**
+	 * @return {@code true} if filling twice the same pixel with the current fill
+	 *         color gives the same result as filling it once
+	 */
+	private boolean isOpaqueFill() {
+		GraphicsState s = state();
+		return s.fillA >= 1 && s.alpha >= 1 && s.sourceOver;
+	}
+
+	/**
+	 * @return {@code true} if a rectangle of the current path may intersect a
+	 *         rectangle of the batch
+	 */
+	private boolean overlapsBatch() {
+		if (batchEnd == 0) {
+			return false;
+		}
+		if ((long) batchEnd * (rectCount - pathStart) > MAX_OVERLAP_TESTS) {
+			return true;
+		}
+		for (int i = 5 * pathStart; i < 5 * rectCount; i += 5) {
+			float ax1 = Math.min(rects[i], rects[i] + rects[i + 2]);
+			float ax2 = Math.max(rects[i], rects[i] + rects[i + 2]);
+			float ay1 = Math.min(rects[i + 1], rects[i + 1] + rects[i + 3]);
+			float ay2 = Math.max(rects[i + 1], rects[i + 1] + rects[i + 3]);
+			for (int j = 0; j < 5 * batchEnd; j += 5) {
+				float bx1 = Math.min(rects[j], rects[j] + rects[j + 2]);
+				float bx2 = Math.max(rects[j], rects[j] + rects[j + 2]);
+				float by1 = Math.min(rects[j + 1], rects[j + 1] + rects[j + 3]);
+				float by2 = Math.max(rects[j + 1], rects[j + 1] + rects[j + 3]);
+				if (ax1 < bx2 && bx1 < ax2 && ay1 < by2 && by1 < ay2) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Draws the pending batch of rectangles with the current fill color. The
+	 * current path is kept.
+	 */
+	private void flushBatch() {
+		if (batchEnd == 0) {
+			return;
+		}
+		backend.beginPath();
+		emitRects(0, batchEnd);
+		backend.fill();
+		stats.drawCalls++;
+
+		int pathLength = rectCount - pathStart;
+		System.arraycopy(rects, 5 * pathStart, rects, 0, 5 * pathLength);
+		rectCount = pathLength;
+		pathStart = 0;
+		batchEnd = 0;
+	}
+
+	/**
+	 * Flushes the batch and sends the current path to NanoVG, so that it can be
+	 * used by calls that are not batched.
+	 */
+	private void materializePath() {
+		if (!pathDeferred) {
+			return;
+		}
+		flushBatch();
+		backend.beginPath();
+		emitRects(pathStart, rectCount);
+		rectCount = pathStart = batchEnd = 0;
+		pathDeferred = false;
+		pathFilled = false;
+	}
+
+	GraphicsState state() {
+		return states[stateIndex];
+	}
+
+	/**
+	 * Counts a render state change.
+	 * 
+	 * @param changed {@code true} if the change must be sent to NanoVG
+	 * @return {@code changed}
+	 */
+	private boolean issue(boolean changed) {
+		if (changed) {
+			stats.issuedStateCalls++;
+		} else {
+			stats.elidedStateCalls++;
+		}
+		return changed;
+	}
+
+	private NVGColor readColor(long p) {
+		replayColor.r(memGetFloat(p));
+		replayColor.g(memGetFloat(p + 4));
+		replayColor.b(memGetFloat(p + 8));
+		replayColor.a(memGetFloat(p + 12));
+		return replayColor;
+	}
+
+	private NVGPaint readPaint(long p) {
+		memCopy(p, replayPaint.address(), NVGPaint.SIZEOF);
+		return replayPaint;
+	}
+
+	/**
+	 * Draws text stored in a display list without creating a buffer for it.
+	 */
+	private void replayText(int opcode, float x, float y, float breakRowWidth, long string, int length) {
+		if (recording != null) {
+			recording.text(opcode, x, y, breakRowWidth, memByteBuffer(string, length));
+		}
+		flushBatch();
+		if (opcode == DisplayList.OP_TEXT) {
+			backend.text(x, y, string, string + length);
+		} else {
+			backend.textBox(x, y, breakRowWidth, string, string + length);
+		}
 	}
 
 	/**
@@ -298,7 +893,15 @@ public class Graphics {
 	 *           </table>
 	 */
 	public void setGlobalCompositeOperation(int op) {
-		nvgGlobalCompositeOperation(ctx, op);
+		if (recording != null) {
+			recording.op(DisplayList.OP_COMPOSITE_OPERATION, op);
+		}
+		if (issue(state().compositeOperation != op)) {
+			state().compositeOperation = op;
+			state().sourceOver = op == SOURCE_OVER;
+			flushBatch();
+			backend.globalCompositeOperation(op);
+		}
 	}
 
 	/**
@@ -329,7 +932,13 @@ public class Graphics {
 	 *                </table>
 	 */
 	public void setGlobalCompositeBlendFunc(int sfactor, int dfactor) {
-		nvgGlobalCompositeBlendFunc(ctx, sfactor, dfactor);
+		if (recording != null) {
+			recording.op(DisplayList.OP_COMPOSITE_BLEND_FUNC, sfactor, dfactor);
+		}
+		state().compositeOperation = -1;
+		state().sourceOver = false;
+		flushBatch();
+		backend.globalCompositeBlendFunc(sfactor, dfactor);
 	}
 
 	/**
@@ -364,7 +973,13 @@ public class Graphics {
 	 *                 </table>
 	 */
 	public void setGlobalCompositeBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
-		nvgGlobalCompositeBlendFuncSeparate(ctx, srcRGB, dstRGB, srcAlpha, dstAlpha);
+		if (recording != null) {
+			recording.op(DisplayList.OP_COMPOSITE_BLEND_FUNC_SEPARATE, srcRGB, dstRGB, srcAlpha, dstAlpha);
+		}
+		state().compositeOperation = -1;
+		state().sourceOver = false;
+		flushBatch();
+		backend.globalCompositeBlendFuncSeparate(srcRGB, dstRGB, srcAlpha, dstAlpha);
 	}
 
 	/**
@@ -372,14 +987,28 @@ public class Graphics {
 	 * {@link #nvgRestore Restore} must be used to restore the state.
 	 */
 	public void save() {
-		nvgSave(ctx);
+		if (recording != null) {
+			recording.op(DisplayList.OP_SAVE);
+		}
+		backend.save();
+		if (stateIndex + 1 < states.length) {
+			states[stateIndex + 1].set(states[stateIndex]);
+			stateIndex++;
+		}
 	}
 
 	/**
 	 * Pops and restores current render state.
 	 */
 	public void restore() {
-		nvgRestore(ctx);
+		if (recording != null) {
+			recording.op(DisplayList.OP_RESTORE);
+		}
+		materializePath();
+		backend.restore();
+		if (stateIndex > 0) {
+			stateIndex--;
+		}
 	}
 
 	/**
@@ -387,7 +1016,12 @@ public class Graphics {
 	 * state stack.
 	 */
 	public void reset() {
-		nvgReset(ctx);
+		if (recording != null) {
+			recording.op(DisplayList.OP_RESET);
+		}
+		materializePath();
+		backend.reset();
+		state().reset();
 	}
 
 	/**
@@ -396,14 +1030,19 @@ public class Graphics {
 	 * @param color the color to set
 	 */
 	public void setStrokeColor(NVGColor color) {
-		nvgStrokeColor(ctx, color);
+		if (recording != null) {
+			recording.op(DisplayList.OP_STROKE_COLOR, color);
+		}
+		if (issue(state().setStrokeColor(color))) {
+			backend.strokeColor(color);
+		}
 	}
 
 	/**
 	 * @param color typically one of the {@code Colors} class color setters
 	 */
 	public void setStrokeColor(ColorSetter color) {
-		nvgStrokeColor(ctx, color.set(colorA));
+		setStrokeColor(color.set(colorA));
 	}
 
 	/**
@@ -413,7 +1052,11 @@ public class Graphics {
 	 * @param paint the paint to set
 	 */
 	public void setStrokePaint(NVGPaint paint) {
-		nvgStrokePaint(ctx, paint);
+		if (recording != null) {
+			recording.op(DisplayList.OP_STROKE_PAINT, paint);
+		}
+		state().strokeIsColor = false;
+		backend.strokePaint(paint);
 	}
 
 	/**
@@ -422,14 +1065,20 @@ public class Graphics {
 	 * @param color the color to set
 	 */
 	public void setFillColor(NVGColor color) {
-		nvgFillColor(ctx, color);
+		if (recording != null) {
+			recording.op(DisplayList.OP_FILL_COLOR, color);
+		}
+		if (issue(state().setFillColor(color))) {
+			flushBatch();
+			backend.fillColor(color);
+		}
 	}
 
 	/**
 	 * @param color typically one of the {@code Colors} class color setters
 	 */
 	public void setFillColor(ColorSetter color) {
-		nvgFillColor(ctx, color.set(colorA));
+		setFillColor(color.set(colorA));
 	}
 
 	/**
@@ -439,7 +1088,12 @@ public class Graphics {
 	 * @param paint the paint to set
 	 */
 	public void setFillPaint(NVGPaint paint) {
-		nvgFillPaint(ctx, paint);
+		if (recording != null) {
+			recording.op(DisplayList.OP_FILL_PAINT, paint);
+		}
+		state().fillIsColor = false;
+		flushBatch();
+		backend.fillPaint(paint);
 	}
 
 	/**
@@ -448,6 +1102,10 @@ public class Graphics {
 	 * of the returned paint.<br>
 	 * The pattern is transformed by the current transform when it is passed to
 	 * {@link #setStrokePaint(NVGPaint)} or {@link #setFillPaint(NVGPaint)}.
+	 * <p>
+	 * If the image is still loading, its placeholder is used instead. Without a
+	 * placeholder, the pattern is transparent.
+	 * </p>
 	 * 
 	 * @param x     the image pattern left coordinate
 	 * @param y     the image pattern top coordinate
@@ -460,7 +1118,43 @@ public class Graphics {
 	 */
 	public NVGPaint getImagePattern(float x, float y, float w, float h, //
 			float angle, float alpha, Image image) {
-		return nvgImagePattern(ctx, x, y, w, h, angle, getID(image), alpha, paint);
+		Image displayed = getDisplayedImage(image);
+		if (displayed == null) {
+			check(image);
+			return backend.imagePattern(x, y, w, h, angle, 0, 0f, paint);
+		}
+		return backend.imagePattern(x, y, w, h, angle, getID(displayed), alpha, paint);
+	}
+
+	/**
+	 * Returns the image to draw for {@code image}, see
+	 * {@link Image#getDisplayedImage()}. While {@code image} is loading, the
+	 * component being drawn is repainted once it is ready, as its display list
+	 * and its layer hold the placeholder.
+	 */
+	public Image getDisplayedImage(Image image) {
+		Image displayed = image.getDisplayedImage();
+		if (displayed != image && drawnComponent != null) {
+			image.addPendingViewer(drawnComponent);
+		}
+		return displayed;
+	}
+
+	/**
+	 * Sets the component whose UI draws the next calls, or {@code null}.
+	 */
+	void setDrawnComponent(Component c) {
+		drawnComponent = c;
+	}
+
+	/**
+	 * Returns an image pattern of the content of a framebuffer object.
+	 * 
+	 * @see #getImagePattern(float, float, float, float, float, float, Image)
+	 */
+	public NVGPaint getImagePattern(float x, float y, float w, float h, //
+			float angle, float alpha, int fbo) {
+		return backend.imagePattern(x, y, w, h, angle, fbo, alpha, paint);
 	}
 
 	/**
@@ -487,12 +1181,12 @@ public class Graphics {
 	 */
 	public NVGPaint getBoxGradient(float x, float y, float w, float h, //
 			float r, float f, NVGColor icol, NVGColor ocol) {
-		return nvgBoxGradient(ctx, x, y, w, h, r, f, icol, ocol, paint);
+		return backend.boxGradient(x, y, w, h, r, f, icol, ocol, paint);
 	}
 
 	public NVGPaint getBoxGradient(float x, float y, float w, float h, //
 			float r, float f, ColorSetter icol, ColorSetter ocol) {
-		return nvgBoxGradient(ctx, x, y, w, h, r, f, icol.set(colorA), ocol.set(colorB), paint);
+		return backend.boxGradient(x, y, w, h, r, f, icol.set(colorA), ocol.set(colorB), paint);
 	}
 
 	/**
@@ -514,12 +1208,12 @@ public class Graphics {
 	 */
 	public NVGPaint getLinearGradient(float sx, float sy, float ex, float ey, //
 			NVGColor icol, NVGColor ocol) {
-		return nvgLinearGradient(ctx, sx, sy, ex, ey, icol, ocol, paint);
+		return backend.linearGradient(sx, sy, ex, ey, icol, ocol, paint);
 	}
 
 	public NVGPaint getLinearGradient(float sx, float sy, float ex, float ey, //
 			ColorSetter icol, ColorSetter ocol) {
-		return nvgLinearGradient(ctx, sx, sy, ex, ey, icol.set(colorA), ocol.set(colorB), paint);
+		return backend.linearGradient(sx, sy, ex, ey, icol.set(colorA), ocol.set(colorB), paint);
 	}
 
 	/**
@@ -541,12 +1235,12 @@ public class Graphics {
 	 */
 	public NVGPaint getRadialGradient(float cx, float cy, float inr, float outr, //
 			NVGColor icol, NVGColor ocol) {
-		return nvgRadialGradient(ctx, cx, cy, inr, outr, icol, ocol, paint);
+		return backend.radialGradient(cx, cy, inr, outr, icol, ocol, paint);
 	}
 
 	public NVGPaint getRadialGradient(float cx, float cy, float inr, float outr, //
 			ColorSetter icol, ColorSetter ocol) {
-		return nvgRadialGradient(ctx, cx, cy, inr, outr, icol.set(colorA), ocol.set(colorB), paint);
+		return backend.radialGradient(cx, cy, inr, outr, icol.set(colorA), ocol.set(colorB), paint);
 	}
 
 	/**
@@ -556,7 +1250,10 @@ public class Graphics {
 	 * @param limit the miter limit to set
 	 */
 	public void setMiterLimit(float limit) {
-		nvgMiterLimit(ctx, limit);
+		if (recording != null) {
+			recording.op(DisplayList.OP_MITER_LIMIT, limit);
+		}
+		backend.miterLimit(limit);
 	}
 
 	/**
@@ -565,7 +1262,13 @@ public class Graphics {
 	 * @param size the stroke width to set
 	 */
 	public void setStrokeWidth(float size) {
-		nvgStrokeWidth(ctx, size);
+		if (recording != null) {
+			recording.op(DisplayList.OP_STROKE_WIDTH, size);
+		}
+		if (issue(state().strokeWidth != size)) {
+			state().strokeWidth = size;
+			backend.strokeWidth(size);
+		}
 	}
 
 	/**
@@ -585,7 +1288,10 @@ public class Graphics {
 	 *            </table>
 	 */
 	public void setLineCap(int cap) {
-		nvgLineCap(ctx, cap);
+		if (recording != null) {
+			recording.op(DisplayList.OP_LINE_CAP, cap);
+		}
+		backend.lineCap(cap);
 	}
 
 	/**
@@ -605,7 +1311,10 @@ public class Graphics {
 	 *             </table>
 	 */
 	public void setLineJoin(int join) {
-		nvgLineJoin(ctx, join);
+		if (recording != null) {
+			recording.op(DisplayList.OP_LINE_JOIN, join);
+		}
+		backend.lineJoin(join);
 	}
 
 	/**
@@ -618,14 +1327,27 @@ public class Graphics {
 	 * @param alpha the alpha value to set
 	 */
 	public void setGlobalAlpha(float alpha) {
-		nvgGlobalAlpha(ctx, alpha);
+		if (recording != null) {
+			recording.op(DisplayList.OP_GLOBAL_ALPHA, alpha);
+		}
+		if (issue(state().globalAlpha != alpha)) {
+			state().globalAlpha = alpha;
+			state().alpha = alpha;
+			flushBatch();
+			backend.globalAlpha(alpha);
+		}
 	}
 
 	/**
 	 * Resets the current transform to an identity matrix.
 	 */
 	public void resetTransform() {
-		nvgResetTransform(ctx);
+		if (recording != null) {
+			recording.op(DisplayList.OP_RESET_TRANSFORM);
+		}
+		materializePath();
+		backend.resetTransform();
+		state().resetTransform();
 	}
 
 	/**
@@ -653,7 +1375,12 @@ public class Graphics {
 	 *          {@link AffineTransform}
 	 */
 	public void premultiply(float a, float b, float c, float d, float e, float f) {
-		nvgTransform(ctx, a, b, c, d, e, f);
+		if (recording != null) {
+			recording.op(DisplayList.OP_TRANSFORM, a, b, c, d, e, f);
+		}
+		materializePath();
+		backend.transform(a, b, c, d, e, f);
+		state().transform(a, b, c, d, e, f);
 	}
 
 	/**
@@ -675,7 +1402,8 @@ public class Graphics {
 	 * @param xform the destination buffer
 	 */
 	public void getCurrentTransform(FloatBuffer dest) {
-		nvgCurrentTransform(ctx, dest);
+		backend.currentTransform(xform);
+		put(xform, dest);
 	}
 
 	/**
@@ -697,7 +1425,7 @@ public class Graphics {
 	 * @param xform the destination buffer
 	 */
 	public void getCurrentTransform(float[] dest) {
-		nvgCurrentTransform(ctx, dest);
+		backend.currentTransform(dest);
 	}
 
 	/**
@@ -707,7 +1435,12 @@ public class Graphics {
 	 * @param ty the Y axis translation amount
 	 */
 	public void translate(float tx, float ty) {
-		nvgTranslate(ctx, tx, ty);
+		if (recording != null) {
+			recording.op(DisplayList.OP_TRANSLATE, tx, ty);
+		}
+		materializePath();
+		backend.translate(tx, ty);
+		state().transform(1, 0, 0, 1, tx, ty);
 	}
 
 	/**
@@ -717,7 +1450,12 @@ public class Graphics {
 	 * @param sy the Y axis scale factor
 	 */
 	public void scale(float sx, float sy) {
-		nvgScale(ctx, sx, sy);
+		if (recording != null) {
+			recording.op(DisplayList.OP_SCALE, sx, sy);
+		}
+		materializePath();
+		backend.scale(sx, sy);
+		state().transform(sx, 0, 0, sy, 0, 0);
 	}
 
 	/**
@@ -741,7 +1479,12 @@ public class Graphics {
 	 * @param angle the skew angle, in radians
 	 */
 	public void skewX(float angle) {
-		nvgSkewX(ctx, angle);
+		if (recording != null) {
+			recording.op(DisplayList.OP_SKEW_X, angle);
+		}
+		materializePath();
+		backend.skewX(angle);
+		state().transform(1, 0, (float) Math.tan(angle), 1, 0, 0);
 	}
 
 	/**
@@ -765,7 +1508,12 @@ public class Graphics {
 	 * @param angle the skew angle, in radians
 	 */
 	public void skewY(float angle) {
-		nvgSkewY(ctx, angle);
+		if (recording != null) {
+			recording.op(DisplayList.OP_SKEW_Y, angle);
+		}
+		materializePath();
+		backend.skewY(angle);
+		state().transform(1, (float) Math.tan(angle), 0, 1, 0, 0);
 	}
 
 	/**
@@ -774,7 +1522,13 @@ public class Graphics {
 	 * @param angle the rotation angle, in radians
 	 */
 	public void rotate(float angle) {
-		nvgRotate(ctx, angle);
+		if (recording != null) {
+			recording.op(DisplayList.OP_ROTATE, angle);
+		}
+		materializePath();
+		backend.rotate(angle);
+		float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+		state().transform(cos, sin, -sin, cos, 0, 0);
 	}
 
 	/**
@@ -790,7 +1544,12 @@ public class Graphics {
 	 * @param h the rectangle height
 	 */
 	public void setScissor(float x, float y, float w, float h) {
-		nvgScissor(ctx, x, y, w, h);
+		if (recording != null) {
+			recording.op(DisplayList.OP_SCISSOR, x, y, w, h);
+		}
+		flushBatch();
+		backend.scissor(x, y, w, h);
+		state().scissor(x, y, w, h, false);
 	}
 
 	/**
@@ -813,21 +1572,83 @@ public class Graphics {
 	 * @param h the rectangle height
 	 */
 	public void intersectScissor(float x, float y, float w, float h) {
-		nvgIntersectScissor(ctx, x, y, w, h);
+		if (recording != null) {
+			recording.op(DisplayList.OP_INTERSECT_SCISSOR, x, y, w, h);
+		}
+		flushBatch();
+		backend.intersectScissor(x, y, w, h);
+		state().scissor(x, y, w, h, true);
 	}
 
 	/**
 	 * Resets and disables scissoring.
 	 */
 	public void resetScissor() {
-		nvgResetScissor(ctx);
+		if (recording != null) {
+			recording.op(DisplayList.OP_RESET_SCISSOR);
+		}
+		flushBatch();
+		backend.resetScissor();
+		state().resetScissor();
+	}
+
+	/**
+	 * Tests whether a rectangle lies entirely outside of the visible part of the
+	 * canvas, that is the canvas intersected with the current scissor. Nothing
+	 * drawn inside such a rectangle can be seen.
+	 * <p>
+	 * The test is conservative: if the current transform rotates or skews the
+	 * coordinate system, the clip region is not computed and this method
+	 * returns {@code false}.
+	 * </p>
+	 * 
+	 * @param x the rectangle X axis coordinate, in the current coordinate system
+	 * @param y the rectangle Y axis coordinate, in the current coordinate system
+	 * @param w the rectangle width
+	 * @param h the rectangle height
+	 * @return {@code true} if the rectangle can be skipped
+	 */
+	public boolean isClipped(float x, float y, float w, float h) {
+		GraphicsState s = state();
+		if (!s.axisAligned) {
+			return false;
+		}
+		float x1 = s.sx * x + s.tx, x2 = s.sx * (x + w) + s.tx;
+		float y1 = s.sy * y + s.ty, y2 = s.sy * (y + h) + s.ty;
+		float minX = Math.min(x1, x2), maxX = Math.max(x1, x2);
+		float minY = Math.min(y1, y2), maxY = Math.max(y1, y2);
+
+		if (maxX <= 0 || maxY <= 0 || minX >= viewportWidth || minY >= viewportHeight) {
+			return true;
+		}
+		if (s.scissor && s.clipKnown) {
+			return maxX <= s.clipX1 || maxY <= s.clipY1 || minX >= s.clipX2 || minY >= s.clipY2;
+		}
+		return false;
+	}
+
+	public boolean isClipped(Rectanglec r) {
+		return isClipped(r.x(), r.y(), r.width(), r.height());
 	}
 
 	/**
 	 * Clears the current path and sub-paths.
 	 */
 	public void beginPath() {
-		nvgBeginPath(ctx);
+		if (recording != null) {
+			recording.op(DisplayList.OP_BEGIN_PATH);
+		}
+		if (pathDeferred) {
+			if (!pathFilled) {
+				// drop the rectangles of the previous path, they were never filled
+				rectCount = pathStart;
+			}
+			pathStart = rectCount;
+		} else {
+			rectCount = pathStart = batchEnd = 0;
+			pathDeferred = true;
+		}
+		pathFilled = false;
 	}
 
 	/**
@@ -837,7 +1658,11 @@ public class Graphics {
 	 * @param y the point Y axis coordinate
 	 */
 	public void moveTo(float x, float y) {
-		nvgMoveTo(ctx, x, y);
+		if (recording != null) {
+			recording.op(DisplayList.OP_MOVE_TO, x, y);
+		}
+		materializePath();
+		backend.moveTo(x, y);
 	}
 
 	/**
@@ -847,7 +1672,11 @@ public class Graphics {
 	 * @param y the point Y axis coordinate
 	 */
 	public void lineTo(float x, float y) {
-		nvgLineTo(ctx, x, y);
+		if (recording != null) {
+			recording.op(DisplayList.OP_LINE_TO, x, y);
+		}
+		materializePath();
+		backend.lineTo(x, y);
 	}
 
 	/**
@@ -862,7 +1691,11 @@ public class Graphics {
 	 * @param y   the point Y axis coordinate
 	 */
 	public void bezierTo(float c1x, float c1y, float c2x, float c2y, float x, float y) {
-		nvgBezierTo(ctx, c1x, c1y, c2x, c2y, x, y);
+		if (recording != null) {
+			recording.op(DisplayList.OP_BEZIER_TO, c1x, c1y, c2x, c2y, x, y);
+		}
+		materializePath();
+		backend.bezierTo(c1x, c1y, c2x, c2y, x, y);
 	}
 
 	/**
@@ -875,7 +1708,11 @@ public class Graphics {
 	 * @param y  the point Y axis coordinate
 	 */
 	public void quadTo(float cx, float cy, float x, float y) {
-		nvgQuadTo(ctx, cx, cy, x, y);
+		if (recording != null) {
+			recording.op(DisplayList.OP_QUAD_TO, cx, cy, x, y);
+		}
+		materializePath();
+		backend.quadTo(cx, cy, x, y);
 	}
 
 	/**
@@ -889,14 +1726,22 @@ public class Graphics {
 	 * @param radius the arc radius, in radians
 	 */
 	public void arcTo(float x1, float y1, float x2, float y2, float radius) {
-		nvgArcTo(ctx, x1, y1, x2, y2, radius);
+		if (recording != null) {
+			recording.op(DisplayList.OP_ARC_TO, x1, y1, x2, y2, radius);
+		}
+		materializePath();
+		backend.arcTo(x1, y1, x2, y2, radius);
 	}
 
 	/**
 	 * Closes current sub-path with a line segment.
 	 */
 	public void closePath() {
-		nvgClosePath(ctx);
+		if (recording != null) {
+			recording.op(DisplayList.OP_CLOSE_PATH);
+		}
+		materializePath();
+		backend.closePath();
 	}
 
 	/**
@@ -911,7 +1756,11 @@ public class Graphics {
 	 *            </table>
 	 */
 	public void setPathWinding(int dir) {
-		nvgPathWinding(ctx, dir);
+		if (recording != null) {
+			recording.op(DisplayList.OP_PATH_WINDING, dir);
+		}
+		materializePath();
+		backend.pathWinding(dir);
 	}
 
 	/**
@@ -931,7 +1780,11 @@ public class Graphics {
 	 *            </table>
 	 */
 	public void arc(float cx, float cy, float r, float a0, float a1, int dir) {
-		nvgArc(ctx, cx, cy, r, a0, a1, dir);
+		if (recording != null) {
+			recording.op(DisplayList.OP_ARC, cx, cy, r, a0, a1, dir);
+		}
+		materializePath();
+		backend.arc(cx, cy, r, a0, a1, dir);
 	}
 
 	/**
@@ -943,7 +1796,10 @@ public class Graphics {
 	 * @param h the rectangle height
 	 */
 	public void rect(float x, float y, float w, float h) {
-		nvgRect(ctx, x, y, w, h);
+		if (recording != null) {
+			recording.op(DisplayList.OP_RECT, x, y, w, h);
+		}
+		addRect(x, y, w, h, 0);
 	}
 
 	/**
@@ -952,7 +1808,7 @@ public class Graphics {
 	 * @param rect
 	 */
 	public void rect(Rectanglec rect) {
-		nvgRect(ctx, rect.x(), rect.y(), rect.width(), rect.height());
+		rect(rect.x(), rect.y(), rect.width(), rect.height());
 	}
 
 	/**
@@ -965,7 +1821,10 @@ public class Graphics {
 	 * @param r the corner radius
 	 */
 	public void roundedRect(float x, float y, float w, float h, float r) {
-		nvgRoundedRect(ctx, x, y, w, h, r);
+		if (recording != null) {
+			recording.op(DisplayList.OP_ROUNDED_RECT, x, y, w, h, r);
+		}
+		addRect(x, y, w, h, r);
 	}
 
 	/**
@@ -975,7 +1834,7 @@ public class Graphics {
 	 * @param r    the corner radius
 	 */
 	public void roundedRect(Rectanglec rect, float r) {
-		nvgRoundedRect(ctx, rect.x(), rect.y(), rect.width(), rect.height(), r);
+		roundedRect(rect.x(), rect.y(), rect.width(), rect.height(), r);
 	}
 
 	/**
@@ -993,7 +1852,12 @@ public class Graphics {
 	 */
 	public void roundedRectVarying(float x, float y, float w, float h, float radTopLeft, float radTopRight,
 			float radBottomRight, float radBottomLeft) {
-		nvgRoundedRectVarying(ctx, x, y, w, h, radTopLeft, radTopRight, radBottomRight, radBottomLeft);
+		if (recording != null) {
+			recording.op(DisplayList.OP_ROUNDED_RECT_VARYING, x, y, w, h, radTopLeft, radTopRight, radBottomRight,
+					radBottomLeft);
+		}
+		materializePath();
+		backend.roundedRectVarying(x, y, w, h, radTopLeft, radTopRight, radBottomRight, radBottomLeft);
 	}
 
 	/**
@@ -1008,7 +1872,12 @@ public class Graphics {
 	 */
 	public void roundedRectVarying(Rectanglec rect, float radTopLeft, float radTopRight, float radBottomRight,
 			float radBottomLeft) {
-		nvgRoundedRectVarying(ctx, rect.x(), rect.y(), rect.width(), rect.height(), radTopLeft, radTopRight,
+		if (recording != null) {
+			recording.op(DisplayList.OP_ROUNDED_RECT_VARYING, rect.x(), rect.y(), rect.width(), rect.height(),
+					radTopLeft, radTopRight, radBottomRight, radBottomLeft);
+		}
+		materializePath();
+		backend.roundedRectVarying(rect.x(), rect.y(), rect.width(), rect.height(), radTopLeft, radTopRight,
 				radBottomRight, radBottomLeft);
 	}
 
@@ -1021,7 +1890,11 @@ public class Graphics {
 	 * @param ry the ellipse Y axis radius
 	 */
 	public void ellipse(float cx, float cy, float rx, float ry) {
-		nvgEllipse(ctx, cx, cy, rx, ry);
+		if (recording != null) {
+			recording.op(DisplayList.OP_ELLIPSE, cx, cy, rx, ry);
+		}
+		materializePath();
+		backend.ellipse(cx, cy, rx, ry);
 	}
 
 	/**
@@ -1030,7 +1903,11 @@ public class Graphics {
 	 * @param rect the bounding box of the ellipse to draw
 	 */
 	public void ellipse(Rectanglec rect) {
-		nvgEllipse(ctx, rect.cx(), rect.cy(), rect.width() / 2f, rect.height() / 2f);
+		if (recording != null) {
+			recording.op(DisplayList.OP_ELLIPSE, rect.cx(), rect.cy(), rect.width() / 2f, rect.height() / 2f);
+		}
+		materializePath();
+		backend.ellipse(rect.cx(), rect.cy(), rect.width() / 2f, rect.height() / 2f);
 	}
 
 	/**
@@ -1041,21 +1918,46 @@ public class Graphics {
 	 * @param r  the circle radius
 	 */
 	public void circle(float cx, float cy, float r) {
-		nvgCircle(ctx, cx, cy, r);
+		if (recording != null) {
+			recording.op(DisplayList.OP_CIRCLE, cx, cy, r);
+		}
+		materializePath();
+		backend.circle(cx, cy, r);
 	}
 
 	/**
 	 * Fills the current path with current fill style.
 	 */
 	public void fill() {
-		nvgFill(ctx);
+		if (recording != null) {
+			recording.op(DisplayList.OP_FILL);
+		}
+		if (pathDeferred && !pathFilled && state().fillIsColor) {
+			if (!isOpaqueFill() && overlapsBatch()) {
+				// the overlap must be blended twice, as two fills
+				flushBatch();
+			}
+			// the rectangles are added to the batch, drawn by the next flush
+			batchEnd = rectCount;
+			pathFilled = true;
+			stats.batchedFills++;
+			return;
+		}
+		materializePath();
+		backend.fill();
+		stats.drawCalls++;
 	}
 
 	/**
 	 * Fills the current path with current stroke style.
 	 */
 	public void stroke() {
-		nvgStroke(ctx);
+		if (recording != null) {
+			recording.op(DisplayList.OP_STROKE);
+		}
+		materializePath();
+		backend.stroke();
+		stats.drawCalls++;
 	}
 
 	/**
@@ -1064,7 +1966,13 @@ public class Graphics {
 	 * @param size the font size to set
 	 */
 	public void setFontSize(float size) {
-		nvgFontSize(ctx, size);
+		if (recording != null) {
+			recording.op(DisplayList.OP_FONT_SIZE, size);
+		}
+		if (issue(state().fontSize != size)) {
+			state().fontSize = size;
+			backend.fontSize(size);
+		}
 	}
 
 	/**
@@ -1073,7 +1981,10 @@ public class Graphics {
 	 * @param blur the blur amount to set
 	 */
 	public void setFontBlur(float blur) {
-		nvgFontBlur(ctx, blur);
+		if (recording != null) {
+			recording.op(DisplayList.OP_FONT_BLUR, blur);
+		}
+		backend.fontBlur(blur);
 	}
 
 	/**
@@ -1082,7 +1993,13 @@ public class Graphics {
 	 * @param spacing the letter spacing amount to set
 	 */
 	public void setTextLetterSpacing(float spacing) {
-		nvgTextLetterSpacing(ctx, spacing);
+		if (recording != null) {
+			recording.op(DisplayList.OP_TEXT_LETTER_SPACING, spacing);
+		}
+		if (issue(state().letterSpacing != spacing)) {
+			state().letterSpacing = spacing;
+			backend.textLetterSpacing(spacing);
+		}
 	}
 
 	/**
@@ -1092,7 +2009,13 @@ public class Graphics {
 	 * @param lineHeight the line height to set
 	 */
 	public void setTextLineHeight(float lineHeight) {
-		nvgTextLineHeight(ctx, lineHeight);
+		if (recording != null) {
+			recording.op(DisplayList.OP_TEXT_LINE_HEIGHT, lineHeight);
+		}
+		if (issue(state().lineHeight != lineHeight)) {
+			state().lineHeight = lineHeight;
+			backend.textLineHeight(lineHeight);
+		}
 	}
 
 	/**
@@ -1112,7 +2035,13 @@ public class Graphics {
 	 *              </table>
 	 */
 	public void setTextAlign(int align) {
-		nvgTextAlign(ctx, align);
+		if (recording != null) {
+			recording.op(DisplayList.OP_TEXT_ALIGN, align);
+		}
+		if (issue(state().textAlign != align)) {
+			state().textAlign = align;
+			backend.textAlign(align);
+		}
 	}
 
 	/**
@@ -1121,7 +2050,13 @@ public class Graphics {
 	 * @param font the font name
 	 */
 	public void setFontFace(String font) {
-		nvgFontFace(ctx, font);
+		if (recording != null) {
+			recording.op(DisplayList.OP_FONT_FACE, font);
+		}
+		if (issue(!font.equals(state().fontFace))) {
+			state().fontFace = font;
+			backend.fontFace(font);
+		}
 	}
 
 	/**
@@ -1130,8 +2065,8 @@ public class Graphics {
 	 * @param font a font style
 	 */
 	public void setFont(FontStyle font) {
-		nvgFontFace(ctx, font.getName());
-		nvgFontSize(ctx, font.getSize());
+		setFontFace(font.getName());
+		setFontSize(font.getSize());
 	}
 
 	/**
@@ -1142,7 +2077,11 @@ public class Graphics {
 	 * @param string the text string to draw
 	 */
 	public void text(float x, float y, CharSequence string) {
-		nvgText(ctx, x, y, string);
+		if (recording != null) {
+			recording.text(DisplayList.OP_TEXT, x, y, 0, string);
+		}
+		flushBatch();
+		backend.text(x, y, string);
 	}
 
 	/**
@@ -1153,7 +2092,11 @@ public class Graphics {
 	 * @param string the text string to draw
 	 */
 	public void text(float x, float y, ByteBuffer string) {
-		nvgText(ctx, x, y, string);
+		if (recording != null) {
+			recording.text(DisplayList.OP_TEXT, x, y, 0, string);
+		}
+		flushBatch();
+		backend.text(x, y, string);
 	}
 
 	/**
@@ -1172,7 +2115,11 @@ public class Graphics {
 	 * @param string        the text string to draw
 	 */
 	public void textBox(float x, float y, float breakRowWidth, ByteBuffer string) {
-		nvgTextBox(ctx, x, y, breakRowWidth, string);
+		if (recording != null) {
+			recording.text(DisplayList.OP_TEXT_BOX, x, y, breakRowWidth, string);
+		}
+		flushBatch();
+		backend.textBox(x, y, breakRowWidth, string);
 	}
 
 	/**
@@ -1191,7 +2138,11 @@ public class Graphics {
 	 * @param string        the text string to draw
 	 */
 	public void textBox(float x, float y, float breakRowWidth, CharSequence string) {
-		nvgTextBox(ctx, x, y, breakRowWidth, string);
+		if (recording != null) {
+			recording.text(DisplayList.OP_TEXT_BOX, x, y, breakRowWidth, string);
+		}
+		flushBatch();
+		backend.textBox(x, y, breakRowWidth, string);
 	}
 
 	/**
@@ -1204,7 +2155,8 @@ public class Graphics {
 	 * </p>
 	 * 
 	 * <p>
-	 * Measured values are returned in local coordinate space.
+	 * Measured values are returned in local coordinate space. They are cached,
+	 * see {@link TextCache}.
 	 * </p>
 	 *
 	 * @param x      the text X axis coordinate
@@ -1216,24 +2168,24 @@ public class Graphics {
 	 *         character should drawn)
 	 */
 	public float getTextBounds(float x, float y, ByteBuffer string, FloatBuffer bounds) {
-		return nvgTextBounds(ctx, x, y, string, bounds);
+		float advance = textCache.textBounds(x, y, string, measure);
+		put(measure, bounds);
+		return advance;
 	}
 
 	public float getTextBounds(float x, float y, ByteBuffer string, float[] bounds) {
-		return nvgTextBounds(ctx, x, y, string, bounds);
+		return textCache.textBounds(x, y, string, bounds);
 	}
 
 	public float getTextBounds(float x, float y, ByteBuffer string, Rectangle bounds) {
-		float[] dest = new float[4];
-		float res = nvgTextBounds(ctx, x, y, string, dest);
-		bounds.setRectFromDiagonal(dest[0], dest[0], dest[0], dest[0]);
+		float res = textCache.textBounds(x, y, string, measure);
+		bounds.setRectFromDiagonal(measure[0], measure[1], measure[2], measure[3]);
 		return res;
 	}
 
 	public float getTextBounds(float x, float y, CharSequence string, Rectangle bounds) {
-		float[] dest = new float[4];
-		float res = nvgTextBounds(ctx, x, y, string, dest);
-		bounds.setRectFromDiagonal(dest[0], dest[1], dest[2], dest[3]);
+		float res = textCache.textBounds(x, y, string, measure);
+		bounds.setRectFromDiagonal(measure[0], measure[1], measure[2], measure[3]);
 		return res;
 	}
 
@@ -1242,7 +2194,9 @@ public class Graphics {
 	 * {@link #getTextBounds(float, float, ByteBuffer, FloatBuffer)}
 	 */
 	public float getTextBounds(float x, float y, CharSequence string, FloatBuffer bounds) {
-		return nvgTextBounds(ctx, x, y, string, bounds);
+		float advance = textCache.textBounds(x, y, string, measure);
+		put(measure, bounds);
+		return advance;
 	}
 
 	/**
@@ -1250,7 +2204,19 @@ public class Graphics {
 	 * {@link #getTextBounds(float, float, CharSequence, FloatBuffer)}
 	 */
 	public float getTextBounds(float x, float y, CharSequence string, float[] bounds) {
-		return nvgTextBounds(ctx, x, y, string, bounds);
+		return textCache.textBounds(x, y, string, bounds);
+	}
+
+	/**
+	 * Copies 4 bounds values to {@code dest}, if it is not {@code null}.
+	 */
+	private static void put(float[] values, FloatBuffer dest) {
+		if (dest != null) {
+			int pos = dest.position();
+			for (int i = 0; i < values.length; i++) {
+				dest.put(pos + i, values[i]);
+			}
+		}
 	}
 
 	/**
@@ -1273,7 +2239,8 @@ public class Graphics {
 	 * @param bounds        returns the bounding box of the text box
 	 */
 	public void getTextBoxBounds(float x, float y, float breakRowWidth, ByteBuffer string, FloatBuffer bounds) {
-		nvgTextBoxBounds(ctx, x, y, breakRowWidth, string, bounds);
+		textCache.textBoxBounds(x, y, breakRowWidth, string, measure);
+		put(measure, bounds);
 	}
 
 	/**
@@ -1281,7 +2248,7 @@ public class Graphics {
 	 * {@link #getTextBoxBounds(float, float, float, ByteBuffer, FloatBuffer)}
 	 */
 	public void getTextBoxBounds(float x, float y, float breakRowWidth, ByteBuffer string, float[] bounds) {
-		nvgTextBoxBounds(ctx, x, y, breakRowWidth, string, bounds);
+		textCache.textBoxBounds(x, y, breakRowWidth, string, bounds);
 	}
 
 	/**
@@ -1289,7 +2256,8 @@ public class Graphics {
 	 * {@link #getTextBoxBounds(float, float, float, ByteBuffer, FloatBuffer)}
 	 */
 	public void getTextBoxBounds(float x, float y, float breakRowWidth, CharSequence string, FloatBuffer bounds) {
-		nvgTextBoxBounds(ctx, x, y, breakRowWidth, string, bounds);
+		textCache.textBoxBounds(x, y, breakRowWidth, string, measure);
+		put(measure, bounds);
 	}
 
 	/**
@@ -1297,7 +2265,7 @@ public class Graphics {
 	 * {@link #getTextBoxBounds(float, float, float, CharSequence, FloatBuffer)}
 	 */
 	public void getTextBoxBounds(float x, float y, float breakRowWidth, CharSequence string, float[] bounds) {
-		nvgTextBoxBounds(ctx, x, y, breakRowWidth, string, bounds);
+		textCache.textBoxBounds(x, y, breakRowWidth, string, bounds);
 	}
 
 	/**
@@ -1314,7 +2282,7 @@ public class Graphics {
 	 * @param positions returns the glyph x positions
 	 */
 	public int getTextGlyphPositions(float x, float y, ByteBuffer string, NVGGlyphPosition.Buffer positions) {
-		return nvgTextGlyphPositions(ctx, x, y, string, positions);
+		return backend.textGlyphPositions(x, y, string, positions);
 	}
 
 	/**
@@ -1322,7 +2290,7 @@ public class Graphics {
 	 * {@link #getTextGlyphPositions(float, float, ByteBuffer, org.lwjgl.nanovg.NVGGlyphPosition.Buffer)}
 	 */
 	public int getTextGlyphPositions(float x, float y, CharSequence string, NVGGlyphPosition.Buffer positions) {
-		return nvgTextGlyphPositions(ctx, x, y, string, positions);
+		return backend.textGlyphPositions(x, y, string, positions);
 	}
 
 	/**
@@ -1337,7 +2305,10 @@ public class Graphics {
 	 * @param lineh     the line height
 	 */
 	public void getTextMetrics(FloatBuffer ascender, FloatBuffer descender, FloatBuffer lineh) {
-		nvgTextMetrics(ctx, ascender, descender, lineh);
+		backend.textMetrics(metrics[0], metrics[1], metrics[2]);
+		put(metrics[0], ascender);
+		put(metrics[1], descender);
+		put(metrics[2], lineh);
 	}
 
 	/**
@@ -1345,7 +2316,7 @@ public class Graphics {
 	 * {@link #getTextMetrics(FloatBuffer, FloatBuffer, FloatBuffer)}
 	 */
 	public void getTextMetrics(float[] ascender, float[] descender, float[] lineh) {
-		nvgTextMetrics(ctx, ascender, descender, lineh);
+		backend.textMetrics(ascender, descender, lineh);
 	}
 
 	/**
@@ -1364,27 +2335,115 @@ public class Graphics {
 	 * @return the number of lines/rows measured
 	 */
 	public int textBreakLines(ByteBuffer string, float breakRowWidth, NVGTextRow.Buffer rows) {
-		return nvgTextBreakLines(ctx, string, breakRowWidth, rows);
+		return textCache.breakLines(string, breakRowWidth, rows);
 	}
 
 	/**
 	 * CharSequence version of
 	 * {@link #textBreakLines(ByteBuffer, float, org.lwjgl.nanovg.NVGTextRow.Buffer)}
+	 * <p>
+	 * The pointers of the rows refer to an internal copy of {@code string}, that
+	 * is only valid until the next measurement.
+	 * </p>
 	 */
 	public int textBreakLines(CharSequence string, float breakRowWidth, NVGTextRow.Buffer rows) {
-		return nvgTextBreakLines(ctx, string, breakRowWidth, rows);
+		return textCache.breakLines(string, breakRowWidth, rows);
 	}
 
 	public Vectorc getContentScale() {
 		return contentScale;
 	}
 
+	/**
+	 * @return the backend the drawing calls are sent to
+	 */
+	public RenderBackend getBackend() {
+		return backend;
+	}
+
+	/**
+	 * @return the counters of the last complete frame, they are updated by
+	 *         {@link #beginFrame(Vectorc, Vectorc)}
+	 */
+	public RenderStats getFrameStats() {
+		return lastFrameStats;
+	}
+
+	/**
+	 * @return the cache of the text measurements
+	 */
+	public TextCache getTextCache() {
+		return textCache;
+	}
+
+	/**
+	 * @return the cache of the offscreen layers of the components
+	 * @see Component#setCacheAsLayer(boolean)
+	 */
+	public LayerCache getLayerCache() {
+		return layerCache;
+	}
+
+	/**
+	 * @return the counters of the frame being drawn
+	 */
+	RenderStats getCurrentStats() {
+		return stats;
+	}
+
+	/**
+	 * Restricts the drawing of the components to a region. Components that do
+	 * not intersect it are skipped, the drawing calls themselves are not
+	 * clipped.
+	 * 
+	 * @param region the region to draw, or {@code null} to draw everything
+	 */
+	public void setDirtyRegion(Rectanglec region) {
+		this.dirtyRegion = region;
+	}
+
+	/**
+	 * @return the region that must be drawn, or {@code null} if everything must
+	 *         be drawn
+	 */
+	public Rectanglec getDirtyRegion() {
+		return dirtyRegion;
+	}
+
+	/**
+	 * Tests whether a rectangle given in the current coordinate system, for
+	 * example translated by a scrolling component, intersects the dirty region.
+	 * The test is conservative like {@link #isClipped(float, float, float, float)}.
+	 * 
+	 * @return {@code true} if a component with these bounds must be drawn
+	 */
+	boolean isInDirtyRegion(Rectanglec r) {
+		if (dirtyRegion == null) {
+			return true;
+		}
+		GraphicsState s = state();
+		if (!s.axisAligned) {
+			return true;
+		}
+		if (s.sx == 1 && s.sy == 1 && s.tx == 0 && s.ty == 0) {
+			return dirtyRegion.intersects(r);
+		}
+		float x1 = s.sx * r.x() + s.tx, x2 = s.sx * (r.x() + r.width()) + s.tx;
+		float y1 = s.sy * r.y() + s.ty, y2 = s.sy * (r.y() + r.height()) + s.ty;
+		transformed.setRectFromDiagonal(x1, y1, x2, y2);
+		return dirtyRegion.intersects(transformed);
+	}
+
 	public void destroy() {
-		images.forEach((im, id) -> {
-			nvgDeleteImage(ctx, id);
-		});
+		layerCache.clear();
+
+		for (Image im : images) {
+			backend.deleteImage(im.removeHandle(this));
+			im.releaseTexture();
+		}
 		images.clear();
+		deadImages.clear();
 
-		nvgDelete(ctx);
+		backend.destroy();
 	}
 }
@@ -0,0 +1,215 @@
+package grayscale;
+
+import org.lwjgl.nanovg.NVGColor;
+
+/**
+ * A copy of the part of the NanoVG render state that {@link Graphics} keeps
+ * track of, to avoid setting a value that is already set.
+ * <p>
+ * An unknown value is represented by {@code NaN} for floats, {@code -1} for
+ * ints and {@code null} for strings, so that the next call always goes
+ * through.
+ * </p>
+ * <p>
+ * The transform and the scissor are tracked as long as the transform only
+ * scales and translates, so that the clip region is known in canvas
+ * coordinates and can be used to cull what lies outside of it.
+ * </p>
+ *
+ * @author Niels
+ */
+class GraphicsState {
+	boolean fillIsColor;
+	float fillR, fillG, fillB, fillA;
+
+	boolean strokeIsColor;
+	float strokeR, strokeG, strokeB, strokeA;
+
+	String fontFace;
+	float fontSize;
+	float letterSpacing;
+	float lineHeight;
+	int textAlign;
+	float strokeWidth;
+	float globalAlpha;
+	int compositeOperation;
+	/**
+	 * The global alpha and composite operation known for sure, the values above
+	 * being unknown right after a reset, when NanoVG has its defaults.
+	 */
+	float alpha;
+	boolean sourceOver;
+
+	/**
+	 * The current transform is {@code x' = sx * x + tx, y' = sy * y + ty} if
+	 * {@code axisAligned} is {@code true}, unknown otherwise.
+	 */
+	boolean axisAligned;
+	float sx, sy, tx, ty;
+
+	/**
+	 * The scissor rectangle in canvas coordinates, if {@code scissor} is
+	 * {@code true}. It is unknown if {@code clipKnown} is {@code false}.
+	 */
+	boolean scissor;
+	boolean clipKnown;
+	float clipX1, clipY1, clipX2, clipY2;
+
+	GraphicsState() {
+		reset();
+	}
+
+	/**
+	 * Forgets everything about the current state.
+	 */
+	void reset() {
+		fillIsColor = false;
+		strokeIsColor = false;
+		fontFace = null;
+		fontSize = Float.NaN;
+		letterSpacing = Float.NaN;
+		lineHeight = Float.NaN;
+		textAlign = -1;
+		strokeWidth = Float.NaN;
+		globalAlpha = Float.NaN;
+		compositeOperation = -1;
+		alpha = 1;
+		sourceOver = true;
+		resetTransform();
+		resetScissor();
+	}
+
+	void set(GraphicsState other) {
+		fillIsColor = other.fillIsColor;
+		fillR = other.fillR;
+		fillG = other.fillG;
+		fillB = other.fillB;
+		fillA = other.fillA;
+		strokeIsColor = other.strokeIsColor;
+		strokeR = other.strokeR;
+		strokeG = other.strokeG;
+		strokeB = other.strokeB;
+		strokeA = other.strokeA;
+		fontFace = other.fontFace;
+		fontSize = other.fontSize;
+		letterSpacing = other.letterSpacing;
+		lineHeight = other.lineHeight;
+		textAlign = other.textAlign;
+		strokeWidth = other.strokeWidth;
+		globalAlpha = other.globalAlpha;
+		compositeOperation = other.compositeOperation;
+		alpha = other.alpha;
+		sourceOver = other.sourceOver;
+		axisAligned = other.axisAligned;
+		sx = other.sx;
+		sy = other.sy;
+		tx = other.tx;
+		ty = other.ty;
+		scissor = other.scissor;
+		clipKnown = other.clipKnown;
+		clipX1 = other.clipX1;
+		clipY1 = other.clipY1;
+		clipX2 = other.clipX2;
+		clipY2 = other.clipY2;
+	}
+
+	/**
+	 * @return {@code true} if the fill color was changed
+	 */
+	boolean setFillColor(NVGColor c) {
+		float r = c.r(), g = c.g(), b = c.b(), a = c.a();
+		if (fillIsColor && fillR == r && fillG == g && fillB == b && fillA == a) {
+			return false;
+		}
+		fillIsColor = true;
+		fillR = r;
+		fillG = g;
+		fillB = b;
+		fillA = a;
+		return true;
+	}
+
+	/**
+	 * @return {@code true} if the stroke color was changed
+	 */
+	boolean setStrokeColor(NVGColor c) {
+		float r = c.r(), g = c.g(), b = c.b(), a = c.a();
+		if (strokeIsColor && strokeR == r && strokeG == g && strokeB == b && strokeA == a) {
+			return false;
+		}
+		strokeIsColor = true;
+		strokeR = r;
+		strokeG = g;
+		strokeB = b;
+		strokeA = a;
+		return true;
+	}
+
+	void resetTransform() {
+		axisAligned = true;
+		sx = sy = 1;
+		tx = ty = 0;
+	}
+
+	/**
+	 * Premultiplies the tracked transform by {@code [a c e] [b d f]}.
+	 */
+	void transform(float a, float b, float c, float d, float e, float f) {
+		if (!axisAligned) {
+			return;
+		}
+		if (b != 0 || c != 0) {
+			axisAligned = false;
+			return;
+		}
+		tx += sx * e;
+		ty += sy * f;
+		sx *= a;
+		sy *= d;
+	}
+
+	void resetScissor() {
+		scissor = false;
+		clipKnown = true;
+	}
+
+	/**
+	 * Sets or intersects the scissor with a rectangle given in the current
+	 * coordinate system.
+	 */
+	void scissor(float x, float y, float w, float h, boolean intersect) {
+		if (!axisAligned) {
+			// NanoVG now has a rotated scissor
+			scissor = true;
+			clipKnown = false;
+			return;
+		}
+		float x1 = sx * x + tx, x2 = sx * (x + Math.max(0, w)) + tx;
+		float y1 = sy * y + ty, y2 = sy * (y + Math.max(0, h)) + ty;
+		if (x2 < x1) {
+			float t = x1;
+			x1 = x2;
+			x2 = t;
+		}
+		if (y2 < y1) {
+			float t = y1;
+			y1 = y2;
+			y2 = t;
+		}
+		if (intersect && scissor) {
+			if (!clipKnown) {
+				return;
+			}
+			x1 = Math.max(x1, clipX1);
+			y1 = Math.max(y1, clipY1);
+			x2 = Math.max(x1, Math.min(x2, clipX2));
+			y2 = Math.max(y1, Math.min(y2, clipY2));
+		}
+		scissor = true;
+		clipKnown = true;
+		clipX1 = x1;
+		clipY1 = y1;
+		clipX2 = x2;
+		clipY2 = y2;
+	}
+}
@@ -0,0 +1,276 @@
+package grayscale;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A uniform grid over the bounds of a {@link Window}, storing in each cell the
+ * components whose bounds intersect it. It finds the components under the
+ * mouse by only testing the components of one cell.
+ * <p>
+ * Components whose bounds change are moved to their new cells. The whole grid
+ * is rebuilt when the tree or the window bounds change, or when too many
+ * components moved.
+ * </p>
+ * <p>
+ * The children of a scrolling component are in an index of their own, over
+ * the coordinates of its content, so that scrolling does not move anything in
+ * the index of the window. A query goes into the index of a scrolling
+ * component when the point is inside of it, shifted by its scroll offset. The
+ * nested indices are only updated when they are queried.
+ * </p>
+ *
+ * @author Niels
+ */
+class HitTestIndex {
+	/**
+	 * The preferred size of a cell, and the maximum number of cells along an
+	 * axis
+	 */
+	private static final float CELL_SIZE = 32;
+	private static final int MAX_CELLS = 128;
+
+	/**
+	 * The window of this index, or the scrolling component whose children are
+	 * indexed
+	 */
+	private final Window window;
+	private final Component owner;
+	private Rectangle area = new Rectangle();
+
+	private float x, y, cellWidth, cellHeight;
+	private int columns = 0, rows = 0;
+	private List<List<Component>> cells = new ArrayList<>();
+
+	private int componentCount = 0;
+	private boolean rebuildNeeded = true;
+	private List<Component> moved = new ArrayList<>();
+	/**
+	 * true if a nested index changed, so that the version must change
+	 */
+	private boolean nestedChanged = false;
+
+	/**
+	 * Incremented each time the index changes
+	 */
+	private int version = 0;
+
+	HitTestIndex(Window window) {
+		this.window = window;
+		this.owner = null;
+	}
+
+	/**
+	 * Creates the index of the children of a scrolling component.
+	 */
+	HitTestIndex(Component owner) {
+		this.window = null;
+		this.owner = owner;
+	}
+
+	/**
+	 * Requests a complete rebuild, for example because components were added or
+	 * removed.
+	 */
+	void invalidate() {
+		if (!rebuildNeeded) {
+			rebuildNeeded = true;
+			for (Component c : moved) {
+				c.indexMoved = false;
+			}
+			moved.clear();
+			changed();
+		}
+	}
+
+	/**
+	 * Called when the scroll offset of the owner of this index changes, the
+	 * components under the mouse may have changed.
+	 */
+	void scrolled() {
+		changed();
+	}
+
+	/**
+	 * Makes the version of the index of the window change, as the nested
+	 * indices are not updated with it.
+	 */
+	private void changed() {
+		if (owner != null) {
+			Window w = owner.getWindow();
+			if (w != null) {
+				w.getHitTestIndex().nestedChanged = true;
+			}
+		}
+	}
+
+	/**
+	 * Called when the bounds of a component of the window change.
+	 */
+	void moved(Component c) {
+		if (rebuildNeeded || c.indexMoved) {
+			return;
+		}
+		if (moved.size() > componentCount / 4) {
+			invalidate();
+			return;
+		}
+		c.indexMoved = true;
+		moved.add(c);
+		changed();
+	}
+
+	/**
+	 * @return {@code true} if {@link #update()} has something to do
+	 */
+	boolean isOutdated() {
+		return rebuildNeeded || !moved.isEmpty() || nestedChanged;
+	}
+
+	/**
+	 * @return a number that changes each time the index is updated
+	 */
+	int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Applies the changes since the last update.
+	 */
+	void update() {
+		if (rebuildNeeded) {
+			rebuild();
+		} else if (!moved.isEmpty()) {
+			for (Component c : moved) {
+				c.indexMoved = false;
+				remove(c);
+				insert(c);
+			}
+			moved.clear();
+			version++;
+		}
+		if (nestedChanged) {
+			nestedChanged = false;
+			version++;
+		}
+	}
+
+	private void rebuild() {
+		Rectanglec b = owner == null ? window.getBounds() : contentArea();
+		x = b.x();
+		y = b.y();
+		columns = Math.max(1, Math.min(MAX_CELLS, (int) Math.ceil(b.width() / CELL_SIZE)));
+		rows = Math.max(1, Math.min(MAX_CELLS, (int) Math.ceil(b.height() / CELL_SIZE)));
+		cellWidth = Math.max(1, b.width() / columns);
+		cellHeight = Math.max(1, b.height() / rows);
+
+		int cellCount = columns * rows;
+		while (cells.size() < cellCount) {
+			cells.add(new ArrayList<>());
+		}
+		for (List<Component> cell : cells) {
+			cell.clear();
+		}
+
+		componentCount = 0;
+		if (owner != null) {
+			for (Component child : owner.getChildren()) {
+				insertTree(child);
+			}
+		} else {
+			Component decoration = window.getDecorationComponent();
+			if (decoration != null) {
+				insertTree(decoration);
+			}
+			insertTree(window.getContent());
+		}
+
+		rebuildNeeded = false;
+		version++;
+	}
+
+	/**
+	 * @return the union of the bounds of the children of the owner
+	 */
+	private Rectanglec contentArea() {
+		area.set(owner.getBounds());
+		List<Component> children = owner.getChildren();
+		for (int i = 0; i < children.size(); i++) {
+			Rectanglec b = children.get(i).getBounds();
+			if (i == 0) {
+				area.set(b);
+			} else {
+				Rectangle.union(area, b, area);
+			}
+		}
+		return area;
+	}
+
+	private void insertTree(Component c) {
+		insert(c);
+		componentCount++;
+		if (c.contentIndex != null) {
+			// the children of a scrolling component have their own index
+			return;
+		}
+		for (Component child : c.getChildren()) {
+			insertTree(child);
+		}
+	}
+
+	private int column(float px) {
+		return Math.max(0, Math.min(columns - 1, (int) Math.floor((px - x) / cellWidth)));
+	}
+
+	private int row(float py) {
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor((py - y) / cellHeight)));
+	}
+
+	private void insert(Component c) {
+		Rectanglec b = c.getBounds();
+		if (b.isEmpty()) {
+			c.cellX1 = -1;
+			return;
+		}
+		c.cellX1 = column(b.x());
+		c.cellY1 = row(b.y());
+		c.cellX2 = column(b.maxx());
+		c.cellY2 = row(b.maxy());
+		for (int j = c.cellY1; j <= c.cellY2; j++) {
+			for (int i = c.cellX1; i <= c.cellX2; i++) {
+				cells.get(j * columns + i).add(c);
+			}
+		}
+	}
+
+	private void remove(Component c) {
+		if (c.cellX1 < 0) {
+			return;
+		}
+		for (int j = c.cellY1; j <= c.cellY2; j++) {
+			for (int i = c.cellX1; i <= c.cellX2; i++) {
+				cells.get(j * columns + i).remove(c);
+			}
+		}
+		c.cellX1 = -1;
+	}
+
+	/**
+	 * Adds to {@code dest} the components whose bounds contain
+	 * {@code (px, py)}, and the children of the scrolling components under the
+	 * point.
+	 */
+	void query(float px, float py, List<Component> dest) {
+		update();
+		List<Component> cell = cells.get(row(py) * columns + column(px));
+		for (int i = 0; i < cell.size(); i++) {
+			Component c = cell.get(i);
+			if (c.getBounds().contains(px, py)) {
+				dest.add(c);
+				if (c.contentIndex != null) {
+					c.contentIndex.query(px + c.getScrollX(), py + c.getScrollY(), dest);
+				}
+			}
+		}
+	}
+}
@@ -8,6 +8,9 @@ import static org.lwjgl.system.MemoryUtil.*;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import utils.Texture;
 
@@ -34,10 +37,44 @@ public class Image {
 			IMAGE_PREMULTIPLIED = NVG_IMAGE_PREMULTIPLIED, //
 			IMAGE_NEAREST = NVG_IMAGE_NEAREST;
 
+	/**
+	 * The loading state of an image.
+	 * <ul>
+	 * <li>{@link #LOADING} - the image is being decoded in the background, it has
+	 * no texture yet.</li>
+	 * <li>{@link #READY} - the image can be drawn.</li>
+	 * <li>{@link #FAILED} - the image could not be loaded.</li>
+	 * </ul>
+	 * 
+	 * @see ImageLoader
+	 */
+	public enum State {
+		LOADING, READY, FAILED
+	}
+
 	private Texture texture;
 	private int nanovgFlags;
 	private boolean isAlive = true;
 
+	private State state = State.READY;
+	/**
+	 * The image drawn instead of this one while it is not ready, or {@code null}
+	 */
+	private Image placeholder;
+	/**
+	 * The components that drew this image while it was loading, repainted when
+	 * it is ready, or {@code null}
+	 */
+	private Set<Component> pendingViewers;
+
+	/**
+	 * The NanoVG handles of this image, for each {@link Graphics} that drew it.
+	 * There is usually only one.
+	 */
+	private Graphics[] owners = new Graphics[1];
+	private int[] handles = new int[1];
+	private int ownerCount = 0;
+
 	/**
 	 * @param path       the file path to this image
 	 * @param imageFlags the NanoVG image flags. One of:<br>
@@ -85,12 +122,99 @@ public class Image {
 		this.nanovgFlags = imageFlags;
 	}
 
+	/**
+	 * Creates an image that is still loading.
+	 * 
+	 * @see ImageLoader#load(String, int, Image)
+	 */
+	Image(int imageFlags, Image placeholder) {
+		this.nanovgFlags = imageFlags;
+		this.placeholder = placeholder;
+		state = State.LOADING;
+	}
+
+	/**
+	 * @return the width of this image, or 0 if it is not ready
+	 */
 	public int getWidth() {
-		return texture.getWidth();
+		return texture == null ? 0 : texture.getWidth();
 	}
 
+	/**
+	 * @return the height of this image, or 0 if it is not ready
+	 */
 	public int getHeight() {
-		return texture.getHeight();
+		return texture == null ? 0 : texture.getHeight();
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public boolean isReady() {
+		return state == State.READY;
+	}
+
+	public Image getPlaceholder() {
+		return placeholder;
+	}
+
+	/**
+	 * @param placeholder the image drawn instead of this one while it is not
+	 *                    ready, or {@code null} to draw nothing
+	 */
+	public void setPlaceholder(Image placeholder) {
+		this.placeholder = placeholder;
+	}
+
+	/**
+	 * @return this image if it is ready, otherwise its placeholder if it is
+	 *         ready, otherwise {@code null}
+	 */
+	public Image getDisplayedImage() {
+		if (state == State.READY) {
+			return this;
+		}
+		if (placeholder != null && placeholder.isReady()) {
+			return placeholder;
+		}
+		return null;
+	}
+
+	/**
+	 * Called by the {@link ImageLoader} once the texture is uploaded.
+	 */
+	void setTexture(Texture texture) {
+		this.texture = texture;
+		state = State.READY;
+		// their display lists and layers hold the placeholder
+		if (pendingViewers != null) {
+			for (Component c : pendingViewers) {
+				c.repaint();
+			}
+			pendingViewers = null;
+		}
+	}
+
+	/**
+	 * Called by the {@link ImageLoader} if the image cannot be loaded. The
+	 * placeholder stays drawn, nothing is repainted.
+	 */
+	void setFailed() {
+		state = State.FAILED;
+		pendingViewers = null;
+	}
+
+	/**
+	 * Makes {@code c} be repainted once this image is ready, if it is loading.
+	 */
+	void addPendingViewer(Component c) {
+		if (state == State.LOADING) {
+			if (pendingViewers == null) {
+				pendingViewers = new HashSet<>();
+			}
+			pendingViewers.add(c);
+		}
 	}
 
 	public int getOpenglID() {
@@ -118,12 +242,81 @@ public class Image {
 		memFree(image);
 	}
 
+	/**
+	 * Deletes this image. The frame being drawn may still use it, so the NanoVG
+	 * handles are released by their {@code Graphics} at the end of the frame,
+	 * and the texture once the last handle is released. Without handles, the
+	 * texture is deleted right away.
+	 */
 	public void delete() {
-		texture.delete();
+		if (!isAlive) {
+			return;
+		}
 		isAlive = false;
+		pendingViewers = null;
+		for (int i = 0; i < ownerCount; i++) {
+			owners[i].imageDeleted(this);
+		}
+		releaseTexture();
+	}
+
+	/**
+	 * Deletes the texture of this image if it was deleted and no
+	 * {@code Graphics} has a handle to it anymore.
+	 */
+	void releaseTexture() {
+		if (!isAlive && ownerCount == 0 && texture != null) {
+			texture.delete();
+			texture = null;
+		}
 	}
 
 	public boolean isAlive() {
 		return isAlive;
 	}
+
+	/**
+	 * @return the NanoVG handle of this image for {@code g}, or {@code -1}
+	 */
+	int getHandle(Graphics g) {
+		for (int i = 0; i < ownerCount; i++) {
+			if (owners[i] == g) {
+				return handles[i];
+			}
+		}
+		return -1;
+	}
+
+	void setHandle(Graphics g, int handle) {
+		for (int i = 0; i < ownerCount; i++) {
+			if (owners[i] == g) {
+				handles[i] = handle;
+				return;
+			}
+		}
+		if (ownerCount == owners.length) {
+			owners = Arrays.copyOf(owners, ownerCount * 2);
+			handles = Arrays.copyOf(handles, ownerCount * 2);
+		}
+		owners[ownerCount] = g;
+		handles[ownerCount] = handle;
+		ownerCount++;
+	}
+
+	/**
+	 * @return the handle that was removed, or {@code -1}
+	 */
+	int removeHandle(Graphics g) {
+		for (int i = 0; i < ownerCount; i++) {
+			if (owners[i] == g) {
+				int handle = handles[i];
+				ownerCount--;
+				owners[i] = owners[ownerCount];
+				handles[i] = handles[ownerCount];
+				owners[ownerCount] = null;
+				return handle;
+			}
+		}
+		return -1;
+	}
 }
@@ -0,0 +1,226 @@
+package grayscale;
+
+import static org.lwjgl.opengl.GL46C.*;
+import static org.lwjgl.stb.STBImage.*;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import utils.Texture;
+
+/**
+ * Loads images without blocking the rendering thread.
+ * <p>
+ * The files are decoded by background threads into off-heap buffers. The
+ * textures are then created on the rendering thread by {@link #update()},
+ * which stops once its time budget for the frame is spent. Until then, the
+ * images are in the {@link Image.State#LOADING LOADING} state and their
+ * placeholder is drawn instead.
+ * </p>
+ *
+ * @see Application#loadImageAsync(String, int, Image)
+ * @author Niels
+ */
+public class ImageLoader {
+	/**
+	 * A decoded image waiting to be uploaded. {@code pixels} is {@code null} if
+	 * the decoding failed.
+	 */
+	private static class Decoded {
+		Image image;
+		ByteBuffer pixels;
+		int width, height;
+	}
+
+	private final ExecutorService executor;
+	private final Queue<Decoded> decoded = new ConcurrentLinkedQueue<>();
+
+	private long uploadBudget = 4_000_000;
+
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicInteger decodedImages = new AtomicInteger();
+	private final AtomicLong decodedBytes = new AtomicLong();
+	private final AtomicLong decodeNanos = new AtomicLong();
+
+	private int uploadedImages = 0;
+	private long uploadNanos = 0;
+	private long maxFrameUploadNanos = 0;
+
+	/**
+	 * @param threads the number of decoding threads
+	 */
+	public ImageLoader(int threads) {
+		AtomicInteger count = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "image-loader-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Starts loading an image. This method can be called from any thread.
+	 *
+	 * @param path        the file path to the image
+	 * @param imageFlags  the NanoVG image flags
+	 * @param placeholder the image drawn while this one is loading, or
+	 *                    {@code null}
+	 * @return an image in the {@link Image.State#LOADING LOADING} state
+	 */
+	public Image load(String path, int imageFlags, Image placeholder) {
+		Image image = new Image(imageFlags, placeholder);
+		pending.incrementAndGet();
+		executor.execute(() -> decode(path, image));
+		return image;
+	}
+
+	private void decode(String path, Image image) {
+		long start = System.nanoTime();
+		int[] width = new int[1];
+		int[] height = new int[1];
+		int[] channels = new int[1];
+		Decoded d = new Decoded();
+		d.image = image;
+		d.pixels = stbi_load(path, width, height, channels, 4);
+		d.width = width[0];
+		d.height = height[0];
+		decodeNanos.addAndGet(System.nanoTime() - start);
+		if (d.pixels != null) {
+			decodedImages.incrementAndGet();
+			decodedBytes.addAndGet(d.pixels.remaining());
+		}
+		decoded.add(d);
+		imageDecoded();
+	}
+
+	/**
+	 * Called on a decoding thread once an image is decoded, or failed to be.
+	 * Does nothing by default.
+	 */
+	protected void imageDecoded() {
+	}
+
+	/**
+	 * Uploads the decoded images until the time budget of the frame is spent. At
+	 * least one image is uploaded if there is one. Must be called on the
+	 * rendering thread.
+	 *
+	 * @return the number of images that became ready or failed
+	 */
+	public int update() {
+		long start = System.nanoTime();
+		long time = 0;
+		int count = 0;
+		Decoded d;
+		while ((count == 0 || time < uploadBudget) && (d = decoded.poll()) != null) {
+			if (d.pixels == null) {
+				d.image.setFailed();
+			} else {
+				if (d.image.isAlive()) {
+					d.image.setTexture(createTexture(d.width, d.height, d.pixels));
+					uploadedImages++;
+				}
+				stbi_image_free(d.pixels);
+			}
+			pending.decrementAndGet();
+			count++;
+			time = System.nanoTime() - start;
+		}
+		uploadNanos += time;
+		maxFrameUploadNanos = Math.max(maxFrameUploadNanos, time);
+		return count;
+	}
+
+	/**
+	 * Creates the texture of a decoded image, on the rendering thread.
+	 *
+	 * @param pixels the RGBA pixels, freed after this call
+	 */
+	protected Texture createTexture(int width, int height, ByteBuffer pixels) {
+		return new Texture(width, height, GL_RGBA8, GL_NEAREST, GL_CLAMP_TO_EDGE, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+	}
+
+	/**
+	 * @param seconds the time {@link #update()} may spend uploading textures each
+	 *                frame
+	 */
+	public void setUploadBudget(double seconds) {
+		uploadBudget = (long) (seconds * 1.0e+9);
+	}
+
+	public double getUploadBudget() {
+		return uploadBudget / 1.0e+9;
+	}
+
+	/**
+	 * @return {@code true} if decoded images are waiting for {@link #update()}
+	 */
+	public boolean hasDecodedImages() {
+		return !decoded.isEmpty();
+	}
+
+	/**
+	 * @return the number of images that are not ready yet
+	 */
+	public int getPendingCount() {
+		return pending.get();
+	}
+
+	public int getDecodedImages() {
+		return decodedImages.get();
+	}
+
+	public long getDecodedBytes() {
+		return decodedBytes.get();
+	}
+
+	/**
+	 * @return the time spent decoding, summed over all the decoding threads
+	 */
+	public long getDecodeNanos() {
+		return decodeNanos.get();
+	}
+
+	public int getUploadedImages() {
+		return uploadedImages;
+	}
+
+	/**
+	 * @return the time the rendering thread spent uploading textures
+	 */
+	public long getUploadNanos() {
+		return uploadNanos;
+	}
+
+	/**
+	 * @return the longest time spent uploading textures in a single frame
+	 */
+	public long getMaxFrameUploadNanos() {
+		return maxFrameUploadNanos;
+	}
+
+	/**
+	 * Stops the decoding threads and frees the images that were decoded but not
+	 * uploaded.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		Decoded d;
+		while ((d = decoded.poll()) != null) {
+			if (d.pixels != null) {
+				stbi_image_free(d.pixels);
+			}
+		}
+	}
+}
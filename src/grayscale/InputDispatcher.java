@@ -0,0 +1,72 @@
+package grayscale;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+import java.util.List;
+
+import events.InputQueue;
+import events.Keyboard;
+import events.Mouse;
+
+/**
+ * Drains an {@link InputQueue} and sends each record to the windows. Used by
+ * the {@link Application} each frame, and by the tools replaying a recorded
+ * session without GLFW.
+ *
+ * @author Niels
+ */
+public class InputDispatcher {
+	private InputDispatcher() {
+	}
+
+	/**
+	 * The records are dispatched one by one, so that two clicks received during
+	 * the same frame are both seen by the components. The mouse and the keyboard
+	 * are prepared again afterwards, for {@link Window#update(Mouse, Keyboard)}.
+	 * <p>
+	 * The key and character records only go to the active windows, see
+	 * {@link Window#isActive()}. A press activates the topmost window under the
+	 * mouse.
+	 * </p>
+	 *
+	 * @param windows the windows, from the bottom to the top
+	 * @return the number of dispatched events
+	 */
+	public static int dispatch(InputQueue queue, Mouse mouse, Keyboard keyboard, List<Window> windows) {
+		int count = 0;
+		while (queue.poll()) {
+			mouse.prepare();
+			keyboard.prepare();
+			mouse.process(queue);
+			keyboard.process(queue);
+			int type = queue.type();
+			if (type == InputQueue.MOUSE_BUTTON && queue.action() == GLFW_PRESS) {
+				Window top = getWindowAt(windows, mouse.getPos());
+				if (top != null) {
+					top.activate();
+				}
+			}
+			boolean keys = type == InputQueue.KEY || type == InputQueue.CHAR;
+			for (int i = 0; i < windows.size(); i++) {
+				Window w = windows.get(i);
+				if (!keys || w.isActive()) {
+					w.processInput(mouse, keyboard);
+				}
+			}
+			count++;
+		}
+		mouse.prepare();
+		keyboard.prepare();
+		return count;
+	}
+
+	private static Window getWindowAt(List<Window> windows, Vectorc pos) {
+		for (int i = windows.size() - 1; i >= 0; i--) {
+			Window w = windows.get(i);
+			if (w.isVisible() && w.getBounds().contains(pos)) {
+				return w;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,171 @@
+package grayscale;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lwjgl.glfw.GLFW;
+
+import events.KeyBinding;
+import events.KeyEvent;
+
+/**
+ * The key bindings of the components of a {@link Window}, indexed by key,
+ * action and modifiers. A key event only tests the bindings registered for it,
+ * at most four lookups because of the {@link GLFW#GLFW_DONT_CARE DONT_CARE}
+ * wildcards, and the focus conditions are resolved with the focus path of the
+ * window.
+ * <p>
+ * When the first stroke of a chord matches, the following key presses are
+ * only tested against the pending chords, until one completes or none
+ * matches. The table is rebuilt when the tree or the bindings change.
+ * </p>
+ *
+ * @author Niels
+ */
+class KeyBindingTable {
+	private static final Comparator<Entry> BY_DEPTH = Comparator.comparingInt(e -> e.depth);
+
+	private static class Entry {
+		Component component;
+		KeyBinding binding;
+		int depth;
+	}
+
+	private final Window window;
+
+	private Map<Integer, List<Entry>> table = new HashMap<>();
+	private boolean outdated = true;
+
+	private List<Entry> matches = new ArrayList<>();
+
+	/**
+	 * The chords whose first {@code pendingStroke} strokes were pressed
+	 */
+	private List<Entry> pending = new ArrayList<>();
+	private List<Entry> survivors = new ArrayList<>();
+	private int pendingStroke = 0;
+
+	KeyBindingTable(Window window) {
+		this.window = window;
+	}
+
+	/**
+	 * Requests a rebuild, because components or bindings were added or removed.
+	 */
+	void invalidate() {
+		outdated = true;
+	}
+
+	private static int hash(int key, int action, int mods) {
+		// GLFW_DONT_CARE is -1, the keys are below 512 and the mods below 128
+		return ((key + 1) << 16) | ((action + 1) << 8) | (mods + 1);
+	}
+
+	private void rebuild() {
+		table.clear();
+		pending.clear();
+		Component decoration = window.getDecorationComponent();
+		if (decoration != null) {
+			insertTree(decoration, 0);
+		}
+		insertTree(window.getContent(), 0);
+		outdated = false;
+	}
+
+	private void insertTree(Component c, int depth) {
+		for (KeyBinding kb : c.getKeyBindings()) {
+			Entry e = new Entry();
+			e.component = c;
+			e.binding = kb;
+			e.depth = depth;
+			table.computeIfAbsent(hash(kb.key, kb.keyAction, kb.mods), h -> new ArrayList<>()).add(e);
+		}
+		for (Component child : c.getChildren()) {
+			insertTree(child, depth + 1);
+		}
+	}
+
+	/**
+	 * Performs the actions of the bindings matching the event, from the root to
+	 * the focused component.
+	 *
+	 * @return {@code true} if the event started or continued a chord, in which
+	 *         case it must not be dispatched further
+	 */
+	boolean dispatch(KeyEvent e) {
+		if (outdated) {
+			rebuild();
+		}
+		if (!pending.isEmpty()) {
+			return continueChords(e);
+		}
+
+		int key = e.getKey(), action = e.getAction(), mods = e.getMods();
+		matches.clear();
+		collect(hash(key, action, mods), e);
+		collect(hash(key, GLFW_DONT_CARE, mods), e);
+		collect(hash(key, action, GLFW_DONT_CARE), e);
+		collect(hash(key, GLFW_DONT_CARE, GLFW_DONT_CARE), e);
+		if (matches.isEmpty()) {
+			return false;
+		}
+		matches.sort(BY_DEPTH);
+
+		for (int i = 0; i < matches.size(); i++) {
+			Entry m = matches.get(i);
+			if (m.binding.getStrokeCount() == 1) {
+				m.binding.performAction();
+			} else {
+				pending.add(m);
+			}
+		}
+		pendingStroke = 1;
+		return !pending.isEmpty();
+	}
+
+	private void collect(int hash, KeyEvent e) {
+		List<Entry> entries = table.get(hash);
+		if (entries == null) {
+			return;
+		}
+		for (int i = 0; i < entries.size(); i++) {
+			Entry entry = entries.get(i);
+			Component c = entry.component;
+			if (c.onFocusPath && entry.binding.test(e.getKey(), e.getAction(), e.getMods(), c.isFocused(),
+					c.descendantFocused())) {
+				matches.add(entry);
+			}
+		}
+	}
+
+	/**
+	 * Tests a key press against the pending chords. A stroke that matches none
+	 * of them cancels them and is not dispatched further.
+	 */
+	private boolean continueChords(KeyEvent e) {
+		if (e.getAction() != GLFW_PRESS || KeyBinding.isModifierKey(e.getKey())) {
+			return true;
+		}
+		survivors.clear();
+		for (int i = 0; i < pending.size(); i++) {
+			Entry p = pending.get(i);
+			if (p.component.onFocusPath && p.binding.testStroke(pendingStroke, e.getKey(), e.getMods())) {
+				if (pendingStroke + 1 == p.binding.getStrokeCount()) {
+					p.binding.performAction();
+				} else {
+					survivors.add(p);
+				}
+			}
+		}
+		List<Entry> tmp = pending;
+		pending = survivors;
+		survivors = tmp;
+		pendingStroke++;
+		return true;
+	}
+}
@@ -0,0 +1,240 @@
+package grayscale;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.lwjgl.nanovg.NVGPaint;
+
+/**
+ * The offscreen layers of the components drawn by a {@link Graphics} object.
+ * <p>
+ * A component cached as a layer draws its whole subtree once into a
+ * framebuffer object, which is then composited as an image on the next frames
+ * until the subtree is repainted or the content scale changes.<br>
+ * The memory used by the layers is bounded by a budget, the least recently
+ * drawn layers are deleted when it is exceeded.
+ * </p>
+ *
+ * @see Component#setCacheAsLayer(boolean)
+ * @author Niels
+ */
+public class LayerCache {
+	/**
+	 * The estimated cost of a pixel of a layer: the RGBA color plus the stencil
+	 */
+	private static final int BYTES_PER_PIXEL = 5;
+
+	private static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+	private static class Layer {
+		int fbo;
+		int width, height;
+		long bytes;
+		int generation;
+		/**
+		 * {@code true} if the layer was drawn since it was last composited
+		 */
+		boolean fresh;
+	}
+
+	private final Graphics g;
+
+	/**
+	 * The layers in access order, the first one is the least recently used
+	 */
+	private final LinkedHashMap<Component, Layer> layers = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long budget = DEFAULT_BUDGET;
+	private long usedBytes = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	private final Vector size = new Vector();
+
+	LayerCache(Graphics g) {
+		this.g = g;
+	}
+
+	/**
+	 * Sets the maximum amount of video memory used by the layers. Layers are
+	 * deleted right away if the new budget is exceeded.
+	 *
+	 * @param bytes the budget, in bytes
+	 * @throws IllegalArgumentException if {@code bytes} is negative
+	 */
+	public void setBudget(long bytes) {
+		if (bytes < 0) {
+			throw new IllegalArgumentException("Negative layer budget: " + bytes);
+		}
+		budget = bytes;
+		evict(0);
+	}
+
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return the estimated amount of video memory used by the layers, in bytes
+	 */
+	public long getUsedBytes() {
+		return usedBytes;
+	}
+
+	public int getLayerCount() {
+		return layers.size();
+	}
+
+	/**
+	 * @return the number of times a layer was composited without being drawn
+	 *         again
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of times a layer had to be drawn
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of layers deleted to stay under the budget
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public void resetStats() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	/**
+	 * Draws the layer of {@code c} again if it is outdated. Must be called
+	 * outside of {@link Graphics#beginFrame(Vectorc, Vectorc)} and
+	 * {@link Graphics#endFrame()}.
+	 */
+	void update(Component c, Vectorc contentScale) {
+		Rectanglec b = c.getBounds();
+		int width = (int) Math.ceil(b.width() * contentScale.x());
+		int height = (int) Math.ceil(b.height() * contentScale.y());
+
+		Layer layer = layers.get(c);
+		if (layer != null && layer.width == width && layer.height == height) {
+			if (!c.isLayerDirty() && layer.generation == g.getGeneration()) {
+				return;
+			}
+		} else {
+			if (layer != null) {
+				delete(c, layer);
+			}
+			long bytes = (long) width * height * BYTES_PER_PIXEL;
+			if (width <= 0 || height <= 0 || bytes > budget) {
+				// drawn directly instead
+				return;
+			}
+			evict(bytes);
+			int fbo = g.createFBO(width, height, Image.IMAGE_FLIPY | Image.IMAGE_PREMULTIPLIED);
+			if (fbo == 0) {
+				return;
+			}
+			layer = new Layer();
+			layer.fbo = fbo;
+			layer.width = width;
+			layer.height = height;
+			layer.bytes = bytes;
+			usedBytes += bytes;
+			layers.put(c, layer);
+		}
+
+		misses++;
+		size.set(width, height);
+		g.beginFrame(layer.fbo, size, contentScale);
+		g.clear(0, 0, 0, 0);
+		g.translate(-b.x(), -b.y());
+		c.renderContent(g);
+		g.endFrame();
+		g.bindFBO(0);
+
+		layer.generation = g.getGeneration();
+		layer.fresh = true;
+		c.setLayerDirty(false);
+	}
+
+	/**
+	 * Composites the layer of {@code c} at its bounds.
+	 *
+	 * @return {@code false} if there is no up to date layer for {@code c}, in
+	 *         which case it must be drawn directly
+	 */
+	boolean draw(Component c, Graphics g) {
+		Layer layer = layers.get(c);
+		if (layer == null || c.isLayerDirty() || layer.generation != g.getGeneration()) {
+			return false;
+		}
+		if (layer.fresh) {
+			layer.fresh = false;
+		} else {
+			hits++;
+		}
+
+		Rectanglec b = c.getBounds();
+		Vectorc scale = g.getContentScale();
+		float w = layer.width / scale.x(), h = layer.height / scale.y();
+		NVGPaint p = g.getImagePattern(b.x(), b.y(), w, h, 0, 1f, layer.fbo);
+		g.beginPath();
+		g.rect(b.x(), b.y(), w, h);
+		g.setFillPaint(p);
+		g.fill();
+		return true;
+	}
+
+	/**
+	 * Deletes the layer of {@code c}, if any.
+	 */
+	public void remove(Component c) {
+		Layer layer = layers.get(c);
+		if (layer != null) {
+			delete(c, layer);
+		}
+	}
+
+	/**
+	 * Deletes all the layers.
+	 */
+	public void clear() {
+		for (Layer layer : layers.values()) {
+			g.deleteFBO(layer.fbo);
+		}
+		layers.clear();
+		usedBytes = 0;
+	}
+
+	private void delete(Component c, Layer layer) {
+		layers.remove(c);
+		g.deleteFBO(layer.fbo);
+		usedBytes -= layer.bytes;
+	}
+
+	/**
+	 * Deletes the least recently used layers until {@code bytes} more bytes fit
+	 * in the budget.
+	 */
+	private void evict(long bytes) {
+		Iterator<Map.Entry<Component, Layer>> it = layers.entrySet().iterator();
+		while (usedBytes + bytes > budget && it.hasNext()) {
+			Layer layer = it.next().getValue();
+			it.remove();
+			g.deleteFBO(layer.fbo);
+			usedBytes -= layer.bytes;
+			evictions++;
+		}
+	}
+}
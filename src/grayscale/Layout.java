@@ -2,6 +2,59 @@ package grayscale;
 
 import java.util.List;
 
+/**
+ * Places the children of a component, in two passes:
+ * <ol>
+ * <li>{@link #measure(List, float, float, Vector) measure} computes the size
+ * the children need, from their own desired sizes, see
+ * {@link Component#measure(float, float)},</li>
+ * <li>{@link #arrange(List, Rectanglec) arrange} gives their bounds to the
+ * children, calling {@link Component#setBounds(Rectanglec)}.</li>
+ * </ol>
+ * The components cache the results of both passes until their layout is
+ * invalidated, see {@link Component#invalidateLayout()}. A layout whose
+ * parameters change calls {@link #invalidate()}, that invalidates the
+ * component it is set on.
+ * <p>
+ * A layout should be set on a single component, as it may reuse buffers
+ * across calls, and only invalidates the last component it was set on. The
+ * rectangle given to {@code setBounds} is copied, it can be reused for all the
+ * children.
+ * </p>
+ */
 public abstract class Layout {
-	public abstract void update(List<Component> comps, Rectanglec r);
+	/**
+	 * The component this layout is set on, or {@code null}
+	 */
+	Component owner;
+
+	/**
+	 * Computes the size the children need.
+	 *
+	 * @param comps     the children
+	 * @param maxWidth  the available width, {@link Float#POSITIVE_INFINITY} if
+	 *                  unbounded
+	 * @param maxHeight the available height, {@link Float#POSITIVE_INFINITY} if
+	 *                  unbounded
+	 * @param dest      receives the desired width and height
+	 */
+	public abstract void measure(List<Component> comps, float maxWidth, float maxHeight, Vector dest);
+
+	/**
+	 * Sets the bounds of the children.
+	 *
+	 * @param comps the children
+	 * @param r     the area given to the children
+	 */
+	public abstract void arrange(List<Component> comps, Rectanglec r);
+
+	/**
+	 * Lays out the component this layout is set on again, after a parameter of
+	 * the layout changed.
+	 */
+	protected void invalidate() {
+		if (owner != null) {
+			owner.invalidateLayout();
+		}
+	}
 }
@@ -0,0 +1,431 @@
+package grayscale;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+import static org.lwjgl.nanovg.NanoVGGL3.*;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGGlyphPosition;
+import org.lwjgl.nanovg.NVGLUFramebuffer;
+import org.lwjgl.nanovg.NVGPaint;
+import org.lwjgl.nanovg.NVGTextRow;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Renders with a NanoVG context on OpenGL 3. An OpenGL context must be current
+ * when it is created and used.
+ *
+ * @author Niels
+ */
+public class NanoVGBackend implements RenderBackend {
+	private final long ctx;
+	/**
+	 * The framebuffers, by the image of their content that is their handle
+	 */
+	private final Map<Integer, NVGLUFramebuffer> framebuffers = new HashMap<>();
+
+	/**
+	 * @param flags the context flags, see {@link Graphics#ANTIALIAS},
+	 *              {@link Graphics#STENCIL_STROKES} and {@link Graphics#DEBUG}
+	 * @throws IllegalStateException if the context cannot be created
+	 */
+	public NanoVGBackend(int flags) {
+		ctx = nvgCreate(flags);
+		if (ctx == 0) {
+			throw new IllegalStateException("Could not create the NanoVG context.");
+		}
+	}
+
+	/**
+	 * @return the NanoVG context
+	 */
+	public long getContext() {
+		return ctx;
+	}
+
+	@Override
+	public void beginFrame(float width, float height, float devicePixelRatio) {
+		nvgBeginFrame(ctx, width, height, devicePixelRatio);
+	}
+
+	@Override
+	public void endFrame() {
+		nvgEndFrame(ctx);
+	}
+
+	@Override
+	public void destroy() {
+		for (NVGLUFramebuffer fbo : framebuffers.values()) {
+			nvgluDeleteFramebuffer(ctx, fbo);
+		}
+		framebuffers.clear();
+		nvgDelete(ctx);
+	}
+
+	@Override
+	public int createFont(String name, ByteBuffer data) {
+		return nvgCreateFontMem(ctx, name, data, false);
+	}
+
+	@Override
+	public int createImageFromHandle(int textureID, int width, int height, int flags) {
+		return nvglCreateImageFromHandle(ctx, textureID, width, height, flags);
+	}
+
+	@Override
+	public void deleteImage(int image) {
+		nvgDeleteImage(ctx, image);
+	}
+
+	@Override
+	public int createFramebuffer(int width, int height, int flags) {
+		NVGLUFramebuffer fbo = nvgluCreateFramebuffer(ctx, width, height, flags);
+		if (fbo == null) {
+			return 0;
+		}
+		framebuffers.put(fbo.image(), fbo);
+		return fbo.image();
+	}
+
+	@Override
+	public void bindFramebuffer(int fbo) {
+		nvgluBindFramebuffer(ctx, framebuffers.get(fbo));
+	}
+
+	@Override
+	public void deleteFramebuffer(int fbo) {
+		NVGLUFramebuffer f = framebuffers.remove(fbo);
+		if (f != null) {
+			nvgluDeleteFramebuffer(ctx, f);
+		}
+	}
+
+	@Override
+	public void viewport(int x, int y, int width, int height) {
+		GL11.glViewport(x, y, width, height);
+	}
+
+	@Override
+	public void clear(float r, float g, float b, float a) {
+		GL11.glClearColor(r, g, b, a);
+		GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_STENCIL_BUFFER_BIT);
+	}
+
+	@Override
+	public void save() {
+		nvgSave(ctx);
+	}
+
+	@Override
+	public void restore() {
+		nvgRestore(ctx);
+	}
+
+	@Override
+	public void reset() {
+		nvgReset(ctx);
+	}
+
+	@Override
+	public void globalCompositeOperation(int op) {
+		nvgGlobalCompositeOperation(ctx, op);
+	}
+
+	@Override
+	public void globalCompositeBlendFunc(int sfactor, int dfactor) {
+		nvgGlobalCompositeBlendFunc(ctx, sfactor, dfactor);
+	}
+
+	@Override
+	public void globalCompositeBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+		nvgGlobalCompositeBlendFuncSeparate(ctx, srcRGB, dstRGB, srcAlpha, dstAlpha);
+	}
+
+	@Override
+	public void globalAlpha(float alpha) {
+		nvgGlobalAlpha(ctx, alpha);
+	}
+
+	@Override
+	public void strokeColor(NVGColor color) {
+		nvgStrokeColor(ctx, color);
+	}
+
+	@Override
+	public void strokePaint(NVGPaint paint) {
+		nvgStrokePaint(ctx, paint);
+	}
+
+	@Override
+	public void fillColor(NVGColor color) {
+		nvgFillColor(ctx, color);
+	}
+
+	@Override
+	public void fillPaint(NVGPaint paint) {
+		nvgFillPaint(ctx, paint);
+	}
+
+	@Override
+	public void miterLimit(float limit) {
+		nvgMiterLimit(ctx, limit);
+	}
+
+	@Override
+	public void strokeWidth(float size) {
+		nvgStrokeWidth(ctx, size);
+	}
+
+	@Override
+	public void lineCap(int cap) {
+		nvgLineCap(ctx, cap);
+	}
+
+	@Override
+	public void lineJoin(int join) {
+		nvgLineJoin(ctx, join);
+	}
+
+	@Override
+	public NVGPaint imagePattern(float x, float y, float w, float h, float angle, int image, float alpha,
+			NVGPaint result) {
+		return nvgImagePattern(ctx, x, y, w, h, angle, image, alpha, result);
+	}
+
+	@Override
+	public NVGPaint boxGradient(float x, float y, float w, float h, float r, float f, NVGColor icol,
+			NVGColor ocol, NVGPaint result) {
+		return nvgBoxGradient(ctx, x, y, w, h, r, f, icol, ocol, result);
+	}
+
+	@Override
+	public NVGPaint linearGradient(float sx, float sy, float ex, float ey, NVGColor icol, NVGColor ocol,
+			NVGPaint result) {
+		return nvgLinearGradient(ctx, sx, sy, ex, ey, icol, ocol, result);
+	}
+
+	@Override
+	public NVGPaint radialGradient(float cx, float cy, float inr, float outr, NVGColor icol, NVGColor ocol,
+			NVGPaint result) {
+		return nvgRadialGradient(ctx, cx, cy, inr, outr, icol, ocol, result);
+	}
+
+	@Override
+	public void resetTransform() {
+		nvgResetTransform(ctx);
+	}
+
+	@Override
+	public void transform(float a, float b, float c, float d, float e, float f) {
+		nvgTransform(ctx, a, b, c, d, e, f);
+	}
+
+	@Override
+	public void translate(float x, float y) {
+		nvgTranslate(ctx, x, y);
+	}
+
+	@Override
+	public void rotate(float angle) {
+		nvgRotate(ctx, angle);
+	}
+
+	@Override
+	public void skewX(float angle) {
+		nvgSkewX(ctx, angle);
+	}
+
+	@Override
+	public void skewY(float angle) {
+		nvgSkewY(ctx, angle);
+	}
+
+	@Override
+	public void scale(float x, float y) {
+		nvgScale(ctx, x, y);
+	}
+
+	@Override
+	public void currentTransform(float[] dest) {
+		nvgCurrentTransform(ctx, dest);
+	}
+
+	@Override
+	public void scissor(float x, float y, float w, float h) {
+		nvgScissor(ctx, x, y, w, h);
+	}
+
+	@Override
+	public void intersectScissor(float x, float y, float w, float h) {
+		nvgIntersectScissor(ctx, x, y, w, h);
+	}
+
+	@Override
+	public void resetScissor() {
+		nvgResetScissor(ctx);
+	}
+
+	@Override
+	public void beginPath() {
+		nvgBeginPath(ctx);
+	}
+
+	@Override
+	public void moveTo(float x, float y) {
+		nvgMoveTo(ctx, x, y);
+	}
+
+	@Override
+	public void lineTo(float x, float y) {
+		nvgLineTo(ctx, x, y);
+	}
+
+	@Override
+	public void bezierTo(float c1x, float c1y, float c2x, float c2y, float x, float y) {
+		nvgBezierTo(ctx, c1x, c1y, c2x, c2y, x, y);
+	}
+
+	@Override
+	public void quadTo(float cx, float cy, float x, float y) {
+		nvgQuadTo(ctx, cx, cy, x, y);
+	}
+
+	@Override
+	public void arcTo(float x1, float y1, float x2, float y2, float radius) {
+		nvgArcTo(ctx, x1, y1, x2, y2, radius);
+	}
+
+	@Override
+	public void closePath() {
+		nvgClosePath(ctx);
+	}
+
+	@Override
+	public void pathWinding(int dir) {
+		nvgPathWinding(ctx, dir);
+	}
+
+	@Override
+	public void arc(float cx, float cy, float r, float a0, float a1, int dir) {
+		nvgArc(ctx, cx, cy, r, a0, a1, dir);
+	}
+
+	@Override
+	public void rect(float x, float y, float w, float h) {
+		nvgRect(ctx, x, y, w, h);
+	}
+
+	@Override
+	public void roundedRect(float x, float y, float w, float h, float r) {
+		nvgRoundedRect(ctx, x, y, w, h, r);
+	}
+
+	@Override
+	public void roundedRectVarying(float x, float y, float w, float h, float radTopLeft, float radTopRight,
+			float radBottomRight, float radBottomLeft) {
+		nvgRoundedRectVarying(ctx, x, y, w, h, radTopLeft, radTopRight, radBottomRight, radBottomLeft);
+	}
+
+	@Override
+	public void ellipse(float cx, float cy, float rx, float ry) {
+		nvgEllipse(ctx, cx, cy, rx, ry);
+	}
+
+	@Override
+	public void circle(float cx, float cy, float r) {
+		nvgCircle(ctx, cx, cy, r);
+	}
+
+	@Override
+	public void fill() {
+		nvgFill(ctx);
+	}
+
+	@Override
+	public void stroke() {
+		nvgStroke(ctx);
+	}
+
+	@Override
+	public void fontSize(float size) {
+		nvgFontSize(ctx, size);
+	}
+
+	@Override
+	public void fontBlur(float blur) {
+		nvgFontBlur(ctx, blur);
+	}
+
+	@Override
+	public void textLetterSpacing(float spacing) {
+		nvgTextLetterSpacing(ctx, spacing);
+	}
+
+	@Override
+	public void textLineHeight(float lineHeight) {
+		nvgTextLineHeight(ctx, lineHeight);
+	}
+
+	@Override
+	public void textAlign(int align) {
+		nvgTextAlign(ctx, align);
+	}
+
+	@Override
+	public void fontFace(String font) {
+		nvgFontFace(ctx, font);
+	}
+
+	@Override
+	public void text(float x, float y, long string, long end) {
+		nnvgText(ctx, x, y, string, end);
+	}
+
+	@Override
+	public void text(float x, float y, CharSequence string) {
+		nvgText(ctx, x, y, string);
+	}
+
+	@Override
+	public void textBox(float x, float y, float breakRowWidth, long string, long end) {
+		nnvgTextBox(ctx, x, y, breakRowWidth, string, end);
+	}
+
+	@Override
+	public void textBox(float x, float y, float breakRowWidth, CharSequence string) {
+		nvgTextBox(ctx, x, y, breakRowWidth, string);
+	}
+
+	@Override
+	public float textBounds(float x, float y, ByteBuffer string, float[] bounds) {
+		return nvgTextBounds(ctx, x, y, string, bounds);
+	}
+
+	@Override
+	public void textBoxBounds(float x, float y, float breakRowWidth, ByteBuffer string, float[] bounds) {
+		nvgTextBoxBounds(ctx, x, y, breakRowWidth, string, bounds);
+	}
+
+	@Override
+	public int textBreakLines(ByteBuffer string, float breakRowWidth, NVGTextRow.Buffer rows) {
+		return nvgTextBreakLines(ctx, string, breakRowWidth, rows);
+	}
+
+	@Override
+	public int textGlyphPositions(float x, float y, ByteBuffer string, NVGGlyphPosition.Buffer positions) {
+		return nvgTextGlyphPositions(ctx, x, y, string, positions);
+	}
+
+	@Override
+	public int textGlyphPositions(float x, float y, CharSequence string, NVGGlyphPosition.Buffer positions) {
+		return nvgTextGlyphPositions(ctx, x, y, string, positions);
+	}
+
+	@Override
+	public void textMetrics(float[] ascender, float[] descender, float[] lineh) {
+		nvgTextMetrics(ctx, ascender, descender, lineh);
+	}
+}
@@ -0,0 +1,291 @@
+package grayscale;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scanline polygon rasterizer of the {@link SoftwareBackend}. The edges of a
+ * shape are collected in device space, then each row of pixels is sampled
+ * with {@link #SUBSAMPLES} horizontal scanlines, the horizontal coverage being
+ * exact. The coverage of each row is given to a {@link Painter}.
+ * <p>
+ * Large shapes are split into bands of rows rasterized in parallel by a
+ * {@link ForkJoinPool}. The bands share the edges, read only, and write
+ * different rows, so the painter must only be thread safe across rows.
+ * </p>
+ *
+ * @author Niels
+ */
+final class Rasterizer {
+	/**
+	 * The number of scanlines sampled per row of pixels
+	 */
+	static final int SUBSAMPLES = 4;
+	/**
+	 * Shapes covering less pixels than this are rasterized on the calling thread
+	 */
+	private static final int PARALLEL_PIXELS = 1 << 16;
+	/**
+	 * The number of pixels of each band rasterized by a task
+	 */
+	private static final int BAND_PIXELS = 1 << 14;
+
+	/**
+	 * Receives the coverage of the rows of a shape.
+	 */
+	interface Painter {
+		/**
+		 * @param y        the row
+		 * @param x0       the first covered column
+		 * @param x1       the column after the last covered one
+		 * @param coverage the coverage of each column, in {@code [0, 1]}, indexed
+		 *                 by column
+		 */
+		void paint(int y, int x0, int x1, float[] coverage);
+	}
+
+	/**
+	 * The edges as {@code x0, y0, x1, y1} with {@code y0 < y1}
+	 */
+	private float[] edges = new float[4 * 256];
+	/**
+	 * +1 if the edge goes down, -1 if it goes up
+	 */
+	private int[] dirs = new int[256];
+	private int edgeCount = 0;
+	private float minX, minY, maxX, maxY;
+
+	private final ForkJoinPool pool;
+	private final Scratch scratch = new Scratch();
+
+	/**
+	 * @param pool the pool rasterizing the large shapes, or {@code null} to
+	 *             rasterize everything on the calling thread
+	 */
+	Rasterizer(ForkJoinPool pool) {
+		this.pool = pool;
+		clear();
+	}
+
+	void clear() {
+		edgeCount = 0;
+		minX = minY = Float.POSITIVE_INFINITY;
+		maxX = maxY = Float.NEGATIVE_INFINITY;
+	}
+
+	boolean isEmpty() {
+		return edgeCount == 0;
+	}
+
+	/**
+	 * @param winding +1 or -1, the contribution of the edge to the winding
+	 *                number when it goes down
+	 */
+	void addEdge(float x0, float y0, float x1, float y1, int winding) {
+		if (y0 == y1) {
+			return;
+		}
+		if (edgeCount == dirs.length) {
+			edges = Arrays.copyOf(edges, 8 * edgeCount);
+			dirs = Arrays.copyOf(dirs, 2 * edgeCount);
+		}
+		int i = 4 * edgeCount;
+		if (y0 < y1) {
+			edges[i] = x0;
+			edges[i + 1] = y0;
+			edges[i + 2] = x1;
+			edges[i + 3] = y1;
+			dirs[edgeCount] = winding;
+		} else {
+			edges[i] = x1;
+			edges[i + 1] = y1;
+			edges[i + 2] = x0;
+			edges[i + 3] = y0;
+			dirs[edgeCount] = -winding;
+		}
+		edgeCount++;
+		minX = Math.min(minX, Math.min(x0, x1));
+		maxX = Math.max(maxX, Math.max(x0, x1));
+		minY = Math.min(minY, Math.min(y0, y1));
+		maxY = Math.max(maxY, Math.max(y0, y1));
+	}
+
+	/**
+	 * Rasterizes the edges added since the last {@link #clear()}.
+	 *
+	 * @param evenOdd {@code true} for the even-odd fill rule, {@code false} for
+	 *                the non-zero one
+	 * @param clipX0  the first column that can be painted
+	 * @param clipY0  the first row that can be painted
+	 * @param clipX1  the column after the last one that can be painted
+	 * @param clipY1  the row after the last one that can be painted
+	 */
+	void fill(boolean evenOdd, int clipX0, int clipY0, int clipX1, int clipY1, Painter painter) {
+		if (edgeCount == 0) {
+			return;
+		}
+		int x0 = Math.max(clipX0, (int) Math.floor(minX));
+		int x1 = Math.min(clipX1, (int) Math.ceil(maxX));
+		int y0 = Math.max(clipY0, (int) Math.floor(minY));
+		int y1 = Math.min(clipY1, (int) Math.ceil(maxY));
+		if (x0 >= x1 || y0 >= y1) {
+			return;
+		}
+		long pixels = (long) (x1 - x0) * (y1 - y0);
+		if (pool != null && pool.getParallelism() > 1 && pixels >= PARALLEL_PIXELS) {
+			int bandRows = Math.max(4, BAND_PIXELS / (x1 - x0));
+			pool.invoke(new Band(evenOdd, x0, y0, x1, y1, bandRows, painter));
+		} else {
+			rasterize(scratch, evenOdd, x0, y0, x1, y1, painter);
+		}
+	}
+
+	private class Band extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final boolean evenOdd;
+		private final int x0, y0, x1, y1, bandRows;
+		private final Painter painter;
+
+		Band(boolean evenOdd, int x0, int y0, int x1, int y1, int bandRows, Painter painter) {
+			this.evenOdd = evenOdd;
+			this.x0 = x0;
+			this.y0 = y0;
+			this.x1 = x1;
+			this.y1 = y1;
+			this.bandRows = bandRows;
+			this.painter = painter;
+		}
+
+		@Override
+		protected void compute() {
+			if (y1 - y0 <= bandRows) {
+				rasterize(new Scratch(), evenOdd, x0, y0, x1, y1, painter);
+				return;
+			}
+			int mid = (y0 + y1) >>> 1;
+			invokeAll(new Band(evenOdd, x0, y0, x1, mid, bandRows, painter),
+					new Band(evenOdd, x0, mid, x1, y1, bandRows, painter));
+		}
+	}
+
+	/**
+	 * The buffers of one thread
+	 */
+	private static final class Scratch {
+		/**
+		 * The partial coverage of each column, then the final coverage
+		 */
+		float[] area = new float[0];
+		/**
+		 * Difference array of the fully covered spans
+		 */
+		float[] span = new float[0];
+		float[] crossings = new float[16];
+		int[] windings = new int[16];
+		int[] band = new int[0];
+
+		void ensure(int columns, int edges) {
+			if (area.length < columns + 2) {
+				area = new float[columns + 2];
+				span = new float[columns + 2];
+			}
+			if (band.length < edges) {
+				band = new int[edges];
+			}
+		}
+	}
+
+	private void rasterize(Scratch s, boolean evenOdd, int x0, int y0, int x1, int y1, Painter painter) {
+		s.ensure(x1, edgeCount);
+		float[] area = s.area, span = s.span;
+
+		int bandEdges = 0;
+		for (int e = 0; e < edgeCount; e++) {
+			if (edges[4 * e + 1] < y1 && edges[4 * e + 3] > y0) {
+				s.band[bandEdges++] = e;
+			}
+		}
+
+		final float weight = 1f / SUBSAMPLES;
+		for (int y = y0; y < y1; y++) {
+			int rowMin = x1, rowMax = x0 - 1;
+			for (int sub = 0; sub < SUBSAMPLES; sub++) {
+				float sy = y + (sub + 0.5f) * weight;
+				int count = crossings(s, bandEdges, sy);
+				int winding = 0;
+				float start = 0;
+				for (int i = 0; i < count; i++) {
+					boolean wasInside = evenOdd ? (winding & 1) != 0 : winding != 0;
+					winding += s.windings[i];
+					boolean inside = evenOdd ? (winding & 1) != 0 : winding != 0;
+					if (inside && !wasInside) {
+						start = s.crossings[i];
+					} else if (!inside && wasInside) {
+						float xa = Math.max(x0, start), xb = Math.min(x1, s.crossings[i]);
+						if (xb <= xa) {
+							continue;
+						}
+						int ia = (int) xa, ib = (int) xb;
+						if (ia == ib) {
+							area[ia] += weight * (xb - xa);
+						} else {
+							area[ia] += weight * (ia + 1 - xa);
+							span[ia + 1] += weight;
+							span[ib] -= weight;
+							area[ib] += weight * (xb - ib);
+						}
+						rowMin = Math.min(rowMin, ia);
+						rowMax = Math.max(rowMax, ib);
+					}
+				}
+			}
+			if (rowMax < rowMin) {
+				continue;
+			}
+
+			float run = 0;
+			for (int x = rowMin; x <= rowMax; x++) {
+				run += span[x];
+				float c = area[x] + run;
+				area[x] = c > 1 ? 1 : c < 0 ? 0 : c;
+				span[x] = 0;
+			}
+			painter.paint(y, rowMin, Math.min(rowMax + 1, x1), area);
+			Arrays.fill(area, rowMin, rowMax + 1, 0);
+		}
+	}
+
+	/**
+	 * Finds the crossings of the edges with the scanline {@code sy}, sorted from
+	 * left to right.
+	 *
+	 * @return the number of crossings
+	 */
+	private int crossings(Scratch s, int bandEdges, float sy) {
+		int count = 0;
+		for (int j = 0; j < bandEdges; j++) {
+			int e = s.band[j], i = 4 * e;
+			float ey0 = edges[i + 1], ey1 = edges[i + 3];
+			if (sy < ey0 || sy >= ey1) {
+				continue;
+			}
+			float x = edges[i] + (sy - ey0) * (edges[i + 2] - edges[i]) / (ey1 - ey0);
+			if (count == s.crossings.length) {
+				s.crossings = Arrays.copyOf(s.crossings, 2 * count);
+				s.windings = Arrays.copyOf(s.windings, 2 * count);
+			}
+			// insertion sort, there are few crossings per scanline
+			int k = count++;
+			while (k > 0 && s.crossings[k - 1] > x) {
+				s.crossings[k] = s.crossings[k - 1];
+				s.windings[k] = s.windings[k - 1];
+				k--;
+			}
+			s.crossings[k] = x;
+			s.windings[k] = dirs[e];
+		}
+		return count;
+	}
+}
@@ -0,0 +1,549 @@
+package grayscale;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGGlyphPosition;
+import org.lwjgl.nanovg.NVGPaint;
+import org.lwjgl.nanovg.NVGTextRow;
+
+/**
+ * A backend that writes down every drawing call it receives, as a line such
+ * as {@code rect(0.0, 0.0, 100.0, 20.0)}, before forwarding it to another
+ * backend. It is meant to check what a component draws.
+ * <p>
+ * The text measurements are forwarded without being recorded, as they may be
+ * answered by the {@link TextCache} instead.
+ * </p>
+ *
+ * @author Niels
+ */
+public class RecordingBackend implements RenderBackend {
+	private final RenderBackend delegate;
+	private final List<String> calls = new ArrayList<>();
+	private final StringBuilder line = new StringBuilder();
+
+	/**
+	 * Records the calls and forwards them to a {@link CountingBackend}.
+	 */
+	public RecordingBackend() {
+		this(new CountingBackend());
+	}
+
+	/**
+	 * @param delegate the backend the calls are forwarded to
+	 */
+	public RecordingBackend(RenderBackend delegate) {
+		if (delegate == null) {
+			throw new IllegalArgumentException("The delegate cannot be null.");
+		}
+		this.delegate = delegate;
+	}
+
+	public RenderBackend getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * @return the calls recorded since the creation of this backend or the last
+	 *         call to {@link #clear()}, in order
+	 */
+	public List<String> getCalls() {
+		return Collections.unmodifiableList(calls);
+	}
+
+	/**
+	 * @return the number of recorded calls to the method {@code name}
+	 */
+	public int count(String name) {
+		int n = 0;
+		for (String c : calls) {
+			if (c.startsWith(name) && c.length() > name.length() && c.charAt(name.length()) == '(') {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	public void clear() {
+		calls.clear();
+	}
+
+	@Override
+	public String toString() {
+		return String.join("\n", calls);
+	}
+
+	private void record(String name, Object... args) {
+		line.setLength(0);
+		line.append(name).append('(');
+		for (int i = 0; i < args.length; i++) {
+			if (i > 0) {
+				line.append(", ");
+			}
+			line.append(args[i]);
+		}
+		calls.add(line.append(')').toString());
+	}
+
+	private static String color(NVGColor c) {
+		return "rgba(" + c.r() + ", " + c.g() + ", " + c.b() + ", " + c.a() + ")";
+	}
+
+	private static String paint(NVGPaint p) {
+		return "paint(image " + p.image() + ", " + color(p.innerColor()) + ", " + color(p.outerColor()) + ")";
+	}
+
+	// Frames and resources -----------------------------
+
+	@Override
+	public void beginFrame(float width, float height, float devicePixelRatio) {
+		record("beginFrame", width, height, devicePixelRatio);
+		delegate.beginFrame(width, height, devicePixelRatio);
+	}
+
+	@Override
+	public void endFrame() {
+		record("endFrame");
+		delegate.endFrame();
+	}
+
+	@Override
+	public void destroy() {
+		record("destroy");
+		delegate.destroy();
+	}
+
+	@Override
+	public int createFont(String name, ByteBuffer data) {
+		record("createFont", name);
+		return delegate.createFont(name, data);
+	}
+
+	@Override
+	public int createImageFromHandle(int textureID, int width, int height, int flags) {
+		record("createImageFromHandle", textureID, width, height, flags);
+		return delegate.createImageFromHandle(textureID, width, height, flags);
+	}
+
+	@Override
+	public void deleteImage(int image) {
+		record("deleteImage", image);
+		delegate.deleteImage(image);
+	}
+
+	@Override
+	public int createFramebuffer(int width, int height, int flags) {
+		record("createFramebuffer", width, height, flags);
+		return delegate.createFramebuffer(width, height, flags);
+	}
+
+	@Override
+	public void bindFramebuffer(int fbo) {
+		record("bindFramebuffer", fbo == 0 ? "screen" : "image " + fbo);
+		delegate.bindFramebuffer(fbo);
+	}
+
+	@Override
+	public void deleteFramebuffer(int fbo) {
+		record("deleteFramebuffer", "image " + fbo);
+		delegate.deleteFramebuffer(fbo);
+	}
+
+	@Override
+	public void viewport(int x, int y, int width, int height) {
+		record("viewport", x, y, width, height);
+		delegate.viewport(x, y, width, height);
+	}
+
+	@Override
+	public void clear(float r, float g, float b, float a) {
+		record("clear", r, g, b, a);
+		delegate.clear(r, g, b, a);
+	}
+
+	// State --------------------------------------------
+
+	@Override
+	public void save() {
+		record("save");
+		delegate.save();
+	}
+
+	@Override
+	public void restore() {
+		record("restore");
+		delegate.restore();
+	}
+
+	@Override
+	public void reset() {
+		record("reset");
+		delegate.reset();
+	}
+
+	@Override
+	public void globalCompositeOperation(int op) {
+		record("globalCompositeOperation", op);
+		delegate.globalCompositeOperation(op);
+	}
+
+	@Override
+	public void globalCompositeBlendFunc(int sfactor, int dfactor) {
+		record("globalCompositeBlendFunc", sfactor, dfactor);
+		delegate.globalCompositeBlendFunc(sfactor, dfactor);
+	}
+
+	@Override
+	public void globalCompositeBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+		record("globalCompositeBlendFuncSeparate", srcRGB, dstRGB, srcAlpha, dstAlpha);
+		delegate.globalCompositeBlendFuncSeparate(srcRGB, dstRGB, srcAlpha, dstAlpha);
+	}
+
+	@Override
+	public void globalAlpha(float alpha) {
+		record("globalAlpha", alpha);
+		delegate.globalAlpha(alpha);
+	}
+
+	@Override
+	public void strokeColor(NVGColor color) {
+		record("strokeColor", color(color));
+		delegate.strokeColor(color);
+	}
+
+	@Override
+	public void strokePaint(NVGPaint paint) {
+		record("strokePaint", paint(paint));
+		delegate.strokePaint(paint);
+	}
+
+	@Override
+	public void fillColor(NVGColor color) {
+		record("fillColor", color(color));
+		delegate.fillColor(color);
+	}
+
+	@Override
+	public void fillPaint(NVGPaint paint) {
+		record("fillPaint", paint(paint));
+		delegate.fillPaint(paint);
+	}
+
+	@Override
+	public void miterLimit(float limit) {
+		record("miterLimit", limit);
+		delegate.miterLimit(limit);
+	}
+
+	@Override
+	public void strokeWidth(float size) {
+		record("strokeWidth", size);
+		delegate.strokeWidth(size);
+	}
+
+	@Override
+	public void lineCap(int cap) {
+		record("lineCap", cap);
+		delegate.lineCap(cap);
+	}
+
+	@Override
+	public void lineJoin(int join) {
+		record("lineJoin", join);
+		delegate.lineJoin(join);
+	}
+
+	// Paints -------------------------------------------
+
+	@Override
+	public NVGPaint imagePattern(float x, float y, float w, float h, float angle, int image, float alpha,
+			NVGPaint result) {
+		record("imagePattern", x, y, w, h, angle, image, alpha);
+		return delegate.imagePattern(x, y, w, h, angle, image, alpha, result);
+	}
+
+	@Override
+	public NVGPaint boxGradient(float x, float y, float w, float h, float r, float f, NVGColor icol,
+			NVGColor ocol, NVGPaint result) {
+		record("boxGradient", x, y, w, h, r, f, color(icol), color(ocol));
+		return delegate.boxGradient(x, y, w, h, r, f, icol, ocol, result);
+	}
+
+	@Override
+	public NVGPaint linearGradient(float sx, float sy, float ex, float ey, NVGColor icol, NVGColor ocol,
+			NVGPaint result) {
+		record("linearGradient", sx, sy, ex, ey, color(icol), color(ocol));
+		return delegate.linearGradient(sx, sy, ex, ey, icol, ocol, result);
+	}
+
+	@Override
+	public NVGPaint radialGradient(float cx, float cy, float inr, float outr, NVGColor icol, NVGColor ocol,
+			NVGPaint result) {
+		record("radialGradient", cx, cy, inr, outr, color(icol), color(ocol));
+		return delegate.radialGradient(cx, cy, inr, outr, icol, ocol, result);
+	}
+
+	// Transforms and scissor ---------------------------
+
+	@Override
+	public void resetTransform() {
+		record("resetTransform");
+		delegate.resetTransform();
+	}
+
+	@Override
+	public void transform(float a, float b, float c, float d, float e, float f) {
+		record("transform", a, b, c, d, e, f);
+		delegate.transform(a, b, c, d, e, f);
+	}
+
+	@Override
+	public void translate(float x, float y) {
+		record("translate", x, y);
+		delegate.translate(x, y);
+	}
+
+	@Override
+	public void rotate(float angle) {
+		record("rotate", angle);
+		delegate.rotate(angle);
+	}
+
+	@Override
+	public void skewX(float angle) {
+		record("skewX", angle);
+		delegate.skewX(angle);
+	}
+
+	@Override
+	public void skewY(float angle) {
+		record("skewY", angle);
+		delegate.skewY(angle);
+	}
+
+	@Override
+	public void scale(float x, float y) {
+		record("scale", x, y);
+		delegate.scale(x, y);
+	}
+
+	@Override
+	public void currentTransform(float[] dest) {
+		delegate.currentTransform(dest);
+	}
+
+	@Override
+	public void scissor(float x, float y, float w, float h) {
+		record("scissor", x, y, w, h);
+		delegate.scissor(x, y, w, h);
+	}
+
+	@Override
+	public void intersectScissor(float x, float y, float w, float h) {
+		record("intersectScissor", x, y, w, h);
+		delegate.intersectScissor(x, y, w, h);
+	}
+
+	@Override
+	public void resetScissor() {
+		record("resetScissor");
+		delegate.resetScissor();
+	}
+
+	// Paths --------------------------------------------
+
+	@Override
+	public void beginPath() {
+		record("beginPath");
+		delegate.beginPath();
+	}
+
+	@Override
+	public void moveTo(float x, float y) {
+		record("moveTo", x, y);
+		delegate.moveTo(x, y);
+	}
+
+	@Override
+	public void lineTo(float x, float y) {
+		record("lineTo", x, y);
+		delegate.lineTo(x, y);
+	}
+
+	@Override
+	public void bezierTo(float c1x, float c1y, float c2x, float c2y, float x, float y) {
+		record("bezierTo", c1x, c1y, c2x, c2y, x, y);
+		delegate.bezierTo(c1x, c1y, c2x, c2y, x, y);
+	}
+
+	@Override
+	public void quadTo(float cx, float cy, float x, float y) {
+		record("quadTo", cx, cy, x, y);
+		delegate.quadTo(cx, cy, x, y);
+	}
+
+	@Override
+	public void arcTo(float x1, float y1, float x2, float y2, float radius) {
+		record("arcTo", x1, y1, x2, y2, radius);
+		delegate.arcTo(x1, y1, x2, y2, radius);
+	}
+
+	@Override
+	public void closePath() {
+		record("closePath");
+		delegate.closePath();
+	}
+
+	@Override
+	public void pathWinding(int dir) {
+		record("pathWinding", dir);
+		delegate.pathWinding(dir);
+	}
+
+	@Override
+	public void arc(float cx, float cy, float r, float a0, float a1, int dir) {
+		record("arc", cx, cy, r, a0, a1, dir);
+		delegate.arc(cx, cy, r, a0, a1, dir);
+	}
+
+	@Override
+	public void rect(float x, float y, float w, float h) {
+		record("rect", x, y, w, h);
+		delegate.rect(x, y, w, h);
+	}
+
+	@Override
+	public void roundedRect(float x, float y, float w, float h, float r) {
+		record("roundedRect", x, y, w, h, r);
+		delegate.roundedRect(x, y, w, h, r);
+	}
+
+	@Override
+	public void roundedRectVarying(float x, float y, float w, float h, float radTopLeft, float radTopRight,
+			float radBottomRight, float radBottomLeft) {
+		record("roundedRectVarying", x, y, w, h, radTopLeft, radTopRight, radBottomRight, radBottomLeft);
+		delegate.roundedRectVarying(x, y, w, h, radTopLeft, radTopRight, radBottomRight, radBottomLeft);
+	}
+
+	@Override
+	public void ellipse(float cx, float cy, float rx, float ry) {
+		record("ellipse", cx, cy, rx, ry);
+		delegate.ellipse(cx, cy, rx, ry);
+	}
+
+	@Override
+	public void circle(float cx, float cy, float r) {
+		record("circle", cx, cy, r);
+		delegate.circle(cx, cy, r);
+	}
+
+	@Override
+	public void fill() {
+		record("fill");
+		delegate.fill();
+	}
+
+	@Override
+	public void stroke() {
+		record("stroke");
+		delegate.stroke();
+	}
+
+	// Text ---------------------------------------------
+
+	@Override
+	public void fontSize(float size) {
+		record("fontSize", size);
+		delegate.fontSize(size);
+	}
+
+	@Override
+	public void fontBlur(float blur) {
+		record("fontBlur", blur);
+		delegate.fontBlur(blur);
+	}
+
+	@Override
+	public void textLetterSpacing(float spacing) {
+		record("textLetterSpacing", spacing);
+		delegate.textLetterSpacing(spacing);
+	}
+
+	@Override
+	public void textLineHeight(float lineHeight) {
+		record("textLineHeight", lineHeight);
+		delegate.textLineHeight(lineHeight);
+	}
+
+	@Override
+	public void textAlign(int align) {
+		record("textAlign", align);
+		delegate.textAlign(align);
+	}
+
+	@Override
+	public void fontFace(String font) {
+		record("fontFace", font);
+		delegate.fontFace(font);
+	}
+
+	@Override
+	public void text(float x, float y, long string, long end) {
+		record("text", x, y, memUTF8(string, (int) (end - string)));
+		delegate.text(x, y, string, end);
+	}
+
+	@Override
+	public void text(float x, float y, CharSequence string) {
+		record("text", x, y, string);
+		delegate.text(x, y, string);
+	}
+
+	@Override
+	public void textBox(float x, float y, float breakRowWidth, long string, long end) {
+		record("textBox", x, y, breakRowWidth, memUTF8(string, (int) (end - string)));
+		delegate.textBox(x, y, breakRowWidth, string, end);
+	}
+
+	@Override
+	public void textBox(float x, float y, float breakRowWidth, CharSequence string) {
+		record("textBox", x, y, breakRowWidth, string);
+		delegate.textBox(x, y, breakRowWidth, string);
+	}
+
+	@Override
+	public float textBounds(float x, float y, ByteBuffer string, float[] bounds) {
+		return delegate.textBounds(x, y, string, bounds);
+	}
+
+	@Override
+	public void textBoxBounds(float x, float y, float breakRowWidth, ByteBuffer string, float[] bounds) {
+		delegate.textBoxBounds(x, y, breakRowWidth, string, bounds);
+	}
+
+	@Override
+	public int textBreakLines(ByteBuffer string, float breakRowWidth, NVGTextRow.Buffer rows) {
+		return delegate.textBreakLines(string, breakRowWidth, rows);
+	}
+
+	@Override
+	public int textGlyphPositions(float x, float y, ByteBuffer string, NVGGlyphPosition.Buffer positions) {
+		return delegate.textGlyphPositions(x, y, string, positions);
+	}
+
+	@Override
+	public int textGlyphPositions(float x, float y, CharSequence string, NVGGlyphPosition.Buffer positions) {
+		return delegate.textGlyphPositions(x, y, string, positions);
+	}
+
+	@Override
+	public void textMetrics(float[] ascender, float[] descender, float[] lineh) {
+		delegate.textMetrics(ascender, descender, lineh);
+	}
+}
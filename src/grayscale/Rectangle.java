@@ -249,12 +249,12 @@ public class Rectangle implements Rectanglec {
 	 * @param r2
 	 * @param dest
 	 */
-	public static void intersection(Rectangle r1, Rectangle r2, Rectangle dest) {
-		double x1 = Math.max(r1.getMinX(), r1.getMinX());
-		double y1 = Math.max(r1.getMinY(), r1.getMinY());
-		double x2 = Math.min(r1.getMaxX(), r1.getMaxX());
-		double y2 = Math.min(r1.getMaxY(), r1.getMaxY());
-		dest.set(x1, y1, x2 - x1, y2 - y1);
+	public static void intersection(Rectanglec r1, Rectanglec r2, Rectangle dest) {
+		double x1 = Math.max(r1.getMinX(), r2.getMinX());
+		double y1 = Math.max(r1.getMinY(), r2.getMinY());
+		double x2 = Math.min(r1.getMaxX(), r2.getMaxX());
+		double y2 = Math.min(r1.getMaxY(), r2.getMaxY());
+		dest.set(x1, y1, Math.max(x2 - x1, 0), Math.max(y2 - y1, 0));
 	}
 
 	/**
@@ -264,7 +264,7 @@ public class Rectangle implements Rectanglec {
 	 * @param r2
 	 * @param dest
 	 */
-	public static void union(Rectangle r1, Rectangle r2, Rectangle dest) {
+	public static void union(Rectanglec r1, Rectanglec r2, Rectangle dest) {
 		double x1 = Math.min(r1.getMinX(), r2.getMinX());
 		double y1 = Math.min(r1.getMinY(), r2.getMinY());
 		double x2 = Math.max(r1.getMaxX(), r2.getMaxX());
@@ -0,0 +1,254 @@
+package grayscale;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+import java.nio.ByteBuffer;
+
+import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGGlyphPosition;
+import org.lwjgl.nanovg.NVGPaint;
+import org.lwjgl.nanovg.NVGTextRow;
+
+/**
+ * The drawing calls a {@link Graphics} object sends once they passed its
+ * state elision, batching and display lists. The methods follow the NanoVG
+ * API, without the context argument, so that {@link NanoVGBackend} maps them
+ * one to one.
+ * <p>
+ * Other backends can replace NanoVG to measure the cost of the UI layer
+ * alone, see {@link CountingBackend}, or to check what a component draws, see
+ * {@link RecordingBackend}.
+ * </p>
+ *
+ * @see Graphics#Graphics(RenderBackend, java.util.List)
+ * @author Niels
+ */
+public interface RenderBackend {
+
+	// Frames -------------------------------------------
+
+	void beginFrame(float width, float height, float devicePixelRatio);
+
+	void endFrame();
+
+	/**
+	 * Releases the resources of this backend, it cannot be used afterwards.
+	 */
+	void destroy();
+
+	// Resources ----------------------------------------
+
+	/**
+	 * @return a handle to the font, or -1 if it could not be created
+	 */
+	int createFont(String name, ByteBuffer data);
+
+	/**
+	 * Creates an image from an OpenGL texture.
+	 *
+	 * @return a handle to the image, that must be deleted with
+	 *         {@link #deleteImage(int)}
+	 */
+	int createImageFromHandle(int textureID, int width, int height, int flags);
+
+	void deleteImage(int image);
+
+	/**
+	 * Creates a framebuffer to render to. Its handle is also the image of its
+	 * content, to be drawn with {@link #imagePattern}.
+	 *
+	 * @return a handle to the framebuffer, that must be deleted with
+	 *         {@link #deleteFramebuffer(int)}, or 0 if it could not be created
+	 */
+	int createFramebuffer(int width, int height, int flags);
+
+	/**
+	 * @param fbo the framebuffer to render to, or 0 for the screen
+	 */
+	void bindFramebuffer(int fbo);
+
+	void deleteFramebuffer(int fbo);
+
+	/**
+	 * Sets the region of the bound framebuffer that is rendered to, in pixels.
+	 */
+	void viewport(int x, int y, int width, int height);
+
+	/**
+	 * Fills the bound framebuffer with a color, ignoring the scissor. It must be
+	 * called before drawing the frame, as OpenGL clears right away while NanoVG
+	 * draws the frame at its end.
+	 */
+	void clear(float r, float g, float b, float a);
+
+	// State --------------------------------------------
+
+	void save();
+
+	void restore();
+
+	void reset();
+
+	void globalCompositeOperation(int op);
+
+	void globalCompositeBlendFunc(int sfactor, int dfactor);
+
+	void globalCompositeBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha);
+
+	void globalAlpha(float alpha);
+
+	void strokeColor(NVGColor color);
+
+	void strokePaint(NVGPaint paint);
+
+	void fillColor(NVGColor color);
+
+	void fillPaint(NVGPaint paint);
+
+	void miterLimit(float limit);
+
+	void strokeWidth(float size);
+
+	void lineCap(int cap);
+
+	void lineJoin(int join);
+
+	// Paints -------------------------------------------
+
+	NVGPaint imagePattern(float x, float y, float w, float h, float angle, int image, float alpha, NVGPaint result);
+
+	NVGPaint boxGradient(float x, float y, float w, float h, float r, float f, NVGColor icol, NVGColor ocol,
+			NVGPaint result);
+
+	NVGPaint linearGradient(float sx, float sy, float ex, float ey, NVGColor icol, NVGColor ocol, NVGPaint result);
+
+	NVGPaint radialGradient(float cx, float cy, float inr, float outr, NVGColor icol, NVGColor ocol,
+			NVGPaint result);
+
+	// Transforms and scissor ---------------------------
+
+	void resetTransform();
+
+	void transform(float a, float b, float c, float d, float e, float f);
+
+	void translate(float x, float y);
+
+	void rotate(float angle);
+
+	void skewX(float angle);
+
+	void skewY(float angle);
+
+	void scale(float x, float y);
+
+	/**
+	 * Stores the values {@code a-f} of the current transform into {@code dest}.
+	 */
+	void currentTransform(float[] dest);
+
+	void scissor(float x, float y, float w, float h);
+
+	void intersectScissor(float x, float y, float w, float h);
+
+	void resetScissor();
+
+	// Paths --------------------------------------------
+
+	void beginPath();
+
+	void moveTo(float x, float y);
+
+	void lineTo(float x, float y);
+
+	void bezierTo(float c1x, float c1y, float c2x, float c2y, float x, float y);
+
+	void quadTo(float cx, float cy, float x, float y);
+
+	void arcTo(float x1, float y1, float x2, float y2, float radius);
+
+	void closePath();
+
+	void pathWinding(int dir);
+
+	void arc(float cx, float cy, float r, float a0, float a1, int dir);
+
+	void rect(float x, float y, float w, float h);
+
+	void roundedRect(float x, float y, float w, float h, float r);
+
+	void roundedRectVarying(float x, float y, float w, float h, float radTopLeft, float radTopRight,
+			float radBottomRight, float radBottomLeft);
+
+	void ellipse(float cx, float cy, float rx, float ry);
+
+	void circle(float cx, float cy, float r);
+
+	void fill();
+
+	void stroke();
+
+	// Text ---------------------------------------------
+
+	void fontSize(float size);
+
+	void fontBlur(float blur);
+
+	void textLetterSpacing(float spacing);
+
+	void textLineHeight(float lineHeight);
+
+	void textAlign(int align);
+
+	void fontFace(String font);
+
+	/**
+	 * Draws the UTF-8 text between the addresses {@code string} and {@code end}.
+	 */
+	void text(float x, float y, long string, long end);
+
+	void text(float x, float y, CharSequence string);
+
+	default void text(float x, float y, ByteBuffer string) {
+		long address = memAddress(string);
+		text(x, y, address, address + string.remaining());
+	}
+
+	/**
+	 * Draws the UTF-8 text between the addresses {@code string} and {@code end},
+	 * wrapped at {@code breakRowWidth}.
+	 */
+	void textBox(float x, float y, float breakRowWidth, long string, long end);
+
+	void textBox(float x, float y, float breakRowWidth, CharSequence string);
+
+	default void textBox(float x, float y, float breakRowWidth, ByteBuffer string) {
+		long address = memAddress(string);
+		textBox(x, y, breakRowWidth, address, address + string.remaining());
+	}
+
+	/**
+	 * @param bounds returns {@code [xmin, ymin, xmax, ymax]}, may be
+	 *               {@code null}
+	 * @return the horizontal advance of the text
+	 */
+	float textBounds(float x, float y, ByteBuffer string, float[] bounds);
+
+	void textBoxBounds(float x, float y, float breakRowWidth, ByteBuffer string, float[] bounds);
+
+	/**
+	 * @return the number of rows stored into {@code rows}, their pointers refer
+	 *         to {@code string}
+	 */
+	int textBreakLines(ByteBuffer string, float breakRowWidth, NVGTextRow.Buffer rows);
+
+	int textGlyphPositions(float x, float y, ByteBuffer string, NVGGlyphPosition.Buffer positions);
+
+	int textGlyphPositions(float x, float y, CharSequence string, NVGGlyphPosition.Buffer positions);
+
+	/**
+	 * Each array may be {@code null}, otherwise its first element receives the
+	 * metric. As in NanoVG, the line height is not multiplied by
+	 * {@link #textLineHeight(float)}, that only applies to text boxes.
+	 */
+	void textMetrics(float[] ascender, float[] descender, float[] lineh);
+}
@@ -0,0 +1,87 @@
+package grayscale;
+
+/**
+ * Counters describing the work done by a {@link Graphics} object during one
+ * frame.
+ *
+ * @see Graphics#getFrameStats()
+ * @author Niels
+ */
+public class RenderStats {
+	int issuedStateCalls;
+	int elidedStateCalls;
+	int drawCalls;
+	int batchedFills;
+	int drawnComponents;
+	int culledComponents;
+
+	/**
+	 * @return the number of render state changes that were sent to NanoVG
+	 */
+	public int getIssuedStateCalls() {
+		return issuedStateCalls;
+	}
+
+	/**
+	 * @return the number of render state changes that were dropped because they
+	 *         would not have changed the current state
+	 */
+	public int getElidedStateCalls() {
+		return elidedStateCalls;
+	}
+
+	/**
+	 * @return the number of fills and strokes sent to NanoVG
+	 */
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+
+	/**
+	 * @return the number of rectangle fills that were merged into a batch
+	 *         instead of being drawn individually
+	 */
+	public int getBatchedFills() {
+		return batchedFills;
+	}
+
+	/**
+	 * @return the number of components that were drawn
+	 */
+	public int getDrawnComponents() {
+		return drawnComponents;
+	}
+
+	/**
+	 * @return the number of components skipped because they were outside of the
+	 *         visible region, without counting their descendants
+	 */
+	public int getCulledComponents() {
+		return culledComponents;
+	}
+
+	void set(RenderStats other) {
+		issuedStateCalls = other.issuedStateCalls;
+		elidedStateCalls = other.elidedStateCalls;
+		drawCalls = other.drawCalls;
+		batchedFills = other.batchedFills;
+		drawnComponents = other.drawnComponents;
+		culledComponents = other.culledComponents;
+	}
+
+	void clear() {
+		issuedStateCalls = 0;
+		elidedStateCalls = 0;
+		drawCalls = 0;
+		batchedFills = 0;
+		drawnComponents = 0;
+		culledComponents = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "[issuedStateCalls=" + issuedStateCalls + ",elidedStateCalls=" + elidedStateCalls + ",drawCalls="
+				+ drawCalls + ",batchedFills=" + batchedFills + ",drawnComponents=" + drawnComponents
+				+ ",culledComponents=" + culledComponents + "]";
+	}
+}
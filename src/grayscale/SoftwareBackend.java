@@ -0,0 +1,1839 @@
+package grayscale;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+import static org.lwjgl.stb.STBImageWrite.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGGlyphPosition;
+import org.lwjgl.nanovg.NVGPaint;
+import org.lwjgl.nanovg.NVGTextRow;
+
+/**
+ * Renders on the CPU into an off-heap RGBA buffer, without OpenGL, for
+ * snapshots on machines without a GPU. It follows the NanoVG semantics: the
+ * paths are flattened in device space, filled with the non-zero rule and the
+ * winding of their sub-paths, or with the even-odd rule, see
+ * {@link #setEvenOdd(boolean)}, and the strokes are expanded with their joins
+ * and caps. Paints, global alpha, composite operations, scissor and offscreen
+ * framebuffers are supported; the text is drawn with stb_truetype.
+ * <p>
+ * The large shapes are rasterized by bands of rows in parallel on a
+ * {@link ForkJoinPool}, see {@link Rasterizer}.
+ * </p>
+ * <p>
+ * Limitations: the scissor is the bounding box of the transformed rectangle,
+ * glyphs follow the transform of the text position but are not rotated nor
+ * skewed, the font blur is ignored, and the images created from OpenGL
+ * textures are blank, images must be given to
+ * {@link #createImageRGBA(int, int, int, ByteBuffer)} instead.
+ * </p>
+ *
+ * @author Niels
+ */
+public class SoftwareBackend implements RenderBackend {
+	private static final int MAX_STATES = 32;
+	private static final float KAPPA90 = 0.5522847493f;
+	/**
+	 * The maximum distance between a curve and its flattening, in pixels
+	 */
+	private static final float TOLERANCE = 0.25f;
+	private static final float DIST_TOL = 0.01f;
+
+	private final Surface canvas;
+	private Surface target;
+	/**
+	 * The images, indexed by handle. Handle 0 is not used.
+	 */
+	private final List<Surface> images = new ArrayList<>();
+	private final List<SoftwareFont> fonts = new ArrayList<>();
+
+	private final Rasterizer rasterizer;
+	private final FillPainter painter = new FillPainter();
+	private final LongAdder pixels = new LongAdder();
+	private boolean evenOdd = false;
+
+	private int viewportWidth, viewportHeight;
+	private float frameScaleX = 1, frameScaleY = 1;
+
+	private final State[] states = new State[MAX_STATES];
+	private int stateIndex = 0;
+
+	/**
+	 * The current path, flattened in device space. Each sub-path is a range of
+	 * points.
+	 */
+	private float[] points = new float[2 * 256];
+	private int pointCount = 0;
+	private int[] subpathStarts = new int[16];
+	private boolean[] subpathClosed = new boolean[16];
+	private int[] subpathWindings = new int[16];
+	private int subpathCount = 0;
+	/**
+	 * The last point of the path commands, in user space
+	 */
+	private float commandX, commandY;
+
+	private float[] polygon = new float[2 * 70];
+	private float[] glyphRow;
+	private ByteBuffer utf8 = memAlloc(256);
+
+	/**
+	 * Creates a backend drawing into a canvas of the given size, rasterizing the
+	 * large shapes with the common {@link ForkJoinPool}.
+	 */
+	public SoftwareBackend(int width, int height) {
+		this(width, height, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param width  the width of the canvas, in pixels
+	 * @param height the height of the canvas, in pixels
+	 * @param pool   the pool rasterizing the large shapes, or {@code null} to
+	 *               draw everything on the calling thread
+	 */
+	public SoftwareBackend(int width, int height, ForkJoinPool pool) {
+		canvas = new Surface(width, height, NVG_IMAGE_PREMULTIPLIED);
+		target = canvas;
+		viewportWidth = width;
+		viewportHeight = height;
+		rasterizer = new Rasterizer(pool);
+		images.add(null);
+		glyphRow = new float[width];
+		for (int i = 0; i < states.length; i++) {
+			states[i] = new State();
+		}
+		states[0].reset();
+	}
+
+	public int getWidth() {
+		return canvas.width;
+	}
+
+	public int getHeight() {
+		return canvas.height;
+	}
+
+	/**
+	 * @return the pixels of the canvas, as premultiplied RGBA bytes, row by row
+	 *         from the top
+	 */
+	public ByteBuffer getPixels() {
+		return canvas.pixels;
+	}
+
+	/**
+	 * @return the number of pixels blended since the creation of this backend
+	 *         or the last call to {@link #resetPixelCount()}
+	 */
+	public long getPixelCount() {
+		return pixels.sum();
+	}
+
+	public void resetPixelCount() {
+		pixels.reset();
+	}
+
+	public boolean isEvenOdd() {
+		return evenOdd;
+	}
+
+	/**
+	 * @param evenOdd {@code true} to fill the paths with the even-odd rule,
+	 *                {@code false} to use the non-zero rule and the winding of
+	 *                the sub-paths, as NanoVG does
+	 */
+	public void setEvenOdd(boolean evenOdd) {
+		this.evenOdd = evenOdd;
+	}
+
+	/**
+	 * Saves the canvas as a png file, like {@link Image#saveImage(String)}.
+	 *
+	 * @param path the file to write
+	 */
+	public void saveImage(String path) {
+		int width = canvas.width, height = canvas.height, stride = width * 4;
+		ByteBuffer image = memAlloc(width * height * 4);
+		long src = canvas.address, dst = memAddress(image);
+		for (int i = 0; i < width * height; i++) {
+			int c = memGetInt(src + 4L * i);
+			int a = c >>> 24;
+			if (a != 0 && a != 255) {
+				int r = Math.min(255, (c & 0xFF) * 255 / a);
+				int g = Math.min(255, ((c >>> 8) & 0xFF) * 255 / a);
+				int b = Math.min(255, ((c >>> 16) & 0xFF) * 255 / a);
+				c = r | g << 8 | b << 16 | a << 24;
+			}
+			memPutInt(dst + 4L * i, c);
+		}
+		boolean written = stbi_write_png(path, width, height, 4, image, stride);
+		memFree(image);
+		if (!written) {
+			throw new RuntimeException("Could not write the image " + path);
+		}
+	}
+
+	// Frames and resources -----------------------------
+
+	@Override
+	public void beginFrame(float width, float height, float devicePixelRatio) {
+		frameScaleX = viewportWidth / width;
+		frameScaleY = viewportHeight / height;
+		stateIndex = 0;
+		states[0].reset();
+		beginPath();
+	}
+
+	@Override
+	public void endFrame() {
+	}
+
+	@Override
+	public void destroy() {
+		for (Surface s : images) {
+			if (s != null) {
+				s.free();
+			}
+		}
+		images.clear();
+		fonts.clear();
+		canvas.free();
+		memFree(utf8);
+	}
+
+	@Override
+	public void clear(float r, float g, float b, float a) {
+		target.clear(pack(r * a, g * a, b * a, a));
+	}
+
+	@Override
+	public int createFont(String name, ByteBuffer data) {
+		fonts.add(new SoftwareFont(name, data));
+		return fonts.size() - 1;
+	}
+
+	/**
+	 * Creates an image from RGBA pixels, like {@code nvgCreateImageRGBA}.
+	 *
+	 * @param flags the image flags, see {@link Image#IMAGE_REPEATX} for example
+	 * @param data  the pixels, row by row from the top, with premultiplied alpha
+	 *              if {@link Image#IMAGE_PREMULTIPLIED} is set
+	 * @return the handle of the image
+	 */
+	public int createImageRGBA(int width, int height, int flags, ByteBuffer data) {
+		Surface s = new Surface(width, height, flags | NVG_IMAGE_PREMULTIPLIED);
+		boolean premultiplied = (flags & NVG_IMAGE_PREMULTIPLIED) != 0;
+		long src = memAddress(data);
+		for (int i = 0; i < width * height; i++) {
+			int c = memGetInt(src + 4L * i);
+			if (!premultiplied) {
+				int a = c >>> 24;
+				c = ((c & 0xFF) * a / 255) | (((c >>> 8) & 0xFF) * a / 255) << 8
+						| (((c >>> 16) & 0xFF) * a / 255) << 16 | a << 24;
+			}
+			memPutInt(s.address + 4L * i, c);
+		}
+		return addImage(s);
+	}
+
+	private int addImage(Surface s) {
+		for (int i = 1; i < images.size(); i++) {
+			if (images.get(i) == null) {
+				images.set(i, s);
+				return i;
+			}
+		}
+		images.add(s);
+		return images.size() - 1;
+	}
+
+	/**
+	 * The pixels of an OpenGL texture are not available, a blank image of the
+	 * same size is created.
+	 */
+	@Override
+	public int createImageFromHandle(int textureID, int width, int height, int flags) {
+		return addImage(new Surface(Math.max(1, width), Math.max(1, height), flags));
+	}
+
+	@Override
+	public void deleteImage(int image) {
+		if (image > 0 && image < images.size() && images.get(image) != null) {
+			Surface s = images.set(image, null);
+			if (s == target) {
+				target = canvas;
+			}
+			s.free();
+		}
+	}
+
+	/**
+	 * The framebuffer is an image drawn from the top, so the
+	 * {@link Image#IMAGE_FLIPY} flag is ignored. Its handle is the handle of the
+	 * image.
+	 */
+	@Override
+	public int createFramebuffer(int width, int height, int flags) {
+		return addImage(new Surface(width, height, (flags & ~NVG_IMAGE_FLIPY) | NVG_IMAGE_PREMULTIPLIED));
+	}
+
+	@Override
+	public void bindFramebuffer(int fbo) {
+		Surface s = fbo > 0 && fbo < images.size() ? images.get(fbo) : null;
+		target = s == null ? canvas : s;
+		viewportWidth = target.width;
+		viewportHeight = target.height;
+	}
+
+	@Override
+	public void deleteFramebuffer(int fbo) {
+		deleteImage(fbo);
+	}
+
+	/**
+	 * Only the size of the viewport is used, it is always at the origin of the
+	 * bound framebuffer.
+	 */
+	@Override
+	public void viewport(int x, int y, int width, int height) {
+		viewportWidth = width;
+		viewportHeight = height;
+	}
+
+	// State --------------------------------------------
+
+	/**
+	 * The render state, as in NanoVG
+	 */
+	private static final class State {
+		final float[] xform = new float[6];
+		final Paint fill = new Paint(), stroke = new Paint();
+		float strokeWidth, miterLimit, alpha;
+		int lineCap, lineJoin;
+		int srcRGB, dstRGB, srcAlpha, dstAlpha;
+		/**
+		 * The scissor, in device space
+		 */
+		boolean scissor;
+		float scissorX0, scissorY0, scissorX1, scissorY1;
+		float fontSize, letterSpacing, lineHeight;
+		int align, font;
+
+		void reset() {
+			setIdentity(xform);
+			fill.setColor(1, 1, 1, 1);
+			stroke.setColor(0, 0, 0, 1);
+			strokeWidth = 1;
+			miterLimit = 10;
+			alpha = 1;
+			lineCap = NVG_BUTT;
+			lineJoin = NVG_MITER;
+			srcRGB = srcAlpha = NVG_ONE;
+			dstRGB = dstAlpha = NVG_ONE_MINUS_SRC_ALPHA;
+			scissor = false;
+			fontSize = 16;
+			letterSpacing = 0;
+			lineHeight = 1;
+			align = NVG_ALIGN_LEFT | NVG_ALIGN_BASELINE;
+			font = 0;
+		}
+
+		void set(State o) {
+			System.arraycopy(o.xform, 0, xform, 0, 6);
+			fill.set(o.fill);
+			stroke.set(o.stroke);
+			strokeWidth = o.strokeWidth;
+			miterLimit = o.miterLimit;
+			alpha = o.alpha;
+			lineCap = o.lineCap;
+			lineJoin = o.lineJoin;
+			srcRGB = o.srcRGB;
+			dstRGB = o.dstRGB;
+			srcAlpha = o.srcAlpha;
+			dstAlpha = o.dstAlpha;
+			scissor = o.scissor;
+			scissorX0 = o.scissorX0;
+			scissorY0 = o.scissorY0;
+			scissorX1 = o.scissorX1;
+			scissorY1 = o.scissorY1;
+			fontSize = o.fontSize;
+			letterSpacing = o.letterSpacing;
+			lineHeight = o.lineHeight;
+			align = o.align;
+			font = o.font;
+		}
+	}
+
+	/**
+	 * A paint, as {@link NVGPaint}, its transform going from the paint space to
+	 * the user space of the canvas
+	 */
+	private static final class Paint {
+		final float[] xform = new float[6];
+		float extentX, extentY, radius, feather;
+		final float[] inner = new float[4], outer = new float[4];
+		int image;
+
+		void setColor(float r, float g, float b, float a) {
+			setIdentity(xform);
+			extentX = extentY = radius = 0;
+			feather = 1;
+			inner[0] = outer[0] = r;
+			inner[1] = outer[1] = g;
+			inner[2] = outer[2] = b;
+			inner[3] = outer[3] = a;
+			image = 0;
+		}
+
+		void set(NVGPaint p) {
+			long address = p.address();
+			for (int i = 0; i < 6; i++) {
+				xform[i] = memGetFloat(address + NVGPaint.XFORM + 4 * i);
+			}
+			extentX = memGetFloat(address + NVGPaint.EXTENT);
+			extentY = memGetFloat(address + NVGPaint.EXTENT + 4);
+			radius = memGetFloat(address + NVGPaint.RADIUS);
+			feather = memGetFloat(address + NVGPaint.FEATHER);
+			for (int i = 0; i < 4; i++) {
+				inner[i] = memGetFloat(address + NVGPaint.INNERCOLOR + 4 * i);
+				outer[i] = memGetFloat(address + NVGPaint.OUTERCOLOR + 4 * i);
+			}
+			image = memGetInt(address + NVGPaint.IMAGE);
+		}
+
+		void set(Paint o) {
+			System.arraycopy(o.xform, 0, xform, 0, 6);
+			extentX = o.extentX;
+			extentY = o.extentY;
+			radius = o.radius;
+			feather = o.feather;
+			System.arraycopy(o.inner, 0, inner, 0, 4);
+			System.arraycopy(o.outer, 0, outer, 0, 4);
+			image = o.image;
+		}
+	}
+
+	private State state() {
+		return states[stateIndex];
+	}
+
+	@Override
+	public void save() {
+		if (stateIndex == MAX_STATES - 1) {
+			return;
+		}
+		states[stateIndex + 1].set(states[stateIndex]);
+		stateIndex++;
+	}
+
+	@Override
+	public void restore() {
+		if (stateIndex > 0) {
+			stateIndex--;
+		}
+	}
+
+	@Override
+	public void reset() {
+		state().reset();
+	}
+
+	@Override
+	public void globalCompositeOperation(int op) {
+		int sfactor = NVG_ONE, dfactor = NVG_ONE_MINUS_SRC_ALPHA;
+		if (op == NVG_SOURCE_IN) {
+			sfactor = NVG_DST_ALPHA;
+			dfactor = NVG_ZERO;
+		} else if (op == NVG_SOURCE_OUT) {
+			sfactor = NVG_ONE_MINUS_DST_ALPHA;
+			dfactor = NVG_ZERO;
+		} else if (op == NVG_ATOP) {
+			sfactor = NVG_DST_ALPHA;
+			dfactor = NVG_ONE_MINUS_SRC_ALPHA;
+		} else if (op == NVG_DESTINATION_OVER) {
+			sfactor = NVG_ONE_MINUS_DST_ALPHA;
+			dfactor = NVG_ONE;
+		} else if (op == NVG_DESTINATION_IN) {
+			sfactor = NVG_ZERO;
+			dfactor = NVG_SRC_ALPHA;
+		} else if (op == NVG_DESTINATION_OUT) {
+			sfactor = NVG_ZERO;
+			dfactor = NVG_ONE_MINUS_SRC_ALPHA;
+		} else if (op == NVG_DESTINATION_ATOP) {
+			sfactor = NVG_ONE_MINUS_DST_ALPHA;
+			dfactor = NVG_SRC_ALPHA;
+		} else if (op == NVG_LIGHTER) {
+			sfactor = NVG_ONE;
+			dfactor = NVG_ONE;
+		} else if (op == NVG_COPY) {
+			sfactor = NVG_ONE;
+			dfactor = NVG_ZERO;
+		} else if (op == NVG_XOR) {
+			sfactor = NVG_ONE_MINUS_DST_ALPHA;
+			dfactor = NVG_ONE_MINUS_SRC_ALPHA;
+		}
+		globalCompositeBlendFuncSeparate(sfactor, dfactor, sfactor, dfactor);
+	}
+
+	@Override
+	public void globalCompositeBlendFunc(int sfactor, int dfactor) {
+		globalCompositeBlendFuncSeparate(sfactor, dfactor, sfactor, dfactor);
+	}
+
+	@Override
+	public void globalCompositeBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+		State s = state();
+		s.srcRGB = srcRGB;
+		s.dstRGB = dstRGB;
+		s.srcAlpha = srcAlpha;
+		s.dstAlpha = dstAlpha;
+	}
+
+	@Override
+	public void globalAlpha(float alpha) {
+		state().alpha = alpha;
+	}
+
+	@Override
+	public void strokeColor(NVGColor color) {
+		state().stroke.setColor(color.r(), color.g(), color.b(), color.a());
+	}
+
+	@Override
+	public void strokePaint(NVGPaint paint) {
+		State s = state();
+		s.stroke.set(paint);
+		multiply(s.stroke.xform, s.xform);
+	}
+
+	@Override
+	public void fillColor(NVGColor color) {
+		state().fill.setColor(color.r(), color.g(), color.b(), color.a());
+	}
+
+	@Override
+	public void fillPaint(NVGPaint paint) {
+		State s = state();
+		s.fill.set(paint);
+		multiply(s.fill.xform, s.xform);
+	}
+
+	@Override
+	public void miterLimit(float limit) {
+		state().miterLimit = limit;
+	}
+
+	@Override
+	public void strokeWidth(float size) {
+		state().strokeWidth = size;
+	}
+
+	@Override
+	public void lineCap(int cap) {
+		state().lineCap = cap;
+	}
+
+	@Override
+	public void lineJoin(int join) {
+		state().lineJoin = join;
+	}
+
+	// Paints -------------------------------------------
+
+	private static NVGPaint paint(NVGPaint result, float a, float b, float c, float d, float e, float f,
+			float extentX, float extentY, float radius, float feather, int image) {
+		long address = result.address();
+		memPutFloat(address + NVGPaint.XFORM, a);
+		memPutFloat(address + NVGPaint.XFORM + 4, b);
+		memPutFloat(address + NVGPaint.XFORM + 8, c);
+		memPutFloat(address + NVGPaint.XFORM + 12, d);
+		memPutFloat(address + NVGPaint.XFORM + 16, e);
+		memPutFloat(address + NVGPaint.XFORM + 20, f);
+		memPutFloat(address + NVGPaint.EXTENT, extentX);
+		memPutFloat(address + NVGPaint.EXTENT + 4, extentY);
+		memPutFloat(address + NVGPaint.RADIUS, radius);
+		memPutFloat(address + NVGPaint.FEATHER, feather);
+		memPutInt(address + NVGPaint.IMAGE, image);
+		return result;
+	}
+
+	private static void putColors(NVGPaint result, NVGColor inner, NVGColor outer) {
+		memCopy(inner.address(), result.address() + NVGPaint.INNERCOLOR, NVGColor.SIZEOF);
+		memCopy(outer.address(), result.address() + NVGPaint.OUTERCOLOR, NVGColor.SIZEOF);
+	}
+
+	@Override
+	public NVGPaint imagePattern(float x, float y, float w, float h, float angle, int image, float alpha,
+			NVGPaint result) {
+		float cs = (float) Math.cos(angle), sn = (float) Math.sin(angle);
+		paint(result, cs, sn, -sn, cs, x, y, w, h, 0, 0, image);
+		long address = result.address();
+		for (int i = 0; i < 4; i++) {
+			float v = i == 3 ? alpha : 1;
+			memPutFloat(address + NVGPaint.INNERCOLOR + 4 * i, v);
+			memPutFloat(address + NVGPaint.OUTERCOLOR + 4 * i, v);
+		}
+		return result;
+	}
+
+	@Override
+	public NVGPaint boxGradient(float x, float y, float w, float h, float r, float f, NVGColor icol,
+			NVGColor ocol, NVGPaint result) {
+		paint(result, 1, 0, 0, 1, x + w * 0.5f, y + h * 0.5f, w * 0.5f, h * 0.5f, r, Math.max(1, f), 0);
+		putColors(result, icol, ocol);
+		return result;
+	}
+
+	@Override
+	public NVGPaint linearGradient(float sx, float sy, float ex, float ey, NVGColor icol, NVGColor ocol,
+			NVGPaint result) {
+		final float large = 1e5f;
+		float dx = ex - sx, dy = ey - sy;
+		float d = (float) Math.sqrt(dx * dx + dy * dy);
+		if (d > 0.0001f) {
+			dx /= d;
+			dy /= d;
+		} else {
+			dx = 0;
+			dy = 1;
+		}
+		paint(result, dy, -dx, dx, dy, sx - dx * large, sy - dy * large, large, large + d * 0.5f, 0,
+				Math.max(1, d), 0);
+		putColors(result, icol, ocol);
+		return result;
+	}
+
+	@Override
+	public NVGPaint radialGradient(float cx, float cy, float inr, float outr, NVGColor icol, NVGColor ocol,
+			NVGPaint result) {
+		float r = (inr + outr) * 0.5f, f = outr - inr;
+		paint(result, 1, 0, 0, 1, cx, cy, r, r, r, Math.max(1, f), 0);
+		putColors(result, icol, ocol);
+		return result;
+	}
+
+	// Transforms and scissor ---------------------------
+
+	private static void setIdentity(float[] t) {
+		t[0] = t[3] = 1;
+		t[1] = t[2] = t[4] = t[5] = 0;
+	}
+
+	/**
+	 * {@code t = t * s}, {@code t} being applied first
+	 */
+	private static void multiply(float[] t, float[] s) {
+		float t0 = t[0] * s[0] + t[1] * s[2];
+		float t2 = t[2] * s[0] + t[3] * s[2];
+		float t4 = t[4] * s[0] + t[5] * s[2] + s[4];
+		t[1] = t[0] * s[1] + t[1] * s[3];
+		t[3] = t[2] * s[1] + t[3] * s[3];
+		t[5] = t[4] * s[1] + t[5] * s[3] + s[5];
+		t[0] = t0;
+		t[2] = t2;
+		t[4] = t4;
+	}
+
+	/**
+	 * Applies {@code [a-f]} before the current transform.
+	 */
+	private void premultiply(float a, float b, float c, float d, float e, float f) {
+		float[] t = state().xform;
+		float t0 = a * t[0] + b * t[2], t1 = a * t[1] + b * t[3];
+		float t2 = c * t[0] + d * t[2], t3 = c * t[1] + d * t[3];
+		float t4 = e * t[0] + f * t[2] + t[4], t5 = e * t[1] + f * t[3] + t[5];
+		t[0] = t0;
+		t[1] = t1;
+		t[2] = t2;
+		t[3] = t3;
+		t[4] = t4;
+		t[5] = t5;
+	}
+
+	/**
+	 * @return the x coordinate of a point of the user space, in pixels
+	 */
+	private float deviceX(float x, float y) {
+		float[] t = state().xform;
+		return (x * t[0] + y * t[2] + t[4]) * frameScaleX;
+	}
+
+	private float deviceY(float x, float y) {
+		float[] t = state().xform;
+		return (x * t[1] + y * t[3] + t[5]) * frameScaleY;
+	}
+
+	/**
+	 * @return the average scale from the user space to the pixels
+	 */
+	private float averageScale() {
+		float[] t = state().xform;
+		float sx = (float) Math.sqrt(t[0] * t[0] * frameScaleX * frameScaleX + t[2] * t[2] * frameScaleX * frameScaleX);
+		float sy = (float) Math.sqrt(t[1] * t[1] * frameScaleY * frameScaleY + t[3] * t[3] * frameScaleY * frameScaleY);
+		return (sx + sy) * 0.5f;
+	}
+
+	@Override
+	public void resetTransform() {
+		setIdentity(state().xform);
+	}
+
+	@Override
+	public void transform(float a, float b, float c, float d, float e, float f) {
+		premultiply(a, b, c, d, e, f);
+	}
+
+	@Override
+	public void translate(float x, float y) {
+		premultiply(1, 0, 0, 1, x, y);
+	}
+
+	@Override
+	public void rotate(float angle) {
+		float cs = (float) Math.cos(angle), sn = (float) Math.sin(angle);
+		premultiply(cs, sn, -sn, cs, 0, 0);
+	}
+
+	@Override
+	public void skewX(float angle) {
+		premultiply(1, 0, (float) Math.tan(angle), 1, 0, 0);
+	}
+
+	@Override
+	public void skewY(float angle) {
+		premultiply(1, (float) Math.tan(angle), 0, 1, 0, 0);
+	}
+
+	@Override
+	public void scale(float x, float y) {
+		premultiply(x, 0, 0, y, 0, 0);
+	}
+
+	@Override
+	public void currentTransform(float[] dest) {
+		System.arraycopy(state().xform, 0, dest, 0, 6);
+	}
+
+	@Override
+	public void scissor(float x, float y, float w, float h) {
+		State s = state();
+		w = Math.max(0, w);
+		h = Math.max(0, h);
+		s.scissor = true;
+		s.scissorX0 = s.scissorY0 = Float.POSITIVE_INFINITY;
+		s.scissorX1 = s.scissorY1 = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < 4; i++) {
+			float px = (i & 1) == 0 ? x : x + w, py = (i & 2) == 0 ? y : y + h;
+			float dx = deviceX(px, py), dy = deviceY(px, py);
+			s.scissorX0 = Math.min(s.scissorX0, dx);
+			s.scissorY0 = Math.min(s.scissorY0, dy);
+			s.scissorX1 = Math.max(s.scissorX1, dx);
+			s.scissorY1 = Math.max(s.scissorY1, dy);
+		}
+	}
+
+	@Override
+	public void intersectScissor(float x, float y, float w, float h) {
+		State s = state();
+		if (!s.scissor) {
+			scissor(x, y, w, h);
+			return;
+		}
+		float x0 = s.scissorX0, y0 = s.scissorY0, x1 = s.scissorX1, y1 = s.scissorY1;
+		scissor(x, y, w, h);
+		s.scissorX0 = Math.max(s.scissorX0, x0);
+		s.scissorY0 = Math.max(s.scissorY0, y0);
+		s.scissorX1 = Math.max(s.scissorX0, Math.min(s.scissorX1, x1));
+		s.scissorY1 = Math.max(s.scissorY0, Math.min(s.scissorY1, y1));
+	}
+
+	@Override
+	public void resetScissor() {
+		state().scissor = false;
+	}
+
+	private int clipX0() {
+		State s = state();
+		return s.scissor ? Math.max(0, Math.round(s.scissorX0)) : 0;
+	}
+
+	private int clipY0() {
+		State s = state();
+		return s.scissor ? Math.max(0, Math.round(s.scissorY0)) : 0;
+	}
+
+	private int clipX1() {
+		State s = state();
+		return s.scissor ? Math.min(target.width, Math.round(s.scissorX1)) : target.width;
+	}
+
+	private int clipY1() {
+		State s = state();
+		return s.scissor ? Math.min(target.height, Math.round(s.scissorY1)) : target.height;
+	}
+
+	// Paths --------------------------------------------
+
+	@Override
+	public void beginPath() {
+		pointCount = 0;
+		subpathCount = 0;
+	}
+
+	private void startSubpath() {
+		if (subpathCount == subpathStarts.length) {
+			subpathStarts = Arrays.copyOf(subpathStarts, 2 * subpathCount);
+			subpathClosed = Arrays.copyOf(subpathClosed, 2 * subpathCount);
+			subpathWindings = Arrays.copyOf(subpathWindings, 2 * subpathCount);
+		}
+		subpathStarts[subpathCount] = pointCount;
+		subpathClosed[subpathCount] = false;
+		subpathWindings[subpathCount] = NVG_CCW;
+		subpathCount++;
+	}
+
+	/**
+	 * Adds a point in device space to the current sub-path, unless it is the
+	 * same as the previous one.
+	 */
+	private void addPoint(float x, float y) {
+		if (subpathCount == 0) {
+			startSubpath();
+		}
+		if (pointCount > subpathStarts[subpathCount - 1]) {
+			float px = points[2 * pointCount - 2], py = points[2 * pointCount - 1];
+			if (Math.abs(px - x) < DIST_TOL && Math.abs(py - y) < DIST_TOL) {
+				return;
+			}
+		}
+		if (2 * pointCount == points.length) {
+			points = Arrays.copyOf(points, 2 * points.length);
+		}
+		points[2 * pointCount] = x;
+		points[2 * pointCount + 1] = y;
+		pointCount++;
+	}
+
+	private boolean hasPoints() {
+		return subpathCount > 0 && pointCount > subpathStarts[subpathCount - 1];
+	}
+
+	@Override
+	public void moveTo(float x, float y) {
+		startSubpath();
+		addPoint(deviceX(x, y), deviceY(x, y));
+		commandX = x;
+		commandY = y;
+	}
+
+	@Override
+	public void lineTo(float x, float y) {
+		addPoint(deviceX(x, y), deviceY(x, y));
+		commandX = x;
+		commandY = y;
+	}
+
+	@Override
+	public void bezierTo(float c1x, float c1y, float c2x, float c2y, float x, float y) {
+		if (!hasPoints()) {
+			addPoint(deviceX(commandX, commandY), deviceY(commandX, commandY));
+		}
+		float x1 = points[2 * pointCount - 2], y1 = points[2 * pointCount - 1];
+		flattenBezier(x1, y1, deviceX(c1x, c1y), deviceY(c1x, c1y), deviceX(c2x, c2y), deviceY(c2x, c2y),
+				deviceX(x, y), deviceY(x, y), 0);
+		commandX = x;
+		commandY = y;
+	}
+
+	private void flattenBezier(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4,
+			int level) {
+		float dx = x4 - x1, dy = y4 - y1;
+		float d2 = Math.abs((x2 - x4) * dy - (y2 - y4) * dx);
+		float d3 = Math.abs((x3 - x4) * dy - (y3 - y4) * dx);
+		if (level >= 10 || (d2 + d3) * (d2 + d3) < TOLERANCE * (dx * dx + dy * dy)) {
+			addPoint(x4, y4);
+			return;
+		}
+		float x12 = (x1 + x2) * 0.5f, y12 = (y1 + y2) * 0.5f;
+		float x23 = (x2 + x3) * 0.5f, y23 = (y2 + y3) * 0.5f;
+		float x34 = (x3 + x4) * 0.5f, y34 = (y3 + y4) * 0.5f;
+		float x123 = (x12 + x23) * 0.5f, y123 = (y12 + y23) * 0.5f;
+		float x234 = (x23 + x34) * 0.5f, y234 = (y23 + y34) * 0.5f;
+		float x1234 = (x123 + x234) * 0.5f, y1234 = (y123 + y234) * 0.5f;
+		flattenBezier(x1, y1, x12, y12, x123, y123, x1234, y1234, level + 1);
+		flattenBezier(x1234, y1234, x234, y234, x34, y34, x4, y4, level + 1);
+	}
+
+	@Override
+	public void quadTo(float cx, float cy, float x, float y) {
+		float x0 = commandX, y0 = commandY;
+		bezierTo(x0 + 2f / 3f * (cx - x0), y0 + 2f / 3f * (cy - y0), x + 2f / 3f * (cx - x),
+				y + 2f / 3f * (cy - y), x, y);
+	}
+
+	@Override
+	public void arcTo(float x1, float y1, float x2, float y2, float radius) {
+		if (!hasPoints()) {
+			return;
+		}
+		float x0 = commandX, y0 = commandY;
+		if (near(x0, y0, x1, y1) || near(x1, y1, x2, y2) || distanceToSegment(x1, y1, x0, y0, x2, y2) < DIST_TOL
+				|| radius < DIST_TOL) {
+			lineTo(x1, y1);
+			return;
+		}
+		float dx0 = x0 - x1, dy0 = y0 - y1, dx1 = x2 - x1, dy1 = y2 - y1;
+		float l0 = (float) Math.sqrt(dx0 * dx0 + dy0 * dy0), l1 = (float) Math.sqrt(dx1 * dx1 + dy1 * dy1);
+		dx0 /= l0;
+		dy0 /= l0;
+		dx1 /= l1;
+		dy1 /= l1;
+		float a = (float) Math.acos(dx0 * dx1 + dy0 * dy1);
+		float d = radius / (float) Math.tan(a / 2);
+		if (d > 10000) {
+			lineTo(x1, y1);
+			return;
+		}
+		if (dx1 * dy0 - dx0 * dy1 > 0) {
+			float cx = x1 + dx0 * d + dy0 * radius, cy = y1 + dy0 * d - dx0 * radius;
+			arc(cx, cy, radius, (float) Math.atan2(dx0, -dy0), (float) Math.atan2(-dx1, dy1), NVG_CW);
+		} else {
+			float cx = x1 + dx0 * d - dy0 * radius, cy = y1 + dy0 * d + dx0 * radius;
+			arc(cx, cy, radius, (float) Math.atan2(-dx0, dy0), (float) Math.atan2(dx1, -dy1), NVG_CCW);
+		}
+	}
+
+	private static boolean near(float x0, float y0, float x1, float y1) {
+		float dx = x1 - x0, dy = y1 - y0;
+		return dx * dx + dy * dy < DIST_TOL * DIST_TOL;
+	}
+
+	private static float distanceToSegment(float x, float y, float px, float py, float qx, float qy) {
+		float pqx = qx - px, pqy = qy - py, dx = x - px, dy = y - py;
+		float d = pqx * pqx + pqy * pqy;
+		float t = d > 0 ? Math.max(0, Math.min(1, (pqx * dx + pqy * dy) / d)) : 0;
+		dx = px + t * pqx - x;
+		dy = py + t * pqy - y;
+		return (float) Math.sqrt(dx * dx + dy * dy);
+	}
+
+	@Override
+	public void closePath() {
+		if (subpathCount > 0) {
+			subpathClosed[subpathCount - 1] = true;
+		}
+	}
+
+	@Override
+	public void pathWinding(int dir) {
+		if (subpathCount > 0) {
+			subpathWindings[subpathCount - 1] = dir;
+		}
+	}
+
+	@Override
+	public void arc(float cx, float cy, float r, float a0, float a1, int dir) {
+		float da = a1 - a0;
+		final float pi2 = (float) (2 * Math.PI);
+		if (dir == NVG_CW) {
+			if (Math.abs(da) >= pi2) {
+				da = pi2;
+			} else {
+				while (da < 0) {
+					da += pi2;
+				}
+			}
+		} else {
+			if (Math.abs(da) >= pi2) {
+				da = -pi2;
+			} else {
+				while (da > 0) {
+					da -= pi2;
+				}
+			}
+		}
+		int segments = arcSegments(r * averageScale(), Math.abs(da));
+		boolean move = pointCount == 0;
+		for (int i = 0; i <= segments; i++) {
+			float a = a0 + da * i / segments;
+			float x = cx + (float) Math.cos(a) * r, y = cy + (float) Math.sin(a) * r;
+			if (i == 0 && move) {
+				moveTo(x, y);
+			} else {
+				lineTo(x, y);
+			}
+		}
+	}
+
+	/**
+	 * @param radius the radius in pixels
+	 * @return the number of segments needed to flatten an arc
+	 */
+	private static int arcSegments(float radius, float angle) {
+		if (radius <= TOLERANCE) {
+			return Math.max(1, (int) Math.ceil(angle / (Math.PI / 2)));
+		}
+		double step = 2 * Math.acos(1 - TOLERANCE / radius);
+		return Math.max(1, Math.min(1024, (int) Math.ceil(angle / step)));
+	}
+
+	@Override
+	public void rect(float x, float y, float w, float h) {
+		moveTo(x, y);
+		lineTo(x, y + h);
+		lineTo(x + w, y + h);
+		lineTo(x + w, y);
+		closePath();
+	}
+
+	@Override
+	public void roundedRect(float x, float y, float w, float h, float r) {
+		roundedRectVarying(x, y, w, h, r, r, r, r);
+	}
+
+	@Override
+	public void roundedRectVarying(float x, float y, float w, float h, float radTopLeft, float radTopRight,
+			float radBottomRight, float radBottomLeft) {
+		if (radTopLeft < 0.1f && radTopRight < 0.1f && radBottomRight < 0.1f && radBottomLeft < 0.1f) {
+			rect(x, y, w, h);
+			return;
+		}
+		float halfw = Math.abs(w) * 0.5f, halfh = Math.abs(h) * 0.5f;
+		float signW = Math.signum(w), signH = Math.signum(h);
+		float rxBL = Math.min(radBottomLeft, halfw) * signW, ryBL = Math.min(radBottomLeft, halfh) * signH;
+		float rxBR = Math.min(radBottomRight, halfw) * signW, ryBR = Math.min(radBottomRight, halfh) * signH;
+		float rxTR = Math.min(radTopRight, halfw) * signW, ryTR = Math.min(radTopRight, halfh) * signH;
+		float rxTL = Math.min(radTopLeft, halfw) * signW, ryTL = Math.min(radTopLeft, halfh) * signH;
+		final float k = 1 - KAPPA90;
+		moveTo(x, y + ryTL);
+		lineTo(x, y + h - ryBL);
+		bezierTo(x, y + h - ryBL * k, x + rxBL * k, y + h, x + rxBL, y + h);
+		lineTo(x + w - rxBR, y + h);
+		bezierTo(x + w - rxBR * k, y + h, x + w, y + h - ryBR * k, x + w, y + h - ryBR);
+		lineTo(x + w, y + ryTR);
+		bezierTo(x + w, y + ryTR * k, x + w - rxTR * k, y, x + w - rxTR, y);
+		lineTo(x + rxTL, y);
+		bezierTo(x + rxTL * k, y, x, y + ryTL * k, x, y + ryTL);
+		closePath();
+	}
+
+	@Override
+	public void ellipse(float cx, float cy, float rx, float ry) {
+		moveTo(cx - rx, cy);
+		bezierTo(cx - rx, cy + ry * KAPPA90, cx - rx * KAPPA90, cy + ry, cx, cy + ry);
+		bezierTo(cx + rx * KAPPA90, cy + ry, cx + rx, cy + ry * KAPPA90, cx + rx, cy);
+		bezierTo(cx + rx, cy - ry * KAPPA90, cx + rx * KAPPA90, cy - ry, cx, cy - ry);
+		bezierTo(cx - rx * KAPPA90, cy - ry, cx - rx, cy - ry * KAPPA90, cx - rx, cy);
+		closePath();
+	}
+
+	@Override
+	public void circle(float cx, float cy, float r) {
+		ellipse(cx, cy, r, r);
+	}
+
+	/**
+	 * Adds the edges of a closed polygon to the rasterizer.
+	 *
+	 * @param orientation 1 to make the signed area of the polygon positive, -1
+	 *                    to make it negative, 0 to keep it
+	 */
+	private void addPolygon(float[] pts, int offset, int count, int orientation) {
+		if (count < 3) {
+			return;
+		}
+		int winding = 1;
+		if (orientation != 0) {
+			float area = 0;
+			for (int i = 0; i < count; i++) {
+				int j = (i + 1) % count;
+				area += pts[2 * (offset + i)] * pts[2 * (offset + j) + 1]
+						- pts[2 * (offset + j)] * pts[2 * (offset + i) + 1];
+			}
+			winding = (area < 0) == (orientation > 0) ? -1 : 1;
+		}
+		for (int i = 0; i < count; i++) {
+			int j = (i + 1) % count;
+			rasterizer.addEdge(pts[2 * (offset + i)], pts[2 * (offset + i) + 1], pts[2 * (offset + j)],
+					pts[2 * (offset + j) + 1], winding);
+		}
+	}
+
+	private int subpathEnd(int i) {
+		return i + 1 < subpathCount ? subpathStarts[i + 1] : pointCount;
+	}
+
+	@Override
+	public void fill() {
+		State s = state();
+		rasterizer.clear();
+		for (int i = 0; i < subpathCount; i++) {
+			int start = subpathStarts[i];
+			int orientation = evenOdd ? 0 : subpathWindings[i] == NVG_CW ? -1 : 1;
+			addPolygon(points, start, subpathEnd(i) - start, orientation);
+		}
+		draw(s.fill, s.alpha);
+	}
+
+	@Override
+	public void stroke() {
+		State s = state();
+		float width = Math.max(0, Math.min(200, s.strokeWidth * averageScale()));
+		float alpha = s.alpha;
+		if (width < 1) {
+			// thinner than a pixel, drawn one pixel wide and fainter as NanoVG does
+			alpha *= width * width;
+			width = 1;
+		}
+		float hw = width * 0.5f;
+		rasterizer.clear();
+		for (int i = 0; i < subpathCount; i++) {
+			int start = subpathStarts[i], count = subpathEnd(i) - start;
+			boolean closed = subpathClosed[i];
+			if (count > 2 && near(points[2 * start], points[2 * start + 1], points[2 * (start + count - 1)],
+					points[2 * (start + count - 1) + 1])) {
+				count--;
+				closed = true;
+			}
+			strokeSubpath(start, count, closed, hw, s);
+		}
+		boolean rule = evenOdd;
+		evenOdd = false;
+		draw(s.stroke, alpha);
+		evenOdd = rule;
+	}
+
+	/**
+	 * Adds the outline of a stroked sub-path: a quad per segment, the joins
+	 * and the caps. They overlap and are filled with the non-zero rule.
+	 */
+	private void strokeSubpath(int start, int count, boolean closed, float hw, State s) {
+		if (count < 2) {
+			return;
+		}
+		int segments = closed ? count : count - 1;
+		for (int i = 0; i < segments; i++) {
+			int a = start + i, b = start + (i + 1) % count;
+			float ax = points[2 * a], ay = points[2 * a + 1], bx = points[2 * b], by = points[2 * b + 1];
+			float dx = bx - ax, dy = by - ay, len = (float) Math.sqrt(dx * dx + dy * dy);
+			float nx = -dy / len * hw, ny = dx / len * hw;
+			polygon[0] = ax + nx;
+			polygon[1] = ay + ny;
+			polygon[2] = bx + nx;
+			polygon[3] = by + ny;
+			polygon[4] = bx - nx;
+			polygon[5] = by - ny;
+			polygon[6] = ax - nx;
+			polygon[7] = ay - ny;
+			addPolygon(polygon, 0, 4, 1);
+		}
+
+		int first = closed ? 0 : 1, last = closed ? count : count - 1;
+		for (int i = first; i < last; i++) {
+			int p = start + i, prev = start + (i + count - 1) % count, next = start + (i + 1) % count;
+			join(points[2 * prev], points[2 * prev + 1], points[2 * p], points[2 * p + 1], points[2 * next],
+					points[2 * next + 1], hw, s);
+		}
+
+		if (!closed && s.lineCap != NVG_BUTT) {
+			int end = start + count - 1;
+			cap(points[2 * start], points[2 * start + 1], points[2 * start + 2], points[2 * start + 3], hw, s.lineCap);
+			cap(points[2 * end], points[2 * end + 1], points[2 * end - 2], points[2 * end - 1], hw, s.lineCap);
+		}
+	}
+
+	private void join(float x0, float y0, float x, float y, float x1, float y1, float hw, State s) {
+		if (s.lineJoin == NVG_ROUND) {
+			addCircle(x, y, hw);
+			return;
+		}
+		float d0x = x - x0, d0y = y - y0, d1x = x1 - x, d1y = y1 - y;
+		float l0 = (float) Math.sqrt(d0x * d0x + d0y * d0y), l1 = (float) Math.sqrt(d1x * d1x + d1y * d1y);
+		d0x /= l0;
+		d0y /= l0;
+		d1x /= l1;
+		d1y /= l1;
+		float cross = d0x * d1y - d0y * d1x;
+		if (Math.abs(cross) < 1e-6f) {
+			return;
+		}
+		// the outer side of the turn
+		float side = cross > 0 ? -1 : 1;
+		float n0x = -d0y * side, n0y = d0x * side, n1x = -d1y * side, n1y = d1x * side;
+		polygon[0] = x;
+		polygon[1] = y;
+		polygon[2] = x + n0x * hw;
+		polygon[3] = y + n0y * hw;
+		float mx = (n0x + n1x) * 0.5f, my = (n0y + n1y) * 0.5f, dmr2 = mx * mx + my * my;
+		if (s.lineJoin == NVG_MITER && dmr2 > 1e-6f && dmr2 * s.miterLimit * s.miterLimit >= 1) {
+			polygon[4] = x + mx / dmr2 * hw;
+			polygon[5] = y + my / dmr2 * hw;
+			polygon[6] = x + n1x * hw;
+			polygon[7] = y + n1y * hw;
+			addPolygon(polygon, 0, 4, 1);
+		} else {
+			polygon[4] = x + n1x * hw;
+			polygon[5] = y + n1y * hw;
+			addPolygon(polygon, 0, 3, 1);
+		}
+	}
+
+	/**
+	 * @param x  the end of the line
+	 * @param px the point before the end
+	 */
+	private void cap(float x, float y, float px, float py, float hw, int cap) {
+		if (cap == NVG_ROUND) {
+			addCircle(x, y, hw);
+			return;
+		}
+		float dx = x - px, dy = y - py, len = (float) Math.sqrt(dx * dx + dy * dy);
+		dx = dx / len * hw;
+		dy = dy / len * hw;
+		polygon[0] = x - dy;
+		polygon[1] = y + dx;
+		polygon[2] = x - dy + dx;
+		polygon[3] = y + dx + dy;
+		polygon[4] = x + dy + dx;
+		polygon[5] = y - dx + dy;
+		polygon[6] = x + dy;
+		polygon[7] = y - dx;
+		addPolygon(polygon, 0, 4, 1);
+	}
+
+	private void addCircle(float cx, float cy, float r) {
+		int n = Math.max(8, Math.min(polygon.length / 2, arcSegments(r, (float) (2 * Math.PI))));
+		for (int i = 0; i < n; i++) {
+			double a = 2 * Math.PI * i / n;
+			polygon[2 * i] = cx + (float) Math.cos(a) * r;
+			polygon[2 * i + 1] = cy + (float) Math.sin(a) * r;
+		}
+		addPolygon(polygon, 0, n, 1);
+	}
+
+	/**
+	 * Rasterizes the edges added to the rasterizer with a paint.
+	 */
+	private void draw(Paint paint, float alpha) {
+		if (rasterizer.isEmpty() || !painter.setup(paint, alpha)) {
+			return;
+		}
+		rasterizer.fill(evenOdd, clipX0(), clipY0(), clipX1(), clipY1(), painter);
+	}
+
+	// Compositing --------------------------------------
+
+	private static int pack(float r, float g, float b, float a) {
+		return channel(r) | channel(g) << 8 | channel(b) << 16 | channel(a) << 24;
+	}
+
+	private static int channel(float v) {
+		return (int) (Math.max(0, Math.min(1, v)) * 255 + 0.5f);
+	}
+
+	private static float factor(int f, float sc, float sa, float dc, float da, boolean alpha) {
+		if (f == NVG_ZERO) {
+			return 0;
+		} else if (f == NVG_ONE) {
+			return 1;
+		} else if (f == NVG_SRC_COLOR) {
+			return sc;
+		} else if (f == NVG_ONE_MINUS_SRC_COLOR) {
+			return 1 - sc;
+		} else if (f == NVG_DST_COLOR) {
+			return dc;
+		} else if (f == NVG_ONE_MINUS_DST_COLOR) {
+			return 1 - dc;
+		} else if (f == NVG_SRC_ALPHA) {
+			return sa;
+		} else if (f == NVG_ONE_MINUS_SRC_ALPHA) {
+			return 1 - sa;
+		} else if (f == NVG_DST_ALPHA) {
+			return da;
+		} else if (f == NVG_ONE_MINUS_DST_ALPHA) {
+			return 1 - da;
+		} else if (f == NVG_SRC_ALPHA_SATURATE) {
+			return alpha ? 1 : Math.min(sa, 1 - da);
+		}
+		return 0;
+	}
+
+	/**
+	 * Blends a paint into the rows given by the rasterizer. It is set up
+	 * before each shape and only read while the rows are painted, possibly by
+	 * several threads.
+	 */
+	private final class FillPainter implements Rasterizer.Painter {
+		private Surface surface;
+		private boolean solid, sourceOver;
+		private int srcRGB, dstRGB, srcAlpha, dstAlpha;
+		/**
+		 * The premultiplied colors
+		 */
+		private final float[] inner = new float[4], outer = new float[4];
+		/**
+		 * The transform from the pixels to the paint space
+		 */
+		private final float[] inverse = new float[6];
+		private float extentX, extentY, radius, feather;
+		private Surface image;
+
+		/**
+		 * @return {@code false} if nothing would be drawn
+		 */
+		boolean setup(Paint paint, float alpha) {
+			State s = state();
+			surface = target;
+			srcRGB = s.srcRGB;
+			dstRGB = s.dstRGB;
+			srcAlpha = s.srcAlpha;
+			dstAlpha = s.dstAlpha;
+			sourceOver = srcRGB == NVG_ONE && dstRGB == NVG_ONE_MINUS_SRC_ALPHA && srcAlpha == NVG_ONE
+					&& dstAlpha == NVG_ONE_MINUS_SRC_ALPHA;
+
+			float ia = paint.inner[3] * alpha, oa = paint.outer[3] * alpha;
+			for (int i = 0; i < 3; i++) {
+				inner[i] = paint.inner[i] * ia;
+				outer[i] = paint.outer[i] * oa;
+			}
+			inner[3] = ia;
+			outer[3] = oa;
+
+			image = null;
+			if (paint.image != 0) {
+				image = paint.image < images.size() ? images.get(paint.image) : null;
+				if (image == null) {
+					return false;
+				}
+			}
+			solid = image == null && Arrays.equals(inner, outer);
+			if (solid && ia <= 0 && sourceOver) {
+				return false;
+			}
+
+			float[] t = paint.xform;
+			float a = t[0] * frameScaleX, b = t[1] * frameScaleY, c = t[2] * frameScaleX, d = t[3] * frameScaleY;
+			float e = t[4] * frameScaleX, f = t[5] * frameScaleY;
+			float det = a * d - c * b;
+			if (Math.abs(det) < 1e-6f) {
+				setIdentity(inverse);
+			} else {
+				float invdet = 1 / det;
+				inverse[0] = d * invdet;
+				inverse[2] = -c * invdet;
+				inverse[4] = (c * f - d * e) * invdet;
+				inverse[1] = -b * invdet;
+				inverse[3] = a * invdet;
+				inverse[5] = (b * e - a * f) * invdet;
+			}
+			extentX = paint.extentX;
+			extentY = paint.extentY;
+			radius = paint.radius;
+			feather = paint.feather;
+			return true;
+		}
+
+		@Override
+		public void paint(int y, int x0, int x1, float[] coverage) {
+			long row = surface.address + 4L * y * surface.width;
+			int count = 0;
+			float py = y + 0.5f;
+			for (int x = x0; x < x1; x++) {
+				float cov = coverage[x];
+				if (cov <= 0) {
+					continue;
+				}
+				count++;
+				float r, g, b, a;
+				if (solid) {
+					r = inner[0];
+					g = inner[1];
+					b = inner[2];
+					a = inner[3];
+				} else {
+					float px = x + 0.5f;
+					float u = inverse[0] * px + inverse[2] * py + inverse[4];
+					float v = inverse[1] * px + inverse[3] * py + inverse[5];
+					if (image != null) {
+						int c = image.sample(u / extentX * image.width, v / extentY * image.height);
+						r = (c & 0xFF) / 255f * inner[0];
+						g = ((c >>> 8) & 0xFF) / 255f * inner[1];
+						b = ((c >>> 16) & 0xFF) / 255f * inner[2];
+						a = (c >>> 24) / 255f * inner[3];
+					} else {
+						float t = Math.max(0, Math.min(1, (roundRectDistance(u, v) + feather * 0.5f) / feather));
+						r = inner[0] + (outer[0] - inner[0]) * t;
+						g = inner[1] + (outer[1] - inner[1]) * t;
+						b = inner[2] + (outer[2] - inner[2]) * t;
+						a = inner[3] + (outer[3] - inner[3]) * t;
+					}
+				}
+				blend(row + 4L * x, r * cov, g * cov, b * cov, a * cov);
+			}
+			pixels.add(count);
+		}
+
+		private float roundRectDistance(float u, float v) {
+			float dx = Math.abs(u) - (extentX - radius), dy = Math.abs(v) - (extentY - radius);
+			float ox = Math.max(dx, 0), oy = Math.max(dy, 0);
+			return Math.min(Math.max(dx, dy), 0) + (float) Math.sqrt(ox * ox + oy * oy) - radius;
+		}
+
+		/**
+		 * Blends a premultiplied color into a pixel. Pixels are little endian
+		 * {@code 0xAABBGGRR} integers.
+		 */
+		private void blend(long address, float r, float g, float b, float a) {
+			int d = memGetInt(address);
+			if (sourceOver) {
+				float k = 1 - a;
+				int or = (int) (r * 255 + (d & 0xFF) * k + 0.5f);
+				int og = (int) (g * 255 + ((d >>> 8) & 0xFF) * k + 0.5f);
+				int ob = (int) (b * 255 + ((d >>> 16) & 0xFF) * k + 0.5f);
+				int oa = (int) (a * 255 + (d >>> 24) * k + 0.5f);
+				memPutInt(address, Math.min(or, 255) | Math.min(og, 255) << 8 | Math.min(ob, 255) << 16
+						| Math.min(oa, 255) << 24);
+				return;
+			}
+			float dr = (d & 0xFF) / 255f, dg = ((d >>> 8) & 0xFF) / 255f, db = ((d >>> 16) & 0xFF) / 255f;
+			float da = (d >>> 24) / 255f;
+			float or = r * factor(srcRGB, r, a, dr, da, false) + dr * factor(dstRGB, r, a, dr, da, false);
+			float og = g * factor(srcRGB, g, a, dg, da, false) + dg * factor(dstRGB, g, a, dg, da, false);
+			float ob = b * factor(srcRGB, b, a, db, da, false) + db * factor(dstRGB, b, a, db, da, false);
+			float oa = a * factor(srcAlpha, a, a, da, da, true) + da * factor(dstAlpha, a, a, da, da, true);
+			memPutInt(address, pack(or, og, ob, oa));
+		}
+	}
+
+	// Text ---------------------------------------------
+
+	@Override
+	public void fontSize(float size) {
+		state().fontSize = size;
+	}
+
+	/**
+	 * The blur is not supported, the text is drawn sharp.
+	 */
+	@Override
+	public void fontBlur(float blur) {
+	}
+
+	@Override
+	public void textLetterSpacing(float spacing) {
+		state().letterSpacing = spacing;
+	}
+
+	@Override
+	public void textLineHeight(float lineHeight) {
+		state().lineHeight = lineHeight;
+	}
+
+	@Override
+	public void textAlign(int align) {
+		state().align = align;
+	}
+
+	@Override
+	public void fontFace(String font) {
+		for (int i = 0; i < fonts.size(); i++) {
+			if (fonts.get(i).name.equals(font)) {
+				state().font = i;
+				return;
+			}
+		}
+	}
+
+	private SoftwareFont font() {
+		int f = state().font;
+		return f < fonts.size() ? fonts.get(f) : null;
+	}
+
+	/**
+	 * Decodes the UTF-8 codepoint at {@code p}.
+	 *
+	 * @return the codepoint in the low 32 bits and its length in bytes in the
+	 *         high ones
+	 */
+	private static long decode(long p, long end) {
+		int b = memGetByte(p) & 0xFF;
+		int length = b < 0x80 ? 1 : b >> 5 == 0x6 ? 2 : b >> 4 == 0xE ? 3 : b >> 3 == 0x1E ? 4 : 0;
+		if (length == 0 || p + length > end) {
+			return 1L << 32 | 0xFFFD;
+		}
+		int cp = length == 1 ? b : b & (0xFF >> (length + 1));
+		for (int i = 1; i < length; i++) {
+			cp = cp << 6 | (memGetByte(p + i) & 0x3F);
+		}
+		return (long) length << 32 | cp;
+	}
+
+	/**
+	 * @return the horizontal advance of the text, in user space
+	 */
+	private float measure(SoftwareFont font, long string, long end) {
+		State s = state();
+		float width = 0;
+		int previous = -1;
+		for (long p = string; p < end;) {
+			long c = decode(p, end);
+			int cp = (int) c;
+			if (previous >= 0) {
+				width += font.kerning(previous, cp) * s.fontSize;
+			}
+			width += font.advance(cp) * s.fontSize + s.letterSpacing;
+			previous = cp;
+			p += c >>> 32;
+		}
+		return width;
+	}
+
+	/**
+	 * @return the horizontal offset of a text of the given width, for the
+	 *         current alignment
+	 */
+	private float alignX(float width) {
+		int align = state().align;
+		if ((align & NVG_ALIGN_CENTER) != 0) {
+			return -width * 0.5f;
+		} else if ((align & NVG_ALIGN_RIGHT) != 0) {
+			return -width;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the offset of the baseline from the y coordinate of the text, for
+	 *         the current alignment
+	 */
+	private float alignY(SoftwareFont font) {
+		State s = state();
+		if ((s.align & NVG_ALIGN_TOP) != 0) {
+			return font.ascender * s.fontSize;
+		} else if ((s.align & NVG_ALIGN_MIDDLE) != 0) {
+			return (font.ascender + font.descender) * 0.5f * s.fontSize;
+		} else if ((s.align & NVG_ALIGN_BOTTOM) != 0) {
+			return font.descender * s.fontSize;
+		}
+		return 0;
+	}
+
+	private ByteBuffer encode(CharSequence string) {
+		int length = memLengthUTF8(string, false);
+		if (utf8.capacity() < length) {
+			memFree(utf8);
+			utf8 = memAlloc(Math.max(length, 2 * utf8.capacity()));
+		}
+		utf8.clear();
+		memUTF8(string, false, utf8);
+		utf8.limit(length);
+		return utf8;
+	}
+
+	@Override
+	public void text(float x, float y, long string, long end) {
+		SoftwareFont font = font();
+		if (font == null || string >= end) {
+			return;
+		}
+		State s = state();
+		float scale = averageScale();
+		float pixelSize = s.fontSize * scale;
+		if (pixelSize < 1 || !painter.setup(s.fill, s.alpha)) {
+			return;
+		}
+		x += alignX(measure(font, string, end));
+		y += alignY(font);
+
+		// the direction of the baseline in device space
+		float[] t = state().xform;
+		float ax = t[0] * frameScaleX, ay = t[1] * frameScaleY;
+		float ox = deviceX(x, y), oy = deviceY(x, y);
+		int cx0 = clipX0(), cy0 = clipY0(), cx1 = clipX1(), cy1 = clipY1();
+
+		float pen = 0;
+		int previous = -1;
+		for (long p = string; p < end;) {
+			long c = decode(p, end);
+			int cp = (int) c;
+			p += c >>> 32;
+			if (previous >= 0) {
+				pen += font.kerning(previous, cp) * s.fontSize;
+			}
+			float gx = ox + pen * ax, gy = oy + pen * ay;
+			int ix = (int) Math.floor(gx);
+			int subpixel = Math.min(SoftwareFont.SUBPIXELS - 1, (int) ((gx - ix) * SoftwareFont.SUBPIXELS));
+			blit(font.glyph(cp, pixelSize, subpixel), ix, Math.round(gy), cx0, cy0, cx1, cy1);
+			pen += font.advance(cp) * s.fontSize + s.letterSpacing;
+			previous = cp;
+		}
+	}
+
+	/**
+	 * Paints the coverage of a glyph with the pen at {@code (x, y)}.
+	 */
+	private void blit(SoftwareFont.Glyph g, int x, int y, int cx0, int cy0, int cx1, int cy1) {
+		int left = x + g.x0, top = y + g.y0;
+		int x0 = Math.max(cx0, left), x1 = Math.min(cx1, left + g.width);
+		if (x0 >= x1) {
+			return;
+		}
+		if (glyphRow.length < x1) {
+			glyphRow = new float[target.width];
+		}
+		for (int row = Math.max(0, cy0 - top); row < g.height && top + row < cy1; row++) {
+			int offset = row * g.width - left;
+			for (int col = x0; col < x1; col++) {
+				glyphRow[col] = (g.alpha[offset + col] & 0xFF) / 255f;
+			}
+			painter.paint(top + row, x0, x1, glyphRow);
+		}
+		Arrays.fill(glyphRow, x0, x1, 0);
+	}
+
+	@Override
+	public void text(float x, float y, CharSequence string) {
+		ByteBuffer b = encode(string);
+		text(x, y, memAddress(b), memAddress(b) + b.remaining());
+	}
+
+	@Override
+	public void textBox(float x, float y, float breakRowWidth, long string, long end) {
+		SoftwareFont font = font();
+		if (font == null) {
+			return;
+		}
+		State s = state();
+		int align = s.align, halign = align & (NVG_ALIGN_LEFT | NVG_ALIGN_CENTER | NVG_ALIGN_RIGHT);
+		float lineh = font.lineHeight * s.fontSize * s.lineHeight;
+		s.align = NVG_ALIGN_LEFT | (align & ~(NVG_ALIGN_LEFT | NVG_ALIGN_CENTER | NVG_ALIGN_RIGHT));
+		for (long p = string; p < end;) {
+			nextRow(font, p, end, breakRowWidth);
+			float rx = x;
+			if ((halign & NVG_ALIGN_CENTER) != 0) {
+				rx = x + breakRowWidth * 0.5f - rowWidth * 0.5f;
+			} else if ((halign & NVG_ALIGN_RIGHT) != 0) {
+				rx = x + breakRowWidth - rowWidth;
+			}
+			text(rx, y, rowStart, rowEnd);
+			y += lineh;
+			if (rowNext <= p) {
+				break;
+			}
+			p = rowNext;
+		}
+		s.align = align;
+	}
+
+	@Override
+	public void textBox(float x, float y, float breakRowWidth, CharSequence string) {
+		ByteBuffer b = encode(string);
+		textBox(x, y, breakRowWidth, memAddress(b), memAddress(b) + b.remaining());
+	}
+
+	/**
+	 * The row found by the last call to
+	 * {@link #nextRow(SoftwareFont, long, long, float)}: its bytes, the start of
+	 * the next row and its width
+	 */
+	private long rowStart, rowEnd, rowNext;
+	private float rowWidth;
+
+	/**
+	 * Finds the row starting at {@code p}: leading blanks are skipped, the row
+	 * ends at a new line, or at the last word boundary before it overflows, or
+	 * at the glyph that overflows if it has a single word.
+	 *
+	 */
+	private void nextRow(SoftwareFont font, long p, long end, float breakRowWidth) {
+		State s = state();
+		while (p < end && (memGetByte(p) == ' ' || memGetByte(p) == '\t')) {
+			p++;
+		}
+		rowStart = p;
+		float width = 0, breakWidth = 0;
+		long breakEnd = -1;
+		int previous = -1;
+		boolean wasBlank = false;
+		while (p < end) {
+			long c = decode(p, end);
+			int cp = (int) c;
+			if (cp == '\n') {
+				setRow(p, p + 1, width);
+				return;
+			}
+			boolean blank = cp == ' ' || cp == '\t';
+			if (blank && !wasBlank && p > rowStart) {
+				breakEnd = p;
+				breakWidth = width;
+			}
+			float advance = font.advance(cp) * s.fontSize + s.letterSpacing;
+			if (previous >= 0) {
+				advance += font.kerning(previous, cp) * s.fontSize;
+			}
+			if (!blank && width + advance > breakRowWidth && p > rowStart) {
+				if (breakEnd > rowStart) {
+					setRow(breakEnd, breakEnd, breakWidth);
+					return;
+				}
+				setRow(p, p, width);
+				return;
+			}
+			width += advance;
+			previous = cp;
+			wasBlank = blank;
+			p += c >>> 32;
+		}
+		setRow(end, end, width);
+	}
+
+	private void setRow(long end, long next, float width) {
+		rowEnd = end;
+		rowNext = next;
+		rowWidth = width;
+	}
+
+	@Override
+	public float textBounds(float x, float y, ByteBuffer string, float[] bounds) {
+		SoftwareFont font = font();
+		if (font == null) {
+			return 0;
+		}
+		long address = memAddress(string);
+		float width = measure(font, address, address + string.remaining());
+		if (bounds != null) {
+			State s = state();
+			bounds[0] = x + alignX(width);
+			bounds[1] = y + alignY(font) - font.ascender * s.fontSize;
+			bounds[2] = bounds[0] + width;
+			bounds[3] = bounds[1] + font.lineHeight * s.fontSize;
+		}
+		return width;
+	}
+
+	@Override
+	public void textBoxBounds(float x, float y, float breakRowWidth, ByteBuffer string, float[] bounds) {
+		SoftwareFont font = font();
+		if (font == null) {
+			Arrays.fill(bounds, 0, 4, 0);
+			return;
+		}
+		State s = state();
+		int halign = s.align;
+		float lineh = font.lineHeight * s.fontSize * s.lineHeight;
+		float minX = x, maxX = x;
+		int rows = 0;
+		long address = memAddress(string), end = address + string.remaining();
+		for (long p = address; p < end;) {
+			nextRow(font, p, end, breakRowWidth);
+			float rx = x;
+			if ((halign & NVG_ALIGN_CENTER) != 0) {
+				rx = x + breakRowWidth * 0.5f - rowWidth * 0.5f;
+			} else if ((halign & NVG_ALIGN_RIGHT) != 0) {
+				rx = x + breakRowWidth - rowWidth;
+			}
+			minX = rows == 0 ? rx : Math.min(minX, rx);
+			maxX = rows == 0 ? rx + rowWidth : Math.max(maxX, rx + rowWidth);
+			rows++;
+			if (rowNext <= p) {
+				break;
+			}
+			p = rowNext;
+		}
+		bounds[0] = minX;
+		bounds[1] = y + alignY(font) - font.ascender * s.fontSize;
+		bounds[2] = maxX;
+		bounds[3] = bounds[1] + font.lineHeight * s.fontSize + Math.max(0, rows - 1) * lineh;
+	}
+
+	@Override
+	public int textBreakLines(ByteBuffer string, float breakRowWidth, NVGTextRow.Buffer rows) {
+		SoftwareFont font = font();
+		if (font == null) {
+			return 0;
+		}
+		long address = memAddress(string), end = address + string.remaining();
+		long rowsAddress = rows.address();
+		int max = rows.remaining(), count = 0;
+		for (long p = address; p < end && count < max;) {
+			nextRow(font, p, end, breakRowWidth);
+			long row = rowsAddress + (long) count * NVGTextRow.SIZEOF;
+			memPutAddress(row + NVGTextRow.START, rowStart);
+			memPutAddress(row + NVGTextRow.END, rowEnd);
+			memPutAddress(row + NVGTextRow.NEXT, rowNext);
+			memPutFloat(row + NVGTextRow.WIDTH, rowWidth);
+			memPutFloat(row + NVGTextRow.MINX, 0);
+			memPutFloat(row + NVGTextRow.MAXX, rowWidth);
+			count++;
+			if (rowNext <= p) {
+				break;
+			}
+			p = rowNext;
+		}
+		return count;
+	}
+
+	@Override
+	public int textGlyphPositions(float x, float y, ByteBuffer string, NVGGlyphPosition.Buffer positions) {
+		SoftwareFont font = font();
+		if (font == null) {
+			return 0;
+		}
+		State s = state();
+		long address = memAddress(string), end = address + string.remaining();
+		long glyphs = positions.address();
+		int max = positions.remaining(), count = 0;
+		float pen = x + alignX(measure(font, address, end));
+		int previous = -1;
+		for (long p = address; p < end && count < max;) {
+			long c = decode(p, end);
+			int cp = (int) c;
+			if (previous >= 0) {
+				pen += font.kerning(previous, cp) * s.fontSize;
+			}
+			float advance = font.advance(cp) * s.fontSize;
+			long glyph = glyphs + (long) count * NVGGlyphPosition.SIZEOF;
+			memPutAddress(glyph + NVGGlyphPosition.STR, p);
+			memPutFloat(glyph + NVGGlyphPosition.X, pen);
+			memPutFloat(glyph + NVGGlyphPosition.MINX, pen);
+			memPutFloat(glyph + NVGGlyphPosition.MAXX, pen + advance);
+			pen += advance + s.letterSpacing;
+			previous = cp;
+			p += c >>> 32;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * The pointers of the positions refer to an internal buffer that is only
+	 * valid until the next call.
+	 */
+	@Override
+	public int textGlyphPositions(float x, float y, CharSequence string, NVGGlyphPosition.Buffer positions) {
+		return textGlyphPositions(x, y, encode(string), positions);
+	}
+
+	@Override
+	public void textMetrics(float[] ascender, float[] descender, float[] lineh) {
+		SoftwareFont font = font();
+		float size = state().fontSize;
+		if (ascender != null) {
+			ascender[0] = font == null ? 0 : font.ascender * size;
+		}
+		if (descender != null) {
+			descender[0] = font == null ? 0 : font.descender * size;
+		}
+		if (lineh != null) {
+			lineh[0] = font == null ? 0 : font.lineHeight * size;
+		}
+	}
+}
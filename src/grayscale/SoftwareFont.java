@@ -0,0 +1,133 @@
+package grayscale;
+
+import static org.lwjgl.stb.STBTruetype.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.lwjgl.stb.STBTTFontinfo;
+
+/**
+ * A font of the {@link SoftwareBackend}, read and rasterized with
+ * stb_truetype. The metrics are normalized as in NanoVG, a font of size
+ * {@code s} being {@code s} pixels from its ascender to its descender.
+ * <p>
+ * The glyphs are rasterized once per size and horizontal subpixel offset, and
+ * kept until too many different glyphs were drawn.
+ * </p>
+ *
+ * @author Niels
+ */
+final class SoftwareFont {
+	/**
+	 * The horizontal positions a glyph is rasterized at within a pixel
+	 */
+	static final int SUBPIXELS = 4;
+	private static final int MAX_GLYPHS = 4096;
+
+	static final class Glyph {
+		/**
+		 * The offset of the bitmap from the pen position, in pixels
+		 */
+		int x0, y0;
+		int width, height;
+		byte[] alpha;
+	}
+
+	final String name;
+	/**
+	 * Kept alive as long as {@link #info} refers to it
+	 */
+	private final ByteBuffer data;
+	private final STBTTFontinfo info = STBTTFontinfo.create();
+
+	/**
+	 * The vertical metrics relative to the font size
+	 */
+	final float ascender, descender, lineHeight;
+	/**
+	 * The distance from the ascender to the descender, in font units
+	 */
+	private final float height;
+
+	private final float[] advances = new float[256];
+	private final Map<Long, Glyph> glyphs = new HashMap<>();
+	private final int[] i0 = new int[1], i1 = new int[1], i2 = new int[1], i3 = new int[1];
+
+	/**
+	 * @throws IllegalArgumentException if the data is not a TrueType font
+	 */
+	SoftwareFont(String name, ByteBuffer data) {
+		this.name = name;
+		this.data = data;
+		if (!stbtt_InitFont(info, data)) {
+			throw new IllegalArgumentException("Could not read the font " + name);
+		}
+		stbtt_GetFontVMetrics(info, i0, i1, i2);
+		height = i0[0] - i1[0];
+		ascender = i0[0] / height;
+		descender = i1[0] / height;
+		lineHeight = (height + i2[0]) / height;
+		Arrays.fill(advances, -1);
+	}
+
+	/**
+	 * @return the advance of the codepoint, relative to the font size
+	 */
+	float advance(int codepoint) {
+		if (codepoint < advances.length && advances[codepoint] >= 0) {
+			return advances[codepoint];
+		}
+		stbtt_GetCodepointHMetrics(info, codepoint, i0, i1);
+		float advance = i0[0] / height;
+		if (codepoint < advances.length) {
+			advances[codepoint] = advance;
+		}
+		return advance;
+	}
+
+	/**
+	 * @return the kerning between two codepoints, relative to the font size
+	 */
+	float kerning(int previous, int codepoint) {
+		return stbtt_GetCodepointKernAdvance(info, previous, codepoint) / height;
+	}
+
+	/**
+	 * @param pixelSize the font size, in pixels
+	 * @param subpixel  the horizontal offset of the pen within its pixel, in
+	 *                  {@code [0, SUBPIXELS[}
+	 */
+	Glyph glyph(int codepoint, float pixelSize, int subpixel) {
+		int size = Math.round(pixelSize * 8);
+		long key = ((long) codepoint << 32) | ((long) size << 8) | subpixel;
+		Glyph g = glyphs.get(key);
+		if (g != null) {
+			return g;
+		}
+		if (glyphs.size() >= MAX_GLYPHS) {
+			glyphs.clear();
+		}
+
+		g = new Glyph();
+		float scale = size / 8f / height, shift = (float) subpixel / SUBPIXELS;
+		stbtt_GetCodepointBitmapBoxSubpixel(info, codepoint, scale, scale, shift, 0, i0, i1, i2, i3);
+		g.x0 = i0[0];
+		g.y0 = i1[0];
+		g.width = Math.max(0, i2[0] - i0[0]);
+		g.height = Math.max(0, i3[0] - i1[0]);
+		g.alpha = new byte[g.width * g.height];
+		if (g.alpha.length > 0) {
+			ByteBuffer bitmap = memAlloc(g.alpha.length);
+			stbtt_MakeCodepointBitmapSubpixel(info, bitmap, g.width, g.height, g.width, scale, scale, shift, 0,
+					codepoint);
+			bitmap.get(g.alpha);
+			memFree(bitmap);
+		}
+		glyphs.put(key, g);
+		return g;
+	}
+}
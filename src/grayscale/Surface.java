@@ -0,0 +1,84 @@
+package grayscale;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An off-heap RGBA image with premultiplied alpha, drawn into or sampled by a
+ * {@link SoftwareBackend}. The pixels are stored row by row from the top, four
+ * bytes per pixel, and read as little endian integers
+ * {@code 0xAABBGGRR}.
+ *
+ * @author Niels
+ */
+final class Surface {
+	final int width, height;
+	/**
+	 * The NanoVG image flags
+	 */
+	final int flags;
+	final ByteBuffer pixels;
+	final long address;
+
+	Surface(int width, int height, int flags) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Invalid surface size: " + width + "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+		this.flags = flags;
+		pixels = memCalloc(width * height * 4);
+		address = memAddress(pixels);
+	}
+
+	/**
+	 * Fills the whole surface with a premultiplied color.
+	 */
+	void clear(int rgba) {
+		long end = address + 4L * width * height;
+		for (long p = address; p < end; p += 4) {
+			memPutInt(p, rgba);
+		}
+	}
+
+	/**
+	 * Samples this surface at a position in texels, where {@code (0.5, 0.5)} is
+	 * the center of the first pixel, with the wrapping and filtering given by
+	 * its flags.
+	 *
+	 * @return the premultiplied color
+	 */
+	int sample(float x, float y) {
+		if ((flags & NVG_IMAGE_FLIPY) != 0) {
+			y = height - y;
+		}
+		if ((flags & NVG_IMAGE_NEAREST) != 0) {
+			return texel((int) Math.floor(x), (int) Math.floor(y));
+		}
+		x -= 0.5f;
+		y -= 0.5f;
+		int x0 = (int) Math.floor(x), y0 = (int) Math.floor(y);
+		float fx = x - x0, fy = y - y0;
+		int c00 = texel(x0, y0), c10 = texel(x0 + 1, y0);
+		int c01 = texel(x0, y0 + 1), c11 = texel(x0 + 1, y0 + 1);
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 8) {
+			float top = ((c00 >>> shift) & 0xFF) * (1 - fx) + ((c10 >>> shift) & 0xFF) * fx;
+			float bottom = ((c01 >>> shift) & 0xFF) * (1 - fx) + ((c11 >>> shift) & 0xFF) * fx;
+			result |= ((int) (top * (1 - fy) + bottom * fy + 0.5f)) << shift;
+		}
+		return result;
+	}
+
+	private int texel(int x, int y) {
+		x = (flags & NVG_IMAGE_REPEATX) != 0 ? Math.floorMod(x, width) : Math.max(0, Math.min(width - 1, x));
+		y = (flags & NVG_IMAGE_REPEATY) != 0 ? Math.floorMod(y, height) : Math.max(0, Math.min(height - 1, y));
+		return memGetInt(address + 4L * (y * width + x));
+	}
+
+	void free() {
+		memFree(pixels);
+	}
+}
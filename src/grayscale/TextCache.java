@@ -0,0 +1,379 @@
+package grayscale;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.nanovg.NVGTextRow;
+
+/**
+ * A cache of the text measurements done by a {@link Graphics} object.
+ * <p>
+ * The bounds and the line breaks of a text only depend on the text style, the
+ * scale of the current transform and the text itself. They are kept in a
+ * bounded LRU cache, so that a text drawn every frame is only measured once.
+ * The cache is cleared when a font is added or when the content scale
+ * changes.
+ * </p>
+ *
+ * @see Graphics#getTextCache()
+ * @author Niels
+ */
+public class TextCache {
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private static final int BOUNDS = 0, BOX_BOUNDS = 1, BREAK_LINES = 2;
+
+	/**
+	 * The text style and the text of a measurement. The key used for lookups
+	 * refers to the text of the caller, the stored keys own a copy of it.
+	 */
+	private static final class Key {
+		int kind;
+		String font;
+		float size, letterSpacing, lineHeight, scaleX, scaleY;
+		int align;
+		float breakRowWidth;
+		int maxRows;
+
+		ByteBuffer probe;
+		byte[] bytes;
+		int hash;
+
+		Key copy() {
+			Key k = new Key();
+			k.kind = kind;
+			k.font = font;
+			k.size = size;
+			k.letterSpacing = letterSpacing;
+			k.lineHeight = lineHeight;
+			k.scaleX = scaleX;
+			k.scaleY = scaleY;
+			k.align = align;
+			k.breakRowWidth = breakRowWidth;
+			k.maxRows = maxRows;
+			k.bytes = new byte[probe.remaining()];
+			probe.get(probe.position(), k.bytes);
+			k.hash = hash;
+			return k;
+		}
+
+		int length() {
+			return bytes != null ? bytes.length : probe.remaining();
+		}
+
+		byte byteAt(int i) {
+			return bytes != null ? bytes[i] : probe.get(probe.position() + i);
+		}
+
+		void computeHash() {
+			int h = kind;
+			h = 31 * h + (font == null ? 0 : font.hashCode());
+			h = 31 * h + Float.floatToIntBits(size);
+			h = 31 * h + Float.floatToIntBits(letterSpacing);
+			h = 31 * h + Float.floatToIntBits(lineHeight);
+			h = 31 * h + Float.floatToIntBits(scaleX);
+			h = 31 * h + Float.floatToIntBits(scaleY);
+			h = 31 * h + align;
+			h = 31 * h + Float.floatToIntBits(breakRowWidth);
+			h = 31 * h + maxRows;
+			int length = probe.remaining(), pos = probe.position();
+			for (int i = 0; i < length; i++) {
+				h = 31 * h + probe.get(pos + i);
+			}
+			hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) obj;
+			if (hash != k.hash || kind != k.kind || align != k.align || maxRows != k.maxRows
+					|| Float.floatToIntBits(size) != Float.floatToIntBits(k.size)
+					|| Float.floatToIntBits(letterSpacing) != Float.floatToIntBits(k.letterSpacing)
+					|| Float.floatToIntBits(lineHeight) != Float.floatToIntBits(k.lineHeight)
+					|| Float.floatToIntBits(scaleX) != Float.floatToIntBits(k.scaleX)
+					|| Float.floatToIntBits(scaleY) != Float.floatToIntBits(k.scaleY)
+					|| Float.floatToIntBits(breakRowWidth) != Float.floatToIntBits(k.breakRowWidth)
+					|| !(font == null ? k.font == null : font.equals(k.font))) {
+				return false;
+			}
+			if (bytes != null && k.bytes != null) {
+				return Arrays.equals(bytes, k.bytes);
+			}
+			int length = length();
+			if (length != k.length()) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (byteAt(i) != k.byteAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A measurement. The bounds are relative to the origin of the text, the
+	 * rows are stored as byte offsets in the text.
+	 */
+	private static final class Entry {
+		float advance;
+		final float[] bounds = new float[4];
+		int rowCount;
+		int[] rowOffsets;
+		float[] rowMetrics;
+	}
+
+	private final RenderBackend backend;
+	private final Graphics g;
+
+	private int capacity = DEFAULT_CAPACITY;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+			return size() > capacity;
+		}
+	};
+	private int generation;
+
+	private final Key probe = new Key();
+	private ByteBuffer utf8 = BufferUtils.createByteBuffer(256);
+
+	private long hits = 0;
+	private long misses = 0;
+
+	TextCache(RenderBackend backend, Graphics g) {
+		this.backend = backend;
+		this.g = g;
+		generation = g.getGeneration();
+	}
+
+	/**
+	 * Sets the maximum number of measurements kept.
+	 *
+	 * @throws IllegalArgumentException if {@code capacity} is negative
+	 */
+	public void setCapacity(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
+		}
+		this.capacity = capacity;
+		while (entries.size() > capacity) {
+			entries.remove(entries.keySet().iterator().next());
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the ratio of measurements found in the cache, or 0 if nothing was
+	 *         measured
+	 */
+	public double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	public void resetStats() {
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Removes all the measurements.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	// Measurements -------------------------------------
+
+	/**
+	 * @see Graphics#getTextBounds(float, float, ByteBuffer, float[])
+	 */
+	float textBounds(float x, float y, ByteBuffer string, float[] bounds) {
+		Entry e = lookup(BOUNDS, string, 0, 0);
+		if (e == null) {
+			return backend.textBounds(x, y, string, bounds);
+		}
+		if (bounds != null) {
+			bounds[0] = e.bounds[0] + x;
+			bounds[1] = e.bounds[1] + y;
+			bounds[2] = e.bounds[2] + x;
+			bounds[3] = e.bounds[3] + y;
+		}
+		return e.advance;
+	}
+
+	float textBounds(float x, float y, CharSequence string, float[] bounds) {
+		return textBounds(x, y, encode(string), bounds);
+	}
+
+	/**
+	 * @see Graphics#getTextBoxBounds(float, float, float, ByteBuffer, float[])
+	 */
+	void textBoxBounds(float x, float y, float breakRowWidth, ByteBuffer string, float[] bounds) {
+		Entry e = lookup(BOX_BOUNDS, string, breakRowWidth, 0);
+		if (e == null) {
+			backend.textBoxBounds(x, y, breakRowWidth, string, bounds);
+			return;
+		}
+		bounds[0] = e.bounds[0] + x;
+		bounds[1] = e.bounds[1] + y;
+		bounds[2] = e.bounds[2] + x;
+		bounds[3] = e.bounds[3] + y;
+	}
+
+	void textBoxBounds(float x, float y, float breakRowWidth, CharSequence string, float[] bounds) {
+		textBoxBounds(x, y, breakRowWidth, encode(string), bounds);
+	}
+
+	/**
+	 * The pointers of the rows refer to {@code string}.
+	 *
+	 * @see Graphics#textBreakLines(ByteBuffer, float, NVGTextRow.Buffer)
+	 */
+	int breakLines(ByteBuffer string, float breakRowWidth, NVGTextRow.Buffer rows) {
+		Entry e = lookup(BREAK_LINES, string, breakRowWidth, rows.remaining());
+		if (e == null) {
+			return backend.textBreakLines(string, breakRowWidth, rows);
+		}
+		long base = memAddress(string);
+		long address = rows.address();
+		for (int i = 0; i < e.rowCount; i++) {
+			long row = address + (long) i * NVGTextRow.SIZEOF;
+			memPutAddress(row + NVGTextRow.START, base + e.rowOffsets[3 * i]);
+			memPutAddress(row + NVGTextRow.END, base + e.rowOffsets[3 * i + 1]);
+			memPutAddress(row + NVGTextRow.NEXT, base + e.rowOffsets[3 * i + 2]);
+			memPutFloat(row + NVGTextRow.WIDTH, e.rowMetrics[3 * i]);
+			memPutFloat(row + NVGTextRow.MINX, e.rowMetrics[3 * i + 1]);
+			memPutFloat(row + NVGTextRow.MAXX, e.rowMetrics[3 * i + 2]);
+		}
+		return e.rowCount;
+	}
+
+	/**
+	 * The pointers of the rows refer to an internal buffer that is only valid
+	 * until the next measurement.
+	 */
+	int breakLines(CharSequence string, float breakRowWidth, NVGTextRow.Buffer rows) {
+		return breakLines(encode(string), breakRowWidth, rows);
+	}
+
+	/**
+	 * Finds a measurement, or measures the text and stores the result.
+	 *
+	 * @return the measurement, or {@code null} if it cannot be cached because
+	 *         the current transform rotates or skews the text
+	 */
+	private Entry lookup(int kind, ByteBuffer string, float breakRowWidth, int maxRows) {
+		GraphicsState s = g.state();
+		if (!s.axisAligned) {
+			return null;
+		}
+		if (generation != g.getGeneration()) {
+			generation = g.getGeneration();
+			entries.clear();
+		}
+
+		Key k = probe;
+		k.kind = kind;
+		k.font = s.fontFace;
+		k.size = s.fontSize;
+		k.letterSpacing = s.letterSpacing;
+		k.lineHeight = s.lineHeight;
+		k.scaleX = s.sx;
+		k.scaleY = s.sy;
+		k.align = s.textAlign;
+		k.breakRowWidth = breakRowWidth;
+		k.maxRows = maxRows;
+		k.probe = string;
+		k.computeHash();
+
+		Entry e = entries.get(k);
+		if (e != null) {
+			hits++;
+			k.probe = null;
+			return e;
+		}
+		misses++;
+		e = measure(kind, string, breakRowWidth, maxRows);
+		entries.put(k.copy(), e);
+		k.probe = null;
+		return e;
+	}
+
+	private Entry measure(int kind, ByteBuffer string, float breakRowWidth, int maxRows) {
+		Entry e = new Entry();
+		switch (kind) {
+		case BOUNDS -> e.advance = backend.textBounds(0, 0, string, e.bounds);
+		case BOX_BOUNDS -> backend.textBoxBounds(0, 0, breakRowWidth, string, e.bounds);
+		case BREAK_LINES -> {
+			NVGTextRow.Buffer rows = NVGTextRow.calloc(Math.max(1, maxRows));
+			int count = maxRows == 0 ? 0 : backend.textBreakLines(string, breakRowWidth, rows);
+			long base = memAddress(string);
+			e.rowCount = count;
+			e.rowOffsets = new int[3 * count];
+			e.rowMetrics = new float[3 * count];
+			for (int i = 0; i < count; i++) {
+				NVGTextRow row = rows.get(i);
+				e.rowOffsets[3 * i] = (int) (row.start() - base);
+				e.rowOffsets[3 * i + 1] = (int) (row.end() - base);
+				e.rowOffsets[3 * i + 2] = (int) (row.next() - base);
+				e.rowMetrics[3 * i] = row.width();
+				e.rowMetrics[3 * i + 1] = row.minx();
+				e.rowMetrics[3 * i + 2] = row.maxx();
+			}
+			rows.free();
+		}
+		default -> throw new IllegalArgumentException("Unexpected value: " + kind);
+		}
+		return e;
+	}
+
+	/**
+	 * Encodes {@code string} in UTF-8 into an internal buffer.
+	 */
+	private ByteBuffer encode(CharSequence string) {
+		int length = memLengthUTF8(string, false);
+		if (utf8.capacity() < length) {
+			utf8 = BufferUtils.createByteBuffer(Math.max(length, 2 * utf8.capacity()));
+		}
+		utf8.clear();
+		memUTF8(string, false, utf8);
+		utf8.limit(length);
+		return utf8;
+	}
+}
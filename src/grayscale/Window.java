@@ -1,11 +1,15 @@
 package grayscale;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGPaint;
 
 import components.Decoration;
 import components.Panel;
+import events.KeyEvent;
 import events.Keyboard;
 import events.Mouse;
 import utils.Colors;
@@ -21,19 +25,58 @@ public class Window {
 
 	private Rectangle bounds = new Rectangle();
 	private boolean shouldUpdateBounds = true;
+	private Rectangle layoutBounds = new Rectangle();
+	private long layoutPasses = 0;
 	private Vector minSize;
 
 	private Component content = new Panel();
 	private NVGColor background = NVGColor.create();
 
+	private DamageTracker damage = new DamageTracker();
+
+	private HitTestIndex hitTestIndex = new HitTestIndex(this);
+	private EventRouter eventRouter = new EventRouter(this);
+	private KeyBindingTable keyBindings = new KeyBindingTable(this);
+	/**
+	 * The application showing this window, or {@code null}
+	 */
+	Application application;
+	/**
+	 * The focused component, kept while the window is not active so that it
+	 * gets the keyboard back when it is active again
+	 */
+	private Component focused;
+	/**
+	 * The version of the index the hovered components were computed with
+	 */
+	private int hoverVersion = -1;
+	private int hoverStamp = 0;
+	private List<Component> hovered = new ArrayList<>();
+	private List<Component> previousHovered = new ArrayList<>();
+	private List<Component> underMouse = new ArrayList<>();
+
+	/**
+	 * The offscreen copy of the canvas used for partial repaints, or 0
+	 */
+	private int cache;
+	private Vector cacheSize = new Vector();
+	private Rectangle canvas = new Rectangle();
+	private Rectangle dirtyRegion = new Rectangle();
+	/**
+	 * The components whose layer must be removed from the layer cache, because
+	 * they left this window or stopped being cached
+	 */
+	private List<Component> releasedLayers = new ArrayList<>();
+
 	public Window(Rectanglec bounds) {
 		this(bounds, null);
 	}
 
 	public Window(Rectanglec bounds, Decoration decoration) {
 		this.bounds.set(bounds);
-		this.decoration = decoration;
 		minSize = newSize = bounds.getDimensions();
+		content.window = this;
+		setDecoration(decoration);
 	}
 
 	public void close() {
@@ -44,35 +87,73 @@ public class Window {
 		return shouldClose;
 	}
 
+	/**
+	 * Sends the events of one input record to the components. Called for each
+	 * record received since the last frame, before
+	 * {@link #update(Mouse, Keyboard)}.
+	 */
+	public void processInput(Mouse mouse, Keyboard keyboard) {
+		if (!visible) {
+			return;
+		}
+		updateBounds();
+		if (updateHovered(mouse)) {
+			eventRouter.hoverChanged(previousHovered, hovered);
+		}
+		eventRouter.dispatch(mouse, keyboard, hovered);
+	}
+
+	/**
+	 * Updates the components once per frame, after the input was processed.
+	 */
 	public void update(Mouse mouse, Keyboard keyboard) {
 		if (!visible) {
 			return;
 		}
+		updateBounds();
+		// the bounds may have changed under the mouse
+		if (updateHovered(mouse)) {
+			eventRouter.hoverChanged(previousHovered, hovered);
+		}
+		eventRouter.tick();
 
-		if (decoration != null) {
-			if (shouldUpdateBounds) {
-				Rectangle deco = new Rectangle();
-				deco.set(bounds.x(), bounds.y(), bounds.width(), decorationHeight);
-				decoration.setBounds(deco);
-			}
-			decoration.update(mouse, keyboard);
-			if (shouldUpdateBounds) {
-				Rectangle rect = new Rectangle(bounds).addInsets(decorationHeight, 0, 0, 0);
-				content.setBounds(rect);
-			}
-			content.update(mouse, keyboard);
-		} else {
-			if (shouldUpdateBounds) {
+//		if (resizable) {
+//			testResizing();
+//		}
+	}
+
+	/**
+	 * Arranges the components whose bounds or layout changed. The components
+	 * whose layout is still valid are skipped.
+	 */
+	private void updateBounds() {
+		if (shouldUpdateBounds) {
+			shouldUpdateBounds = false;
+			layoutPasses++;
+			if (decoration != null) {
+				layoutBounds.set(bounds.x(), bounds.y(), bounds.width(), decorationHeight);
+				decoration.setBounds(layoutBounds);
+				layoutBounds.set(bounds).addInsets(decorationHeight, 0, 0, 0);
+				content.setBounds(layoutBounds);
+			} else {
 				content.setBounds(bounds);
 			}
-			content.update(mouse, keyboard);
 		}
+	}
 
-		shouldUpdateBounds = false;
+	/**
+	 * Called when the layout of a component of this window was invalidated.
+	 */
+	void layoutInvalidated() {
+		shouldUpdateBounds = true;
+	}
 
-//		if (resizable) {
-//			testResizing();
-//		}
+	/**
+	 * @return the number of times the components of this window were arranged
+	 *         because their bounds or their layout changed
+	 */
+	public long getLayoutPasses() {
+		return layoutPasses;
 	}
 
 //	private void testResizing() {
@@ -92,32 +173,389 @@ public class Window {
 //		}
 //	}
 
+	/**
+	 * Finds the components under the mouse. A component is hovered if it
+	 * contains the mouse and none of its children does, unless it is a glass
+	 * component. Nothing is done if the mouse did not move and no bounds
+	 * changed.
+	 * 
+	 * @return {@code true} if the hovered components were computed again, the
+	 *         previous ones being kept in {@code previousHovered}
+	 */
+	private boolean updateHovered(Mouse mouse) {
+		hitTestIndex.update();
+		if (!mouse.isMoved() && hitTestIndex.getVersion() == hoverVersion) {
+			return false;
+		}
+		hoverVersion = hitTestIndex.getVersion();
+
+		List<Component> tmp = previousHovered;
+		previousHovered = hovered;
+		hovered = tmp;
+		hovered.clear();
+		for (int i = 0; i < previousHovered.size(); i++) {
+			previousHovered.get(i).setHovered(false);
+		}
+
+		Vectorc pos = mouse.getPos();
+		underMouse.clear();
+		hitTestIndex.query(pos.x(), pos.y(), underMouse);
+
+		hoverStamp++;
+		for (int i = 0; i < underMouse.size(); i++) {
+			Component parent = underMouse.get(i).getParent();
+			if (parent != null) {
+				parent.childHoverStamp = hoverStamp;
+			}
+		}
+		for (int i = 0; i < underMouse.size(); i++) {
+			Component c = underMouse.get(i);
+			if (c.isGlass() || c.childHoverStamp != hoverStamp) {
+				c.setHovered(true);
+				hovered.add(c);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the deepest component containing the point {@code (x, y)}, or
+	 *         {@code null}
+	 */
+	public Component getComponentAt(float x, float y) {
+		hitTestIndex.update();
+		underMouse.clear();
+		hitTestIndex.query(x, y, underMouse);
+		Component deepest = null;
+		int maxDepth = -1;
+		for (int i = 0; i < underMouse.size(); i++) {
+			Component c = underMouse.get(i);
+			int depth = 0;
+			for (Component p = c.getParent(); p != null; p = p.getParent()) {
+				depth++;
+			}
+			if (depth > maxDepth) {
+				maxDepth = depth;
+				deepest = c;
+			}
+		}
+		return deepest;
+	}
+
+	HitTestIndex getHitTestIndex() {
+		return hitTestIndex;
+	}
+
+	EventRouter getEventRouter() {
+		return eventRouter;
+	}
+
+	/**
+	 * @return {@code true} if components of this window are animated, they
+	 *         receive ticks
+	 * @see Component#setTicking(boolean)
+	 */
+	boolean isAnimating() {
+		return visible && eventRouter.hasTicking();
+	}
+
+	KeyBindingTable getKeyBindings() {
+		return keyBindings;
+	}
+
+	/**
+	 * Sends a key event to the key bindings of the focus path and to the focused
+	 * component, as if it was received from the keyboard.
+	 */
+	public void processKeyEvent(KeyEvent e) {
+		eventRouter.dispatchKey(e);
+	}
+
+	/**
+	 * @return the component of this window that has the focus, or {@code null}
+	 */
+	public Component getFocused() {
+		return focused;
+	}
+
+	/**
+	 * @return the application showing this window, or {@code null} if it was not
+	 *         added to one
+	 */
+	public Application getApplication() {
+		return application;
+	}
+
+	/**
+	 * @return {@code true} if this window receives the keyboard: it is the active
+	 *         window of its application, or it is not shown by an application
+	 * @see Application#getActiveWindow()
+	 */
+	public boolean isActive() {
+		return application == null || application.getActiveWindow() == this;
+	}
+
+	/**
+	 * Makes this window the active window of its application, its focused
+	 * component then receives the keyboard.
+	 */
+	public void activate() {
+		if (application != null) {
+			application.setActiveWindow(this);
+		}
+	}
+
+	/**
+	 * Moves the focus and updates the focus path, the focused component and its
+	 * ancestors. Focusing a component activates this window.
+	 * 
+	 * @param c a component of this window, or {@code null}
+	 */
+	void setFocused(Component c) {
+		if (c != null) {
+			activate();
+		}
+		if (focused == c) {
+			return;
+		}
+		if (focused != null) {
+			focused.focused = false;
+			for (Component p = focused; p != null; p = p.getParent()) {
+				p.onFocusPath = false;
+			}
+		}
+		focused = c;
+		if (c != null) {
+			c.focused = true;
+			for (Component p = c; p != null; p = p.getParent()) {
+				p.onFocusPath = true;
+			}
+		}
+	}
+
 	public void render(Graphics g) {
+		damage.clear();
+		renderContent(g);
+	}
+
+	private void renderContent(Graphics g) {
+		if (!visible || g.isClipped(bounds)) {
+			return;
+		}
+
+		Rectanglec region = g.getDirtyRegion();
+		if (region == null || region.intersects(bounds)) {
+			g.beginPath();
+			g.rect(bounds);
+			g.setFillColor(background);
+			g.fill();
+		}
+
+		if (decoration != null) {
+			decoration.render(g);
+		}
+
+		content.render(g);
+	}
+
+	/**
+	 * Draws again the outdated layers of the components of this window. Must be
+	 * called outside of {@link Graphics#beginFrame(Vectorc, Vectorc)} and
+	 * {@link Graphics#endFrame()}.
+	 * 
+	 * @see Component#setCacheAsLayer(boolean)
+	 */
+	void renderLayers(Graphics g, Vectorc contentSize, Vectorc contentScale) {
 		if (!visible) {
 			return;
 		}
+		canvas.set(0, 0, contentSize.getX() / contentScale.getX(), contentSize.getY() / contentScale.getY());
+		if (decoration != null) {
+			((Component) decoration).renderLayers(g, canvas, contentScale);
+		}
+		content.renderLayers(g, canvas, contentScale);
+	}
+
+	/**
+	 * Draws the damaged regions of this window into its offscreen cache. Must be
+	 * called outside of {@link Graphics#beginFrame(Vectorc, Vectorc)} and
+	 * {@link Graphics#endFrame()}.
+	 * 
+	 * @param contentSize  the dimensions of the canvas, in pixels
+	 * @param contentScale the content scale
+	 */
+	void renderDamage(Graphics g, Vectorc contentSize, Vectorc contentScale) {
+		canvas.set(0, 0, contentSize.getX() / contentScale.getX(), contentSize.getY() / contentScale.getY());
+
+		if (cache == 0 || !cacheSize.equals(contentSize)) {
+			deleteCache(g);
+			int w = Math.max(1, Math.round(contentSize.x())), h = Math.max(1, Math.round(contentSize.y()));
+			cache = g.createFBO(w, h, Image.IMAGE_FLIPY | Image.IMAGE_PREMULTIPLIED);
+			cacheSize.set(contentSize);
+			damage.add(canvas);
+		}
+
+		if (cache == 0 || damage.isEmpty()) {
+			return;
+		}
+		Rectangle.intersection(damage.getUnion(), canvas, dirtyRegion);
+		damage.clear();
+		if (dirtyRegion.isEmpty()) {
+			return;
+		}
+
+		g.beginFrame(cache, contentSize, contentScale);
+		g.setScissor(dirtyRegion.x(), dirtyRegion.y(), dirtyRegion.width(), dirtyRegion.height());
+
+		// erase the previous content of the region
+		g.setGlobalCompositeOperation(Graphics.COPY);
+		g.beginPath();
+		g.rect(dirtyRegion);
+		g.setFillColor(Colors.transparent);
+		g.fill();
+		g.setGlobalCompositeOperation(Graphics.SOURCE_OVER);
 
+		g.setDirtyRegion(dirtyRegion);
+		renderContent(g);
+		g.setDirtyRegion(null);
+
+		g.resetScissor();
+		g.endFrame();
+		g.bindFBO(0);
+	}
+
+	/**
+	 * Draws the offscreen cache of this window, updated by
+	 * {@link #renderDamage(Graphics, Vectorc, Vectorc)}.
+	 */
+	void renderCache(Graphics g) {
+		if (cache == 0) {
+			return;
+		}
+		NVGPaint p = g.getImagePattern(canvas.x(), canvas.y(), canvas.width(), canvas.height(), 0, 1f, cache);
 		g.beginPath();
-		g.rect(bounds);
-		g.setFillColor(background);
+		g.rect(canvas);
+		g.setFillPaint(p);
 		g.fill();
+	}
+
+	void deleteCache(Graphics g) {
+		if (cache != 0) {
+			g.deleteFBO(cache);
+			cache = 0;
+		}
+	}
+
+	void releaseLayer(Component c) {
+		releasedLayers.add(c);
+	}
 
+	/**
+	 * Removes the released layers from the layer cache of {@code g}, so that
+	 * their framebuffers and their components are freed.
+	 * 
+	 * @param g the graphics the layers were drawn with, or {@code null} if there
+	 *          is none
+	 */
+	void releaseLayers(Graphics g) {
+		if (g != null) {
+			LayerCache layers = g.getLayerCache();
+			for (int i = 0; i < releasedLayers.size(); i++) {
+				layers.remove(releasedLayers.get(i));
+			}
+		}
+		releasedLayers.clear();
+	}
+
+	/**
+	 * Removes the layers of all the components of this window, once it is
+	 * closed.
+	 */
+	void deleteLayers(Graphics g) {
 		if (decoration != null) {
-			decoration.render(g);
+			((Component) decoration).releaseLayers(this);
 		}
+		content.releaseLayers(this);
+		releaseLayers(g);
+	}
 
-		content.render(g);
+	/**
+	 * Marks the whole window as needing to be drawn again.
+	 */
+	public void repaint() {
+		damage.add(bounds);
+	}
+
+	/**
+	 * Marks a region of this window as needing to be drawn again.
+	 */
+	void damage(double x, double y, double width, double height) {
+		damage.add(x, y, width, height);
+	}
+
+	public DamageTracker getDamage() {
+		return damage;
+	}
+
+	/**
+	 * Computes the components that would be drawn again if this window was
+	 * rendered now, without needing a {@code Graphics} object. It is meant to
+	 * check which components a modification repaints.
+	 * 
+	 * @return the components intersecting the damaged regions, in drawing order
+	 */
+	public List<Component> getDirtyComponents() {
+		List<Component> dirty = new ArrayList<>();
+		if (!visible || damage.isEmpty()) {
+			return dirty;
+		}
+		Rectanglec region = damage.getUnion();
+		if (decoration != null) {
+			((Component) decoration).collectDirty(region, dirty);
+		}
+		content.collectDirty(region, dirty);
+		return dirty;
+	}
+
+	public Rectanglec getBounds() {
+		return bounds;
+	}
+
+	public Component getContent() {
+		return content;
+	}
+
+	Component getDecorationComponent() {
+		return decoration;
 	}
 
 	public void setBounds(Rectanglec newBounds) {
 		if (!bounds.equals(newBounds)) {
+			repaint();
 			bounds.set(newBounds);
+			repaint();
 			shouldUpdateBounds = true;
+			hitTestIndex.invalidate();
 		}
 	}
 
 	public void setDecoration(Decoration newDeco) {
+		if (decoration != null) {
+			if (((Component) decoration).onFocusPath) {
+				setFocused(null);
+			}
+			((Component) decoration).releaseLayers(this);
+			((Component) decoration).window = null;
+		}
 		decoration = newDeco;
+		if (newDeco != null) {
+			((Component) newDeco).window = this;
+		}
+		shouldUpdateBounds = true;
+		hitTestIndex.invalidate();
+		eventRouter.treeChanged();
+		keyBindings.invalidate();
+		repaint();
 	}
 
 	/**
@@ -127,15 +565,34 @@ public class Window {
 	 * @throws NullPointerException if content is null
 	 */
 	public void setContent(Component content) {
+		if (this.content.onFocusPath) {
+			setFocused(null);
+		}
+		this.content.releaseLayers(this);
+		this.content.window = null;
 		this.content = Objects.requireNonNull(content);
+		content.window = this;
+		shouldUpdateBounds = true;
+		hitTestIndex.invalidate();
+		eventRouter.treeChanged();
+		keyBindings.invalidate();
+		repaint();
 	}
 
 	public void setBackground(int r, int g, int b, int a) {
 		Colors.rgba(r, g, b, a, background);
+		repaint();
+	}
+
+	public boolean isVisible() {
+		return visible;
 	}
 
 	public void setVisible(boolean visible) {
-		this.visible = visible;
+		if (this.visible != visible) {
+			this.visible = visible;
+			repaint();
+		}
 	}
 
 	public void setResizable(boolean resizable) {
@@ -6,18 +6,37 @@ import grayscale.Component;
 import grayscale.Layout;
 import grayscale.Rectangle;
 import grayscale.Rectanglec;
+import grayscale.Vector;
+import grayscale.Vectorc;
 
 public class DynamicColumn extends Layout {
 	private float min_height;
 
+	private final Rectangle bounds = new Rectangle();
+
 	public DynamicColumn(float min_height) {
 		this.min_height = min_height;
 	}
 
+	/**
+	 * The rows have the same height, the tallest desired height of the
+	 * children.
+	 */
+	@Override
+	public void measure(List<Component> comps, float maxWidth, float maxHeight, Vector dest) {
+		int num_rows = comps.size();
+		float width = 0, rowHeight = min_height;
+		for (int i = 0; i < num_rows; i++) {
+			Vectorc size = comps.get(i).measure(maxWidth, maxHeight / num_rows);
+			width = Math.max(width, size.x());
+			rowHeight = Math.max(rowHeight, size.y());
+		}
+		dest.set(width, rowHeight * num_rows);
+	}
+
 	@Override
-	public void update(List<Component> comps, Rectanglec r) {
+	public void arrange(List<Component> comps, Rectanglec r) {
 		double x = r.getX(), y = r.getY(), w = r.getWidth(), h = r.getHeight();
-		Rectangle bounds = new Rectangle();
 		int num_columns = comps.size();
 		for (int i = 0; i < num_columns; i++) {
 			double compHeight = Math.max(h / num_columns, min_height);
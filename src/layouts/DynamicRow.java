@@ -5,23 +5,41 @@ import grayscale.Component;
 import grayscale.Layout;
 import grayscale.Rectangle;
 import grayscale.Rectanglec;
+import grayscale.Vector;
+import grayscale.Vectorc;
 
 public class DynamicRow extends Layout {
 	private float min_width;
 	private int vAlign;
 	private int hAlign;
 
+	private final Rectangle bounds = new Rectangle();
+
 	public DynamicRow(float min_width, int vAlign, int hAlign) {
 		this.min_width = min_width;
 		this.vAlign = vAlign;
 		this.hAlign = hAlign;
 	}
 
+	/**
+	 * The columns have the same width, the widest desired width of the children.
+	 */
+	@Override
+	public void measure(List<Component> comps, float maxWidth, float maxHeight, Vector dest) {
+		int num_columns = comps.size();
+		float columnWidth = min_width, height = 0;
+		for (int i = 0; i < num_columns; i++) {
+			Vectorc size = comps.get(i).measure(maxWidth / num_columns, maxHeight);
+			columnWidth = Math.max(columnWidth, size.x());
+			height = Math.max(height, size.y());
+		}
+		dest.set(columnWidth * num_columns, height);
+	}
+
 	@Override
-	public void update(List<Component> comps, Rectanglec r) {
+	public void arrange(List<Component> comps, Rectanglec r) {
 		double x = r.getX(), y = r.getY(), w = r.getWidth(), h = r.getHeight();
-		
-		Rectangle bounds = new Rectangle();
+
 		int num_columns = comps.size();
 		for (int i = 0; i < num_columns; i++) {
 			double compWidth = Math.max(w / num_columns, min_width);
@@ -0,0 +1,447 @@
+package layouts;
+
+import java.util.Arrays;
+import java.util.List;
+
+import grayscale.Component;
+import grayscale.Layout;
+import grayscale.Rectangle;
+import grayscale.Rectanglec;
+import grayscale.Vector;
+import grayscale.Vectorc;
+
+/**
+ * A flexbox layout. The children are placed one after the other along the
+ * main axis, horizontal for {@link #ROW} and vertical for {@link #COLUMN}, on
+ * a single line or wrapped on several lines. The constraints of each child are
+ * given by an {@link Item} set with {@link Component#setLayoutData(Object)}:
+ * <ul>
+ * <li>the basis is its size along the main axis before the free space is
+ * distributed, its desired size by default,</li>
+ * <li>the free space of a line is shared by its children in proportion to
+ * their grow factor,</li>
+ * <li>a line that overflows shrinks its children in proportion to their
+ * shrink factor times their basis.</li>
+ * </ul>
+ * The children are measured without constraints, see
+ * {@link Component#measure(float, float)}.
+ * <p>
+ * The layout works on primitive arrays kept across calls, it does not
+ * allocate once they are large enough for the children.
+ * </p>
+ * <p>
+ * The setters lay out the component the layout is set on again.
+ * </p>
+ *
+ * @author Niels
+ */
+public class FlexLayout extends Layout {
+	/**
+	 * The directions of the main axis
+	 */
+	public static final int ROW = 0, COLUMN = 1;
+	/**
+	 * The alignments. {@code STRETCH} is only valid for the cross axis, the
+	 * {@code SPACE_*} distributions only for the main axis and the lines.
+	 */
+	public static final int START = 0, END = 1, CENTER = 2, STRETCH = 3, //
+			SPACE_BETWEEN = 4, SPACE_AROUND = 5, SPACE_EVENLY = 6;
+	/**
+	 * The alignment of an item using the one of the layout
+	 */
+	public static final int AUTO = -1;
+
+	/**
+	 * The constraints of a child of a {@code FlexLayout}.
+	 */
+	public static final class Item {
+		private static final Item DEFAULT = new Item(0, 1, -1, AUTO);
+
+		private final float grow, shrink, basis;
+		private final int alignSelf;
+
+		/**
+		 * An item that takes a share of the free space and shrinks when needed,
+		 * from its desired size.
+		 */
+		public Item(float grow) {
+			this(grow, 1, -1, AUTO);
+		}
+
+		/**
+		 * @param basis the size along the main axis, or a negative value to use
+		 *              the desired size of the child
+		 */
+		public Item(float grow, float shrink, float basis) {
+			this(grow, shrink, basis, AUTO);
+		}
+
+		/**
+		 * @param alignSelf the alignment on the cross axis, or {@link #AUTO} to
+		 *                  use the one of the layout
+		 */
+		public Item(float grow, float shrink, float basis, int alignSelf) {
+			if (grow < 0 || shrink < 0) {
+				throw new IllegalArgumentException("Negative flex factor: " + grow + ", " + shrink);
+			}
+			if (alignSelf != AUTO && (alignSelf < START || alignSelf > STRETCH)) {
+				throw new IllegalArgumentException("Invalid alignment: " + alignSelf);
+			}
+			this.grow = grow;
+			this.shrink = shrink;
+			this.basis = basis;
+			this.alignSelf = alignSelf;
+		}
+
+		public float getGrow() {
+			return grow;
+		}
+
+		public float getShrink() {
+			return shrink;
+		}
+
+		public float getBasis() {
+			return basis;
+		}
+
+		public int getAlignSelf() {
+			return alignSelf;
+		}
+	}
+
+	private int direction = ROW;
+	private boolean wrap = false;
+	private int justifyContent = START;
+	private int alignItems = STRETCH;
+	private int alignContent = START;
+	private float mainGap = 0, crossGap = 0;
+
+	/**
+	 * For each child: the basis and the final size on the main axis, the
+	 * desired size on the cross axis, the flex factors and the alignment
+	 */
+	private float[] base = new float[0], size = new float[0], cross = new float[0];
+	private float[] grow = new float[0], shrink = new float[0];
+	private int[] align = new int[0];
+	/**
+	 * For each line: the index after its last child, its size on the main axis
+	 * and on the cross axis
+	 */
+	private int[] lineEnd = new int[0];
+	private float[] lineMain = new float[0], lineCross = new float[0];
+
+	/**
+	 * The result of {@link #distribute(int, float, int)}
+	 */
+	private float offset, spacing;
+
+	private final Rectangle bounds = new Rectangle();
+
+	/**
+	 * A single row, the children stretched vertically.
+	 */
+	public FlexLayout() {
+	}
+
+	/**
+	 * @param direction {@link #ROW} or {@link #COLUMN}
+	 * @param wrap      {@code true} to wrap the children on several lines
+	 * @param gap       the space between the children and between the lines
+	 */
+	public FlexLayout(int direction, boolean wrap, float gap) {
+		setDirection(direction);
+		setWrap(wrap);
+		setGap(gap, gap);
+	}
+
+	public int getDirection() {
+		return direction;
+	}
+
+	/**
+	 * @param direction {@link #ROW} or {@link #COLUMN}
+	 */
+	public FlexLayout setDirection(int direction) {
+		if (direction != ROW && direction != COLUMN) {
+			throw new IllegalArgumentException("Invalid direction: " + direction);
+		}
+		this.direction = direction;
+		invalidate();
+		return this;
+	}
+
+	public boolean isWrap() {
+		return wrap;
+	}
+
+	public FlexLayout setWrap(boolean wrap) {
+		this.wrap = wrap;
+		invalidate();
+		return this;
+	}
+
+	public int getJustifyContent() {
+		return justifyContent;
+	}
+
+	/**
+	 * @param justifyContent how the free space of a line is distributed around
+	 *                       its children: {@link #START}, {@link #END},
+	 *                       {@link #CENTER}, {@link #SPACE_BETWEEN},
+	 *                       {@link #SPACE_AROUND} or {@link #SPACE_EVENLY}
+	 */
+	public FlexLayout setJustifyContent(int justifyContent) {
+		if (justifyContent < START || justifyContent > SPACE_EVENLY || justifyContent == STRETCH) {
+			throw new IllegalArgumentException("Invalid alignment: " + justifyContent);
+		}
+		this.justifyContent = justifyContent;
+		invalidate();
+		return this;
+	}
+
+	public int getAlignItems() {
+		return alignItems;
+	}
+
+	/**
+	 * @param alignItems the alignment of the children on the cross axis of their
+	 *                   line: {@link #START}, {@link #END}, {@link #CENTER} or
+	 *                   {@link #STRETCH}
+	 */
+	public FlexLayout setAlignItems(int alignItems) {
+		if (alignItems < START || alignItems > STRETCH) {
+			throw new IllegalArgumentException("Invalid alignment: " + alignItems);
+		}
+		this.alignItems = alignItems;
+		invalidate();
+		return this;
+	}
+
+	public int getAlignContent() {
+		return alignContent;
+	}
+
+	/**
+	 * @param alignContent how the free space on the cross axis is distributed
+	 *                     around the lines, when wrapping. Any alignment is
+	 *                     valid.
+	 */
+	public FlexLayout setAlignContent(int alignContent) {
+		if (alignContent < START || alignContent > SPACE_EVENLY) {
+			throw new IllegalArgumentException("Invalid alignment: " + alignContent);
+		}
+		this.alignContent = alignContent;
+		invalidate();
+		return this;
+	}
+
+	public float getMainGap() {
+		return mainGap;
+	}
+
+	public float getCrossGap() {
+		return crossGap;
+	}
+
+	/**
+	 * @param mainGap  the space between two children of a line
+	 * @param crossGap the space between two lines
+	 */
+	public FlexLayout setGap(float mainGap, float crossGap) {
+		this.mainGap = mainGap;
+		this.crossGap = crossGap;
+		invalidate();
+		return this;
+	}
+
+	@Override
+	public void measure(List<Component> comps, float maxWidth, float maxHeight, Vector dest) {
+		int n = comps.size();
+		if (n == 0) {
+			dest.set(0, 0);
+			return;
+		}
+		collect(comps);
+		int lines = breakLines(n, direction == ROW ? maxWidth : maxHeight);
+		float main = 0, crossSize = crossGap * (lines - 1);
+		for (int l = 0; l < lines; l++) {
+			main = Math.max(main, lineMain[l]);
+			crossSize += lineCross[l];
+		}
+		if (direction == ROW) {
+			dest.set(main, crossSize);
+		} else {
+			dest.set(crossSize, main);
+		}
+	}
+
+	@Override
+	public void arrange(List<Component> comps, Rectanglec r) {
+		int n = comps.size();
+		if (n == 0) {
+			return;
+		}
+		collect(comps);
+		boolean row = direction == ROW;
+		float mainSize = row ? r.width() : r.height(), crossSize = row ? r.height() : r.width();
+		float mainPos = row ? r.x() : r.y(), crossPos = row ? r.y() : r.x();
+		int lines = breakLines(n, mainSize);
+
+		float linePos = crossPos, lineSpacing = 0;
+		if (!wrap) {
+			lineCross[0] = crossSize;
+		} else {
+			float free = crossSize - crossGap * (lines - 1);
+			for (int l = 0; l < lines; l++) {
+				free -= lineCross[l];
+			}
+			if (alignContent == STRETCH && free > 0) {
+				for (int l = 0; l < lines; l++) {
+					lineCross[l] += free / lines;
+				}
+				free = 0;
+			}
+			distribute(alignContent, free, lines);
+			linePos += offset;
+			lineSpacing = spacing;
+		}
+
+		int start = 0;
+		for (int l = 0; l < lines; l++) {
+			int end = lineEnd[l];
+			float lc = lineCross[l];
+			float free = mainSize - resolve(start, end, mainSize);
+			distribute(justifyContent, free, end - start);
+			float pos = mainPos + offset;
+			for (int i = start; i < end; i++) {
+				float cs = align[i] == STRETCH ? lc : Math.min(cross[i], lc);
+				float cp = linePos;
+				if (align[i] == END) {
+					cp += lc - cs;
+				} else if (align[i] == CENTER) {
+					cp += (lc - cs) * 0.5f;
+				}
+				if (row) {
+					bounds.set(pos, cp, size[i], cs);
+				} else {
+					bounds.set(cp, pos, cs, size[i]);
+				}
+				comps.get(i).setBounds(bounds);
+				pos += size[i] + mainGap + spacing;
+			}
+			linePos += lc + crossGap + lineSpacing;
+			start = end;
+		}
+	}
+
+	/**
+	 * Reads the constraints and the desired sizes of the children.
+	 */
+	private void collect(List<Component> comps) {
+		int n = comps.size();
+		if (base.length < n) {
+			int capacity = Math.max(n, 2 * base.length);
+			base = Arrays.copyOf(base, capacity);
+			size = Arrays.copyOf(size, capacity);
+			cross = Arrays.copyOf(cross, capacity);
+			grow = Arrays.copyOf(grow, capacity);
+			shrink = Arrays.copyOf(shrink, capacity);
+			align = Arrays.copyOf(align, capacity);
+			lineEnd = Arrays.copyOf(lineEnd, capacity);
+			lineMain = Arrays.copyOf(lineMain, capacity);
+			lineCross = Arrays.copyOf(lineCross, capacity);
+		}
+		boolean row = direction == ROW;
+		for (int i = 0; i < n; i++) {
+			Component c = comps.get(i);
+			Object data = c.getLayoutData();
+			Item item = data instanceof Item ? (Item) data : Item.DEFAULT;
+			Vectorc desired = c.measure(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+			base[i] = item.basis >= 0 ? item.basis : row ? desired.x() : desired.y();
+			cross[i] = row ? desired.y() : desired.x();
+			grow[i] = item.grow;
+			shrink[i] = item.shrink;
+			align[i] = item.alignSelf == AUTO ? alignItems : item.alignSelf;
+		}
+	}
+
+	/**
+	 * Splits the children into lines, from their basis.
+	 *
+	 * @return the number of lines
+	 */
+	private int breakLines(int n, float mainSize) {
+		int lines = 0, start = 0;
+		float used = 0, lc = 0;
+		for (int i = 0; i < n; i++) {
+			float next = i == start ? base[i] : used + mainGap + base[i];
+			if (wrap && i > start && next > mainSize) {
+				lineEnd[lines] = i;
+				lineMain[lines] = used;
+				lineCross[lines] = lc;
+				lines++;
+				start = i;
+				next = base[i];
+				lc = 0;
+			}
+			used = next;
+			lc = Math.max(lc, cross[i]);
+		}
+		lineEnd[lines] = n;
+		lineMain[lines] = used;
+		lineCross[lines] = lc;
+		return lines + 1;
+	}
+
+	/**
+	 * Grows or shrinks the children of a line to fill its main size.
+	 *
+	 * @return the size of the children and of the gaps between them
+	 */
+	private float resolve(int start, int end, float mainSize) {
+		float used = mainGap * (end - start - 1), totalGrow = 0, totalShrink = 0;
+		for (int i = start; i < end; i++) {
+			used += base[i];
+			totalGrow += grow[i];
+			totalShrink += shrink[i] * base[i];
+		}
+		float free = mainSize - used;
+		float result = mainGap * (end - start - 1);
+		for (int i = start; i < end; i++) {
+			float s = base[i];
+			if (free > 0 && totalGrow > 0) {
+				s += free * grow[i] / totalGrow;
+			} else if (free < 0 && totalShrink > 0) {
+				s += free * shrink[i] * base[i] / totalShrink;
+			}
+			size[i] = Math.max(0, s);
+			result += size[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Computes where the first of {@code count} elements starts and the extra
+	 * space between two of them, into {@link #offset} and {@link #spacing}.
+	 */
+	private void distribute(int mode, float free, int count) {
+		offset = 0;
+		spacing = 0;
+		if (mode == END) {
+			offset = free;
+		} else if (mode == CENTER) {
+			offset = free * 0.5f;
+		} else if (free > 0) {
+			if (mode == SPACE_BETWEEN && count > 1) {
+				spacing = free / (count - 1);
+			} else if (mode == SPACE_AROUND) {
+				spacing = free / count;
+				offset = spacing * 0.5f;
+			} else if (mode == SPACE_EVENLY) {
+				spacing = free / (count + 1);
+				offset = spacing;
+			}
+		}
+	}
+}
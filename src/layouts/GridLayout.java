@@ -1,35 +1,524 @@
 package layouts;
 
+import java.util.Arrays;
 import java.util.List;
+
 import grayscale.Component;
 import grayscale.Layout;
 import grayscale.Rectangle;
 import grayscale.Rectanglec;
+import grayscale.Vector;
+import grayscale.Vectorc;
 
+/**
+ * Places the children in the cells of a grid. The columns and the rows are
+ * tracks of a {@link Track#fixed(float) fixed} size, a
+ * {@link Track#fraction(float) fraction} of the remaining space, or an
+ * {@link Track#auto() auto} size fitting their content. Rows are added as
+ * needed, with the size of the {@link #setImplicitRows(Track) implicit rows}.
+ * <p>
+ * A child is given a position and a span with a {@link Cell} set with
+ * {@link Component#setLayoutData(Object)}, otherwise it is placed in the next
+ * free cell, row by row.
+ * </p>
+ * <p>
+ * The placement and the sizes of the auto tracks are cached: on a resize, only
+ * the children in auto tracks are measured again, and the tracks are only
+ * sized from their content again when one of them changed size.
+ * </p>
+ */
 public class GridLayout extends Layout {
-	private int per_row;
-	private float min_width;
-	private float min_height;
+	private static final int FIXED = 0, FRACTION = 1, AUTO = 2;
+
+	/**
+	 * The size of a row or a column.
+	 */
+	public static final class Track {
+		private final int type;
+		private final float value, min;
+
+		private Track(int type, float value, float min) {
+			if (value < 0 || min < 0) {
+				throw new IllegalArgumentException("Negative track size: " + value + ", " + min);
+			}
+			this.type = type;
+			this.value = value;
+			this.min = min;
+		}
+
+		/**
+		 * @param size the size of the track
+		 */
+		public static Track fixed(float size) {
+			return new Track(FIXED, size, 0);
+		}
+
+		/**
+		 * @param fr the share of the space left by the other tracks, relative to
+		 *           the other fractional tracks
+		 */
+		public static Track fraction(float fr) {
+			return new Track(FRACTION, fr, 0);
+		}
+
+		/**
+		 * A track as large as the largest child it holds.
+		 */
+		public static Track auto() {
+			return new Track(AUTO, 0, 0);
+		}
+
+		/**
+		 * @return a copy of this track that is never smaller than {@code min}
+		 */
+		public Track withMin(float min) {
+			return new Track(type, value, min);
+		}
+	}
+
+	/**
+	 * The position and the span of a child of a {@code GridLayout}.
+	 */
+	public static final class Cell {
+		/**
+		 * A coordinate chosen by the layout
+		 */
+		public static final int AUTO = -1;
+		private static final Cell DEFAULT = new Cell(AUTO, AUTO, 1, 1);
+
+		private final int column, row, columnSpan, rowSpan;
+
+		private Cell(int column, int row, int columnSpan, int rowSpan) {
+			if (column < AUTO || row < AUTO || columnSpan < 1 || rowSpan < 1) {
+				throw new IllegalArgumentException(
+						"Invalid cell: " + column + ", " + row + ", span " + columnSpan + "x" + rowSpan);
+			}
+			this.column = column;
+			this.row = row;
+			this.columnSpan = columnSpan;
+			this.rowSpan = rowSpan;
+		}
+
+		/**
+		 * @param column the column, or {@link #AUTO}
+		 * @param row    the row, or {@link #AUTO}
+		 */
+		public static Cell at(int column, int row) {
+			return new Cell(column, row, 1, 1);
+		}
+
+		public static Cell at(int column, int row, int columnSpan, int rowSpan) {
+			return new Cell(column, row, columnSpan, rowSpan);
+		}
+
+		/**
+		 * A cell placed in the next free area of the grid.
+		 */
+		public static Cell span(int columnSpan, int rowSpan) {
+			return new Cell(AUTO, AUTO, columnSpan, rowSpan);
+		}
+
+		public int getColumn() {
+			return column;
+		}
 
+		public int getRow() {
+			return row;
+		}
+
+		public int getColumnSpan() {
+			return columnSpan;
+		}
+
+		public int getRowSpan() {
+			return rowSpan;
+		}
+	}
+
+	private float columnGap = 0, rowGap = 0;
+
+	/**
+	 * The explicit rows and the implicit row
+	 */
+	private Track[] rowTracks;
+	private Track implicitRow;
+
+	/**
+	 * The tracks as primitives, for the columns and for all the rows in use
+	 */
+	private int columns, rows;
+	private int[] colType, rowType = new int[0];
+	private float[] colValue, colMin, rowValue = new float[0], rowMin = new float[0];
+	/**
+	 * The size of the content of the tracks, their resolved size, and their
+	 * position from the origin of the grid, with one more element for the end
+	 */
+	private float[] colContent, colSize, colPos;
+	private float[] rowContent = new float[0], rowSize = new float[0], rowPos = new float[1];
+
+	/**
+	 * The placement of the children, with the children and the data it was
+	 * computed for, and their desired size when the tracks were sized
+	 */
+	private int placed = -1;
+	private Component[] placedComps = new Component[0];
+	private Object[] placedData = new Object[0];
+	private int[] cellCol = new int[0], cellRow = new int[0], cellColSpan = new int[0], cellRowSpan = new int[0];
+	private float[] desiredW = new float[0], desiredH = new float[0];
+	/**
+	 * The cells covered by a child during the placement, row by row
+	 */
+	private boolean[] occupied = new boolean[0];
+
+	/**
+	 * false if the content of the auto tracks must be computed again
+	 */
+	private boolean contentValid = false;
+	/**
+	 * The size the tracks were resolved for, negative if they must be resolved
+	 * again
+	 */
+	private float resolvedWidth = -1, resolvedHeight = -1;
+
+	private final Rectangle bounds = new Rectangle();
+
+	/**
+	 * A grid of {@code per_row} columns sharing the width, and rows sharing the
+	 * height.
+	 *
+	 * @param per_row    the number of columns
+	 * @param min_width  the minimal width of the columns
+	 * @param min_height the minimal height of the rows
+	 */
 	public GridLayout(int per_row, float min_width, float min_height) {
-		this.per_row = per_row;
-		this.min_width = min_width;
-		this.min_height = min_height;
+		Track[] tracks = new Track[per_row];
+		Arrays.fill(tracks, Track.fraction(1).withMin(min_width));
+		setColumns(tracks);
+		setRows();
+		setImplicitRows(Track.fraction(1).withMin(min_height));
 	}
 
+	/**
+	 * @param columns the columns
+	 * @param rows    the first rows, the next ones being {@link Track#auto()
+	 *                auto}
+	 */
+	public GridLayout(Track[] columns, Track[] rows) {
+		setColumns(columns);
+		setRows(rows);
+		setImplicitRows(Track.auto());
+	}
+
+	public GridLayout setColumns(Track... columns) {
+		if (columns.length == 0) {
+			throw new IllegalArgumentException("A grid needs at least one column.");
+		}
+		this.columns = columns.length;
+		colType = new int[this.columns];
+		colValue = new float[this.columns];
+		colMin = new float[this.columns];
+		for (int i = 0; i < this.columns; i++) {
+			colType[i] = columns[i].type;
+			colValue[i] = columns[i].value;
+			colMin[i] = columns[i].min;
+		}
+		colContent = new float[this.columns];
+		colSize = new float[this.columns];
+		colPos = new float[this.columns + 1];
+		placed = -1;
+		invalidate();
+		return this;
+	}
+
+	public GridLayout setRows(Track... rows) {
+		rowTracks = rows.clone();
+		placed = -1;
+		invalidate();
+		return this;
+	}
+
+	/**
+	 * @param track the size of the rows added after the explicit ones
+	 */
+	public GridLayout setImplicitRows(Track track) {
+		implicitRow = track;
+		placed = -1;
+		invalidate();
+		return this;
+	}
+
+	/**
+	 * @param columnGap the space between two columns
+	 * @param rowGap    the space between two rows
+	 */
+	public GridLayout setGap(float columnGap, float rowGap) {
+		this.columnGap = columnGap;
+		this.rowGap = rowGap;
+		contentValid = false;
+		invalidate();
+		return this;
+	}
+
+	public int getColumnCount() {
+		return columns;
+	}
+
+	/**
+	 * @return the number of rows of the last layout
+	 */
+	public int getRowCount() {
+		return rows;
+	}
 
 	@Override
-	public void update(List<Component> comps, Rectanglec r) {
-		double x = r.getX(), y = r.getY(), w = r.getWidth(), h = r.getHeight();
-		Rectangle bounds = new Rectangle();
-		int num_columns = comps.size();
-		for (int i = 0; i < num_columns; i++) {
-			double compHeight = Math.max(h / num_columns, min_height);
-			double currentX = x;
-			double currentY = y + i * compHeight;
-			bounds.set(currentX, currentY, w, compHeight);
+	public void measure(List<Component> comps, float maxWidth, float maxHeight, Vector dest) {
+		place(comps);
+		computeContent(comps, true);
+		// the content of the fractional tracks was added, the auto tracks must be
+		// sized again for the arrange pass
+		contentValid = false;
+		dest.set(naturalSize(colType, colValue, colMin, colContent, columns, columnGap),
+				naturalSize(rowType, rowValue, rowMin, rowContent, rows, rowGap));
+	}
+
+	@Override
+	public void arrange(List<Component> comps, Rectanglec r) {
+		int n = comps.size();
+		place(comps);
+		for (int i = 0; i < n && contentValid; i++) {
+			if (inAutoTrack(i)) {
+				Vectorc d = comps.get(i).measure(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+				contentValid = d.x() == desiredW[i] && d.y() == desiredH[i];
+			}
+		}
+		if (!contentValid) {
+			computeContent(comps, false);
+			contentValid = true;
+			resolvedWidth = -1;
+		}
+		if (resolvedWidth != r.width() || resolvedHeight != r.height()) {
+			resolvedWidth = r.width();
+			resolvedHeight = r.height();
+			resolve(colType, colValue, colMin, colContent, columns, r.width(), columnGap, colSize, colPos);
+			resolve(rowType, rowValue, rowMin, rowContent, rows, r.height(), rowGap, rowSize, rowPos);
+		}
+
+		float x = r.x(), y = r.y();
+		for (int i = 0; i < n; i++) {
+			int c0 = cellCol[i], c1 = c0 + cellColSpan[i], r0 = cellRow[i], r1 = r0 + cellRowSpan[i];
+			bounds.set(x + colPos[c0], y + rowPos[r0], colPos[c1] - colPos[c0] - columnGap,
+					rowPos[r1] - rowPos[r0] - rowGap);
 			comps.get(i).setBounds(bounds);
 		}
 	}
 
+	private boolean inAutoTrack(int i) {
+		for (int c = cellCol[i]; c < cellCol[i] + cellColSpan[i]; c++) {
+			if (colType[c] == AUTO) {
+				return true;
+			}
+		}
+		for (int r = cellRow[i]; r < cellRow[i] + cellRowSpan[i]; r++) {
+			if (rowType[r] == AUTO) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Placement ----------------------------------------
+
+	/**
+	 * Places the children in the grid, unless they and their cells did not
+	 * change since the last placement.
+	 */
+	private void place(List<Component> comps) {
+		int n = comps.size();
+		if (placedComps.length < n) {
+			int capacity = Math.max(n, 2 * placedComps.length);
+			placedComps = Arrays.copyOf(placedComps, capacity);
+			placedData = Arrays.copyOf(placedData, capacity);
+			cellCol = Arrays.copyOf(cellCol, capacity);
+			cellRow = Arrays.copyOf(cellRow, capacity);
+			cellColSpan = Arrays.copyOf(cellColSpan, capacity);
+			cellRowSpan = Arrays.copyOf(cellRowSpan, capacity);
+			desiredW = Arrays.copyOf(desiredW, capacity);
+			desiredH = Arrays.copyOf(desiredH, capacity);
+		}
+		boolean same = placed == n;
+		for (int i = 0; i < n; i++) {
+			Component c = comps.get(i);
+			if (placedComps[i] != c || placedData[i] != c.getLayoutData()) {
+				placedComps[i] = c;
+				placedData[i] = c.getLayoutData();
+				same = false;
+			}
+		}
+		if (same) {
+			return;
+		}
+		Arrays.fill(placedComps, n, placedComps.length, null);
+		Arrays.fill(placedData, n, placedData.length, null);
+		placed = n;
+		contentValid = false;
+
+		rows = rowTracks.length;
+		Arrays.fill(occupied, false);
+		int cursorCol = 0, cursorRow = 0;
+		for (int i = 0; i < n; i++) {
+			Object data = placedData[i];
+			Cell cell = data instanceof Cell ? (Cell) data : Cell.DEFAULT;
+			int cs = Math.min(cell.columnSpan, columns), rs = cell.rowSpan;
+			int col = cell.column == Cell.AUTO ? Cell.AUTO : Math.min(cell.column, columns - cs);
+			int row = cell.row;
+			if (col != Cell.AUTO && row != Cell.AUTO) {
+				// explicit, may overlap other children
+			} else if (col != Cell.AUTO) {
+				row = 0;
+				while (!isFree(col, row, cs, rs)) {
+					row++;
+				}
+			} else if (row != Cell.AUTO) {
+				col = 0;
+				while (col + cs < columns && !isFree(col, row, cs, rs)) {
+					col++;
+				}
+			} else {
+				col = cursorCol;
+				row = cursorRow;
+				while (col + cs > columns || !isFree(col, row, cs, rs)) {
+					if (++col + cs > columns) {
+						col = 0;
+						row++;
+					}
+				}
+				cursorCol = col + cs;
+				cursorRow = row;
+			}
+			occupy(col, row, cs, rs);
+			cellCol[i] = col;
+			cellRow[i] = row;
+			cellColSpan[i] = cs;
+			cellRowSpan[i] = rs;
+			rows = Math.max(rows, row + rs);
+		}
+
+		if (rowType.length < rows) {
+			int capacity = Math.max(rows, 2 * rowType.length);
+			rowType = new int[capacity];
+			rowValue = new float[capacity];
+			rowMin = new float[capacity];
+			rowContent = new float[capacity];
+			rowSize = new float[capacity];
+			rowPos = new float[capacity + 1];
+		}
+		for (int r = 0; r < rows; r++) {
+			Track t = r < rowTracks.length ? rowTracks[r] : implicitRow;
+			rowType[r] = t.type;
+			rowValue[r] = t.value;
+			rowMin[r] = t.min;
+		}
+	}
+
+	private boolean isFree(int col, int row, int cs, int rs) {
+		ensureRows(row + rs);
+		for (int r = row; r < row + rs; r++) {
+			for (int c = col; c < col + cs; c++) {
+				if (occupied[r * columns + c]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private void occupy(int col, int row, int cs, int rs) {
+		ensureRows(row + rs);
+		for (int r = row; r < row + rs; r++) {
+			Arrays.fill(occupied, r * columns + col, r * columns + col + cs, true);
+		}
+	}
+
+	private void ensureRows(int count) {
+		if (occupied.length < count * columns) {
+			occupied = Arrays.copyOf(occupied, Math.max(count * columns, 2 * occupied.length));
+		}
+	}
+
+	// Track sizing -------------------------------------
+
+	/**
+	 * Computes the size of the content of the auto tracks, and of the fractional
+	 * tracks too if {@code all} is true. A child spanning several tracks shares
+	 * the size the fixed tracks and the gaps do not cover between them.
+	 */
+	private void computeContent(List<Component> comps, boolean all) {
+		Arrays.fill(colContent, 0, columns, 0);
+		Arrays.fill(rowContent, 0, rows, 0);
+		for (int i = 0; i < placed; i++) {
+			if (!all && !inAutoTrack(i)) {
+				continue;
+			}
+			Vectorc d = comps.get(i).measure(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+			desiredW[i] = d.x();
+			desiredH[i] = d.y();
+			contribute(colType, colValue, colContent, cellCol[i], cellColSpan[i], d.x(), columnGap, all);
+			contribute(rowType, rowValue, rowContent, cellRow[i], cellRowSpan[i], d.y(), rowGap, all);
+		}
+	}
+
+	private static void contribute(int[] type, float[] value, float[] content, int start, int span, float size,
+			float gap, boolean all) {
+		int sized = 0;
+		size -= gap * (span - 1);
+		for (int t = start; t < start + span; t++) {
+			if (type[t] == AUTO || (all && type[t] == FRACTION)) {
+				sized++;
+			} else if (type[t] == FIXED) {
+				size -= value[t];
+			}
+		}
+		if (sized == 0 || size <= 0) {
+			return;
+		}
+		for (int t = start; t < start + span; t++) {
+			if (type[t] == AUTO || (all && type[t] == FRACTION)) {
+				content[t] = Math.max(content[t], size / sized);
+			}
+		}
+	}
+
+	/**
+	 * Sizes the tracks of one axis: the fixed and auto tracks first, then the
+	 * fractional ones share the remaining space.
+	 */
+	private static void resolve(int[] type, float[] value, float[] min, float[] content, int count,
+			float available, float gap, float[] size, float[] pos) {
+		float free = available - gap * (count - 1), fractions = 0;
+		for (int t = 0; t < count; t++) {
+			if (type[t] == FRACTION) {
+				fractions += value[t];
+				size[t] = 0;
+			} else {
+				size[t] = Math.max(min[t], type[t] == FIXED ? value[t] : content[t]);
+				free -= size[t];
+			}
+		}
+		pos[0] = 0;
+		for (int t = 0; t < count; t++) {
+			if (type[t] == FRACTION) {
+				size[t] = Math.max(min[t], fractions > 0 ? Math.max(0, free) * value[t] / fractions : 0);
+			}
+			pos[t + 1] = pos[t] + size[t] + gap;
+		}
+	}
+
+	private static float naturalSize(int[] type, float[] value, float[] min, float[] content, int count,
+			float gap) {
+		float size = gap * Math.max(0, count - 1);
+		for (int t = 0; t < count; t++) {
+			size += Math.max(min[t], type[t] == FIXED ? value[t] : content[t]);
+		}
+		return size;
+	}
 }
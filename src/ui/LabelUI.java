@@ -16,6 +16,7 @@ import grayscale.Vector;
 import grayscale.Vectorc;
 
 public class LabelUI extends ComponentUI {
+	private Rectangle strB = new Rectangle();
 
 	@Override
 	public void installUI(Component comp) {
@@ -29,6 +30,10 @@ public class LabelUI extends ComponentUI {
 	public void render(Component comp, Graphics g) {
 		Label label = (Label) comp;
 		Image image = label.getImage();
+		if (image != null) {
+			// the placeholder, or nothing, while the image is loading
+			image = g.getDisplayedImage(image);
+		}
 		String text = label.getText();
 
 		if (image == null && text == null) {
@@ -53,7 +58,6 @@ public class LabelUI extends ComponentUI {
 	}
 
 	private void drawImageAndText(Label label, Image image, ByteBuffer text, Graphics g) {
-		Rectangle strB = new Rectangle();
 		g.setFont(label.getFont());
 		g.getTextBounds(0, 0, text, strB);
 		int textPlacement = label.getTextPlacement();